@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2020
+ * (C) Copyright IBM Corp. 2020, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -21,6 +21,10 @@ public final class AuditLogServiceConstants {
     public static final String PROPERTY_AUDIT_KAFKA_BOOTSTRAPSERVERS = "kafkaServers";
     public static final String PROPERTY_AUDIT_KAFKA_APIKEY = "kafkaApiKey";
     public static final String PROPERTY_AUDIT_MAPPER = "mapper";
+    public static final String PROPERTY_AUDIT_KAFKA_DURABILITY = "durability";
+    public static final String PROPERTY_AUDIT_KAFKA_QUEUE_SIZE = "queueSize";
+    public static final String PROPERTY_AUDIT_KAFKA_BATCH_SIZE = "batchSize";
+    public static final String PROPERTY_AUDIT_KAFKA_SPILL_DIRECTORY = "spillDirectory";
 
     public static final String DEFAULT_MAPPER = "cadf";
 
@@ -28,6 +32,11 @@ public final class AuditLogServiceConstants {
 
     public static final String DEFAULT_AUDIT_KAFKA_TOPIC = "FHIR_AUDIT";
 
+    // By default, wait for the broker to acknowledge each audit event
+    public static final String DEFAULT_AUDIT_KAFKA_DURABILITY = "sync";
+    public static final int DEFAULT_AUDIT_KAFKA_QUEUE_SIZE = 10000;
+    public static final int DEFAULT_AUDIT_KAFKA_BATCH_SIZE = 500;
+
     // These are intentional defaults and accurately describing the state of the
     // Audit as it doesn't know where it is running, and users should set it.
     public static final String DEFAULT_AUDIT_GEO_CITY = "UnknownCity";
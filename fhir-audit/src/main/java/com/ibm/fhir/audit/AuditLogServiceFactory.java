@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016, 2020
+ * (C) Copyright IBM Corp. 2016, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -97,6 +97,24 @@ public class AuditLogServiceFactory {
         log.exiting(CLASSNAME, METHODNAME);
     }
 
+    /**
+     * Stops the cached audit log service, if one was created, so that it can send the audit log entries
+     * it still holds.
+     */
+    public static synchronized void stopService() {
+        final String METHODNAME = "stopService";
+        log.entering(CLASSNAME, METHODNAME);
+
+        if (serviceInstance != null) {
+            try {
+                serviceInstance.stop(FHIRConfigHelper.getPropertyGroup(FHIRConfiguration.PROPERTY_AUDIT_SERVICE_PROPERTIES));
+            } catch (Exception e) {
+                log.warning("Failure stopping audit log service: " + e.toString());
+            }
+        }
+        log.exiting(CLASSNAME, METHODNAME);
+    }
+
     /**
      * Resets the singleton instance of the audit logger service object that is cached by this factory class,
      * then creates, caches, and returns a new service object instance.
@@ -1,16 +1,23 @@
 /*
- * (C) Copyright IBM Corp. 2020
+ * (C) Copyright IBM Corp. 2020, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 package com.ibm.fhir.audit.configuration;
 
+import static com.ibm.fhir.audit.AuditLogServiceConstants.DEFAULT_AUDIT_KAFKA_BATCH_SIZE;
+import static com.ibm.fhir.audit.AuditLogServiceConstants.DEFAULT_AUDIT_KAFKA_DURABILITY;
+import static com.ibm.fhir.audit.AuditLogServiceConstants.DEFAULT_AUDIT_KAFKA_QUEUE_SIZE;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.DEFAULT_AUDIT_KAFKA_TOPIC;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.DEFAULT_MAPPER;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.FIELD_LOAD;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.KAFKA_USERNAME;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_KAFKA_APIKEY;
+import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_KAFKA_BATCH_SIZE;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_KAFKA_BOOTSTRAPSERVERS;
+import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_KAFKA_DURABILITY;
+import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_KAFKA_QUEUE_SIZE;
+import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_KAFKA_SPILL_DIRECTORY;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_KAFKA_TOPIC;
 import static com.ibm.fhir.audit.AuditLogServiceConstants.PROPERTY_AUDIT_MAPPER;
 import static com.ibm.fhir.audit.configuration.type.KafkaType.KAFKA_BOOTSTRAP_SERVERS;
@@ -28,6 +35,8 @@ import static com.ibm.fhir.audit.configuration.type.KafkaType.KAFKA_SSL_ENDPOINT
 import static com.ibm.fhir.audit.configuration.type.KafkaType.KAFKA_SSL_PROTOCOLS;
 import static com.ibm.fhir.audit.configuration.type.KafkaType.KAFKA_VALUE_SERIALIZER;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -36,6 +45,7 @@ import java.util.logging.Logger;
 
 import com.ibm.fhir.audit.configuration.type.IBMEventStreamsType;
 import com.ibm.fhir.audit.configuration.type.KafkaType;
+import com.ibm.fhir.audit.impl.AuditLogQueue.DurabilityPolicy;
 import com.ibm.fhir.audit.mapper.MapperType;
 import com.ibm.fhir.config.PropertyGroup;
 import com.ibm.fhir.exception.FHIRException;
@@ -243,6 +253,57 @@ public class ConfigurationTranslator {
         return MapperType.from(mapperType);
     }
 
+    /**
+     * get the durability policy of the audit events sent to Kafka
+     *
+     * @param auditLogProperties
+     * @return
+     * @throws Exception
+     */
+    public DurabilityPolicy getDurabilityPolicy(PropertyGroup auditLogProperties) throws Exception {
+        checkAuditLogProperties(auditLogProperties);
+        String durability = auditLogProperties.getStringProperty(PROPERTY_AUDIT_KAFKA_DURABILITY, DEFAULT_AUDIT_KAFKA_DURABILITY);
+        return DurabilityPolicy.from(durability);
+    }
+
+    /**
+     * gets the maximum number of audit events waiting to be sent to Kafka.
+     *
+     * @param auditLogProperties
+     * @return
+     * @throws Exception
+     */
+    public int getQueueSize(PropertyGroup auditLogProperties) throws Exception {
+        checkAuditLogProperties(auditLogProperties);
+        return Math.max(1, auditLogProperties.getIntProperty(PROPERTY_AUDIT_KAFKA_QUEUE_SIZE, DEFAULT_AUDIT_KAFKA_QUEUE_SIZE));
+    }
+
+    /**
+     * gets the maximum number of audit events sent to Kafka before waiting for them to be acknowledged.
+     *
+     * @param auditLogProperties
+     * @return
+     * @throws Exception
+     */
+    public int getBatchSize(PropertyGroup auditLogProperties) throws Exception {
+        checkAuditLogProperties(auditLogProperties);
+        return Math.max(1, auditLogProperties.getIntProperty(PROPERTY_AUDIT_KAFKA_BATCH_SIZE, DEFAULT_AUDIT_KAFKA_BATCH_SIZE));
+    }
+
+    /**
+     * gets the directory audit events are spilled to when they can't be sent to Kafka,
+     * which defaults to the temporary directory.
+     *
+     * @param auditLogProperties
+     * @return
+     * @throws Exception
+     */
+    public Path getSpillDirectory(PropertyGroup auditLogProperties) throws Exception {
+        checkAuditLogProperties(auditLogProperties);
+        String spillDirectory = auditLogProperties.getStringProperty(PROPERTY_AUDIT_KAFKA_SPILL_DIRECTORY, System.getProperty("java.io.tmpdir"));
+        return Paths.get(spillDirectory);
+    }
+
     /*
      * check audit log properties
      */
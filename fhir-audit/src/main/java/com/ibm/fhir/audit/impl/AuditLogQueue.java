@@ -0,0 +1,471 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.audit.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+import com.ibm.fhir.config.metrics.LatencyHistogram;
+
+/**
+ * A bounded queue of serialized audit events, drained by a dedicated sender thread which
+ * sends the events to Kafka in batches of up to batchSize. Logging an audit event only adds it
+ * to the queue, so the request thread doesn't wait for the broker to acknowledge it.
+ *
+ * <p>The {@link DurabilityPolicy} decides what happens to an event when the queue is full:
+ * the logging thread waits for space (back-pressure), the event is dropped, or the event is
+ * appended to a local spill file. With the spill policy, events the broker fails to acknowledge
+ * are spilled as well, and the spill file is sent again once the queue is idle. Spilled events
+ * are delivered at least once, and not necessarily in their original order.
+ *
+ * <p>The sender is a plain daemon thread rather than a task of the Liberty managed executor.
+ * It runs for as long as the audit service does, so it would permanently take a thread from the
+ * pool shared with the batch and reindex work. It only calls the Kafka producer, which needs no
+ * container context and runs its own unmanaged network thread anyway. {@link #shutdown(long)}
+ * stops and joins it when the server stops; being a daemon thread only matters if that never happens.
+ */
+public class AuditLogQueue {
+    private static final Logger log = Logger.getLogger(AuditLogQueue.class.getName());
+
+    private static final long REPLAY_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * How audit events are sent, and what to do with an event when the queue is full
+     */
+    public enum DurabilityPolicy {
+        // no queue: wait for the broker to acknowledge each event
+        SYNC("sync"),
+        BLOCK("block"),
+        DROP("drop"),
+        SPILL("spill");
+
+        private final String value;
+
+        private DurabilityPolicy(String value) {
+            this.value = value;
+        }
+
+        public String value() {
+            return value;
+        }
+
+        public static DurabilityPolicy from(String value) {
+            for (DurabilityPolicy c : DurabilityPolicy.values()) {
+                if (c.value.equalsIgnoreCase(value)) {
+                    return c;
+                }
+            }
+            throw new IllegalArgumentException(value);
+        }
+    }
+
+    // An event along with the time it was queued, used to measure the send latency
+    private static class QueuedEvent {
+        private final String event;
+        private final long queuedNanos;
+
+        private QueuedEvent(String event, long queuedNanos) {
+            this.event = event;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private final Producer<String, String> producer;
+
+    private final String topic;
+
+    private final BlockingQueue<QueuedEvent> queue;
+
+    private final int batchSize;
+
+    private final DurabilityPolicy durabilityPolicy;
+
+    // The file events are spilled to, and the file a previous spill file is moved to while it is sent again
+    private final Path spillFile;
+    private final Path replayFile;
+    private final Object spillLock = new Object();
+
+    // While the broker keeps failing, the spill file is only sent again after a delay
+    private long nextReplayNanos = System.nanoTime();
+
+    private final Thread sender;
+
+    private volatile boolean running = true;
+
+    // Metrics
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder spilledCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    // The time from queuing an event until its send has completed
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Public constructor. Starts the sender thread.
+     * @param producer the producer used to send the events
+     * @param topic the topic the events are sent to
+     * @param capacity the maximum number of events waiting to be sent
+     * @param batchSize the maximum number of events sent before waiting for the broker to acknowledge them
+     * @param durabilityPolicy what to do with an event when the queue is full; not SYNC
+     * @param spillDirectory the directory of the spill file; only used by the SPILL policy
+     */
+    public AuditLogQueue(Producer<String, String> producer, String topic, int capacity, int batchSize,
+            DurabilityPolicy durabilityPolicy, Path spillDirectory) {
+        if (durabilityPolicy == DurabilityPolicy.SYNC) {
+            throw new IllegalArgumentException("The sync durability policy doesn't use a queue");
+        }
+        this.producer = producer;
+        this.topic = topic;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.durabilityPolicy = durabilityPolicy;
+        if (durabilityPolicy == DurabilityPolicy.SPILL) {
+            this.spillFile = spillDirectory.resolve("fhir-audit-" + topic + ".ndjson");
+            this.replayFile = spillDirectory.resolve("fhir-audit-" + topic + ".ndjson.replay");
+        } else {
+            this.spillFile = null;
+            this.replayFile = null;
+        }
+        this.sender = new Thread(this::run, "fhir-audit-" + topic);
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Add the event to the queue. If the queue is full, wait for space, drop the event or spill
+     * the event according to the durability policy.
+     * @param event the serialized audit event
+     */
+    public void add(String event) {
+        if (!running) {
+            overflow(Collections.singletonList(event));
+            return;
+        }
+
+        QueuedEvent qe = new QueuedEvent(event, System.nanoTime());
+        if (durabilityPolicy == DurabilityPolicy.BLOCK) {
+            try {
+                // don't wait forever if the sender thread has stopped
+                while (!queue.offer(qe, 1, TimeUnit.SECONDS)) {
+                    if (!running) {
+                        droppedCount.increment();
+                        return;
+                    }
+                }
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+                droppedCount.increment();
+                log.warning("Interrupted while waiting to queue audit event");
+            }
+        } else if (!queue.offer(qe)) {
+            overflow(Collections.singletonList(event));
+        }
+    }
+
+    /**
+     * Spill or drop events which can't be queued or sent, according to the durability policy
+     */
+    private void overflow(List<String> events) {
+        if (durabilityPolicy == DurabilityPolicy.SPILL) {
+            spill(events);
+        } else {
+            droppedCount.add(events.size());
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Audit queue full, dropped " + events.size() + " event(s)");
+            }
+        }
+    }
+
+    /**
+     * Append the events to the spill file, or count them as dropped if they can't be written
+     */
+    private void spill(List<String> events) {
+        if (append(events)) {
+            spilledCount.add(events.size());
+        } else {
+            droppedCount.add(events.size());
+        }
+    }
+
+    /**
+     * Append the events to the spill file, one per line
+     * @return false if the events couldn't be written
+     */
+    private boolean append(List<String> events) {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (String event : events) {
+                    // JSON strings can't contain raw line breaks, so only insignificant whitespace is replaced
+                    writer.write(event.replace('\n', ' ').replace('\r', ' '));
+                    writer.newLine();
+                }
+                return true;
+            } catch (IOException x) {
+                log.log(Level.WARNING, "Unable to spill " + events.size() + " audit event(s) to " + spillFile, x);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The main loop of the sender thread
+     */
+    private void run() {
+        final List<QueuedEvent> batch = new ArrayList<>(batchSize);
+        final List<String> events = new ArrayList<>(batchSize);
+        try {
+            // send whatever was spilled before the last shutdown
+            replay();
+
+            while (running || !queue.isEmpty()) {
+                // Wait for the first event, then take whatever else is ready without waiting
+                QueuedEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    replay();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                for (QueuedEvent qe : batch) {
+                    events.add(qe.event);
+                }
+
+                List<String> failed = send(events);
+                if (!failed.isEmpty()) {
+                    failed(failed);
+                }
+
+                final long now = System.nanoTime();
+                for (QueuedEvent qe : batch) {
+                    latency.record(now - qe.queuedNanos);
+                }
+                batch.clear();
+                events.clear();
+            }
+        } catch (InterruptedException x) {
+            log.warning("Audit sender interrupted; " + queue.size() + " events not sent");
+        } catch (Throwable t) {
+            log.log(Level.SEVERE, "Audit sender stopped unexpectedly", t);
+        } finally {
+            running = false;
+            List<String> remaining = new ArrayList<>(events);
+            for (QueuedEvent qe : queue) {
+                remaining.add(qe.event);
+            }
+            queue.clear();
+            if (!remaining.isEmpty()) {
+                overflow(remaining);
+            }
+        }
+    }
+
+    /**
+     * Send the events and wait for the broker to acknowledge them
+     * @return the events which weren't acknowledged
+     */
+    private List<String> send(List<String> events) throws InterruptedException {
+        List<Future<RecordMetadata>> futures = new ArrayList<>(events.size());
+        for (String event : events) {
+            try {
+                futures.add(producer.send(new ProducerRecord<>(topic, event)));
+            } catch (RuntimeException x) {
+                log.log(Level.FINE, "Unable to send audit event", x);
+                futures.add(null);
+            }
+        }
+        try {
+            producer.flush();
+        } catch (RuntimeException x) {
+            log.log(Level.FINE, "Unable to flush audit events", x);
+        }
+
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            Future<RecordMetadata> future = futures.get(i);
+            try {
+                if (future == null || !future.isDone()) {
+                    failed.add(events.get(i));
+                } else {
+                    future.get();
+                    sentCount.increment();
+                }
+            } catch (ExecutionException x) {
+                failed.add(events.get(i));
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Spill the events the broker didn't acknowledge, or count them as failed
+     */
+    private void failed(List<String> events) {
+        if (durabilityPolicy == DurabilityPolicy.SPILL) {
+            log.warning("Unable to send " + events.size() + " audit event(s) to topic '" + topic + "'; spilling to " + spillFile);
+            spill(events);
+            // give the broker some time before sending the spill file again
+            nextReplayNanos = System.nanoTime() + REPLAY_RETRY_NANOS;
+        } else {
+            failedCount.add(events.size());
+            log.warning("Unable to send " + events.size() + " audit event(s) to topic '" + topic + "'");
+        }
+    }
+
+    /**
+     * Send the spilled events again. Events which fail again are spilled again.
+     */
+    private void replay() throws InterruptedException {
+        if (spillFile == null || System.nanoTime() - nextReplayNanos < 0) {
+            return;
+        }
+        synchronized (spillLock) {
+            if (!Files.exists(replayFile)) {
+                if (!Files.exists(spillFile)) {
+                    return;
+                }
+                try {
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException x) {
+                    log.log(Level.WARNING, "Unable to replay spilled audit events from " + spillFile, x);
+                    return;
+                }
+            }
+        }
+
+        long replayed = 0;
+        boolean failing = false;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            List<String> events = new ArrayList<>(batchSize);
+            String line;
+            do {
+                line = reader.readLine();
+                if (line != null && !line.isEmpty()) {
+                    events.add(line);
+                }
+                if (events.size() == batchSize || (line == null && !events.isEmpty())) {
+                    List<String> unsent = events;
+                    if (!failing) {
+                        unsent = send(events);
+                        replayed += events.size() - unsent.size();
+                        if (!unsent.isEmpty()) {
+                            // don't keep retrying a broker which is down; keep the rest for the next replay
+                            failing = true;
+                            nextReplayNanos = System.nanoTime() + REPLAY_RETRY_NANOS;
+                        }
+                    }
+                    if (!unsent.isEmpty() && !append(unsent)) {
+                        droppedCount.add(unsent.size());
+                    }
+                    events.clear();
+                }
+            } while (line != null);
+        } catch (IOException x) {
+            log.log(Level.WARNING, "Unable to replay spilled audit events from " + replayFile, x);
+            return;
+        }
+
+        try {
+            Files.delete(replayFile);
+        } catch (IOException x) {
+            log.log(Level.WARNING, "Unable to delete " + replayFile, x);
+        }
+        if (replayed > 0) {
+            log.info("Sent " + replayed + " spilled audit event(s) to topic '" + topic + "'");
+        }
+    }
+
+    /**
+     * Stop accepting events and wait up to the given time for the events already queued to be sent.
+     * Events which couldn't be sent by then are dropped, or spilled according to the durability policy.
+     * @param timeoutMillis
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            sender.join(timeoutMillis);
+            if (sender.isAlive()) {
+                sender.interrupt();
+                sender.join(timeoutMillis);
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Audit queue for topic '" + topic + "' stopped; " + this);
+    }
+
+    /**
+     * @return the number of events waiting to be sent
+     */
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of events acknowledged by the broker
+     */
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full or stopped, or couldn't be spilled
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return the number of events written to the spill file
+     */
+    public long getSpilledCount() {
+        return spilledCount.sum();
+    }
+
+    /**
+     * @return the number of events the broker failed to acknowledge, and which weren't spilled
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return the histogram of the time from queuing each event until its send completed
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "depth=" + getDepth() + " sent=" + getSentCount() + " dropped=" + getDroppedCount()
+            + " spilled=" + getSpilledCount() + " failed=" + getFailedCount() + " latency[" + latency + "]";
+    }
+}
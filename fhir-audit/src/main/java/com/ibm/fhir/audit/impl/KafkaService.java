@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019, 2020
+ * (C) Copyright IBM Corp. 2019, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -8,11 +8,13 @@ package com.ibm.fhir.audit.impl;
 
 import static com.ibm.fhir.audit.AuditLogServiceConstants.IGNORED_AUDIT_EVENT_TYPE;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.errors.InterruptException;
@@ -20,6 +22,7 @@ import org.apache.kafka.common.errors.InterruptException;
 import com.ibm.fhir.audit.AuditLogService;
 import com.ibm.fhir.audit.beans.AuditLogEntry;
 import com.ibm.fhir.audit.configuration.ConfigurationTranslator;
+import com.ibm.fhir.audit.impl.AuditLogQueue.DurabilityPolicy;
 import com.ibm.fhir.audit.mapper.MapperFactory;
 import com.ibm.fhir.audit.mapper.MapperType;
 import com.ibm.fhir.config.PropertyGroup;
@@ -28,6 +31,9 @@ import com.ibm.fhir.exception.FHIRException;
 /**
  * KafkaService orchestrates the call to Kafka so
  * mappers and translators can be swapped out.
+ *
+ * <p>Unless the durability policy is "sync", the audit events are sent asynchronously
+ * through an {@link AuditLogQueue}.
  */
 public class KafkaService implements AuditLogService {
     private static final String CLASSNAME = KafkaService.class.getName();
@@ -36,9 +42,12 @@ public class KafkaService implements AuditLogService {
     private Boolean enabled = Boolean.FALSE;
 
     private final ConfigurationTranslator translator = new ConfigurationTranslator();
-    private KafkaProducer<String, String> producer = null;
+    private Producer<String, String> producer = null;
     private String topic = "FHIR_AUDIT";
 
+    // null when the events are sent synchronously
+    private AuditLogQueue queue = null;
+
     private MapperType mapperType = null;
     private PropertyGroup auditLogProperties = null;
 
@@ -55,7 +64,7 @@ public class KafkaService implements AuditLogService {
         this.topic = translator.getTopic(auditLogProperties);
         this.mapperType = translator.getMapperType(auditLogProperties);
 
-        this.producer = new KafkaProducer<>(translator.translate(auditLogProperties));
+        this.producer = createProducer(translator.translate(auditLogProperties));
         if (this.producer == null) {
             throw new FHIRException("Failed to initialize the fhir-audit - KafkaProducer!");
         } else {
@@ -65,9 +74,33 @@ public class KafkaService implements AuditLogService {
 
         this.auditLogProperties = auditLogProperties;
 
+        DurabilityPolicy durabilityPolicy = translator.getDurabilityPolicy(auditLogProperties);
+        if (durabilityPolicy != DurabilityPolicy.SYNC) {
+            this.queue = new AuditLogQueue(producer, topic, translator.getQueueSize(auditLogProperties),
+                translator.getBatchSize(auditLogProperties), durabilityPolicy, translator.getSpillDirectory(auditLogProperties));
+            logger.info("Sending audit events asynchronously; durability policy '" + durabilityPolicy.value() + "'");
+        }
+
         logger.exiting(CLASSNAME, METHODNAME);
     }
 
+    /**
+     * Create the producer used to send the audit events
+     *
+     * @param props the Kafka producer properties
+     * @return
+     */
+    protected Producer<String, String> createProducer(Properties props) {
+        return new KafkaProducer<>(props);
+    }
+
+    /**
+     * @return the queue of the audit events waiting to be sent, or null if the events are sent synchronously
+     */
+    public AuditLogQueue getQueue() {
+        return queue;
+    }
+
     @Override
     public void logEntry(AuditLogEntry logEntry) throws Exception {
         final String METHODNAME = "logEntry";
@@ -83,14 +116,19 @@ public class KafkaService implements AuditLogService {
                         .map(logEntry)
                         .serialize();
 
-                if (logger.isLoggable(Level.FINE)) {
-                    logger.fine("Sending to Topic '" + topic + "'" + size(eventString));
-                }
-                ProducerRecord<String, String> record = new ProducerRecord<>(topic, eventString);
-                // Block till the message is sent to kafka server.
-                RecordMetadata metadata = this.producer.send(record).get();
-                if (logger.isLoggable(Level.FINE)) {
-                    logger.fine(" Record Produced to Topic '" + metadata.topic() + "' at time " + metadata.timestamp());
+                if (queue != null) {
+                    // The sender thread of the queue sends it to kafka server.
+                    queue.add(eventString);
+                } else {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("Sending to Topic '" + topic + "'" + size(eventString));
+                    }
+                    ProducerRecord<String, String> record = new ProducerRecord<>(topic, eventString);
+                    // Block till the message is sent to kafka server.
+                    RecordMetadata metadata = this.producer.send(record).get();
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(" Record Produced to Topic '" + metadata.topic() + "' at time " + metadata.timestamp());
+                    }
                 }
             }
         }
@@ -100,8 +138,12 @@ public class KafkaService implements AuditLogService {
 
     @Override
     public void stop(PropertyGroup auditLogProperties) throws Exception {
+        if (this.queue != null) {
+            // send whatever is still queued before closing the producer
+            this.queue.shutdown(30000);
+        }
         try{
-            this.producer.close(30, TimeUnit.SECONDS);
+            this.producer.close(Duration.ofSeconds(30));
         } catch(InterruptException ie) {
             logger.warning("During shutdown... stopping the producer");
         }
@@ -0,0 +1,199 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.audit.impl;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.audit.beans.ApiParameters;
+import com.ibm.fhir.audit.beans.AuditLogEntry;
+import com.ibm.fhir.audit.beans.Context;
+import com.ibm.fhir.audit.impl.AuditLogQueue.DurabilityPolicy;
+import com.ibm.fhir.config.PropertyGroup;
+
+/**
+ * Tests the asynchronous sending of audit events with a MockProducer
+ */
+public class AuditLogQueueTest {
+
+    @Test
+    public void testBlock() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        AuditLogQueue queue = new AuditLogQueue(producer, "FHIR_AUDIT", 100, 10, DurabilityPolicy.BLOCK, null);
+        for (int i = 0; i < 50; i++) {
+            queue.add("{\"n\":" + i + "}");
+        }
+        queue.shutdown(10000);
+
+        List<ProducerRecord<String, String>> history = producer.history();
+        assertEquals(history.size(), 50);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(history.get(i).topic(), "FHIR_AUDIT");
+            assertEquals(history.get(i).value(), "{\"n\":" + i + "}");
+        }
+        assertEquals(queue.getSentCount(), 50);
+        assertEquals(queue.getDroppedCount(), 0);
+        assertEquals(queue.getDepth(), 0);
+        assertEquals(queue.getLatency().getCount(), 50);
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        // a broker which doesn't acknowledge anything until released
+        CountDownLatch released = new CountDownLatch(1);
+        MockProducer<String, String> producer = new MockProducer<String, String>(true, new StringSerializer(), new StringSerializer()) {
+            @Override
+            public synchronized Future<RecordMetadata> send(ProducerRecord<String, String> record) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.send(record);
+            }
+        };
+        AuditLogQueue queue = new AuditLogQueue(producer, "FHIR_AUDIT", 2, 1, DurabilityPolicy.DROP, null);
+        for (int i = 0; i < 20; i++) {
+            queue.add("{\"n\":" + i + "}");
+        }
+        assertTrue(queue.getDepth() <= 2);
+        assertTrue(queue.getDroppedCount() >= 17);
+
+        released.countDown();
+        queue.shutdown(10000);
+        assertEquals(queue.getSentCount() + queue.getDroppedCount(), 20);
+        assertEquals(producer.history().size(), queue.getSentCount());
+    }
+
+    @Test
+    public void testSpillAndReplay() throws Exception {
+        Path spillDirectory = Files.createTempDirectory("fhir-audit");
+        Path spillFile = spillDirectory.resolve("fhir-audit-FHIR_AUDIT.ndjson");
+
+        // the broker is down, so every event is spilled
+        MockProducer<String, String> down = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        down.sendException = new KafkaException("broker down");
+        AuditLogQueue queue = new AuditLogQueue(down, "FHIR_AUDIT", 10, 10, DurabilityPolicy.SPILL, spillDirectory);
+        for (int i = 0; i < 5; i++) {
+            queue.add("{\n  \"n\": " + i + "\n}");
+        }
+        waitFor(() -> queue.getSpilledCount() == 5);
+        queue.shutdown(10000);
+
+        assertEquals(queue.getSentCount(), 0);
+        assertEquals(queue.getDroppedCount(), 0);
+        assertEquals(queue.getFailedCount(), 0);
+        assertEquals(Files.readAllLines(spillFile, StandardCharsets.UTF_8).size(), 5);
+
+        // the spilled events are sent once the broker is back
+        MockProducer<String, String> up = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        AuditLogQueue queue2 = new AuditLogQueue(up, "FHIR_AUDIT", 10, 2, DurabilityPolicy.SPILL, spillDirectory);
+        waitFor(() -> up.history().size() == 5);
+        queue2.shutdown(10000);
+
+        for (int i = 0; i < 5; i++) {
+            try (JsonReader reader = Json.createReader(new StringReader(up.history().get(i).value()))) {
+                JsonObject event = reader.readObject();
+                assertEquals(event.getInt("n"), i);
+            }
+        }
+        assertFalse(Files.exists(spillFile));
+        assertFalse(Files.exists(spillDirectory.resolve("fhir-audit-FHIR_AUDIT.ndjson.replay")));
+        Files.delete(spillDirectory);
+    }
+
+    @Test(expectedExceptions = { IllegalArgumentException.class })
+    public void testSyncHasNoQueue() throws Exception {
+        MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+        new AuditLogQueue(producer, "FHIR_AUDIT", 10, 10, DurabilityPolicy.SYNC, null);
+    }
+
+    @Test
+    public void testKafkaService() throws Exception {
+        // sync, the default
+        MockKafkaService svc = new MockKafkaService();
+        svc.initialize(properties(null));
+        assertNull(svc.getQueue());
+        svc.logEntry(logEntry());
+        assertEquals(svc.producer.history().size(), 1);
+        svc.stop(null);
+
+        // async
+        svc = new MockKafkaService();
+        svc.initialize(properties("block"));
+        assertNotNull(svc.getQueue());
+        for (int i = 0; i < 10; i++) {
+            svc.logEntry(logEntry());
+        }
+        svc.stop(null);
+        assertEquals(svc.producer.history().size(), 10);
+        assertEquals(svc.getQueue().getSentCount(), 10);
+        assertTrue(svc.producer.closed());
+    }
+
+    private static class MockKafkaService extends KafkaService {
+        private final MockProducer<String, String> producer = new MockProducer<>(true, new StringSerializer(), new StringSerializer());
+
+        @Override
+        protected Producer<String, String> createProducer(Properties props) {
+            return producer;
+        }
+    }
+
+    private static PropertyGroup properties(String durability) {
+        JsonObjectBuilder builder = Json.createObjectBuilder()
+                .add("load", "config")
+                .add("auditTopic", "FHIR_AUDIT")
+                .add("kafka", Json.createObjectBuilder().build());
+        if (durability != null) {
+            builder.add("durability", durability);
+        }
+        return new PropertyGroup(builder.build());
+    }
+
+    private static AuditLogEntry logEntry() {
+        AuditLogEntry logEntry = new AuditLogEntry("fhir-server", "fhir-create", "2021-05-10 14:35:57.752", "192.168.12.28", "default");
+        logEntry.setContext(new Context());
+        logEntry.getContext().setAction("C");
+        logEntry.getContext().setApiParameters(ApiParameters.builder().request("hostname").status(201).build());
+        return logEntry;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+}
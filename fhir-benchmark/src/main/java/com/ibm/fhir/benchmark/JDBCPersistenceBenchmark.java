@@ -0,0 +1,421 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.benchmark;
+
+import static com.ibm.fhir.model.type.String.string;
+
+import java.io.FileReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+
+import com.ibm.fhir.benchmark.runner.FHIRBenchmarkRunner;
+import com.ibm.fhir.benchmark.util.BenchmarkUtil;
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.database.utils.api.IConnectionProvider;
+import com.ibm.fhir.database.utils.api.ITransaction;
+import com.ibm.fhir.database.utils.common.JdbcConnectionProvider;
+import com.ibm.fhir.database.utils.common.JdbcPropertyAdapter;
+import com.ibm.fhir.database.utils.pool.PoolConnectionProvider;
+import com.ibm.fhir.database.utils.postgres.PostgresTranslator;
+import com.ibm.fhir.database.utils.transaction.SimpleTransactionProvider;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.CodeableConcept;
+import com.ibm.fhir.model.type.Coding;
+import com.ibm.fhir.model.type.Date;
+import com.ibm.fhir.model.type.DateTime;
+import com.ibm.fhir.model.type.HumanName;
+import com.ibm.fhir.model.type.Identifier;
+import com.ibm.fhir.model.type.Reference;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.code.ObservationStatus;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.MultiResourceResult;
+import com.ibm.fhir.persistence.SingleResourceResult;
+import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
+import com.ibm.fhir.persistence.context.FHIRPersistenceContextFactory;
+import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
+import com.ibm.fhir.persistence.jdbc.FHIRResourceDAOFactory;
+import com.ibm.fhir.persistence.jdbc.cache.FHIRPersistenceJDBCCacheUtil;
+import com.ibm.fhir.persistence.jdbc.connection.FHIRDbFlavor;
+import com.ibm.fhir.persistence.jdbc.connection.FHIRDbFlavorImpl;
+import com.ibm.fhir.persistence.jdbc.dao.api.JDBCIdentityCache;
+import com.ibm.fhir.persistence.jdbc.dao.api.ResourceDAO;
+import com.ibm.fhir.persistence.jdbc.dao.impl.JDBCIdentityCacheImpl;
+import com.ibm.fhir.persistence.jdbc.dao.impl.ParameterDAOImpl;
+import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceReferenceDAO;
+import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
+import com.ibm.fhir.persistence.jdbc.util.NewQueryBuilder;
+import com.ibm.fhir.schema.derby.DerbyFhirDatabase;
+import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Measures the JDBC persistence and search path: {@link FHIRPersistenceJDBCImpl} create
+ * (including the parameter inserts), read and search, the rendering of search queries by
+ * {@link NewQueryBuilder} and lookups through the identity caches.
+ *
+ * <p>By default the benchmark runs against an embedded Derby database under target/derby/benchmarkDB,
+ * which is created on first use. To run against PostgreSQL instead, deploy the schema with
+ * fhir-persistence-schema, point {@value #PROPERTY_DB_PROPERTIES} at a properties file holding the
+ * {@link JdbcPropertyAdapter} connection properties (db.host, db.port, db.database, db.user,
+ * db.password and db.default.schema) and pass {@code -p database=postgresql}.
+ *
+ * <p>Each benchmark is reported as throughput and as a sampled latency distribution (which
+ * includes p99). Allocations per operation are reported by the GC profiler as gc.alloc.rate.norm.
+ * The number of threads can be set with {@value #PROPERTY_THREADS}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JDBCPersistenceBenchmark {
+    public static final String PROPERTY_DB_PROPERTIES = "com.ibm.fhir.benchmark.dbProperties";
+    public static final String PROPERTY_THREADS = "com.ibm.fhir.benchmark.threads";
+
+    private static final String DERBY_DB_NAME = "target/derby/benchmarkDB";
+    private static final String DERBY_SCHEMA_NAME = "FHIRDATA";
+
+    private static final String IDENTIFIER_SYSTEM = "http://example.com/fhir/benchmark";
+    private static final String LOINC = "http://loinc.org";
+    private static final String[] OBSERVATION_CODES = { "8867-4", "8310-5", "29463-7", "8302-2", "85354-9" };
+
+    @State(Scope.Benchmark)
+    public static class DatabaseState {
+        // "derby" or "postgresql"
+        @Param({"derby"})
+        public String database;
+
+        // number of patients loaded before the measurements; each patient has one observation per code
+        @Param({"100"})
+        public int patientCount;
+
+        public DerbyFhirDatabase derby;
+        public PoolConnectionProvider connectionPool;
+        public FHIRPersistenceJDBCCache cache;
+        public Properties configProps;
+        public FHIRDbFlavor flavor;
+
+        // values used to build requests which hit the data loaded in setUp
+        public final List<String> patientIds = new ArrayList<>();
+        public final List<String> observationIds = new ArrayList<>();
+        public String runId;
+
+        @Setup
+        public void setUp() throws Exception {
+            IConnectionProvider connectionProvider;
+            configProps = new Properties();
+            configProps.setProperty("updateCreateEnabled", "true");
+            if ("derby".equals(database)) {
+                derby = new DerbyFhirDatabase(DERBY_DB_NAME);
+                connectionProvider = derby;
+                configProps.setProperty("schemaName", DERBY_SCHEMA_NAME);
+            } else if ("postgresql".equals(database)) {
+                String dbPropertiesFile = System.getProperty(PROPERTY_DB_PROPERTIES);
+                if (dbPropertiesFile == null) {
+                    throw new IllegalStateException("Set " + PROPERTY_DB_PROPERTIES + " to run against PostgreSQL");
+                }
+                Properties dbProps = new Properties();
+                try (Reader reader = new FileReader(dbPropertiesFile)) {
+                    dbProps.load(reader);
+                }
+                JdbcPropertyAdapter propertyAdapter = new JdbcPropertyAdapter(dbProps);
+                connectionProvider = new JdbcConnectionProvider(new PostgresTranslator(), propertyAdapter);
+                configProps.setProperty("schemaName", propertyAdapter.getDefaultSchema());
+            } else {
+                throw new IllegalArgumentException("Unsupported database: " + database);
+            }
+
+            // one connection for each benchmark thread, plus one for the setup
+            connectionPool = new PoolConnectionProvider(connectionProvider, Integer.getInteger(PROPERTY_THREADS, 1) + 1);
+            cache = FHIRPersistenceJDBCCacheUtil.create(1000, 10000);
+            flavor = new FHIRDbFlavorImpl(connectionProvider.getTranslator().getType(), false);
+
+            loadData();
+        }
+
+        /**
+         * Load the patients and observations used by the read and search benchmarks. Each run
+         * uses its own family name, so data left behind by earlier runs doesn't change the results.
+         */
+        private void loadData() throws Exception {
+            runId = Long.toString(System.currentTimeMillis(), 36);
+            System.out.println("Loading " + patientCount + " patients for run " + runId);
+
+            FHIRRequestContext.set(new FHIRRequestContext());
+            FHIRPersistence persistence = newPersistence();
+            for (int i = 0; i < patientCount; i++) {
+                persistence.getTransaction().begin();
+                try {
+                    Patient patient = persistence.create(createContext(), buildPatient(runId, i)).getResource();
+                    patientIds.add(patient.getId());
+                    for (int c = 0; c < OBSERVATION_CODES.length; c++) {
+                        Observation observation = buildObservation(patient.getId(), OBSERVATION_CODES[c], i, c);
+                        observationIds.add(persistence.create(createContext(), observation).getResource().getId());
+                    }
+                } finally {
+                    persistence.getTransaction().end();
+                }
+            }
+        }
+
+        /**
+         * @return a new persistence instance for the calling thread
+         */
+        public FHIRPersistenceJDBCImpl newPersistence() throws Exception {
+            return new FHIRPersistenceJDBCImpl(configProps, connectionPool, cache);
+        }
+
+        public String randomPatientId() {
+            return patientIds.get(ThreadLocalRandom.current().nextInt(patientIds.size()));
+        }
+
+        public String randomObservationId() {
+            return observationIds.get(ThreadLocalRandom.current().nextInt(observationIds.size()));
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            if (connectionPool != null) {
+                connectionPool.close();
+            }
+            if (derby != null) {
+                derby.close();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PersistenceState {
+        public FHIRPersistence persistence;
+
+        @Setup
+        public void setUp(DatabaseState db) throws Exception {
+            // the request context and the persistence instance are both bound to the benchmark thread
+            FHIRRequestContext.set(new FHIRRequestContext());
+            persistence = db.newPersistence();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CreateState {
+        // "Patient", "Observation" or "mixed" (spec examples of several resource types)
+        @Param({"Patient", "Observation", "mixed"})
+        public String resourceMix;
+
+        public List<Resource> resources = new ArrayList<>();
+        private int next;
+
+        @Setup
+        public void setUp() throws Exception {
+            List<String> exampleNames;
+            switch (resourceMix) {
+            case "Patient":
+                exampleNames = Collections.singletonList("patient-example");
+                break;
+            case "Observation":
+                exampleNames = Collections.singletonList("observation-example");
+                break;
+            default:
+                exampleNames = Arrays.asList("patient-example", "observation-example", "encounter-example", "condition-example",
+                    "explanationofbenefit-example-2");
+                break;
+            }
+            for (String exampleName : exampleNames) {
+                resources.add(FHIRParser.parser(Format.JSON).parse(new StringReader(BenchmarkUtil.getSpecExample(Format.JSON, exampleName))));
+            }
+        }
+
+        public Resource nextResource() {
+            Resource resource = resources.get(next);
+            next = (next + 1) % resources.size();
+            return resource;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SearchState {
+        // token: Observation?code
+        // date: Observation?date range
+        // chained: Observation?subject:Patient.family
+        // include: Observation?code&_include=Observation:subject
+        @Param({"token", "date", "chained", "include"})
+        public String searchShape;
+
+        /**
+         * Build the query parameters for the next search, picking a random code or patient
+         * so that the searches don't all hit the same rows
+         */
+        public Map<String, List<String>> nextQueryParameters(DatabaseState db) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String code = LOINC + "|" + OBSERVATION_CODES[random.nextInt(OBSERVATION_CODES.length)];
+            Map<String, List<String>> queryParameters = new HashMap<>();
+            switch (searchShape) {
+            case "token":
+                queryParameters.put("code", Collections.singletonList(code));
+                break;
+            case "date":
+                int day = 1 + random.nextInt(27);
+                queryParameters.put("date", Arrays.asList(String.format("ge2020-01-%02d", day), String.format("lt2020-02-%02d", day)));
+                break;
+            case "chained":
+                queryParameters.put("subject:Patient.family", Collections.singletonList(familyName(db.runId, random.nextInt(db.patientCount))));
+                break;
+            case "include":
+                queryParameters.put("code", Collections.singletonList(code));
+                queryParameters.put("_include", Collections.singletonList("Observation:subject"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported search shape: " + searchShape);
+            }
+            queryParameters.put("_count", Collections.singletonList("10"));
+            return queryParameters;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class QueryBuilderState {
+        // the connection pool only hands out connections within a transaction
+        public ITransaction transaction;
+        public Connection connection;
+        public JDBCIdentityCache identityCache;
+
+        @Setup
+        public void setUp(DatabaseState db) throws Exception {
+            FHIRRequestContext.set(new FHIRRequestContext());
+            String schemaName = db.configProps.getProperty("schemaName");
+            transaction = new SimpleTransactionProvider(db.connectionPool).getTransaction();
+            connection = db.connectionPool.getConnection();
+            ResourceDAO resourceDAO = FHIRResourceDAOFactory.getResourceDAO(connection, "FHIR_ADMIN", schemaName, db.flavor, db.cache);
+            ResourceReferenceDAO rrd = FHIRResourceDAOFactory.getResourceReferenceDAO(connection, "FHIR_ADMIN", schemaName, db.flavor, db.cache);
+            identityCache = new JDBCIdentityCacheImpl(db.cache, resourceDAO, new ParameterDAOImpl(connection, schemaName, db.flavor), rrd);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            connection.close();
+            transaction.close();
+        }
+    }
+
+    @Benchmark
+    public SingleResourceResult<Resource> create(PersistenceState state, CreateState createState) throws Exception {
+        state.persistence.getTransaction().begin();
+        try {
+            return state.persistence.create(createContext(), createState.nextResource());
+        } finally {
+            state.persistence.getTransaction().end();
+        }
+    }
+
+    @Benchmark
+    public SingleResourceResult<Observation> read(PersistenceState state, DatabaseState db) throws Exception {
+        state.persistence.getTransaction().begin();
+        try {
+            return state.persistence.read(createContext(), Observation.class, db.randomObservationId());
+        } finally {
+            state.persistence.getTransaction().end();
+        }
+    }
+
+    @Benchmark
+    public MultiResourceResult<Resource> search(PersistenceState state, DatabaseState db, SearchState searchState) throws Exception {
+        FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(Observation.class, searchState.nextQueryParameters(db));
+        state.persistence.getTransaction().begin();
+        try {
+            return state.persistence.search(FHIRPersistenceContextFactory.createPersistenceContext(null, searchContext), Observation.class);
+        } finally {
+            state.persistence.getTransaction().end();
+        }
+    }
+
+    @Benchmark
+    public String buildQuery(QueryBuilderState state, DatabaseState db, SearchState searchState) throws Exception {
+        FHIRSearchContext searchContext = SearchUtil.parseQueryParameters(Observation.class, searchState.nextQueryParameters(db));
+        NewQueryBuilder queryBuilder = new NewQueryBuilder(null, state.identityCache);
+        return queryBuilder.buildQuery(Observation.class, searchContext).toString();
+    }
+
+    @Benchmark
+    public Integer identityCacheLookup(QueryBuilderState state) throws Exception {
+        int code = ThreadLocalRandom.current().nextInt(OBSERVATION_CODES.length);
+        state.identityCache.getResourceTypeId("Observation");
+        state.identityCache.getParameterNameId("code");
+        state.identityCache.getCommonTokenValueId(LOINC, OBSERVATION_CODES[code]);
+        return state.identityCache.getCodeSystemId(LOINC);
+    }
+
+    private static FHIRPersistenceContext createContext() {
+        return FHIRPersistenceContextFactory.createPersistenceContext(null);
+    }
+
+    private static String familyName(String runId, int i) {
+        return "Bench" + runId + "x" + i;
+    }
+
+    private static Patient buildPatient(String runId, int i) {
+        return Patient.builder()
+                .identifier(Identifier.builder()
+                    .system(Uri.of(IDENTIFIER_SYSTEM))
+                    .value(string(runId + "-" + i))
+                    .build())
+                .name(HumanName.builder()
+                    .family(string(familyName(runId, i)))
+                    .given(string("Given" + i))
+                    .build())
+                .birthDate(Date.of(String.format("19%02d-%02d-%02d", 30 + i % 70, 1 + i % 12, 1 + i % 28)))
+                .build();
+    }
+
+    private static Observation buildObservation(String patientId, String code, int i, int c) {
+        return Observation.builder()
+                .status(ObservationStatus.FINAL)
+                .code(CodeableConcept.builder()
+                    .coding(Coding.builder()
+                        .system(Uri.of(LOINC))
+                        .code(Code.of(code))
+                        .build())
+                    .build())
+                .subject(Reference.builder()
+                    .reference(string("Patient/" + patientId))
+                    .build())
+                .effective(DateTime.of(String.format("2020-%02d-%02dT%02d:00:00Z", 1 + i % 12, 1 + i % 28, c)))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger(PROPERTY_THREADS, 1);
+        new FHIRBenchmarkRunner(JDBCPersistenceBenchmark.class)
+            .property(PROPERTY_THREADS, Integer.toString(threads))
+            .threads(threads)
+            .profiler(GCProfiler.class)
+            .run();
+    }
+}
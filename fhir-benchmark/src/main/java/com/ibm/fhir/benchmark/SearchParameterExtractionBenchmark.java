@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.benchmark;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.ibm.fhir.benchmark.runner.FHIRBenchmarkRunner;
+import com.ibm.fhir.benchmark.util.BenchmarkUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.path.FHIRPathBooleanValue;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.function.ResolveFunction;
+import com.ibm.fhir.search.util.SearchParameterExtractor;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Compares evaluating each search parameter expression on its own (the previous approach)
+ * with the grouped {@link SearchParameterExtractor}, both sequentially and with a pool.
+ */
+public class SearchParameterExtractionBenchmark {
+    @State(Scope.Benchmark)
+    public static class SearchParameterExtractionState {
+        public Resource resource;
+        public List<SearchParameter> parameters;
+        public SearchParameterExtractor extractor;
+        public SearchParameterExtractor parallelExtractor;
+        public ExecutorService pool;
+
+        // JMH will inject the value into the annotated field before any Setup method is called.
+        @Param({"explanationofbenefit-example-2", "claim-example-institutional-rich", "observation-example-genetics-1", "patient-example"})
+        public String exampleName;
+
+        @Setup
+        public void setUp() throws Exception {
+            System.out.println("Setting up for example " + exampleName);
+            resource = FHIRParser.parser(Format.JSON).parse(new StringReader(BenchmarkUtil.getSpecExample(Format.JSON, exampleName)));
+            parameters = SearchUtil.getApplicableSearchParameters(resource.getClass().getSimpleName());
+            extractor = new SearchParameterExtractor();
+            pool = Executors.newFixedThreadPool(3);
+            parallelExtractor = new SearchParameterExtractor(pool, 4);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Map<SearchParameter, List<FHIRPathNode>> benchmarkEvaluator(SearchParameterExtractionState state) throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        EvaluationContext evaluationContext = new EvaluationContext(state.resource);
+        evaluationContext.setExternalConstant(ResolveFunction.RESOLVE_RELATIVE_REFERENCES, FHIRPathBooleanValue.FALSE);
+
+        Map<SearchParameter, List<FHIRPathNode>> result = new LinkedHashMap<>();
+        for (SearchParameter parameter : state.parameters) {
+            if (parameter.getExpression() != null) {
+                result.put(parameter, new ArrayList<>(evaluator.evaluate(evaluationContext, parameter.getExpression().getValue())));
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Map<SearchParameter, List<FHIRPathNode>> benchmarkExtractor(SearchParameterExtractionState state) throws Exception {
+        return state.extractor.extract(state.resource, state.parameters, false);
+    }
+
+    @Benchmark
+    public Map<SearchParameter, List<FHIRPathNode>> benchmarkParallelExtractor(SearchParameterExtractionState state) throws Exception {
+        return state.parallelExtractor.extract(state.resource, state.parameters, false);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new FHIRBenchmarkRunner(SearchParameterExtractionBenchmark.class).run();
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019, 2020
+ * (C) Copyright IBM Corp. 2019, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,10 +11,12 @@ import java.util.Collection;
 import java.util.List;
 
 import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.Profiler;
 import org.openjdk.jmh.profile.StackProfiler;
 import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.openjdk.jmh.runner.options.TimeValue;
@@ -28,6 +30,8 @@ public class FHIRBenchmarkRunner {
 
     private final Class<?> benchmarkClass;
     private final List<String> properties = new ArrayList<>();
+    private final List<Class<? extends Profiler>> profilers = new ArrayList<>();
+    private int threads = 1;
 
     public FHIRBenchmarkRunner(Class<?> benchmarkClass) {
         this.benchmarkClass = benchmarkClass;
@@ -38,11 +42,27 @@ public class FHIRBenchmarkRunner {
         return this;
     }
 
+    /**
+     * Set the number of benchmark threads used by {@link #run()}
+     */
+    public FHIRBenchmarkRunner threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Add a profiler to those used by {@link #run()}, which always include the {@link StackProfiler}
+     */
+    public FHIRBenchmarkRunner profiler(Class<? extends Profiler> profiler) {
+        profilers.add(profiler);
+        return this;
+    }
+
     /**
      * Run without overriding any parameters
      */
     public Collection<RunResult> run() throws RunnerException {
-        Options opt = new OptionsBuilder()
+        ChainedOptionsBuilder builder = new OptionsBuilder()
                 .include(".*" + benchmarkClass.getSimpleName() + ".*")
                 .jvmArgsPrepend("-Xms2g", "-Xmx2g")
                 .jvmArgsAppend(properties.toArray(new String[properties.size()]))
@@ -53,11 +73,13 @@ public class FHIRBenchmarkRunner {
                 .measurementTime(TimeValue.seconds(10))
                 .shouldDoGC(true)
                 .forks(2)
-                .threads(1)
+                .threads(threads)
 //              .mode(Mode.AverageTime)
-                .addProfiler(StackProfiler.class)
-                .build();
-        return new Runner(opt).run();
+                .addProfiler(StackProfiler.class);
+        for (Class<? extends Profiler> profiler : profilers) {
+            builder.addProfiler(profiler);
+        }
+        return new Runner(builder.build()).run();
     }
 
     /**
@@ -6,15 +6,17 @@
 
 package com.ibm.fhir.bulkdata.common;
 
-import java.io.BufferedReader;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,6 +25,9 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -56,6 +61,7 @@ import com.ibm.fhir.model.util.FHIRUtil;
 import com.ibm.fhir.model.util.ModelSupport;
 import com.ibm.fhir.operation.bulkdata.config.ConfigurationAdapter;
 import com.ibm.fhir.operation.bulkdata.config.ConfigurationFactory;
+import com.ibm.fhir.server.helper.FHIRServerUtils;
 import com.ibm.fhir.server.util.FHIRUrlParser;
 import com.ibm.fhir.validation.FHIRValidator;
 import com.ibm.fhir.validation.exception.FHIRValidationException;
@@ -72,6 +78,12 @@ public class BulkDataUtils {
     // longer than the socket timeout, set to retry once for now.
     public static final int IMPORT_RETRY_TIMES = 1;
 
+    // Parses the lines read by import partitions when the import parse parallelism is greater than 1
+    private static final String EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
+
+    // The managed executor, once it has been looked up
+    private static volatile ExecutorService parseExecutor = null;
+
     private static void log(String method, Object msg) {
         logger.info(method + ": " + String.valueOf(msg));
     }
@@ -142,47 +154,154 @@ public class BulkDataUtils {
     }
 
     /**
-     * @param resReader - the buffer reader to read FHIR resource from.
-     * @param numOfProcessedLines - number of the already processed lines.
+     * Read the next lines from the reader, and parse them into FHIR resources. Lines are read until at least one
+     * resource is parsed successfully, up to the configured number of resources per read, or until the end of the
+     * stream. The offset of the line after the last one read is recorded in the transient user data.
+     *
+     * @param lineReader - the reader to read FHIR resources from.
+     * @param numOfProcessedLines - number of the already processed lines, used for logging only.
      * @param fhirResources - List holds the FHIR resources.
-     * @param isSkipProcessed - if need to skip the processed lines before read.
+     * @param transientUserData - transient user data for the chunk.
+     * @param dataSource - the name of the ndjson file, used for logging only.
      * @return - the number of parsing failures.
      * @throws Exception
      */
-    private static int getFhirResourceFromBufferReader(BufferedReader resReader, int numOfProcessedLines, List<Resource> fhirResources,
-            boolean isSkipProcessed, String dataSource) throws Exception {
-        int exported = 0;
-        int lineRed = 0;
+    private static int getFhirResourceFromLineReader(NDJsonLineReader lineReader, long numOfProcessedLines, List<Resource> fhirResources,
+            ImportTransientUserData transientUserData, String dataSource) throws Exception {
+        int maxRead = adapter.getImportNumberOfFhirResourcesPerRead(null);
         int parseFailures = 0;
+        long lineNum = numOfProcessedLines;
 
+        List<String> lines = new ArrayList<>(maxRead);
         String resLine = null;
         do {
-            resLine = resReader.readLine();
-            if (resLine != null) {
-                lineRed++;
-                if (isSkipProcessed && lineRed <= numOfProcessedLines) {
-                    continue;
-                }
-                try {
-                    fhirResources.add(FHIRParser.parser(Format.JSON).parse(new StringReader(resLine)));
-                    exported++;
+            lines.clear();
+            while (lines.size() < maxRead && (resLine = lineReader.readLine()) != null) {
+                lines.add(resLine);
+            }
 
-                    // Per Code Review, this could be a trap if always compare ==.
-                    if (exported >= adapter.getImportNumberOfFhirResourcesPerRead(null)) {
-                        break;
-                    }
-                } catch (FHIRParserException e) {
+            Object[] parsed = parse(lines);
+            for (int i = 0; i < parsed.length; i++) {
+                lineNum++;
+                if (parsed[i] instanceof Resource) {
+                    fhirResources.add((Resource) parsed[i]);
+                } else {
                     // Log and skip the invalid FHIR resource.
                     parseFailures++;
-                    logger.log(Level.INFO, "getFhirResourceFromBufferReader: " + "Failed to parse line "
-                            + (numOfProcessedLines + exported + parseFailures) + " of [" + dataSource + "].", e);
-                    continue;
+                    logger.log(Level.INFO, "getFhirResourceFromLineReader: " + "Failed to parse line "
+                            + lineNum + " of [" + dataSource + "].", (Throwable) parsed[i]);
                 }
             }
-        } while (resLine != null);
+            // Keep reading if all the lines failed to parse, otherwise the reader would report the end of the file.
+        } while (fhirResources.isEmpty() && resLine != null);
+
+        transientUserData.setNumOfReadBytes(lineReader.getOffset());
         return parseFailures;
     }
 
+    /**
+     * Parse the lines, in parallel if configured to.
+     *
+     * @param lines - the lines to parse.
+     * @return - for each line, either the parsed resource or the FHIRParserException which was thrown.
+     * @throws Exception
+     */
+    private static Object[] parse(List<String> lines) throws Exception {
+        int parallelism = adapter.getImportParseParallelism();
+        return parse(lines, parallelism, parallelism > 1 ? getParseExecutor() : null);
+    }
+
+    /**
+     * Parse the lines, splitting them between the current thread and up to parallelism - 1 tasks run by the executor.
+     *
+     * @param lines - the lines to parse.
+     * @param parallelism - the maximum number of threads to parse the lines with.
+     * @param executor - the executor to run the tasks with, or null to parse all the lines on the current thread.
+     * @return - for each line, either the parsed resource or the FHIRParserException which was thrown.
+     * @throws Exception
+     */
+    public static Object[] parse(List<String> lines, int parallelism, ExecutorService executor) throws Exception {
+        Object[] parsed = new Object[lines.size()];
+        parallelism = Math.min(parallelism, lines.size());
+        if (parallelism <= 1 || executor == null) {
+            parse(lines, parsed, 0, lines.size());
+            return parsed;
+        }
+
+        // Split the lines into one slice per thread, the current thread parses the first slice.
+        int sliceSize = (lines.size() + parallelism - 1) / parallelism;
+        List<Future<?>> futures = new ArrayList<>(parallelism - 1);
+        for (int from = sliceSize; from < lines.size(); from += sliceSize) {
+            final int sliceFrom = from;
+            final int sliceTo = Math.min(from + sliceSize, lines.size());
+            futures.add(executor.submit(() -> parse(lines, parsed, sliceFrom, sliceTo)));
+        }
+        parse(lines, parsed, 0, sliceSize);
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+            }
+        }
+        return parsed;
+    }
+
+    private static void parse(List<String> lines, Object[] parsed, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                parsed[i] = FHIRParser.parser(Format.JSON).parse(new StringReader(lines.get(i)));
+            } catch (FHIRParserException e) {
+                parsed[i] = e;
+            }
+        }
+    }
+
+    /**
+     * @return - the managed executor of the server, which is shut down with the application, or null if it isn't
+     *     available, in which case the lines are parsed on the current thread.
+     */
+    private static ExecutorService getParseExecutor() {
+        ExecutorService executor = parseExecutor;
+        if (executor == null) {
+            executor = FHIRServerUtils.getJNDIValue(EXECUTOR_JNDI_NAME, null);
+            if (executor == null) {
+                logger.fine("getParseExecutor: " + EXECUTOR_JNDI_NAME + " not found, parsing sequentially");
+            }
+            parseExecutor = executor;
+        }
+        return executor;
+    }
+
+    /**
+     * Wrap the stream in a line reader, skipping the already processed lines if the stream couldn't be opened at the
+     * offset of the first line not yet read.
+     *
+     * @param inputStream - the stream, positioned at offset.
+     * @param offset - the byte offset of the stream.
+     * @param numOfLinesToSkip - the number of lines to skip if the offset is 0.
+     * @return - the line reader.
+     * @throws Exception
+     */
+    private static NDJsonLineReader openLineReader(InputStream inputStream, long offset, long numOfLinesToSkip) throws Exception {
+        NDJsonLineReader lineReader = new NDJsonLineReader(inputStream, offset);
+        if (offset == 0) {
+            // Check points taken before the byte offset was tracked only have the number of processed lines.
+            for (long i = 0; i < numOfLinesToSkip && lineReader.readLine() != null; i++) {
+                // skip
+            }
+        }
+        return lineReader;
+    }
+
+    /**
+     * @return - true if the whole file has already been read, in which case there is nothing left to read
+     *     and a range request starting at its end would be rejected.
+     */
+    private static boolean isFullyRead(ImportTransientUserData transientUserData) {
+        return transientUserData.getImportFileSize() > 0 && transientUserData.getNumOfReadBytes() >= transientUserData.getImportFileSize();
+    }
+
     public static void cleanupTransientUserData(ImportTransientUserData transientUserData, boolean isAbort) throws Exception {
         if (transientUserData.getInputStream() != null) {
             if (isAbort && transientUserData.getInputStream() instanceof S3ObjectInputStream) {
@@ -193,9 +312,9 @@ public class BulkDataUtils {
             transientUserData.setInputStream(null);
         }
 
-        if (transientUserData.getBufferReader() != null) {
-            transientUserData.getBufferReader().close();
-            transientUserData.setBufferReader(null);
+        if (transientUserData.getLineReader() != null) {
+            transientUserData.getLineReader().close();
+            transientUserData.setLineReader(null);
         }
     }
 
@@ -203,33 +322,39 @@ public class BulkDataUtils {
      * @param cosClient - COS/S3 client.
      * @param bucketName - COS/S3 bucket name to read from.
      * @param itemName - COS/S3 object name to read from.
-     * @param numOfLinesToSkip - number of lines to skip before read.
+     * @param numOfLinesToSkip - number of lines already processed.
      * @param fhirResources - List holds the FHIR resources.
      * @param transientUserData - transient user data for the chunk.
      * @return - number of parsing failures.
      * @throws Exception
      */
     public static int readFhirResourceFromObjectStore(AmazonS3 cosClient, String bucketName, String itemName,
-           int numOfLinesToSkip, List<Resource> fhirResources, ImportTransientUserData transientUserData) throws Exception {
+           long numOfLinesToSkip, List<Resource> fhirResources, ImportTransientUserData transientUserData) throws Exception {
         int parseFailures = 0;
         int retryTimes = IMPORT_RETRY_TIMES;
         do {
             try {
-                if (transientUserData.getBufferReader() == null) {
-                    S3Object item = cosClient.getObject(new GetObjectRequest(bucketName, itemName));
+                if (transientUserData.getLineReader() == null) {
+                    if (isFullyRead(transientUserData)) {
+                        break;
+                    }
+                    // Start reading at the first line not yet read.
+                    long offset = transientUserData.getNumOfReadBytes();
+                    GetObjectRequest request = new GetObjectRequest(bucketName, itemName);
+                    if (offset > 0) {
+                        request.setRange(offset);
+                    }
+                    S3Object item = cosClient.getObject(request);
                     S3ObjectInputStream s3InStream = item.getObjectContent();
                     transientUserData.setInputStream(s3InStream);
-                    BufferedReader resReader = new BufferedReader(new InputStreamReader(s3InStream));
-                    transientUserData.setBufferReader(resReader);
-                    // Skip the already processed lines after opening the input stream for first read.
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, true, itemName);
-                } else {
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, false, itemName);
+                    transientUserData.setLineReader(openLineReader(s3InStream, offset, numOfLinesToSkip));
                 }
+                parseFailures = getFhirResourceFromLineReader(transientUserData.getLineReader(), numOfLinesToSkip, fhirResources, transientUserData, itemName);
                 break;
             } catch (Exception ex) {
-                // Prepare for retry, skip all the processed lines in previous batches and this batch.
-                numOfLinesToSkip = numOfLinesToSkip + fhirResources.size() + parseFailures;
+                // Prepare for retry, read this batch again from the first line not yet read.
+                fhirResources.clear();
+                parseFailures = 0;
                 cleanupTransientUserData(transientUserData, true);
                 logger.warning("readFhirResourceFromObjectStore: Error proccesing file [" + itemName + "] - " + ex.getMessage());
                 if ((retryTimes--) > 0) {
@@ -252,25 +377,25 @@ public class BulkDataUtils {
 
     /**
      * @param filePath - file path to the ndjson file.
-     * @param numOfLinesToSkip - number of lines to skip before read.
+     * @param numOfLinesToSkip - number of lines already processed.
      * @param fhirResources - List holds the FHIR resources.
      * @param transientUserData - transient user data for the chunk.
      * @return - number of parsing failures.
      * @throws Exception
      */
-    public static int readFhirResourceFromLocalFile(String filePath, int numOfLinesToSkip, List<Resource> fhirResources,
+    public static int readFhirResourceFromLocalFile(String filePath, long numOfLinesToSkip, List<Resource> fhirResources,
             ImportTransientUserData transientUserData) throws Exception {
         int parseFailures = 0;
 
         try {
-            if (transientUserData.getBufferReader() == null) {
-                BufferedReader resReader = Files.newBufferedReader(Paths.get(filePath));
-                transientUserData.setBufferReader(resReader);
-                // Skip the already processed lines after opening the input stream for first read.
-                parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, true, filePath);
-            } else {
-                parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, false, filePath);
+            if (transientUserData.getLineReader() == null) {
+                // Seek to the first line not yet read.
+                long offset = transientUserData.getNumOfReadBytes();
+                FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+                channel.position(offset);
+                transientUserData.setLineReader(openLineReader(Channels.newInputStream(channel), offset, numOfLinesToSkip));
             }
+            parseFailures = getFhirResourceFromLineReader(transientUserData.getLineReader(), numOfLinesToSkip, fhirResources, transientUserData, filePath);
         } catch (Exception ex) {
             // Clean up.
             fhirResources.clear();
@@ -285,32 +410,34 @@ public class BulkDataUtils {
 
     /**
      * @param dataUrl - URL to the ndjson file.
-     * @param numOfLinesToSkip - number of lines to skip before read.
+     * @param numOfLinesToSkip - number of lines already processed.
      * @param fhirResources - List holds the FHIR resources.
      * @param transientUserData - transient user data for the chunk.
      * @return - number of parsing failures.
      * @throws Exception
      */
-    public static int readFhirResourceFromHttps(String dataUrl, int numOfLinesToSkip, List<Resource> fhirResources,
+    public static int readFhirResourceFromHttps(String dataUrl, long numOfLinesToSkip, List<Resource> fhirResources,
             ImportTransientUserData transientUserData) throws Exception {
         int parseFailures = 0;
         int retryTimes = IMPORT_RETRY_TIMES;
         do {
             try {
-                if (transientUserData.getBufferReader() == null) {
-                    InputStream inputStream = new URL(dataUrl).openConnection().getInputStream();
+                if (transientUserData.getLineReader() == null) {
+                    if (isFullyRead(transientUserData)) {
+                        break;
+                    }
+                    // Start reading at the first line not yet read.
+                    long offset = transientUserData.getNumOfReadBytes();
+                    InputStream inputStream = openHttpsStream(dataUrl, offset);
                     transientUserData.setInputStream(inputStream);
-                    BufferedReader resReader = new BufferedReader(new InputStreamReader(inputStream));
-                    transientUserData.setBufferReader(resReader);
-                    // Skip the already processed lines after opening the input stream for first read.
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, true, dataUrl);
-                } else {
-                    parseFailures = getFhirResourceFromBufferReader(transientUserData.getBufferReader(), numOfLinesToSkip, fhirResources, false, dataUrl);
+                    transientUserData.setLineReader(openLineReader(inputStream, offset, numOfLinesToSkip));
                 }
+                parseFailures = getFhirResourceFromLineReader(transientUserData.getLineReader(), numOfLinesToSkip, fhirResources, transientUserData, dataUrl);
                 break;
             } catch (Exception ex) {
-                // Prepare for retry, skip all the processed lines in previous batches and this batch.
-                numOfLinesToSkip = numOfLinesToSkip + fhirResources.size() + parseFailures;
+                // Prepare for retry, read this batch again from the first line not yet read.
+                fhirResources.clear();
+                parseFailures = 0;
                 cleanupTransientUserData(transientUserData, true);
                 logger.warning("readFhirResourceFromHttps: Error proccesing file [" + dataUrl + "] - " + ex.getMessage());
                 if ((retryTimes--) > 0) {
@@ -325,6 +452,33 @@ public class BulkDataUtils {
         return parseFailures;
     }
 
+    /**
+     * Open the file at the URL with a range request starting at offset. If the server doesn't support range requests
+     * the bytes before offset are skipped instead.
+     */
+    private static InputStream openHttpsStream(String dataUrl, long offset) throws Exception {
+        URLConnection connection = new URL(dataUrl).openConnection();
+        if (offset > 0) {
+            connection.setRequestProperty("Range", "bytes=" + offset + "-");
+        }
+        InputStream inputStream = connection.getInputStream();
+        if (offset > 0 && !(connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL)) {
+            long skipped = 0;
+            while (skipped < offset) {
+                long n = inputStream.skip(offset - skipped);
+                if (n <= 0) {
+                    if (inputStream.read() == -1) {
+                        break;
+                    }
+                    n = 1;
+                }
+                skipped += n;
+            }
+        }
+        return inputStream;
+    }
+
     /**
      * Validate the input resource and throw if there are validation errors
      *
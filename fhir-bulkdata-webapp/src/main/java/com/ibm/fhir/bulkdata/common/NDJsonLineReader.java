@@ -0,0 +1,92 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.bulkdata.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the (UTF-8) lines of an NDJSON stream while keeping track of the byte offset of the next line,
+ * so that a reader can later be opened again directly at that offset instead of skipping the lines
+ * already read.
+ */
+public class NDJsonLineReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+    private int position = 0;
+    private int limit = 0;
+    private long offset;
+
+    /**
+     * @param in - the stream to read, positioned at offset.
+     * @param offset - the byte offset of the stream within the NDJSON file.
+     */
+    public NDJsonLineReader(InputStream in, long offset) {
+        this.in = in;
+        this.offset = offset;
+    }
+
+    /**
+     * Read the next line, without its line terminator ("\n" or "\r\n").
+     * @return the line, or null at the end of the stream.
+     * @throws IOException
+     */
+    public String readLine() throws IOException {
+        line.reset();
+        boolean read = false;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit == -1) {
+                    limit = 0;
+                    return read ? decode(line.toByteArray(), line.size()) : null;
+                }
+            }
+            read = true;
+
+            int start = position;
+            while (position < limit && buffer[position] != '\n') {
+                position++;
+            }
+            line.write(buffer, start, position - start);
+            offset += position - start;
+
+            if (position < limit) {
+                // skip the '\n'
+                position++;
+                offset++;
+                return decode(line.toByteArray(), line.size());
+            }
+        }
+    }
+
+    private static String decode(byte[] bytes, int length) {
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the byte offset of the next line within the NDJSON file.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -224,6 +224,8 @@ public class ChunkWriter extends AbstractItemWriter {
 
             chunkData.addToTotalWriteMilliSeconds(System.currentTimeMillis() - writeStartTimeInMilliSeconds);
             chunkData.addToNumOfProcessedResources(processedNum + chunkData.getNumOfParseFailures());
+            // The next read after a restart starts at the line after the last one read for this chunk.
+            chunkData.setNumOfProcessedBytes(chunkData.getNumOfReadBytes());
             chunkData.addToNumOfImportedResources(succeededNum);
             chunkData.addToNumOfImportFailures(failedNum + chunkData.getNumOfParseFailures());
 
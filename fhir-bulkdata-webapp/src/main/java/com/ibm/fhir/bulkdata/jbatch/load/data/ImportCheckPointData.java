@@ -21,6 +21,8 @@ public class ImportCheckPointData implements Serializable {
 
     // Values for metrics calculation.
     protected long numOfProcessedResources = 0;
+    // Byte offset of the first line not yet processed; 0 in check points taken before the offset was tracked.
+    protected long numOfProcessedBytes = 0;
     protected long numOfImportedResources = 0;
     protected long numOfImportFailures = 0;
     protected long totalReadMilliSeconds = 0;
@@ -76,6 +78,14 @@ public class ImportCheckPointData implements Serializable {
         this.numOfProcessedResources += numOfProcessedResources;
     }
 
+    public long getNumOfProcessedBytes() {
+        return numOfProcessedBytes;
+    }
+
+    public void setNumOfProcessedBytes(long numOfProcessedBytes) {
+        this.numOfProcessedBytes = numOfProcessedBytes;
+    }
+
     public long getNumOfImportedResources() {
         return numOfImportedResources;
     }
@@ -116,6 +126,7 @@ public class ImportCheckPointData implements Serializable {
         return ImportCheckPointData.Builder.builder()
                 .importPartitionWorkitem(userData.getImportPartitionWorkitem())
                 .numOfProcessedResources(userData.getNumOfProcessedResources())
+                .numOfProcessedBytes(userData.getNumOfProcessedBytes())
                 .importPartitionResourceType(userData.getImportPartitionResourceType())
                 .numOfImportedResources(userData.getNumOfImportedResources())
                 .numOfImportFailures(userData.getNumOfImportFailures())
@@ -251,6 +262,7 @@ public class ImportCheckPointData implements Serializable {
 
         protected String importPartitionWorkitem;
         protected long numOfProcessedResources;
+        protected long numOfProcessedBytes;
         protected String importPartitionResourceType;
         protected long numOfImportedResources;
         protected long numOfImportFailures;
@@ -286,6 +298,11 @@ public class ImportCheckPointData implements Serializable {
             return this;
         }
 
+        public Builder numOfProcessedBytes(long numOfProcessedBytes) {
+            this.numOfProcessedBytes = numOfProcessedBytes;
+            return this;
+        }
+
         public Builder importPartitionResourceType(String importPartitionResourceType) {
             this.importPartitionResourceType = importPartitionResourceType;
             return this;
@@ -370,6 +387,7 @@ public class ImportCheckPointData implements Serializable {
             ImportCheckPointData importCheckPointData = new ImportCheckPointData();
             importCheckPointData.importPartitionWorkitem = this.importPartitionWorkitem;
             importCheckPointData.numOfProcessedResources = this.numOfProcessedResources;
+            importCheckPointData.numOfProcessedBytes = this.numOfProcessedBytes;
             importCheckPointData.importPartitionResourceType = this.importPartitionResourceType;
             importCheckPointData.numOfImportedResources = this.numOfImportedResources;
             importCheckPointData.numOfImportFailures = this.numOfImportFailures;
@@ -393,7 +411,7 @@ public class ImportCheckPointData implements Serializable {
     @Override
     public String toString() {
         return "ImportCheckPointData [importPartitionWorkitem=" + importPartitionWorkitem + ", numOfProcessedResources=" + numOfProcessedResources
-                + ", numOfImportedResources=" + numOfImportedResources + ", numOfImportFailures=" + numOfImportFailures + ", totalReadMilliSeconds="
+                + ", numOfProcessedBytes=" + numOfProcessedBytes + ", numOfImportedResources=" + numOfImportedResources + ", numOfImportFailures=" + numOfImportFailures + ", totalReadMilliSeconds="
                 + totalReadMilliSeconds + ", totalWriteMilliSeconds=" + totalWriteMilliSeconds + ", totalValidationMilliSeconds=" + totalValidationMilliSeconds
                 + ", importFileSize=" + importFileSize + ", inFlyRateBeginMilliSeconds=" + inFlyRateBeginMilliSeconds + ", numOfToBeImported="
                 + numOfToBeImported + ", numOfParseFailures=" + numOfParseFailures + ", importPartitionResourceType=" + importPartitionResourceType
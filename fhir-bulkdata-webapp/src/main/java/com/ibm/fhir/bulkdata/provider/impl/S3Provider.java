@@ -243,7 +243,7 @@ public class S3Provider implements Provider {
     @Override
     public void readResources(long numOfLinesToSkip, String workItem) throws FHIRException {
         try {
-            parseFailures = BulkDataUtils.readFhirResourceFromObjectStore(client, bucketName, workItem, (int) numOfLinesToSkip, resources, transientUserData);
+            parseFailures = BulkDataUtils.readFhirResourceFromObjectStore(client, bucketName, workItem, numOfLinesToSkip, resources, transientUserData);
         } catch (Exception e) {
             throw new FHIRException("Unable to read from S3 File", e);
         }
@@ -8,13 +8,26 @@ package com.ibm.fhir.bulkdata.common.test;
 
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.testng.annotations.Test;
 
 import com.ibm.fhir.bulkdata.common.BulkDataUtils;
+import com.ibm.fhir.bulkdata.jbatch.load.data.ImportTransientUserData;
+import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Patient;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.util.ModelSupport;
 
@@ -33,4 +46,100 @@ public class BulkDataUtilsTest {
         assertEquals("gt2018-07-01T00:00:00Z" ,searchParametersForMedicationRequest.get(1).get("date").get(0));
         assertEquals("lt2019-07-01T00:00:00Z" ,searchParametersForMedicationRequest.get(1).get("date").get(1));
     }
+
+    @Test
+    public void testParseParallel() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            lines.add(i % 10 == 3 ? "{\"resourceType\":\"Patient\",\"bogus\":" : patient(i));
+        }
+
+        AtomicInteger tasks = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            ExecutorService executor = new AbstractExecutorService() {
+                @Override
+                public void execute(Runnable command) {
+                    tasks.incrementAndGet();
+                    pool.execute(command);
+                }
+
+                @Override
+                public void shutdown() {
+                    pool.shutdown();
+                }
+
+                @Override
+                public List<Runnable> shutdownNow() {
+                    return pool.shutdownNow();
+                }
+
+                @Override
+                public boolean isShutdown() {
+                    return pool.isShutdown();
+                }
+
+                @Override
+                public boolean isTerminated() {
+                    return pool.isTerminated();
+                }
+
+                @Override
+                public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+                    return pool.awaitTermination(timeout, unit);
+                }
+            };
+
+            Object[] parsed = BulkDataUtils.parse(lines, 4, executor);
+            // the current thread parses the first of the 4 slices
+            assertEquals(3, tasks.get());
+            assertParsed(parsed);
+
+            // the same result without an executor
+            assertParsed(BulkDataUtils.parse(lines, 4, null));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testReadLocalFileAfterReset() throws Exception {
+        Path file = Files.createTempFile("fhir-bulkdata", ".ndjson");
+        try {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                lines.add(patient(i));
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+            ImportTransientUserData transientUserData = ImportTransientUserData.Builder.builder().importFileSize(Files.size(file)).build();
+
+            List<Resource> resources = new ArrayList<>();
+            BulkDataUtils.readFhirResourceFromLocalFile(file.toString(), 0, resources, transientUserData);
+            assertEquals(5, resources.size());
+
+            // the lines were read but not written yet, so reopening the file must not read them again
+            BulkDataUtils.cleanupTransientUserData(transientUserData, false);
+            resources.clear();
+            BulkDataUtils.readFhirResourceFromLocalFile(file.toString(), 0, resources, transientUserData);
+            assertEquals(0, resources.size());
+            BulkDataUtils.cleanupTransientUserData(transientUserData, false);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String patient(int i) {
+        return "{\"resourceType\":\"Patient\",\"id\":\"p" + i + "\"}";
+    }
+
+    private static void assertParsed(Object[] parsed) {
+        assertEquals(50, parsed.length);
+        for (int i = 0; i < parsed.length; i++) {
+            if (i % 10 == 3) {
+                assertTrue(parsed[i] instanceof FHIRParserException);
+            } else {
+                assertEquals("p" + i, ((Patient) parsed[i]).getId());
+            }
+        }
+    }
 }
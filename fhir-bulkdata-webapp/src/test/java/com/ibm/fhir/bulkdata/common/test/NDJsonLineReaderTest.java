@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.bulkdata.common.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.bulkdata.common.BulkDataUtils;
+import com.ibm.fhir.bulkdata.common.NDJsonLineReader;
+import com.ibm.fhir.bulkdata.jbatch.load.data.ImportTransientUserData;
+import com.ibm.fhir.model.resource.Resource;
+
+public class NDJsonLineReaderTest {
+    private static final String NDJSON = "{\"resourceType\":\"Patient\",\"id\":\"1\"}\n"
+            + "{\"resourceType\":\"Patient\",\"id\":\"2\",\"name\":[{\"family\":\"Müller\"}]}\r\n"
+            + "not a resource\n"
+            + "{\"resourceType\":\"Patient\",\"id\":\"3\"}";
+
+    @Test
+    public void testReadLines() throws Exception {
+        byte[] bytes = NDJSON.getBytes(StandardCharsets.UTF_8);
+        List<Long> offsets = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        try (NDJsonLineReader reader = new NDJsonLineReader(new ByteArrayInputStream(bytes), 0)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                offsets.add(reader.getOffset());
+            }
+            assertNull(reader.readLine());
+        }
+        assertEquals(lines.size(), 4);
+        assertEquals(lines.get(1), "{\"resourceType\":\"Patient\",\"id\":\"2\",\"name\":[{\"family\":\"Müller\"}]}");
+        assertEquals(lines.get(2), "not a resource");
+        assertEquals(offsets.get(3).longValue(), bytes.length);
+
+        // Opening a reader at each offset reads the remaining lines
+        for (int i = 0; i < offsets.size(); i++) {
+            int offset = offsets.get(i).intValue();
+            InputStream in = new ByteArrayInputStream(bytes, offset, bytes.length - offset);
+            try (NDJsonLineReader reader = new NDJsonLineReader(in, offset)) {
+                for (int j = i + 1; j < lines.size(); j++) {
+                    assertEquals(reader.readLine(), lines.get(j));
+                    assertEquals(reader.getOffset(), offsets.get(j).longValue());
+                }
+                assertNull(reader.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testReadLocalFileFromOffset() throws Exception {
+        Path file = Files.createTempFile("import", ".ndjson");
+        try {
+            Files.write(file, NDJSON.getBytes(StandardCharsets.UTF_8));
+            String filePath = file.toString();
+
+            ImportTransientUserData userData = ImportTransientUserData.Builder.builder().importFileSize(Files.size(file)).build();
+            List<Resource> resources = new ArrayList<>();
+            int parseFailures = BulkDataUtils.readFhirResourceFromLocalFile(filePath, 0, resources, userData);
+            BulkDataUtils.cleanupTransientUserData(userData, false);
+            assertEquals(resources.size(), 3);
+            assertEquals(parseFailures, 1);
+            assertEquals(userData.getNumOfReadBytes(), Files.size(file));
+
+            // Restart from a check point taken after the first two lines
+            long offset = NDJSON.substring(0, NDJSON.indexOf("not a resource")).getBytes(StandardCharsets.UTF_8).length;
+            userData = ImportTransientUserData.Builder.builder().numOfProcessedResources(2).numOfProcessedBytes(offset).build();
+            resources.clear();
+            parseFailures = BulkDataUtils.readFhirResourceFromLocalFile(filePath, 2, resources, userData);
+            BulkDataUtils.cleanupTransientUserData(userData, false);
+            assertEquals(resources.size(), 1);
+            assertEquals(resources.get(0).getId(), "3");
+            assertEquals(parseFailures, 1);
+
+            // A check point without the byte offset skips the processed lines instead
+            userData = ImportTransientUserData.Builder.builder().numOfProcessedResources(2).build();
+            resources.clear();
+            parseFailures = BulkDataUtils.readFhirResourceFromLocalFile(filePath, 2, resources, userData);
+            BulkDataUtils.cleanupTransientUserData(userData, false);
+            assertEquals(resources.size(), 1);
+            assertEquals(resources.get(0).getId(), "3");
+            assertEquals(userData.getNumOfReadBytes(), Files.size(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
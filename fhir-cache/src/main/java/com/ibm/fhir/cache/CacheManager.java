@@ -19,7 +19,8 @@ import com.ibm.fhir.cache.util.CacheSupport;
 import com.ibm.fhir.core.TenantIdProvider;
 
 /**
- * A class used to create and manage cache instances on a per tenant basis
+ * A class used to create and manage cache instances on a per tenant basis. Managed caches are
+ * also registered with the {@link CacheRegistry} so their statistics can be reported.
  */
 public final class CacheManager {
     private static final Map<String, Map<String, Cache<?, ?>>> TENANT_CACHE_MAPS = new ConcurrentHashMap<>();
@@ -78,7 +79,11 @@ public final class CacheManager {
         Objects.requireNonNull(configuration, "configuration");
         String tenantId = TENANT_ID_PROVIDER.getTenantId();
         Map<String, Cache<?, ?>> tenantCacheMap = TENANT_CACHE_MAPS.computeIfAbsent(tenantId, k -> new ConcurrentHashMap<>());
-        return (Cache<K, V>) tenantCacheMap.computeIfAbsent(cacheName, k -> createCache(configuration));
+        return (Cache<K, V>) tenantCacheMap.computeIfAbsent(cacheName, k -> {
+            Cache<K, V> cache = createCache(configuration);
+            CacheRegistry.register(tenantId, cacheName, ManagedCache.of(cache));
+            return cache;
+        });
     }
 
     /**
@@ -190,6 +195,7 @@ public final class CacheManager {
             if (tenantCacheMap != null) {
                 tenantCacheMap.remove(cacheName);
             }
+            CacheRegistry.unregister(tenantId, cacheName);
         }
     }
 
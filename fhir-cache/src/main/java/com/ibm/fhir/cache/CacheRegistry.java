@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of the caches used by the server, so that their statistics can be reported in one place
+ * and their sizes tuned while the server is running. Caches are registered either for a specific tenant
+ * or as shared caches which are used by all tenants.
+ *
+ * <p>Caches created through the {@link CacheManager} are registered automatically. Other caches register
+ * themselves by wrapping their implementation in a {@link ManagedCache}.
+ */
+public final class CacheRegistry {
+    private static final Map<String, Map<String, ManagedCache>> TENANT_CACHES = new ConcurrentHashMap<>();
+    private static final Map<String, ManagedCache> SHARED_CACHES = new ConcurrentHashMap<>();
+
+    private CacheRegistry() { }
+
+    /**
+     * Register a cache used by the given tenant. Any cache previously registered with
+     * the same name for the tenant is replaced.
+     *
+     * @param tenantId
+     *     the tenant id
+     * @param cacheName
+     *     the cache name
+     * @param cache
+     *     the cache
+     */
+    public static void register(String tenantId, String cacheName, ManagedCache cache) {
+        Objects.requireNonNull(tenantId, "tenantId");
+        Objects.requireNonNull(cacheName, "cacheName");
+        Objects.requireNonNull(cache, "cache");
+        TENANT_CACHES.computeIfAbsent(tenantId, k -> new ConcurrentHashMap<>()).put(cacheName, cache);
+    }
+
+    /**
+     * Register a cache which is shared by all tenants. Any shared cache previously registered
+     * with the same name is replaced.
+     *
+     * @param cacheName
+     *     the cache name
+     * @param cache
+     *     the cache
+     */
+    public static void registerShared(String cacheName, ManagedCache cache) {
+        Objects.requireNonNull(cacheName, "cacheName");
+        Objects.requireNonNull(cache, "cache");
+        SHARED_CACHES.put(cacheName, cache);
+    }
+
+    /**
+     * Remove the cache with the given name for the given tenant from the registry.
+     *
+     * @param tenantId
+     *     the tenant id
+     * @param cacheName
+     *     the cache name
+     */
+    public static void unregister(String tenantId, String cacheName) {
+        Map<String, ManagedCache> tenantCaches = TENANT_CACHES.get(tenantId);
+        if (tenantCaches != null && cacheName != null) {
+            tenantCaches.remove(cacheName);
+        }
+    }
+
+    /**
+     * Remove the shared cache with the given name from the registry.
+     *
+     * @param cacheName
+     *     the cache name
+     */
+    public static void unregisterShared(String cacheName) {
+        if (cacheName != null) {
+            SHARED_CACHES.remove(cacheName);
+        }
+    }
+
+    /**
+     * Get the caches registered for the given tenant, excluding the shared caches.
+     *
+     * @param tenantId
+     *     the tenant id
+     * @return
+     *     an immutable map of cache name to cache, sorted by name
+     */
+    public static SortedMap<String, ManagedCache> getTenantCaches(String tenantId) {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(TENANT_CACHES.getOrDefault(tenantId, Collections.emptyMap())));
+    }
+
+    /**
+     * Get the shared caches.
+     *
+     * @return
+     *     an immutable map of cache name to cache, sorted by name
+     */
+    public static SortedMap<String, ManagedCache> getSharedCaches() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(SHARED_CACHES));
+    }
+
+    /**
+     * Get a snapshot of the statistics of every cache registered for the given tenant.
+     *
+     * @param tenantId
+     *     the tenant id
+     * @return
+     *     an immutable map of cache name to statistics, sorted by name
+     */
+    public static SortedMap<String, CacheStatistics> getTenantStatistics(String tenantId) {
+        return snapshot(TENANT_CACHES.getOrDefault(tenantId, Collections.emptyMap()));
+    }
+
+    /**
+     * Get a snapshot of the statistics of every shared cache.
+     *
+     * @return
+     *     an immutable map of cache name to statistics, sorted by name
+     */
+    public static SortedMap<String, CacheStatistics> getSharedStatistics() {
+        return snapshot(SHARED_CACHES);
+    }
+
+    private static SortedMap<String, CacheStatistics> snapshot(Map<String, ManagedCache> caches) {
+        SortedMap<String, CacheStatistics> result = new TreeMap<>();
+        for (Map.Entry<String, ManagedCache> entry : caches.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().getStatistics());
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+}
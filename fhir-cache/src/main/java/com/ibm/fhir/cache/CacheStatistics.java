@@ -0,0 +1,113 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.cache;
+
+/**
+ * An immutable snapshot of the statistics of a {@link ManagedCache}. Values which are
+ * not known for a particular cache are reported as {@link #UNKNOWN}.
+ */
+public final class CacheStatistics {
+    /**
+     * The value reported for a statistic which is not available
+     */
+    public static final long UNKNOWN = -1L;
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long size;
+    private final long maximumSize;
+    private final long estimatedBytes;
+
+    /**
+     * Public constructor
+     *
+     * @param hitCount
+     *     the number of lookups which found an entry
+     * @param missCount
+     *     the number of lookups which did not find an entry
+     * @param evictionCount
+     *     the number of entries evicted by the eviction policy
+     * @param size
+     *     the (approximate) number of entries currently held
+     * @param maximumSize
+     *     the maximum number of entries, or {@link #UNKNOWN} if the cache is unbounded
+     * @param estimatedBytes
+     *     a rough estimate of the heap retained by the entries, or {@link #UNKNOWN}
+     */
+    public CacheStatistics(long hitCount, long missCount, long evictionCount, long size, long maximumSize, long estimatedBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.maximumSize = maximumSize;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * @return
+     *     the number of lookups which found an entry
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return
+     *     the number of lookups which did not find an entry
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return
+     *     the fraction of lookups which found an entry, or 1.0 if there were no lookups
+     */
+    public double getHitRate() {
+        final long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * @return
+     *     the number of entries evicted by the eviction policy
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return
+     *     the (approximate) number of entries currently held
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return
+     *     the maximum number of entries, or {@link #UNKNOWN} if the cache is unbounded
+     */
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return
+     *     a rough estimate of the heap retained by the entries, or {@link #UNKNOWN}
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hitCount + " misses=" + missCount + " evictions=" + evictionCount
+                + " size=" + size + " maximumSize=" + maximumSize + " estimatedBytes=" + estimatedBytes;
+    }
+}
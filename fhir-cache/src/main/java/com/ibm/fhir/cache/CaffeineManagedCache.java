@@ -0,0 +1,56 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.cache;
+
+import java.util.Optional;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Policy.Eviction;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * A {@link ManagedCache} view of a Caffeine cache
+ */
+class CaffeineManagedCache implements ManagedCache {
+    private final Cache<?, ?> cache;
+    private final long bytesPerEntry;
+
+    CaffeineManagedCache(Cache<?, ?> cache, long bytesPerEntry) {
+        this.cache = cache;
+        this.bytesPerEntry = bytesPerEntry;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        final long size = cache.estimatedSize();
+        final long estimatedBytes = bytesPerEntry > 0 ? size * bytesPerEntry : CacheStatistics.UNKNOWN;
+        final Optional<? extends Eviction<?, ?>> eviction = cache.policy().eviction();
+        final long maximumSize = eviction.isPresent() && !eviction.get().isWeighted() ? eviction.get().getMaximum() : CacheStatistics.UNKNOWN;
+
+        if (cache.policy().isRecordingStats()) {
+            CacheStats stats = cache.stats();
+            return new CacheStatistics(stats.hitCount(), stats.missCount(), stats.evictionCount(), size, maximumSize, estimatedBytes);
+        }
+        return new CacheStatistics(CacheStatistics.UNKNOWN, CacheStatistics.UNKNOWN, CacheStatistics.UNKNOWN, size, maximumSize, estimatedBytes);
+    }
+
+    @Override
+    public boolean isResizable() {
+        return cache.policy().eviction().map(e -> !e.isWeighted()).orElse(false);
+    }
+
+    @Override
+    public void resize(long maximumSize) {
+        if (!isResizable()) {
+            throw new UnsupportedOperationException("Cache does not have a size-based eviction policy");
+        }
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("maximumSize must not be negative");
+        }
+        cache.policy().eviction().get().setMaximum(maximumSize);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link ManagedCache} for caches which are not backed by Caffeine, such as unbounded
+ * identity maps. The owner of the cache reports each lookup by calling {@link #recordLookup(boolean)}.
+ * Counting uses {@link LongAdder} so it doesn't add contention to the lookup path.
+ */
+public class CountingManagedCache implements ManagedCache {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongSupplier sizeSupplier;
+    private final long bytesPerEntry;
+
+    /**
+     * Public constructor
+     *
+     * @param sizeSupplier
+     *     supplies the current number of entries in the cache
+     * @param bytesPerEntry
+     *     the approximate heap retained by a single entry, or {@link CacheStatistics#UNKNOWN}
+     */
+    public CountingManagedCache(LongSupplier sizeSupplier, long bytesPerEntry) {
+        this.sizeSupplier = sizeSupplier;
+        this.bytesPerEntry = bytesPerEntry;
+    }
+
+    /**
+     * Record the outcome of a single lookup.
+     *
+     * @param hit
+     *     true if the lookup found an entry, false otherwise
+     */
+    public void recordLookup(boolean hit) {
+        if (hit) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+        }
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        final long size = sizeSupplier.getAsLong();
+        final long estimatedBytes = bytesPerEntry > 0 ? size * bytesPerEntry : CacheStatistics.UNKNOWN;
+        return new CacheStatistics(hitCount.sum(), missCount.sum(), 0, size, CacheStatistics.UNKNOWN, estimatedBytes);
+    }
+}
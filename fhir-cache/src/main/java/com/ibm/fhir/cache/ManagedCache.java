@@ -0,0 +1,74 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+/**
+ * A cache which reports its statistics to the {@link CacheRegistry} and which can optionally
+ * be resized while the server is running
+ */
+public interface ManagedCache {
+    /**
+     * Get a snapshot of the current statistics of this cache.
+     *
+     * @return
+     *     the statistics snapshot
+     */
+    CacheStatistics getStatistics();
+
+    /**
+     * Indicates whether this cache supports {@link #resize(long)}.
+     *
+     * @return
+     *     true if the maximum size of this cache can be changed, false otherwise
+     */
+    default boolean isResizable() {
+        return false;
+    }
+
+    /**
+     * Change the maximum number of entries held by this cache. If the new maximum is smaller than
+     * the current size, entries are evicted.
+     *
+     * @param maximumSize
+     *     the new maximum size
+     * @throws UnsupportedOperationException
+     *     if this cache is not resizable
+     */
+    default void resize(long maximumSize) {
+        throw new UnsupportedOperationException("Cache is not resizable");
+    }
+
+    /**
+     * A factory method for wrapping a Caffeine cache. Hit, miss and eviction counts are only
+     * available if the cache was built to record stats. The cache is resizable if it has
+     * a size-based eviction policy.
+     *
+     * @param cache
+     *     the Caffeine cache
+     * @param bytesPerEntry
+     *     the approximate heap retained by a single entry, or {@link CacheStatistics#UNKNOWN}
+     * @return
+     *     a managed cache view of the Caffeine cache
+     */
+    static ManagedCache of(Cache<?, ?> cache, long bytesPerEntry) {
+        return new CaffeineManagedCache(cache, bytesPerEntry);
+    }
+
+    /**
+     * A factory method for wrapping a Caffeine cache for which the size of an entry is not known.
+     *
+     * @param cache
+     *     the Caffeine cache
+     * @return
+     *     a managed cache view of the Caffeine cache
+     */
+    static ManagedCache of(Cache<?, ?> cache) {
+        return of(cache, CacheStatistics.UNKNOWN);
+    }
+}
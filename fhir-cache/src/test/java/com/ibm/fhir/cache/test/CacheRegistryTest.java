@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.cache.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ibm.fhir.cache.CacheManager;
+import com.ibm.fhir.cache.CacheManager.Configuration;
+import com.ibm.fhir.cache.CacheRegistry;
+import com.ibm.fhir.cache.CacheStatistics;
+import com.ibm.fhir.cache.CountingManagedCache;
+import com.ibm.fhir.cache.ManagedCache;
+import com.ibm.fhir.cache.util.CacheSupport;
+
+public class CacheRegistryTest {
+    @Test
+    public void testCacheManagerRegistration() {
+        Cache<String, Integer> cache = CacheManager.getCache("registryTestCache", Configuration.of(128));
+        cache.asMap().computeIfAbsent("1", k -> 1);
+        cache.asMap().computeIfAbsent("1", k -> 1);
+
+        CacheStatistics stats = CacheRegistry.getTenantStatistics("default").get("registryTestCache");
+        Assert.assertNotNull(stats);
+        Assert.assertEquals(stats.getHitCount(), 1);
+        Assert.assertEquals(stats.getMissCount(), 1);
+        Assert.assertEquals(stats.getSize(), 1);
+        Assert.assertEquals(stats.getMaximumSize(), 128);
+        Assert.assertEquals(stats.getEstimatedBytes(), CacheStatistics.UNKNOWN);
+
+        CacheManager.removeCache("registryTestCache");
+        Assert.assertFalse(CacheRegistry.getTenantCaches("default").containsKey("registryTestCache"));
+    }
+
+    @Test
+    public void testResize() {
+        Cache<String, Integer> cache = CacheSupport.createCache(10, true);
+        ManagedCache managedCache = ManagedCache.of(cache, 100);
+        CacheRegistry.registerShared("resizeTestCache", managedCache);
+        for (int i = 0; i < 10; i++) {
+            cache.put(Integer.toString(i), i);
+        }
+        cache.cleanUp();
+        Assert.assertEquals(CacheRegistry.getSharedStatistics().get("resizeTestCache").getEstimatedBytes(), 1000);
+
+        ManagedCache registered = CacheRegistry.getSharedCaches().get("resizeTestCache");
+        Assert.assertTrue(registered.isResizable());
+        registered.resize(5);
+        cache.cleanUp();
+
+        CacheStatistics stats = registered.getStatistics();
+        Assert.assertEquals(stats.getMaximumSize(), 5);
+        Assert.assertEquals(stats.getSize(), 5);
+        Assert.assertEquals(stats.getEvictionCount(), 5);
+
+        CacheRegistry.unregisterShared("resizeTestCache");
+        Assert.assertFalse(CacheRegistry.getSharedCaches().containsKey("resizeTestCache"));
+    }
+
+    @Test
+    public void testCountingCache() {
+        Map<String, Integer> map = new HashMap<>();
+        CountingManagedCache managedCache = new CountingManagedCache(map::size, CacheStatistics.UNKNOWN);
+        CacheRegistry.register("tenant1", "countingTestCache", managedCache);
+
+        map.put("a", 1);
+        managedCache.recordLookup(true);
+        managedCache.recordLookup(true);
+        managedCache.recordLookup(false);
+
+        CacheStatistics stats = CacheRegistry.getTenantStatistics("tenant1").get("countingTestCache");
+        Assert.assertEquals(stats.getHitCount(), 2);
+        Assert.assertEquals(stats.getMissCount(), 1);
+        Assert.assertEquals(stats.getSize(), 1);
+        Assert.assertEquals(stats.getMaximumSize(), CacheStatistics.UNKNOWN);
+        Assert.assertFalse(managedCache.isResizable());
+
+        // registered for tenant1 only
+        Assert.assertFalse(CacheRegistry.getTenantCaches("default").containsKey("countingTestCache"));
+        CacheRegistry.unregister("tenant1", "countingTestCache");
+    }
+}
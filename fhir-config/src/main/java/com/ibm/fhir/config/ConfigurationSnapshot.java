@@ -0,0 +1,135 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+/**
+ * An immutable, compiled view of a single configuration file (i.e. one tenant's fhir-server-config.json).
+ * When the snapshot is created, every property reachable through a hierarchical property name is flattened
+ * into a map keyed by its path, so finding a property is a single map lookup instead of a walk of the
+ * JsonObject structure. The native (converted) value of each property is also computed just once, the first
+ * time it is requested.
+ * <p>
+ * A new snapshot is created whenever the configuration file changes (see {@link TenantSpecificPropertyGroupCache}),
+ * so nothing here ever needs to be invalidated.
+ */
+public class ConfigurationSnapshot {
+
+    // The root property group loaded from the configuration file
+    private final PropertyGroup propertyGroup;
+
+    // Every property reachable by a hierarchical name, keyed by its normalized path. Null if
+    // the property group is a custom subclass, in which case we have to delegate lookups to it
+    private final Map<String, JsonValue> values;
+
+    // Native values (as produced by PropertyGroup.convertJsonValue) computed so far, keyed by the normalized path.
+    // Only properties that exist are added, so this never holds more entries than the values map, whatever
+    // property names the callers build (e.g. from request headers)
+    private final Map<String, Object> convertedValues = new ConcurrentHashMap<>();
+
+    /**
+     * Public constructor
+     * @param propertyGroup the root property group of the configuration
+     */
+    public ConfigurationSnapshot(PropertyGroup propertyGroup) {
+        this.propertyGroup = propertyGroup;
+
+        // A custom PropertyGroup implementation (see ConfigurationService.PROPERTY_GROUP_CLASSNAME) is free to
+        // override the way properties are found, or even to change its content, so we only compile the
+        // standard implementation
+        if (propertyGroup.getClass() == PropertyGroup.class && propertyGroup.getJsonObj() != null) {
+            Map<String, JsonValue> flattened = new HashMap<>();
+            flatten(null, propertyGroup.getJsonObj(), flattened);
+            this.values = flattened;
+        } else {
+            this.values = null;
+        }
+    }
+
+    /**
+     * Add each property in the given object to the map, recursing into nested objects
+     * @param prefix the path of the object, or null for the root object
+     * @param obj
+     * @param flattened
+     */
+    private static void flatten(String prefix, JsonObject obj, Map<String, JsonValue> flattened) {
+        for (Map.Entry<String, JsonValue> entry: obj.entrySet()) {
+            final String key = entry.getKey();
+            if (key.contains(PropertyGroup.PATH_ELEMENT_SEPARATOR)) {
+                // can't be reached using a hierarchical property name
+                continue;
+            }
+
+            final String path = prefix == null ? key : prefix + PropertyGroup.PATH_ELEMENT_SEPARATOR + key;
+            flattened.put(path, entry.getValue());
+            if (entry.getValue() instanceof JsonObject) {
+                flatten(path, (JsonObject)entry.getValue(), flattened);
+            }
+        }
+    }
+
+    /**
+     * @return the root property group of the configuration
+     */
+    public PropertyGroup getPropertyGroup() {
+        return propertyGroup;
+    }
+
+    /**
+     * Finds the specified property and returns it as a generic JsonValue
+     * @param handle
+     * @return the value of the property, or null if it doesn't exist
+     */
+    public JsonValue getJsonValue(PropertyHandle handle) {
+        if (values != null) {
+            return values.get(handle.getPath());
+        } else {
+            return propertyGroup.getJsonValue(handle.getName());
+        }
+    }
+
+    /**
+     * Finds the specified property and returns it converted to the corresponding native type, as
+     * described by {@link PropertyGroup#convertJsonValue(JsonValue)}. Array values are returned as an
+     * unmodifiable list because the converted value is shared by all callers.
+     * @param handle
+     * @return the native value of the property, or null if it doesn't exist
+     * @throws Exception
+     */
+    public Object getValue(PropertyHandle handle) throws Exception {
+        if (values == null) {
+            JsonValue jsonValue = getJsonValue(handle);
+            return jsonValue != null ? PropertyGroup.convertJsonValue(jsonValue) : null;
+        }
+
+        Object result = convertedValues.get(handle.getPath());
+        if (result == null) {
+            JsonValue jsonValue = getJsonValue(handle);
+            if (jsonValue == null) {
+                // a miss is already a single map lookup, so it isn't worth remembering
+                return null;
+            }
+            result = PropertyGroup.convertJsonValue(jsonValue);
+            if (result instanceof List) {
+                result = Collections.unmodifiableList((List<?>)result);
+            }
+            Object existing = convertedValues.putIfAbsent(handle.getPath(), result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+}
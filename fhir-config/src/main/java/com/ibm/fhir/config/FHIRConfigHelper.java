@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2020
+ * (C) Copyright IBM Corp. 2017, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -10,8 +10,6 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.json.JsonValue;
-
 /**
  * This class contains a set of static helper methods related to configuration parameters.
  * The functions in this class will try to first retrieve a config property from the current
@@ -21,50 +19,74 @@ public class FHIRConfigHelper {
     private static final Logger log = Logger.getLogger(FHIRConfigHelper.class.getName());
 
     public static String getStringProperty(String propertyName, String defaultValue) {
-        return getTypedProperty(String.class, propertyName, defaultValue);
+        return getTypedProperty(String.class, PropertyHandle.of(propertyName), defaultValue);
+    }
+
+    public static String getStringProperty(PropertyHandle property, String defaultValue) {
+        return getTypedProperty(String.class, property, defaultValue);
     }
 
     public static Boolean getBooleanProperty(String propertyName, Boolean defaultValue) {
-        return getTypedProperty(Boolean.class, propertyName, defaultValue);
+        return getTypedProperty(Boolean.class, PropertyHandle.of(propertyName), defaultValue);
+    }
+
+    public static Boolean getBooleanProperty(PropertyHandle property, Boolean defaultValue) {
+        return getTypedProperty(Boolean.class, property, defaultValue);
     }
 
     public static Integer getIntProperty(String propertyName, Integer defaultValue) {
-        return getTypedProperty(Integer.class, propertyName, defaultValue);
+        return getTypedProperty(Integer.class, PropertyHandle.of(propertyName), defaultValue);
+    }
+
+    public static Integer getIntProperty(PropertyHandle property, Integer defaultValue) {
+        return getTypedProperty(Integer.class, property, defaultValue);
     }
 
     public static Double getDoubleProperty(String propertyName, Double defaultValue) {
-        return getTypedProperty(Double.class, propertyName, defaultValue);
+        return getTypedProperty(Double.class, PropertyHandle.of(propertyName), defaultValue);
+    }
+
+    public static Double getDoubleProperty(PropertyHandle property, Double defaultValue) {
+        return getTypedProperty(Double.class, property, defaultValue);
     }
 
-    @SuppressWarnings("unchecked")
     public static List<String> getStringListProperty(String propertyName) {
-        return getTypedProperty(List.class, propertyName, null);
+        return getStringListProperty(PropertyHandle.of(propertyName));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<String> getStringListProperty(PropertyHandle property) {
+        return getTypedProperty(List.class, property, null);
     }
 
     public static PropertyGroup getPropertyGroup(String propertyName) {
-        return getTypedProperty(PropertyGroup.class, propertyName, null);
+        return getTypedProperty(PropertyGroup.class, PropertyHandle.of(propertyName), null);
+    }
+
+    public static PropertyGroup getPropertyGroup(PropertyHandle property) {
+        return getTypedProperty(PropertyGroup.class, property, null);
     }
 
     /**
-     * This function retrieves the specified property as a generic JsonValue. First we try to retrieve the property from
-     * the current tenant's config, and then if not found we'll also look in the "default" config.
+     * This function retrieves the specified property converted to its native type. First we try to retrieve the
+     * property from the current tenant's config, and then if not found we'll also look in the "default" config.
      *
-     * @param propertyName
-     *            the hierarchical name of the property to be retrieved (e.g. "level1/level2/prop1")
-     * @return a JsonValue representing the property's value or null if it wasn't found in either config
+     * @param property
+     *            the handle of the property to be retrieved
+     * @return the native value of the property or null if it wasn't found in either config
      */
-    private static JsonValue getPropertyFromTenantOrDefault(String propertyName) {
-        JsonValue result = null;
+    private static Object getPropertyFromTenantOrDefault(PropertyHandle property) {
+        Object result = null;
 
-        PropertyGroup pg = null;
+        ConfigurationSnapshot snapshot = null;
         String tenantId = FHIRRequestContext.get().getTenantId();
 
-        // First, try to retrieve the configuration (property group) associated with the
+        // First, try to retrieve the configuration associated with the
         // current thread's tenant-id.
         try {
-            pg = FHIRConfiguration.getInstance().loadConfigurationForTenant(tenantId);
-            if (pg != null) {
-                result = pg.getJsonValue(propertyName);
+            snapshot = FHIRConfiguration.getInstance().loadConfigurationSnapshotForTenant(tenantId);
+            if (snapshot != null) {
+                result = snapshot.getValue(property);
             }
         } catch (Exception e) {
             log.log(Level.WARNING, "Error loading configuration for tenant-id '" + tenantId + "': " + e.getMessage());
@@ -74,15 +96,15 @@ public class FHIRConfigHelper {
         // let's try to find it in the default config.
         if (result == null && !FHIRConfiguration.DEFAULT_TENANT_ID.equals(tenantId)) {
             try {
-                if (propertyName.startsWith(FHIRConfiguration.PROPERTY_DATASOURCES)) {
-                    // Issue #639. Prevent datasource lookups from falling back to 
+                if (property.isTenantOnly()) {
+                    // Issue #639. Prevent datasource lookups from falling back to
                     // the default datasource which breaks tenant isolation.
                     result = null;
                 } else {
                     // Non-datasource property, which we allow to fall back to default
-                    pg = FHIRConfiguration.getInstance().loadConfiguration();
-                    if (pg != null) {
-                        result = pg.getJsonValue(propertyName);
+                    snapshot = FHIRConfiguration.getInstance().loadConfigurationSnapshotForTenant(FHIRConfiguration.DEFAULT_TENANT_ID);
+                    if (snapshot != null) {
+                        result = snapshot.getValue(property);
                     }
                 }
             } catch (Exception e) {
@@ -97,56 +119,54 @@ public class FHIRConfigHelper {
      * This generic function will perform the work of retrieving a property from either the tenant-specific config, or
      * the default config, and then converting the resulting value to the appropriate type.
      *
-     * @param propertyName
-     *            the name of the property to retrieve
+     * @param property
+     *            the handle of the property to retrieve
      * @param defaultValue
      *            the default value to return in the event that the property is not found
      * @return
      */
     @SuppressWarnings("unchecked")
-    private static <T> T getTypedProperty(Class<T> expectedDataType, String propertyName, T defaultValue) {
+    private static <T> T getTypedProperty(Class<T> expectedDataType, PropertyHandle property, T defaultValue) {
         T result = null;
 
-        // Find the property as a generic JsonValue from either the current tenant's config or the default config.
-        JsonValue jsonValue = getPropertyFromTenantOrDefault(propertyName);
+        // Find the native value of the property from either the current tenant's config or the default config.
+        Object obj = getPropertyFromTenantOrDefault(property);
 
         // If found, then convert the value to the expected type.
-        if (jsonValue != null) {
-            Object obj = null;
+        if (obj != null) {
             try {
-                obj = PropertyGroup.convertJsonValue(jsonValue);
-                if (obj != null) {
-                    // If the property was of the expected type, then just do the assignment.
-                    // Otherwise, we'll try to do some simple conversions (e.g. String --> Boolean).
-                    if (expectedDataType.isAssignableFrom(obj.getClass())) {
-                        result = (T) obj;
-                    } else {
-                        if (obj instanceof String) {
-                            if (Boolean.class.equals(expectedDataType)) {
-                                result = (T) Boolean.valueOf((String) obj);
-                            } else if (Integer.class.equals(expectedDataType)) {
-                                result = (T) Integer.valueOf((String) obj);
-                            } else if (Double.class.equals(expectedDataType)) {
-                                result = (T) Double.valueOf((String) obj);
-                            } else {
-                                throw new RuntimeException("Expected property " + propertyName + " to be of type " + expectedDataType.getName() + ", but was of type "
-                                        + obj.getClass().getName());
-                            }
-                        } else if (obj instanceof Boolean) {
-                            if (String.class.equals(expectedDataType)) {
-                                result = (T) ((Boolean)obj).toString();
-                            } else {
-                                throw new RuntimeException("Expected property " + propertyName + " to be of type " + expectedDataType.getName() + ", but was of type "
-                                        + obj.getClass().getName());
-                            }
+                // If the property was of the expected type, then just do the assignment.
+                // Otherwise, we'll try to do some simple conversions (e.g. String --> Boolean).
+                if (expectedDataType.isAssignableFrom(obj.getClass())) {
+                    result = (T) obj;
+                } else {
+                    if (obj instanceof String) {
+                        if (Boolean.class.equals(expectedDataType)) {
+                            result = (T) Boolean.valueOf((String) obj);
+                        } else if (Integer.class.equals(expectedDataType)) {
+                            result = (T) Integer.valueOf((String) obj);
+                        } else if (Double.class.equals(expectedDataType)) {
+                            result = (T) Double.valueOf((String) obj);
                         } else {
-                            throw new RuntimeException("Expected property " + propertyName + " to be of type " + expectedDataType.getName() + ", but was of type "
+                            throw new RuntimeException("Expected property " + property.getName() + " to be of type " + expectedDataType.getName() + ", but was of type "
                                     + obj.getClass().getName());
                         }
+                    } else if (obj instanceof Integer && Double.class.equals(expectedDataType)) {
+                        result = (T) Double.valueOf((Integer) obj);
+                    } else if (obj instanceof Boolean) {
+                        if (String.class.equals(expectedDataType)) {
+                            result = (T) ((Boolean)obj).toString();
+                        } else {
+                            throw new RuntimeException("Expected property " + property.getName() + " to be of type " + expectedDataType.getName() + ", but was of type "
+                                    + obj.getClass().getName());
+                        }
+                    } else {
+                        throw new RuntimeException("Expected property " + property.getName() + " to be of type " + expectedDataType.getName() + ", but was of type "
+                                + obj.getClass().getName());
                     }
                 }
             } catch (Exception e) {
-                throw new RuntimeException("Unexpected error converting property '" + propertyName + "' to native type.", e);
+                throw new RuntimeException("Unexpected error converting property '" + property.getName() + "' to native type.", e);
             }
         }
 
@@ -31,15 +31,19 @@ public class FHIRConfiguration {
     public static final String PROPERTY_DEFAULT_HANDLING = "fhirServer/core/defaultHandling";
     public static final String PROPERTY_ALLOW_CLIENT_HANDLING_PREF = "fhirServer/core/allowClientHandlingPref";
     public static final String PROPERTY_CHECK_REFERENCE_TYPES = "fhirServer/core/checkReferenceTypes";
+    public static final String PROPERTY_READ_PAYLOAD_PASS_THROUGH = "fhirServer/core/readPayloadPassThrough";
     public static final String PROPERTY_CONDITIONAL_DELETE_MAX_NUMBER = "fhirServer/core/conditionalDeleteMaxNumber";
     public static final String PROPERTY_SERVER_REGISTRY_RESOURCE_PROVIDER_ENABLED = "fhirServer/core/serverRegistryResourceProviderEnabled";
     public static final String PROPERTY_SERVER_RESOLVE_FUNCTION_ENABLED = "fhirServer/core/serverResolveFunctionEnabled";
     public static final String PROPERTY_CAPABILITY_STATEMENT_CACHE = "fhirServer/core/capabilityStatementCacheTimeout";
     public static final String PROPERTY_EXTENDED_CODEABLE_CONCEPT_VALIDATION = "fhirServer/core/extendedCodeableConceptValidation";
     public static final String PROPERTY_DISABLED_OPERATIONS = "fhirServer/core/disabledOperations";
+    public static final String PROPERTY_SERVER_TIMING_SAMPLE_RATE = "fhirServer/core/serverTimingSampleRate";
     public static final String PROPERTY_DEFAULT_PAGE_SIZE = "fhirServer/core/defaultPageSize";
     public static final String PROPERTY_MAX_PAGE_SIZE = "fhirServer/core/maxPageSize";
     public static final String PROPERTY_MAX_PAGE_INCLUDE_COUNT = "fhirServer/core/maxPageIncludeCount";
+    public static final String PROPERTY_BATCH_PARALLELISM = "fhirServer/core/batchParallelism";
+    public static final String PROPERTY_BATCH_PREPARE = "fhirServer/core/batchPrepare";
 
     // Terminology service properties
     public static final String PROPERTY_GRAPH_TERM_SERVICE_PROVIDER_ENABLED = "fhirServer/term/graphTermServiceProvider/enabled";
@@ -58,6 +62,8 @@ public class FHIRConfiguration {
     public static final String PROPERTY_FIELD_RESOURCES_PROFILES_AT_LEAST_ONE = "atLeastOne";
     public static final String PROPERTY_USE_STORED_COMPARTMENT_PARAM = "fhirServer/search/useStoredCompartmentParam";
     public static final String PROPERTY_SEARCH_ENABLE_OPT_QUERY_BUILDER = "fhirServer/search/enableOptQueryBuilder";
+    public static final String PROPERTY_SEARCH_ENABLE_KEYSET_PAGINATION = "fhirServer/search/enableKeysetPagination";
+    public static final String PROPERTY_SEARCH_EXTRACTION_PARALLELISM = "fhirServer/search/extractionParallelism";
 
     // Auth and security properties
     public static final String PROPERTY_SECURITY_CORS = "fhirServer/security/cors";
@@ -83,6 +89,9 @@ public class FHIRConfiguration {
 
     // Notification config properties
     public static final String PROPERTY_NOTIFICATION_RESOURCE_TYPES = "fhirServer/notifications/common/includeResourceTypes";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_QUEUE_SIZE = "fhirServer/notifications/common/asyncQueueSize";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_BATCH_SIZE = "fhirServer/notifications/common/asyncBatchSize";
+    public static final String PROPERTY_NOTIFICATION_ASYNC_OVERFLOW_POLICY = "fhirServer/notifications/common/asyncOverflowPolicy";
     public static final String PROPERTY_WEBSOCKET_ENABLED = "fhirServer/notifications/websocket/enabled";
     public static final String PROPERTY_KAFKA_ENABLED = "fhirServer/notifications/kafka/enabled";
     public static final String PROPERTY_KAFKA_TOPICNAME = "fhirServer/notifications/kafka/topicName";
@@ -220,6 +229,20 @@ public class FHIRConfiguration {
      * @throws Exception
      */
     public PropertyGroup loadConfigurationForTenant(String tenantId) throws Exception {
+        ConfigurationSnapshot snapshot = loadConfigurationSnapshotForTenant(tenantId);
+        return snapshot != null ? snapshot.getPropertyGroup() : null;
+    }
+
+    /**
+     * Loads the compiled configuration for the specified tenant id. The snapshot is reloaded
+     * if the tenant's configuration file changes.
+     *
+     * @param tenantId
+     *            a shortname representing the tenant whose configuration will be loaded
+     * @return the compiled configuration of the tenant or null if it doesn't exist
+     * @throws Exception
+     */
+    public ConfigurationSnapshot loadConfigurationSnapshotForTenant(String tenantId) throws Exception {
         return configCache.getCachedObjectForTenant(tenantId);
     }
 
@@ -15,6 +15,7 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.core.HTTPHandlingPreference;
 import com.ibm.fhir.core.HTTPReturnPreference;
 import com.ibm.fhir.exception.FHIRException;
@@ -53,6 +54,9 @@ public class FHIRRequestContext {
 
     private Map<String, Object> operationProperties = new HashMap<>();
 
+    // Accumulates the time spent in each phase of processing this request
+    private final RequestTimer requestTimer;
+
     private Pattern validChars = Pattern.compile("[a-zA-Z0-9_\\-]+");
     private String errorMsg = "Only [a-z], [A-Z], [0-9], '_', and '-' characters are allowed.";
 
@@ -69,6 +73,7 @@ public class FHIRRequestContext {
 
     public FHIRRequestContext() {
         this.requestUniqueId = UUID.randomUUID().toString();
+        this.requestTimer = new RequestTimer();
     }
 
     public FHIRRequestContext(String tenantId) throws FHIRException {
@@ -81,6 +86,34 @@ public class FHIRRequestContext {
         setDataStoreId(dataStoreId);
     }
 
+    /**
+     * Copy constructor; the copy shares the request timer of the original
+     * @param other
+     */
+    private FHIRRequestContext(FHIRRequestContext other) {
+        this.tenantId = other.tenantId;
+        this.dataStoreId = other.dataStoreId;
+        this.requestUniqueId = other.requestUniqueId;
+        this.originalRequestUri = other.originalRequestUri;
+        this.httpHeaders = other.httpHeaders;
+        this.readOnly = other.readOnly;
+        this.bulk = other.bulk;
+        this.handlingPreference = other.handlingPreference;
+        this.returnPreference = other.returnPreference;
+        this.operationProperties = new HashMap<>(other.operationProperties);
+        this.requestTimer = other.requestTimer;
+    }
+
+    /**
+     * Create a copy of this context for another thread working on the same request.
+     * Changes made to the copy (other than the time recorded by its request timer)
+     * aren't visible through this context.
+     * @return the copy
+     */
+    public FHIRRequestContext copy() {
+        return new FHIRRequestContext(this);
+    }
+
     public String getTenantId() {
         return tenantId;
     }
@@ -259,4 +292,11 @@ public class FHIRRequestContext {
     public void setHttpHeaders(Map<String, List<String>> httpHeaders) {
         this.httpHeaders = httpHeaders;
     }
+
+    /**
+     * @return the timer recording the phases of this request
+     */
+    public RequestTimer getRequestTimer() {
+        return requestTimer;
+    }
 }
\ No newline at end of file
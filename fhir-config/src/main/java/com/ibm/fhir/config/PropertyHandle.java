@@ -0,0 +1,103 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A precompiled reference to a hierarchical configuration property (e.g. "fhirServer/core/defaultPageSize").
+ * The property name is parsed once when the handle is created, so lookups using the handle don't need to
+ * split the name each time. Handles for frequently used properties should be held in static final fields:
+ * <pre>
+ * private static final PropertyHandle PAGE_SIZE = PropertyHandle.of(FHIRConfiguration.PROPERTY_DEFAULT_PAGE_SIZE);
+ * ...
+ * int pageSize = FHIRConfigHelper.getIntProperty(PAGE_SIZE, 10);
+ * </pre>
+ */
+public final class PropertyHandle {
+
+    // Handles are interned so that lookups by property name don't need to parse the name again
+    private static final Map<String, PropertyHandle> HANDLES = new ConcurrentHashMap<>();
+
+    // Property names are almost always built from a small set of constants, but just in case
+    // something builds them from request data, we stop interning once we reach this many handles
+    private static final int MAX_INTERNED_HANDLES = 10000;
+
+    // The property name as given by the caller
+    private final String name;
+
+    // The normalized path used as the key in a ConfigurationSnapshot
+    private final String path;
+
+    // Datasource properties must never fall back to the default tenant (issue #639)
+    private final boolean tenantOnly;
+
+    private PropertyHandle(String name) {
+        this.name = name;
+
+        // normalize the name in exactly the same way PropertyGroup.getJsonValue parses it
+        this.path = String.join(PropertyGroup.PATH_ELEMENT_SEPARATOR, name.split(PropertyGroup.PATH_ELEMENT_SEPARATOR));
+        this.tenantOnly = name.startsWith(FHIRConfiguration.PROPERTY_DATASOURCES);
+    }
+
+    /**
+     * Get the handle for the given property name
+     * @param propertyName the hierarchical name of the property (e.g. "level1/level2/prop1")
+     * @return
+     */
+    public static PropertyHandle of(String propertyName) {
+        PropertyHandle result = HANDLES.get(propertyName);
+        if (result == null) {
+            result = new PropertyHandle(propertyName);
+            if (HANDLES.size() < MAX_INTERNED_HANDLES) {
+                PropertyHandle existing = HANDLES.putIfAbsent(propertyName, result);
+                if (existing != null) {
+                    result = existing;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the property name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the normalized path of the property
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return true if the property must only be read from the current tenant's configuration,
+     * without falling back to the default configuration
+     */
+    public boolean isTenantOnly() {
+        return tenantOnly;
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PropertyHandle && ((PropertyHandle)obj).name.equals(this.name);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -13,13 +13,13 @@ import java.io.InputStream;
 import com.ibm.fhir.core.TenantSpecificFileBasedCache;
 
 /**
- * This class implements a tenant-specific cache that holds PropertyGroup objects (i.e. FHIR Server configuration
- * information). Each cache entry holds the in-memory representation of the fhir-server-config.json file found for a
- * particular tenant.
+ * This class implements a tenant-specific cache that holds FHIR Server configuration information. Each cache entry
+ * holds the compiled in-memory representation ({@link ConfigurationSnapshot}) of the fhir-server-config.json file found
+ * for a particular tenant.
  * 
  * @author padams
  */
-public class TenantSpecificPropertyGroupCache extends TenantSpecificFileBasedCache<PropertyGroup> {
+public class TenantSpecificPropertyGroupCache extends TenantSpecificFileBasedCache<ConfigurationSnapshot> {
 
     public TenantSpecificPropertyGroupCache() {
         super("PropertyGroup");
@@ -40,9 +40,9 @@ public class TenantSpecificPropertyGroupCache extends TenantSpecificFileBasedCac
      * @see com.ibm.fhir.core.TenantSpecificFileBasedCache#createCachedObject(java.lang.String)
      */
     @Override
-    public PropertyGroup createCachedObject(File f) throws Exception {
+    public ConfigurationSnapshot createCachedObject(File f) throws Exception {
         try (InputStream is = new FileInputStream(f)) {
-            return ConfigurationService.loadConfiguration(is);
+            return new ConfigurationSnapshot(ConfigurationService.loadConfiguration(is));
         }
     }
 }
@@ -0,0 +1,83 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The default {@link RequestMetricsRecorder}, which keeps a {@link LatencyHistogram} in memory
+ * for each phase and for the request as a whole. The histograms aggregate all tenants and
+ * HTTP methods. Phases which didn't occur in a request aren't recorded, so each phase histogram
+ * only describes the requests which included that phase.
+ *
+ * <p>The histograms are reported by the $healthcheck operation when the client asks for
+ * the OperationOutcome to be returned.
+ */
+public class HistogramRequestMetricsRecorder implements RequestMetricsRecorder {
+
+    private final LatencyHistogram[] phaseHistograms = new LatencyHistogram[RequestPhase.values().length];
+
+    private final LatencyHistogram totalHistogram = new LatencyHistogram();
+
+    public HistogramRequestMetricsRecorder() {
+        for (int i=0; i<phaseHistograms.length; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    @Override
+    public void recordRequest(String tenantId, String method, int status, RequestTimer timer) {
+        for (RequestPhase phase: RequestPhase.values()) {
+            if (timer.getCount(phase) > 0) {
+                phaseHistograms[phase.ordinal()].record(timer.getElapsedNanos(phase));
+            }
+        }
+        totalHistogram.record(timer.getTotalElapsedNanos());
+    }
+
+    /**
+     * @param phase
+     * @return the histogram of the time spent in the given phase per request
+     */
+    public LatencyHistogram getHistogram(RequestPhase phase) {
+        return phaseHistograms[phase.ordinal()];
+    }
+
+    /**
+     * @return the histogram of the total time per request
+     */
+    public LatencyHistogram getTotalHistogram() {
+        return totalHistogram;
+    }
+
+    /**
+     * @return the histogram of the total time per request (named "total") followed by the
+     *         histogram of each phase which has been recorded at least once, by metric name
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        Map<String, LatencyHistogram> result = new LinkedHashMap<>();
+        result.put("total", totalHistogram);
+        for (RequestPhase phase: RequestPhase.values()) {
+            LatencyHistogram histogram = getHistogram(phase);
+            if (histogram.getCount() > 0) {
+                result.put(phase.getMetricName(), histogram);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("total[").append(totalHistogram).append("]");
+        for (RequestPhase phase: RequestPhase.values()) {
+            result.append(" ").append(phase.getMetricName()).append("[").append(getHistogram(phase)).append("]");
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-bucket histogram of latencies which can be updated concurrently without locking.
+ * The buckets grow roughly exponentially from 100 microseconds to 10 seconds, which covers
+ * everything from a cached read to a large search.
+ */
+public class LatencyHistogram {
+
+    // The (inclusive) upper bound of each bucket in microseconds. The final bucket has no upper bound
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+            100, 250, 500,
+            1000, 2500, 5000,
+            10000, 25000, 50000,
+            100000, 250000, 500000,
+            1000000, 2500000, 5000000,
+            10000000
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length + 1];
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i=0; i<buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record the given latency
+     * @param nanos
+     */
+    public void record(long nanos) {
+        final long micros = nanos / 1000L;
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the latencies recorded
+     */
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * @return the upper bound (in microseconds) of each bucket except the last, which has no upper bound
+     */
+    public static long[] getBucketBoundsMicros() {
+        return BUCKET_BOUNDS_MICROS.clone();
+    }
+
+    /**
+     * @return the number of latencies recorded in each bucket. The returned array has one more element
+     * than {@link #getBucketBoundsMicros()}
+     */
+    public long[] getBucketCounts() {
+        long[] result = new long[buckets.length];
+        for (int i=0; i<buckets.length; i++) {
+            result[i] = buckets[i].sum();
+        }
+        return result;
+    }
+
+    /**
+     * Estimate a percentile from the bucket counts
+     * @param percentile between 0 and 100
+     * @return the upper bound (in microseconds) of the bucket which holds the given percentile,
+     *         -1 if it falls in the last bucket (which has no upper bound) or 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double percentile) {
+        final long[] counts = getBucketCounts();
+        long total = 0;
+        for (long c: counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long cumulative = 0;
+        for (int i=0; i<BUCKET_BOUNDS_MICROS.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return BUCKET_BOUNDS_MICROS[i];
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        final long n = getCount();
+        StringBuilder result = new StringBuilder();
+        result.append("count=").append(n);
+        if (n > 0) {
+            result.append(" mean=").append(String.format("%.3f", getSumNanos() / 1e6 / n)).append("ms");
+            appendPercentile(result, 50);
+            appendPercentile(result, 95);
+            appendPercentile(result, 99);
+        }
+        return result.toString();
+    }
+
+    private void appendPercentile(StringBuilder result, int percentile) {
+        final long micros = getPercentileMicros(percentile);
+        result.append(" p").append(percentile);
+        if (micros < 0) {
+            result.append(">").append(BUCKET_BOUNDS_MICROS[BUCKET_BOUNDS_MICROS.length - 1] / 1000).append("ms");
+        } else {
+            result.append("<=").append(micros / 1000.0).append("ms");
+        }
+    }
+}
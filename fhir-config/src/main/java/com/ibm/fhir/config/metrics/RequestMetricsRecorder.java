@@ -0,0 +1,48 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Service provider interface for publishing the per-phase latencies of each completed request
+ * to a metrics system. To plug in an implementation, add its class name to a file called
+ * META-INF/services/com.ibm.fhir.config.metrics.RequestMetricsRecorder in your jar. If no
+ * implementation is found, the latencies are kept in memory by {@link HistogramRequestMetricsRecorder}.
+ */
+public interface RequestMetricsRecorder {
+
+    /**
+     * Called once for every request when its processing is complete. Implementations must
+     * be thread-safe and should return quickly because they are called on the request thread.
+     * @param tenantId the tenant which made the request
+     * @param method the HTTP method of the request
+     * @param status the HTTP status of the response
+     * @param timer the phase times of the request
+     */
+    void recordRequest(String tenantId, String method, int status, RequestTimer timer);
+
+    /**
+     * @return the recorder loaded from the service loader, or the default in-memory recorder
+     */
+    static RequestMetricsRecorder recorder() {
+        return Holder.RECORDER;
+    }
+
+    /**
+     * Lazily loads the recorder the first time it is needed
+     */
+    static class Holder {
+        private static final RequestMetricsRecorder RECORDER = load();
+
+        private static RequestMetricsRecorder load() {
+            Iterator<RequestMetricsRecorder> iterator = ServiceLoader.load(RequestMetricsRecorder.class).iterator();
+            return iterator.hasNext() ? iterator.next() : new HistogramRequestMetricsRecorder();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.metrics;
+
+/**
+ * The phases of request processing which are timed by the {@link RequestTimer}.
+ * Phases may nest (for example, SQL executed by an interceptor counts towards
+ * both INTERCEPTORS and SQL), so the phase times don't necessarily add up to the
+ * total request time.
+ */
+public enum RequestPhase {
+    // Parsing the request body
+    PARSE("parse"),
+
+    // Validating the resource from the request
+    VALIDATION("validate"),
+
+    // Running the persistence interceptors
+    INTERCEPTORS("intercept"),
+
+    // Extracting search parameter values from a resource before it is stored
+    EXTRACTION("extract"),
+
+    // Executing SQL statements and reading their results
+    SQL("sql"),
+
+    // Decompressing and parsing resource payloads read from the database
+    PAYLOAD("payload"),
+
+    // Generating the response body
+    RESPONSE("response");
+
+    private final String metricName;
+
+    private RequestPhase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * @return the short name used to identify this phase in metrics and
+     * Server-Timing headers
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
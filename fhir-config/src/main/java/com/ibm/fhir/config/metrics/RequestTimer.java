@@ -0,0 +1,144 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+
+/**
+ * Accumulates the time spent in each {@link RequestPhase} while processing a single request.
+ * Each {@link FHIRRequestContext} carries its own timer, so code anywhere in the request path
+ * can record a phase without any other plumbing:
+ * <pre>
+ * final long start = System.nanoTime();
+ * try {
+ *     ...
+ * } finally {
+ *     RequestTimer.stop(RequestPhase.SQL, start);
+ * }
+ * </pre>
+ * Recording a phase costs a couple of atomic adds, so the timer is always on.
+ */
+public class RequestTimer {
+    private static final int PHASE_COUNT = RequestPhase.values().length;
+
+    // When the timer was created (the start of the request)
+    private final long startNanos = System.nanoTime();
+
+    // The accumulated time of each phase, indexed by ordinal
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASE_COUNT);
+
+    // The number of times each phase was recorded, indexed by ordinal
+    private final AtomicLongArray phaseCounts = new AtomicLongArray(PHASE_COUNT);
+
+    // Set if the response for this request should carry a Server-Timing header
+    private volatile boolean serverTimingEnabled;
+
+    /**
+     * Record the time elapsed since startNanos against the given phase of the
+     * current thread's request
+     * @param phase
+     * @param startNanos the value of {@link System#nanoTime()} when the phase started
+     */
+    public static void stop(RequestPhase phase, long startNanos) {
+        FHIRRequestContext.get().getRequestTimer().record(phase, startNanos);
+    }
+
+    /**
+     * Record the time elapsed since startNanos against the given phase
+     * @param phase
+     * @param startNanos the value of {@link System#nanoTime()} when the phase started
+     */
+    public void record(RequestPhase phase, long startNanos) {
+        add(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Add the given elapsed time to the given phase
+     * @param phase
+     * @param elapsedNanos
+     */
+    public void add(RequestPhase phase, long elapsedNanos) {
+        phaseNanos.addAndGet(phase.ordinal(), elapsedNanos);
+        phaseCounts.incrementAndGet(phase.ordinal());
+    }
+
+    /**
+     * @param phase
+     * @return the total time recorded against the given phase
+     */
+    public long getElapsedNanos(RequestPhase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    /**
+     * @param phase
+     * @return the number of times the given phase was recorded
+     */
+    public long getCount(RequestPhase phase) {
+        return phaseCounts.get(phase.ordinal());
+    }
+
+    /**
+     * @return the time elapsed since the start of the request
+     */
+    public long getTotalElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return true if the response for this request should carry a Server-Timing header
+     */
+    public boolean isServerTimingEnabled() {
+        return serverTimingEnabled;
+    }
+
+    /**
+     * @param serverTimingEnabled
+     */
+    public void setServerTimingEnabled(boolean serverTimingEnabled) {
+        this.serverTimingEnabled = serverTimingEnabled;
+    }
+
+    /**
+     * Describe the phases recorded so far as a Server-Timing header value, for example
+     * <code>sql;dur=12.5, payload;dur=1.2, total;dur=20.1</code>. Phases which were not
+     * recorded are omitted. Durations are in milliseconds.
+     * @return
+     */
+    public String toServerTiming() {
+        StringBuilder result = new StringBuilder();
+        for (RequestPhase phase: RequestPhase.values()) {
+            if (getCount(phase) > 0) {
+                appendMetric(result, phase.getMetricName(), getElapsedNanos(phase));
+            }
+        }
+        appendMetric(result, "total", getTotalElapsedNanos());
+        return result.toString();
+    }
+
+    /**
+     * Append a single Server-Timing metric to the buffer
+     * @param buffer
+     * @param name
+     * @param nanos
+     */
+    private static void appendMetric(StringBuilder buffer, String name, long nanos) {
+        if (buffer.length() > 0) {
+            buffer.append(", ");
+        }
+        // one decimal place is plenty
+        final long tenthsOfMillis = nanos / 100000L;
+        buffer.append(name).append(";dur=").append(tenthsOfMillis / 10).append('.').append(tenthsOfMillis % 10);
+    }
+
+    @Override
+    public String toString() {
+        return toServerTiming();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.ConfigurationSnapshot;
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.PropertyGroup;
+import com.ibm.fhir.config.PropertyHandle;
+
+/**
+ * Unit test for {@link ConfigurationSnapshot} and {@link PropertyHandle}
+ */
+public class ConfigurationSnapshotTest {
+
+    private static final String CONFIG =
+            "{ \"level1\": { \"level2\": { \"string\": \"value\", \"int\": 5, \"bool\": true, \"list\": [\"a\", \"b\"] },"
+            + " \"a/b\": \"unreachable\" } }";
+
+    private ConfigurationSnapshot snapshot(PropertyGroup pg) {
+        return new ConfigurationSnapshot(pg);
+    }
+
+    private PropertyGroup propertyGroup() {
+        try (JsonReader reader = Json.createReader(new StringReader(CONFIG))) {
+            return new PropertyGroup(reader.readObject());
+        }
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        ConfigurationSnapshot snapshot = snapshot(propertyGroup());
+        assertEquals(snapshot.getValue(PropertyHandle.of("level1/level2/string")), "value");
+        assertEquals(snapshot.getValue(PropertyHandle.of("level1/level2/int")), Integer.valueOf(5));
+        assertEquals(snapshot.getValue(PropertyHandle.of("level1/level2/bool")), Boolean.TRUE);
+        assertEquals(snapshot.getValue(PropertyHandle.of("level1/level2/list")), Arrays.asList("a", "b"));
+        assertTrue(snapshot.getValue(PropertyHandle.of("level1/level2")) instanceof PropertyGroup);
+    }
+
+    @Test
+    public void testMissing() throws Exception {
+        ConfigurationSnapshot snapshot = snapshot(propertyGroup());
+        assertNull(snapshot.getValue(PropertyHandle.of("level1/level2/missing")));
+        assertNull(snapshot.getValue(PropertyHandle.of("missing/level2/string")));
+        assertNull(snapshot.getValue(PropertyHandle.of("level1/level2/string/x")));
+
+        // a key containing the separator can't be reached by PropertyGroup either
+        assertNull(snapshot.getValue(PropertyHandle.of("level1/a/b")));
+    }
+
+    @Test
+    public void testSameAsPropertyGroup() throws Exception {
+        PropertyGroup pg = propertyGroup();
+        ConfigurationSnapshot snapshot = snapshot(pg);
+        for (String name: Arrays.asList("level1/level2/string", "level1/level2/int", "level1/level2/", "level1", "level1/level2/missing")) {
+            assertEquals(snapshot.getJsonValue(PropertyHandle.of(name)), pg.getJsonValue(name), name);
+        }
+    }
+
+    @Test
+    public void testConvertedValueShared() throws Exception {
+        ConfigurationSnapshot snapshot = snapshot(propertyGroup());
+        PropertyHandle handle = PropertyHandle.of("level1/level2/list");
+        Object value = snapshot.getValue(handle);
+        assertSame(snapshot.getValue(handle), value);
+    }
+
+    @Test
+    public void testConvertedValueSharedByPath() throws Exception {
+        // handles with different names for the same property share the converted value
+        ConfigurationSnapshot snapshot = snapshot(propertyGroup());
+        Object value = snapshot.getValue(PropertyHandle.of("level1/level2/list"));
+        assertSame(snapshot.getValue(PropertyHandle.of("level1/level2/list/")), value);
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    @SuppressWarnings("unchecked")
+    public void testListUnmodifiable() throws Exception {
+        ConfigurationSnapshot snapshot = snapshot(propertyGroup());
+        List<Object> list = (List<Object>)snapshot.getValue(PropertyHandle.of("level1/level2/list"));
+        list.set(0, "c");
+    }
+
+    @Test
+    public void testCustomPropertyGroup() throws Exception {
+        JsonObject empty = Json.createObjectBuilder().build();
+        PropertyGroup pg = new PropertyGroup(empty) {
+            @Override
+            public javax.json.JsonValue getJsonValue(String propertyName) {
+                return Json.createValue(propertyName);
+            }
+        };
+
+        // custom implementations aren't compiled, so lookups are delegated
+        ConfigurationSnapshot snapshot = snapshot(pg);
+        assertEquals(snapshot.getValue(PropertyHandle.of("any/name")), "any/name");
+    }
+
+    @Test
+    public void testHandle() {
+        assertSame(PropertyHandle.of("level1/level2"), PropertyHandle.of("level1/level2"));
+        assertEquals(PropertyHandle.of("level1/level2/").getPath(), "level1/level2");
+        assertTrue(PropertyHandle.of(FHIRConfiguration.PROPERTY_DATASOURCES + "/default").isTenantOnly());
+        assertEquals(PropertyHandle.of(FHIRConfiguration.PROPERTY_DEFAULT_PAGE_SIZE).isTenantOnly(), false);
+    }
+}
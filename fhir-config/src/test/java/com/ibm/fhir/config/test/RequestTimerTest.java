@@ -0,0 +1,113 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.config.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.config.metrics.HistogramRequestMetricsRecorder;
+import com.ibm.fhir.config.metrics.LatencyHistogram;
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
+
+/**
+ * Unit test for {@link RequestTimer} and {@link HistogramRequestMetricsRecorder}
+ */
+public class RequestTimerTest {
+
+    @BeforeMethod
+    @AfterMethod
+    public void clearThreadLocal() {
+        FHIRRequestContext.remove();
+    }
+
+    @Test
+    public void testAccumulate() {
+        RequestTimer timer = new RequestTimer();
+        timer.add(RequestPhase.SQL, 2000000L);
+        timer.add(RequestPhase.SQL, 1500000L);
+        timer.add(RequestPhase.PAYLOAD, 250000L);
+
+        assertEquals(timer.getElapsedNanos(RequestPhase.SQL), 3500000L);
+        assertEquals(timer.getCount(RequestPhase.SQL), 2);
+        assertEquals(timer.getElapsedNanos(RequestPhase.PAYLOAD), 250000L);
+        assertEquals(timer.getCount(RequestPhase.PARSE), 0);
+    }
+
+    @Test
+    public void testServerTiming() {
+        RequestTimer timer = new RequestTimer();
+        timer.add(RequestPhase.SQL, 12345678L);
+        timer.add(RequestPhase.PAYLOAD, 50000L);
+
+        String header = timer.toServerTiming();
+        assertTrue(header.startsWith("sql;dur=12.3, payload;dur=0.0, total;dur="), header);
+        assertFalse(header.contains("parse"), header);
+    }
+
+    @Test
+    public void testCurrentRequest() {
+        RequestTimer.stop(RequestPhase.VALIDATION, System.nanoTime());
+        assertEquals(FHIRRequestContext.get().getRequestTimer().getCount(RequestPhase.VALIDATION), 1);
+
+        // a new request starts with a new timer
+        FHIRRequestContext.remove();
+        assertEquals(FHIRRequestContext.get().getRequestTimer().getCount(RequestPhase.VALIDATION), 0);
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(50000L);      // 50us
+        histogram.record(3000000L);    // 3ms
+        histogram.record(60000000000L); // 60s
+
+        long[] counts = histogram.getBucketCounts();
+        long[] bounds = LatencyHistogram.getBucketBoundsMicros();
+        assertEquals(counts.length, bounds.length + 1);
+        assertEquals(counts[0], 1);
+        assertEquals(counts[5], 1); // (2500, 5000]
+        assertEquals(counts[counts.length - 1], 1);
+        assertEquals(histogram.getCount(), 3);
+        assertEquals(histogram.getSumNanos(), 60003050000L);
+
+        assertEquals(histogram.getPercentileMicros(30), 100);
+        assertEquals(histogram.getPercentileMicros(50), 5000);
+        assertEquals(histogram.getPercentileMicros(99), -1);
+        assertEquals(new LatencyHistogram().getPercentileMicros(50), 0);
+        assertTrue(histogram.toString().endsWith(" p50<=5.0ms p95>10000ms p99>10000ms"), histogram.toString());
+    }
+
+    @Test
+    public void testRecorder() {
+        HistogramRequestMetricsRecorder recorder = new HistogramRequestMetricsRecorder();
+        RequestTimer timer = new RequestTimer();
+        timer.add(RequestPhase.SQL, 1000000L);
+        recorder.recordRequest("default", "GET", 200, timer);
+
+        assertEquals(recorder.getTotalHistogram().getCount(), 1);
+        assertEquals(recorder.getHistogram(RequestPhase.SQL).getCount(), 1);
+        assertEquals(recorder.getHistogram(RequestPhase.SQL).getSumNanos(), 1000000L);
+
+        // phases which didn't occur aren't recorded
+        assertEquals(recorder.getHistogram(RequestPhase.PARSE).getCount(), 0);
+
+        Map<String, LatencyHistogram> histograms = recorder.getHistograms();
+        assertEquals(new ArrayList<>(histograms.keySet()), Arrays.asList("total", RequestPhase.SQL.getMetricName()));
+        assertEquals(histograms.get("total").getCount(), 1);
+    }
+}
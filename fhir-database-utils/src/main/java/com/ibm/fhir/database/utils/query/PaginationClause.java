@@ -26,6 +26,20 @@ public class PaginationClause {
         this.rowsPerPage = rowsPerPage;
     }
 
+    /**
+     * @return the row offset value
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * @return the row limit value
+     */
+    public int getRowsPerPage() {
+        return this.rowsPerPage;
+    }
+
     public String getSqlString(IDatabaseTranslator translator) {
         return translator.pagination(offset, rowsPerPage);
     }
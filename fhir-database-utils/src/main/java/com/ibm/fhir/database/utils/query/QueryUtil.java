@@ -11,6 +11,7 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,4 +58,52 @@ public class QueryUtil {
         // This statement is ready to execute
         return ps;
     }
+
+    /**
+     * Prepares the given Select statement and sets any bind parameters, reusing
+     * the SQL text previously rendered for a statement with the same {@link SelectSignature}.
+     * Statements which differ only by their bind values skip the rendering step.
+     * The cache must be specific to the translator (database type) and safe for
+     * concurrent use. Caller must close the returned statement.
+     * @param connection
+     * @param select
+     * @param translator
+     * @param sqlCache rendered SQL keyed by statement signature
+     * @return the statement ready to execute, with parameter markers bound
+     * @throws SQLException
+     */
+    public static PreparedStatement prepareSelect(Connection connection, Select select, IDatabaseTranslator translator,
+            Map<SelectSignature, String> sqlCache) throws SQLException {
+
+        // Walk the statement to get its signature and the bind markers in rendering order
+        final List<BindMarkerNode> bindMarkers = new ArrayList<>();
+        final SelectSignature signature = SelectSignature.of(select, bindMarkers);
+
+        String query = sqlCache.get(signature);
+        if (query == null) {
+            // Bind markers have been collected already
+            final StringStatementRenderer statementRenderer = new StringStatementRenderer(translator, null, true);
+            query = select.render(statementRenderer);
+            sqlCache.put(signature, query);
+        } else if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Reusing SQL for statement signature hash " + signature.hashCode());
+        }
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("bind marker count: " + bindMarkers.size());
+            logger.fine("     query string: " + query);
+        }
+
+        // The caller is responsible for closing the statement
+        PreparedStatement ps = connection.prepareStatement(query);
+
+        // Set values on the statement for each of the bind markers
+        BindVisitor bindVisitor = new BindVisitor(ps, translator);
+        for (BindMarkerNode bindMarker: bindMarkers) {
+            bindMarker.visit(bindVisitor);
+        }
+
+        // This statement is ready to execute
+        return ps;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ibm.fhir.database.utils.query.expression.SignatureStatementRenderer;
+import com.ibm.fhir.database.utils.query.node.BindMarkerNode;
+
+/**
+ * The structural signature of a {@link Select} statement. The signature covers
+ * everything which ends up in the SQL text (tables, joins, columns, literals,
+ * pagination) but not the values bound to the parameter markers, so it can
+ * be used as the key for caching the rendered SQL of a statement. Equality
+ * is exact: there is no risk of two different statements sharing a signature.
+ */
+public final class SelectSignature {
+
+    // The flattened structure of the statement
+    private final Object[] tokens;
+
+    // Computed once, because the token array can be long
+    private final int hashCode;
+
+    /**
+     * Private constructor
+     * @param tokens
+     */
+    private SelectSignature(Object[] tokens) {
+        this.tokens = tokens;
+        this.hashCode = Arrays.hashCode(tokens);
+    }
+
+    /**
+     * Compute the signature of the given statement, collecting its bind markers
+     * in the same order as they would be collected by rendering the statement
+     * @param select the statement to process
+     * @param collectBindMarkersInto the list to receive the bind markers. Can be null
+     * @return
+     */
+    public static SelectSignature of(Select select, List<BindMarkerNode> collectBindMarkersInto) {
+        List<Object> tokens = new ArrayList<>();
+        select.render(new SignatureStatementRenderer(tokens, collectBindMarkersInto));
+        return new SelectSignature(tokens.toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj instanceof SelectSignature) {
+            SelectSignature that = (SelectSignature)obj;
+            return this.hashCode == that.hashCode && Arrays.equals(this.tokens, that.tokens);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        // For debugging only
+        return Arrays.toString(tokens);
+    }
+}
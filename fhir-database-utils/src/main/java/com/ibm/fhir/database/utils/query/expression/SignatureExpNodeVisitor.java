@@ -0,0 +1,278 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.query.expression;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import com.ibm.fhir.database.utils.query.Select;
+import com.ibm.fhir.database.utils.query.node.BigDecimalBindMarkerNode;
+import com.ibm.fhir.database.utils.query.node.BindMarkerNode;
+import com.ibm.fhir.database.utils.query.node.DoubleBindMarkerNode;
+import com.ibm.fhir.database.utils.query.node.ExpNodeVisitor;
+import com.ibm.fhir.database.utils.query.node.InstantBindMarkerNode;
+import com.ibm.fhir.database.utils.query.node.IntegerBindMarkerNode;
+import com.ibm.fhir.database.utils.query.node.LongBindMarkerNode;
+import com.ibm.fhir.database.utils.query.node.StringBindMarkerNode;
+
+/**
+ * Records the structure of an expression tree as a flat sequence of tokens
+ * (in post-order), collecting the bind markers in the same order as
+ * {@link StringExpNodeVisitor}. Bind marker values are not part of the
+ * signature, but literals are because they appear in the SQL text.
+ */
+public class SignatureExpNodeVisitor implements ExpNodeVisitor<Void> {
+
+    // The statement renderer, used for sub-selects
+    private final SignatureStatementRenderer statementRenderer;
+
+    // The signature tokens, shared with the statement renderer
+    private final List<Object> tokens;
+
+    // For collecting parameter markers seen when visiting the expression
+    private final List<BindMarkerNode> bindMarkers;
+
+    /**
+     * Public constructor
+     * @param statementRenderer
+     * @param tokens
+     * @param collectBindMarkersInto
+     */
+    public SignatureExpNodeVisitor(SignatureStatementRenderer statementRenderer, List<Object> tokens, List<BindMarkerNode> collectBindMarkersInto) {
+        this.statementRenderer = statementRenderer;
+        this.tokens = tokens;
+        this.bindMarkers = collectBindMarkersInto;
+    }
+
+    /**
+     * Append the token to the signature
+     * @param token
+     * @return
+     */
+    private Void append(SignatureToken token) {
+        tokens.add(token);
+        return null;
+    }
+
+    /**
+     * Append the token followed by the given value
+     * @param token
+     * @param value
+     * @return
+     */
+    private Void append(SignatureToken token, Object value) {
+        tokens.add(token);
+        tokens.add(value);
+        return null;
+    }
+
+    /**
+     * Append a bind marker to the signature and collect the marker node
+     * @param marker
+     * @return
+     */
+    private Void bind(BindMarkerNode marker) {
+        if (this.bindMarkers != null) {
+            this.bindMarkers.add(marker);
+        }
+        return append(SignatureToken.BIND_MARKER);
+    }
+
+    @Override
+    public Void paren(Void expr) {
+        return append(SignatureToken.PAREN);
+    }
+
+    @Override
+    public Void and(Void left, Void right) {
+        return append(SignatureToken.AND);
+    }
+
+    @Override
+    public Void or(Void left, Void right) {
+        return append(SignatureToken.OR);
+    }
+
+    @Override
+    public Void not(Void exp) {
+        return append(SignatureToken.NOT);
+    }
+
+    @Override
+    public Void exists(Void statement) {
+        return append(SignatureToken.EXISTS);
+    }
+
+    @Override
+    public Void notExists(Void statement) {
+        return append(SignatureToken.NOT_EXISTS);
+    }
+
+    @Override
+    public Void eq(Void left, Void right) {
+        return append(SignatureToken.EQ);
+    }
+
+    @Override
+    public Void neq(Void left, Void right) {
+        return append(SignatureToken.NEQ);
+    }
+
+    @Override
+    public Void gt(Void left, Void right) {
+        return append(SignatureToken.GT);
+    }
+
+    @Override
+    public Void gte(Void left, Void right) {
+        return append(SignatureToken.GTE);
+    }
+
+    @Override
+    public Void lt(Void left, Void right) {
+        return append(SignatureToken.LT);
+    }
+
+    @Override
+    public Void lte(Void left, Void right) {
+        return append(SignatureToken.LTE);
+    }
+
+    @Override
+    public Void literal(String value) {
+        return append(SignatureToken.LITERAL_STRING, value);
+    }
+
+    @Override
+    public Void literal(Long value) {
+        return append(SignatureToken.LITERAL_LONG, value);
+    }
+
+    @Override
+    public Void literal(Double value) {
+        return append(SignatureToken.LITERAL_DOUBLE, value);
+    }
+
+    @Override
+    public Void column(String tableAlias, String columnName) {
+        append(SignatureToken.COLUMN, tableAlias);
+        tokens.add(columnName);
+        return null;
+    }
+
+    @Override
+    public Void add(Void left, Void right) {
+        return append(SignatureToken.ADD);
+    }
+
+    @Override
+    public Void subtract(Void left, Void right) {
+        return append(SignatureToken.SUBTRACT);
+    }
+
+    @Override
+    public Void multiply(Void left, Void right) {
+        return append(SignatureToken.MULTIPLY);
+    }
+
+    @Override
+    public Void divide(Void left, Void right) {
+        return append(SignatureToken.DIVIDE);
+    }
+
+    @Override
+    public Void isNull(Void expr) {
+        return append(SignatureToken.IS_NULL);
+    }
+
+    @Override
+    public Void isNotNull(Void expr) {
+        return append(SignatureToken.IS_NOT_NULL);
+    }
+
+    @Override
+    public Void between(Void leftValue, Void rightValue) {
+        return append(SignatureToken.BETWEEN);
+    }
+
+    @Override
+    public Void in(Void leftValue, List<Void> args) {
+        // the arg count is needed because the args have already been visited
+        return append(SignatureToken.IN, args.size());
+    }
+
+    @Override
+    public Void like(Void left, Void right) {
+        return append(SignatureToken.LIKE);
+    }
+
+    @Override
+    public Void escape(Void left, Void right) {
+        return append(SignatureToken.ESCAPE);
+    }
+
+    @Override
+    public Void bindMarker(Double value) {
+        return bind(new DoubleBindMarkerNode(value));
+    }
+
+    @Override
+    public Void bindMarker(Long value) {
+        return bind(new LongBindMarkerNode(value));
+    }
+
+    @Override
+    public Void bindMarker(Integer value) {
+        return bind(new IntegerBindMarkerNode(value));
+    }
+
+    @Override
+    public Void bindMarker(String value) {
+        return bind(new StringBindMarkerNode(value));
+    }
+
+    @Override
+    public Void bindMarker(Instant value) {
+        return bind(new InstantBindMarkerNode(value));
+    }
+
+    @Override
+    public Void bindMarker(BigDecimal value) {
+        return bind(new BigDecimalBindMarkerNode(value));
+    }
+
+    @Override
+    public Void select(Select select) {
+        // The statement renderer brackets the sub-statement with SELECT...END_SELECT
+        return select.render(statementRenderer);
+    }
+
+    @Override
+    public Void coalesce(List<ColumnRef> columnRefs) {
+        append(SignatureToken.COALESCE, columnRefs.size());
+        for (ColumnRef ref: columnRefs) {
+            tokens.add(ref.getRef());
+        }
+        return null;
+    }
+
+    @Override
+    public Void cos(Void arg) {
+        return append(SignatureToken.COS);
+    }
+
+    @Override
+    public Void acos(Void arg) {
+        return append(SignatureToken.ACOS);
+    }
+
+    @Override
+    public Void sin(Void arg) {
+        return append(SignatureToken.SIN);
+    }
+}
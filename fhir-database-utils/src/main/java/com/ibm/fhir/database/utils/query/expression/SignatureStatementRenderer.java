@@ -0,0 +1,152 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.query.expression;
+
+import java.util.List;
+
+import com.ibm.fhir.database.utils.query.FromClause;
+import com.ibm.fhir.database.utils.query.FromItem;
+import com.ibm.fhir.database.utils.query.GroupByClause;
+import com.ibm.fhir.database.utils.query.HavingClause;
+import com.ibm.fhir.database.utils.query.OrderByClause;
+import com.ibm.fhir.database.utils.query.PaginationClause;
+import com.ibm.fhir.database.utils.query.SelectList;
+import com.ibm.fhir.database.utils.query.WhereClause;
+import com.ibm.fhir.database.utils.query.node.BindMarkerNode;
+import com.ibm.fhir.database.utils.query.node.ExpNode;
+
+/**
+ * Walks a select statement in the same order as {@link StringStatementRenderer},
+ * recording its structure as a list of tokens and collecting the bind markers,
+ * but without building any SQL text. Two statements with the same tokens render
+ * to the same SQL string (for a given translator), differing only in the values
+ * bound to the parameter markers.
+ */
+public class SignatureStatementRenderer implements StatementRenderer<Void> {
+
+    // The tokens describing the structure of the statement
+    private final List<Object> tokens;
+
+    // Visitor for the expressions (predicates) found in the statement
+    private final SignatureExpNodeVisitor expressionVisitor;
+
+    /**
+     * Public constructor
+     * @param tokens the list to append the signature tokens to
+     * @param collectBindMarkersInto the list to append the bind markers to. Can be null
+     */
+    public SignatureStatementRenderer(List<Object> tokens, List<BindMarkerNode> collectBindMarkersInto) {
+        this.tokens = tokens;
+        this.expressionVisitor = new SignatureExpNodeVisitor(this, tokens, collectBindMarkersInto);
+    }
+
+    @Override
+    public Void select(boolean distinct, SelectList selectList, FromClause fromClause, WhereClause whereClause, GroupByClause groupByClause,
+        HavingClause havingClause, OrderByClause orderByClause, PaginationClause paginationClause) {
+
+        tokens.add(SignatureToken.SELECT);
+        tokens.add(distinct);
+        tokens.add(selectList.toString());
+        fromClause.render(this);
+
+        if (whereClause != null && !whereClause.isEmpty()) {
+            tokens.add(SignatureToken.WHERE);
+            whereClause.visit(expressionVisitor);
+        }
+
+        if (groupByClause != null) {
+            tokens.add(SignatureToken.GROUP_BY);
+            tokens.add(groupByClause.toString());
+        }
+
+        if (havingClause != null) {
+            tokens.add(SignatureToken.HAVING);
+            tokens.add(havingClause.toString());
+        }
+
+        if (orderByClause != null) {
+            tokens.add(SignatureToken.ORDER_BY);
+            tokens.add(orderByClause.toString());
+        }
+
+        if (paginationClause != null) {
+            tokens.add(SignatureToken.PAGINATION);
+            tokens.add(paginationClause.getOffset());
+            tokens.add(paginationClause.getRowsPerPage());
+        }
+
+        tokens.add(SignatureToken.END_SELECT);
+        return null;
+    }
+
+    @Override
+    public Void from(List<FromItem> items) {
+        tokens.add(SignatureToken.FROM);
+        tokens.add(items.size());
+        for (FromItem item: items) {
+            // controls whether the item is separated by a comma
+            tokens.add(item.isAnsiJoin() ? SignatureToken.ANSI_JOIN : SignatureToken.FROM_ITEM);
+            item.render(this);
+        }
+        return null;
+    }
+
+    @Override
+    public Void fromItem(FromItem item) {
+        return item.render(this);
+    }
+
+    @Override
+    public Void rowSource(Void sub) {
+        tokens.add(SignatureToken.SUB_SELECT);
+        return null;
+    }
+
+    @Override
+    public Void fromItem(Void subValue, Void aliasValue) {
+        // the row source and alias tokens have already been added
+        return null;
+    }
+
+    @Override
+    public Void alias(String alias) {
+        tokens.add(SignatureToken.ALIAS);
+        tokens.add(alias);
+        return null;
+    }
+
+    @Override
+    public Void rowSource(String schemaName, String tableName) {
+        tokens.add(SignatureToken.TABLE);
+        tokens.add(schemaName);
+        tokens.add(tableName);
+        return null;
+    }
+
+    @Override
+    public Void render(ExpNode expression) {
+        return expression.visit(expressionVisitor);
+    }
+
+    @Override
+    public Void innerJoin(Void joinFromValue, Void joinOnValue) {
+        tokens.add(SignatureToken.INNER_JOIN);
+        return null;
+    }
+
+    @Override
+    public Void leftOuterJoin(Void joinFromValue, Void joinOnValue) {
+        tokens.add(SignatureToken.LEFT_OUTER_JOIN);
+        return null;
+    }
+
+    @Override
+    public Void fullOuterJoin(Void joinFromValue, Void joinOnValue) {
+        tokens.add(SignatureToken.FULL_OUTER_JOIN);
+        return null;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.query.expression;
+
+/**
+ * The structural elements recorded in a statement signature. Values (table names,
+ * aliases, literals and so on) are recorded alongside these tokens, so the tokens
+ * keep the sequence unambiguous.
+ */
+enum SignatureToken {
+    SELECT,
+    FROM,
+    FROM_ITEM,
+    ANSI_JOIN,
+    TABLE,
+    SUB_SELECT,
+    ALIAS,
+    WHERE,
+    GROUP_BY,
+    HAVING,
+    ORDER_BY,
+    PAGINATION,
+    END_SELECT,
+    INNER_JOIN,
+    LEFT_OUTER_JOIN,
+    FULL_OUTER_JOIN,
+    PAREN,
+    AND,
+    OR,
+    NOT,
+    EXISTS,
+    NOT_EXISTS,
+    EQ,
+    NEQ,
+    GT,
+    GTE,
+    LT,
+    LTE,
+    LITERAL_STRING,
+    LITERAL_LONG,
+    LITERAL_DOUBLE,
+    COLUMN,
+    ADD,
+    SUBTRACT,
+    MULTIPLY,
+    DIVIDE,
+    IS_NULL,
+    IS_NOT_NULL,
+    BETWEEN,
+    IN,
+    LIKE,
+    ESCAPE,
+    BIND_MARKER,
+    COALESCE,
+    COS,
+    ACOS,
+    SIN
+}
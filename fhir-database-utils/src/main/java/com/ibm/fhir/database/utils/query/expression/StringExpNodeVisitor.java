@@ -44,14 +44,15 @@ public class StringExpNodeVisitor implements ExpNodeVisitor<String> {
     // For parameter encoding
     private static final String SQL_PARAM_ESCAPE_CHARACTER = "";
     private static final String SQL_PARAM_BLACKLIST_CHARACTERS_REGEX = "['\"]";
-    private final Pattern escapeCharacterPattern;
+
+    // Compiled once and shared, because a new visitor is created for every (sub-)expression rendered
+    private static final Pattern escapeCharacterPattern = Pattern.compile(SQL_PARAM_BLACKLIST_CHARACTERS_REGEX);
 
     /**
      * Simple rendering of the expression tree to a string, ignoring
      * the bind marker values
      */
     public StringExpNodeVisitor() {
-        escapeCharacterPattern = Pattern.compile(SQL_PARAM_BLACKLIST_CHARACTERS_REGEX);
         this.translator = null;
         this.bindMarkers = null;
         this.pretty = false;
@@ -63,7 +64,6 @@ public class StringExpNodeVisitor implements ExpNodeVisitor<String> {
      * @param pretty
      */
     public StringExpNodeVisitor(boolean pretty) {
-        escapeCharacterPattern = Pattern.compile(SQL_PARAM_BLACKLIST_CHARACTERS_REGEX);
         this.translator = null;
         this.bindMarkers = null;
         this.pretty = pretty;
@@ -75,7 +75,6 @@ public class StringExpNodeVisitor implements ExpNodeVisitor<String> {
      * @param collectBindMarkersInto
      */
     public StringExpNodeVisitor(IDatabaseTranslator translator, List<BindMarkerNode> collectBindMarkersInto, boolean pretty) {
-        escapeCharacterPattern = Pattern.compile(SQL_PARAM_BLACKLIST_CHARACTERS_REGEX);
         this.translator = translator;
         this.bindMarkers = collectBindMarkersInto;
         this.pretty = pretty;
@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.database.utils.query;
+
+import static com.ibm.fhir.database.utils.query.expression.ExpressionSupport.alias;
+import static com.ibm.fhir.database.utils.query.expression.ExpressionSupport.bind;
+import static com.ibm.fhir.database.utils.query.expression.ExpressionSupport.on;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.database.utils.derby.DerbyTranslator;
+import com.ibm.fhir.database.utils.query.expression.StringStatementRenderer;
+import com.ibm.fhir.database.utils.query.node.BindMarkerNode;
+
+/**
+ * Unit test for {@link SelectSignature}
+ */
+public class SelectSignatureTest {
+    private static final DerbyTranslator TRANSLATOR = new DerbyTranslator();
+
+    /**
+     * Build a search-like query using the given values
+     * @param tokenValue bound
+     * @param parameterNameId literal
+     * @param lastUpdated bound
+     * @param offset pagination offset
+     * @return
+     */
+    private Select searchQuery(String tokenValue, int parameterNameId, Instant lastUpdated, int offset) {
+        Select sub = Select.select("1")
+                .from("Patient_TOKEN_VALUES_V", alias("param"))
+                .where("param", "LOGICAL_RESOURCE_ID").eq("LR", "LOGICAL_RESOURCE_ID")
+                .and("param", "TOKEN_VALUE").eq(bind(tokenValue))
+                .and("param", "PARAMETER_NAME_ID").eq(parameterNameId)
+                .build();
+
+        SelectAdapter query = Select.select("LR.LOGICAL_RESOURCE_ID", "R.DATA");
+        query.from("Patient_LOGICAL_RESOURCES", alias("LR"))
+                .innerJoin("Patient_RESOURCES", alias("R"), on("R", "RESOURCE_ID").eq("LR", "CURRENT_RESOURCE_ID"))
+                .where().exists(sub)
+                .and("LR", "IS_DELETED").eq().literal("N")
+                .and("LR", "LAST_UPDATED").gt(bind(lastUpdated))
+                .orderBy("LR.LOGICAL_RESOURCE_ID");
+        query.pagination(offset, 10);
+        return query.build();
+    }
+
+    @Test
+    public void testSameShape() {
+        final Instant now = Instant.now();
+        List<BindMarkerNode> markers1 = new ArrayList<>();
+        List<BindMarkerNode> markers2 = new ArrayList<>();
+        SelectSignature sig1 = SelectSignature.of(searchQuery("Ford", 1274, now, 0), markers1);
+        SelectSignature sig2 = SelectSignature.of(searchQuery("Prefect", 1274, now.minusSeconds(60), 0), markers2);
+
+        // Only the bind values differ, so the signatures must match
+        assertEquals(sig1, sig2);
+        assertEquals(sig1.hashCode(), sig2.hashCode());
+        assertEquals(markers1.size(), 2);
+        assertEquals(markers2.size(), 2);
+        assertTrue(markers2.get(0).checkTypeAndValue("Prefect"));
+        assertTrue(markers2.get(1).checkTypeAndValue(now.minusSeconds(60)));
+    }
+
+    @Test
+    public void testDifferentShape() {
+        final Instant now = Instant.now();
+        SelectSignature base = SelectSignature.of(searchQuery("Ford", 1274, now, 0), null);
+
+        // Literals and pagination are part of the SQL text, so are part of the signature
+        assertNotEquals(SelectSignature.of(searchQuery("Ford", 1275, now, 0), null), base);
+        assertNotEquals(SelectSignature.of(searchQuery("Ford", 1274, now, 10), null), base);
+    }
+
+    @Test
+    public void testBindMarkerOrder() {
+        // The signature walk must collect the bind markers in the same order as the renderer
+        final Instant now = Instant.now();
+        Select query = searchQuery("Arthur", 1274, now, 0);
+        List<BindMarkerNode> rendered = new ArrayList<>();
+        query.render(new StringStatementRenderer(TRANSLATOR, rendered, true));
+
+        List<BindMarkerNode> collected = new ArrayList<>();
+        SelectSignature.of(query, collected);
+        assertEquals(collected.size(), rendered.size());
+        assertTrue(collected.get(0).checkTypeAndValue("Arthur"));
+        assertTrue(rendered.get(0).checkTypeAndValue("Arthur"));
+        assertTrue(collected.get(1).checkTypeAndValue(now));
+        assertTrue(rendered.get(1).checkTypeAndValue(now));
+    }
+}
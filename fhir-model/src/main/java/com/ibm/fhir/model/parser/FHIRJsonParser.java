@@ -24,12 +24,16 @@ import java.util.StringJoiner;
 import javax.annotation.Generated;
 import javax.json.Json;
 import javax.json.JsonArray;
+import javax.json.JsonBuilderFactory;
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
 import javax.json.JsonReader;
 import javax.json.JsonReaderFactory;
 import javax.json.JsonString;
 import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParserFactory;
 
 import com.ibm.fhir.model.parser.exception.FHIRParserException;
 import com.ibm.fhir.model.resource.*;
@@ -47,6 +51,8 @@ import net.jcip.annotations.NotThreadSafe;
 public class FHIRJsonParser extends FHIRAbstractParser {
     public static boolean DEBUG = false;
     private static final JsonReaderFactory JSON_READER_FACTORY = Json.createReaderFactory(null);
+    private static final JsonParserFactory JSON_PARSER_FACTORY = Json.createParserFactory(null);
+    private static final JsonBuilderFactory JSON_BUILDER_FACTORY = Json.createBuilderFactory(null);
 
     private final Stack<java.lang.String> stack = new Stack<>();
 
@@ -60,6 +66,15 @@ public class FHIRJsonParser extends FHIRAbstractParser {
     }
 
     public <T extends Resource> T parseAndFilter(InputStream in, Collection<java.lang.String> elementsToInclude) throws FHIRParserException {
+        if (elementsToInclude == null && isStreaming()) {
+            try (JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingInputStream(in), StandardCharsets.UTF_8)) {
+                return parse(jsonParser);
+            } catch (FHIRParserException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new FHIRParserException(e.getMessage(), getPath(), e);
+            }
+        }
         try (JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingInputStream(in), StandardCharsets.UTF_8)) {
             JsonObject jsonObject = jsonReader.readObject();
             return parseAndFilter(jsonObject, elementsToInclude);
@@ -76,6 +91,15 @@ public class FHIRJsonParser extends FHIRAbstractParser {
     }
 
     public <T extends Resource> T parseAndFilter(Reader reader, Collection<java.lang.String> elementsToInclude) throws FHIRParserException {
+        if (elementsToInclude == null && isStreaming()) {
+            try (JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingReader(reader))) {
+                return parse(jsonParser);
+            } catch (FHIRParserException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new FHIRParserException(e.getMessage(), getPath(), e);
+            }
+        }
         try (JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingReader(reader))) {
             JsonObject jsonObject = jsonReader.readObject();
             return parseAndFilter(jsonObject, elementsToInclude);
@@ -105,15 +129,81 @@ public class FHIRJsonParser extends FHIRAbstractParser {
         }
     }
 
+    /**
+     * Parse a resource from the events of the passed JsonParser, without reading the whole payload into a JsonObject first.
+     * 
+     * Only the entries of a Bundle are streamed: each entry is read into a JsonObject and parsed before the next one
+     * is read. The entry and its resource are materialized in full, as are all the other top-level elements of the
+     * resource, which are collected into a JsonObject and parsed once the end of the resource is reached. Peak memory
+     * use is therefore bounded by the largest entry plus the top-level elements rather than by the whole payload, and
+     * the parsed resource itself is still built in memory.
+     * 
+     * @param jsonParser
+     *     a parser positioned before the start of the resource
+     * @return
+     *     the parsed resource
+     * @throws FHIRParserException
+     *     if the input can't be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Resource> T parse(JsonParser jsonParser) throws FHIRParserException {
+        try {
+            reset();
+            if (jsonParser.next() != JsonParser.Event.START_OBJECT) {
+                throw new IllegalArgumentException("Expected: START_OBJECT");
+            }
+            JsonObjectBuilder objectBuilder = JSON_BUILDER_FACTORY.createObjectBuilder();
+            java.lang.String resourceTypeName = null;
+            java.util.List<Bundle.Entry> entries = null;
+            while (jsonParser.next() == JsonParser.Event.KEY_NAME) {
+                java.lang.String key = jsonParser.getString();
+                if (jsonParser.next() == JsonParser.Event.START_ARRAY && "entry".equals(key) && "Bundle".equals(resourceTypeName)) {
+                    entries = parseBundleEntries(jsonParser);
+                    continue;
+                }
+                JsonValue jsonValue = jsonParser.getValue();
+                if ("resourceType".equals(key) && jsonValue.getValueType() == JsonValue.ValueType.STRING) {
+                    resourceTypeName = ((JsonString) jsonValue).getString();
+                }
+                objectBuilder.add(key, jsonValue);
+            }
+            JsonObject jsonObject = objectBuilder.build();
+            Resource resource = parseResource(getResourceType(jsonObject).getSimpleName(), jsonObject, -1);
+            if (entries != null) {
+                resource = ((Bundle) resource).toBuilder().entry(entries).build();
+            }
+            return (T) resource;
+        } catch (Exception e) {
+            throw new FHIRParserException(e.getMessage(), getPath(), e);
+        }
+    }
+
+    private java.util.List<Bundle.Entry> parseBundleEntries(JsonParser jsonParser) {
+        java.util.List<Bundle.Entry> entries = new java.util.ArrayList<>();
+        stackPush("Bundle", -1);
+        while (jsonParser.next() != JsonParser.Event.END_ARRAY) {
+            entries.add(parseBundleEntry("entry", jsonParser.getObject(), entries.size()));
+        }
+        stackPop();
+        return entries;
+    }
+
     private void reset() {
         stack.clear();
     }
 
+    private boolean isStreaming() {
+        return getPropertyOrDefault(FHIRParser.PROPERTY_STREAMING, java.lang.Boolean.FALSE, java.lang.Boolean.class);
+    }
+
     @Override
     public boolean isPropertySupported(java.lang.String name) {
         if (FHIRParser.PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS.equals(name)) {
             return true;
         }
+        if (FHIRParser.PROPERTY_STREAMING.equals(name)) {
+            return true;
+        }
         return false;
     }
 
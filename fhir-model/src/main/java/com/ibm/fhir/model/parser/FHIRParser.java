@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019, 2020
+ * (C) Copyright IBM Corp. 2019, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -21,6 +21,13 @@ public interface FHIRParser {
      * Property name for a property that controls whether the parser will ignore or throw an exception on unrecognized elements
      */
     public static final String PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS = "com.ibm.fhir.model.parser.ignoreUnrecognizedElements";
+
+    /**
+     * Property name for a property that controls whether the JSON parser reads the input as a stream of parser events
+     * instead of reading the whole payload into a JsonObject first (JSON only; the XML parser always streams).
+     * Only the entries of a Bundle are streamed; each entry and the other top-level elements are still read in full.
+     */
+    public static final String PROPERTY_STREAMING = "com.ibm.fhir.model.parser.streaming";
     
     /**
      * Read a resource from the passed InputStream. This method does not close the passed InputStream.
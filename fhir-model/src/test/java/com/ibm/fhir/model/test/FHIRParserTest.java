@@ -1,22 +1,26 @@
 /*
- * (C) Copyright IBM Corp. 2020
+ * (C) Copyright IBM Corp. 2020, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.model.test;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.io.InputStream;
+import java.io.StringReader;
 
 import org.testng.annotations.Test;
 
 import com.ibm.fhir.model.format.Format;
 import com.ibm.fhir.model.parser.FHIRParser;
 import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Patient;
 
 public class FHIRParserTest {
     @Test
@@ -47,4 +51,49 @@ public class FHIRParserTest {
             fail();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testStreamingBundle() throws Exception {
+        String bundle = "{\"resourceType\":\"Bundle\",\"id\":\"b1\",\"type\":\"collection\",\"entry\":["
+                + "{\"fullUrl\":\"urn:uuid:1\",\"resource\":{\"resourceType\":\"Patient\",\"id\":\"p1\",\"active\":true}},"
+                + "{\"fullUrl\":\"urn:uuid:2\",\"resource\":{\"resourceType\":\"Patient\",\"id\":\"p2\",\"gender\":\"female\"}}"
+                + "],\"total\":2}";
+
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+        parser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        Bundle streamed = parser.parse(new StringReader(bundle));
+        Bundle expected = FHIRParser.parser(Format.JSON).parse(new StringReader(bundle));
+
+        assertEquals(streamed, expected);
+        assertEquals(streamed.getEntry().size(), 2);
+        assertEquals(streamed.getEntry().get(1).getResource().as(Patient.class).getId(), "p2");
+    }
+
+    @Test
+    public void testStreamingBundleResourceTypeLast() throws Exception {
+        String bundle = "{\"type\":\"collection\",\"entry\":[{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"p1\"}}],\"resourceType\":\"Bundle\"}";
+
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+        parser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        Bundle streamed = parser.parse(new StringReader(bundle));
+
+        assertEquals(streamed, FHIRParser.parser(Format.JSON).parse(new StringReader(bundle)));
+    }
+
+    @Test
+    public void testStreamingBundleInvalidEntry() throws Exception {
+        String bundle = "{\"resourceType\":\"Bundle\",\"type\":\"collection\",\"entry\":["
+                + "{\"resource\":{\"resourceType\":\"Patient\",\"id\":\"p1\"}},"
+                + "{\"resource\":{\"resourceType\":\"Patient\",\"active\":\"yes\"}}"
+                + "]}";
+
+        FHIRParser parser = FHIRParser.parser(Format.JSON);
+        parser.setProperty(FHIRParser.PROPERTY_STREAMING, true);
+        try {
+            parser.parse(new StringReader(bundle));
+            fail();
+        } catch (FHIRParserException e) {
+            assertEquals(e.getPath(), "Bundle.entry[1].resource.active");
+        }
+    }
+}
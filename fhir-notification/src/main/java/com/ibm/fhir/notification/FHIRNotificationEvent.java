@@ -17,6 +17,10 @@ public class FHIRNotificationEvent {
     private String datasourceId = null;
     private Resource resource = null;
 
+    // The serialized forms of this event, computed once and shared by the subscribers
+    private volatile String jsonString = null;
+    private volatile String jsonStringWithoutResource = null;
+
     public FHIRNotificationEvent() {
         // No Operation
     }
@@ -27,6 +31,7 @@ public class FHIRNotificationEvent {
 
     public void setResourceId(String resourceId) {
         this.resourceId = resourceId;
+        clearJsonString();
     }
 
     public String getLastUpdated() {
@@ -35,6 +40,7 @@ public class FHIRNotificationEvent {
 
     public void setLastUpdated(String lastUpdated) {
         this.lastUpdated = lastUpdated;
+        clearJsonString();
     }
 
     public String getLocation() {
@@ -43,6 +49,7 @@ public class FHIRNotificationEvent {
 
     public void setLocation(String location) {
         this.location = location;
+        clearJsonString();
     }
 
     public String getOperationType() {
@@ -51,6 +58,7 @@ public class FHIRNotificationEvent {
 
     public void setOperationType(String operationType) {
         this.operationType = operationType;
+        clearJsonString();
     }
 
     public String getTenantId() {
@@ -59,6 +67,7 @@ public class FHIRNotificationEvent {
 
     public void setTenantId(String tenantId) {
         this.tenantId = tenantId;
+        clearJsonString();
     }
 
     public String getDatasourceId() {
@@ -67,6 +76,7 @@ public class FHIRNotificationEvent {
 
     public void setDatasourceId(String datasourceId) {
         this.datasourceId = datasourceId;
+        clearJsonString();
     }
 
     public Resource getResource() {
@@ -75,6 +85,34 @@ public class FHIRNotificationEvent {
 
     public void setResource(Resource resource) {
         this.resource = resource;
+        clearJsonString();
+    }
+
+    /**
+     * Get the serialized form of this event cached by {@link com.ibm.fhir.notification.util.FHIRNotificationUtil#toJsonString}
+     * @param includeResource
+     * @return the cached JSON string, or null if the event hasn't been serialized since it was last changed
+     */
+    public String getJsonString(boolean includeResource) {
+        return includeResource ? jsonString : jsonStringWithoutResource;
+    }
+
+    /**
+     * Cache the serialized form of this event
+     * @param includeResource
+     * @param jsonString
+     */
+    public void setJsonString(boolean includeResource, String jsonString) {
+        if (includeResource) {
+            this.jsonString = jsonString;
+        } else {
+            this.jsonStringWithoutResource = jsonString;
+        }
+    }
+
+    private void clearJsonString() {
+        this.jsonString = null;
+        this.jsonStringWithoutResource = null;
     }
 
     @Override
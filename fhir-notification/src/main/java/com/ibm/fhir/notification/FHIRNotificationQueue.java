@@ -0,0 +1,259 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.config.metrics.LatencyHistogram;
+import com.ibm.fhir.notification.exception.FHIRNotificationException;
+
+/**
+ * A bounded queue of notification events for a single subscriber, drained by a dedicated
+ * sender thread. Publishing only adds the event to the queue, so the request thread doesn't
+ * wait for the subscriber. The sender thread passes the events to the subscriber in batches
+ * of up to batchSize.
+ *
+ * <p>When the queue is full, the {@link OverflowPolicy} decides whether the publishing thread
+ * waits for space (back-pressure) or the event is dropped.
+ */
+public class FHIRNotificationQueue {
+    private static final Logger log = Logger.getLogger(FHIRNotificationQueue.class.getName());
+
+    /**
+     * What to do with an event when the queue is full
+     */
+    public enum OverflowPolicy {
+        BLOCK("block"),
+        DROP("drop");
+
+        private final String value;
+
+        private OverflowPolicy(String value) {
+            this.value = value;
+        }
+
+        public String value() {
+            return value;
+        }
+
+        public static OverflowPolicy from(String value) {
+            for (OverflowPolicy c : OverflowPolicy.values()) {
+                if (c.value.equalsIgnoreCase(value)) {
+                    return c;
+                }
+            }
+            throw new IllegalArgumentException(value);
+        }
+    }
+
+    // An event along with the time it was queued, used to measure the publication latency
+    private static class QueuedEvent {
+        private final FHIRNotificationEvent event;
+        private final long queuedNanos;
+
+        private QueuedEvent(FHIRNotificationEvent event, long queuedNanos) {
+            this.event = event;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private final FHIRNotificationSubscriber subscriber;
+
+    private final BlockingQueue<QueuedEvent> queue;
+
+    private final int batchSize;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Thread sender;
+
+    private volatile boolean running = true;
+
+    // Metrics
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+
+    // The time from queuing an event until the subscriber has been notified
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Public constructor. Starts the sender thread.
+     * @param subscriber the subscriber to notify
+     * @param capacity the maximum number of events waiting to be sent
+     * @param batchSize the maximum number of events passed to the subscriber at once
+     * @param overflowPolicy what to do with an event when the queue is full
+     */
+    public FHIRNotificationQueue(FHIRNotificationSubscriber subscriber, int capacity, int batchSize, OverflowPolicy overflowPolicy) {
+        this.subscriber = subscriber;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.sender = new Thread(this::run, "fhir-notification-" + subscriber.getClass().getSimpleName());
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * @return the subscriber served by this queue
+     */
+    public FHIRNotificationSubscriber getSubscriber() {
+        return subscriber;
+    }
+
+    /**
+     * Add the event to the queue. If the queue is full, wait for space or drop the event
+     * according to the overflow policy.
+     * @param event
+     */
+    public void add(FHIRNotificationEvent event) {
+        if (!running) {
+            droppedCount.increment();
+            return;
+        }
+
+        QueuedEvent qe = new QueuedEvent(event, System.nanoTime());
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            try {
+                // don't wait forever if the sender thread has stopped
+                while (!queue.offer(qe, 1, TimeUnit.SECONDS)) {
+                    if (!running) {
+                        droppedCount.increment();
+                        return;
+                    }
+                }
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+                droppedCount.increment();
+                log.warning("Interrupted while waiting to queue notification event: " + event.getLocation());
+            }
+        } else if (!queue.offer(qe)) {
+            droppedCount.increment();
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Notification queue full, dropped event: " + event.getLocation());
+            }
+        }
+    }
+
+    /**
+     * The main loop of the sender thread
+     */
+    private void run() {
+        final List<QueuedEvent> batch = new ArrayList<>(batchSize);
+        final List<FHIRNotificationEvent> events = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                // Wait for the first event, then take whatever else is ready without waiting
+                QueuedEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                for (QueuedEvent qe: batch) {
+                    events.add(qe.event);
+                }
+
+                try {
+                    subscriber.notify(events);
+                    publishedCount.add(events.size());
+                } catch (FHIRNotificationException x) {
+                    // Same as a synchronous failure: this subscriber won't be notified again
+                    failedCount.add(events.size());
+                    log.log(Level.WARNING, FHIRNotificationQueue.class.getName() + ": unable to publish events", x);
+                    FHIRNotificationService.getInstance().unsubscribe(subscriber);
+                    break;
+                }
+
+                final long now = System.nanoTime();
+                for (QueuedEvent qe: batch) {
+                    latency.record(now - qe.queuedNanos);
+                }
+                batch.clear();
+                events.clear();
+            }
+        } catch (InterruptedException x) {
+            log.warning("Notification sender interrupted; " + queue.size() + " events not sent");
+        } catch (Throwable t) {
+            log.log(Level.SEVERE, "Notification sender stopped unexpectedly", t);
+        } finally {
+            running = false;
+            droppedCount.add(queue.size());
+            queue.clear();
+        }
+    }
+
+    /**
+     * Stop accepting events and wait up to the given time for the events already queued to be sent
+     * @param timeoutMillis
+     */
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        if (Thread.currentThread() == sender) {
+            // the subscriber failed, so the sender thread is already on its way out
+            return;
+        }
+        try {
+            sender.join(timeoutMillis);
+            if (sender.isAlive()) {
+                sender.interrupt();
+            }
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Notification queue for " + subscriber.getClass().getName() + " stopped; " + this);
+    }
+
+    /**
+     * @return the number of events waiting to be sent
+     */
+    public int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of events passed to the subscriber successfully
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full or the queue was stopped
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * @return the number of events the subscriber failed to publish
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * @return the histogram of the time from queuing each event until the subscriber was notified
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "depth=" + getDepth() + " published=" + getPublishedCount() + " dropped=" + getDroppedCount()
+            + " failed=" + getFailedCount() + " latency[" + latency + "]";
+    }
+}
@@ -6,17 +6,22 @@
 
 package com.ibm.fhir.notification;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.config.PropertyGroup;
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.notification.FHIRNotificationQueue.OverflowPolicy;
 import com.ibm.fhir.notification.exception.FHIRNotificationException;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptor;
@@ -29,9 +34,25 @@ import com.ibm.fhir.persistence.interceptor.impl.FHIRPersistenceInterceptorMgr;
 public class FHIRNotificationService implements FHIRPersistenceInterceptor {
     private static final Logger log = java.util.logging.Logger.getLogger(FHIRNotificationService.class.getName());
     private List<FHIRNotificationSubscriber> subscribers = new CopyOnWriteArrayList<>();
-    private static final FHIRNotificationService INSTANCE = new FHIRNotificationService();
     private Set<String> includedResourceTypes = Collections.synchronizedSortedSet(new TreeSet<String>());
 
+    // How long to wait for queued events to be sent when a subscriber is removed
+    private static final long QUEUE_SHUTDOWN_TIMEOUT_MS = 5000;
+
+    // When asyncQueueSize > 0, events are queued for each subscriber and sent by a dedicated thread
+    private volatile int asyncQueueSize = 0;
+    private int asyncBatchSize = 100;
+    private OverflowPolicy asyncOverflowPolicy = OverflowPolicy.BLOCK;
+    private final Map<FHIRNotificationSubscriber, FHIRNotificationQueue> queues = new ConcurrentHashMap<>();
+
+    // Set once the singleton has been created, so that monitoring doesn't have to create it
+    private static volatile boolean initialized = false;
+
+    // Creates the singleton on first use
+    private static class Holder {
+        private static final FHIRNotificationService INSTANCE = new FHIRNotificationService();
+    }
+
     private FHIRNotificationService() {
         log.entering(this.getClass().getName(), "FHIRNotificationService");
         try {
@@ -39,15 +60,18 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
             // interceptor methods to trigger the 'publish' of the notification events.
             FHIRPersistenceInterceptorMgr.getInstance().addPrioritizedInterceptor(this);
 
-            initNotificationResourceTypes();
+            PropertyGroup fhirConfig = FHIRConfiguration.getInstance().loadConfiguration();
+            initNotificationResourceTypes(fhirConfig);
+            initAsyncPublishing(fhirConfig);
+            initialized = true;
         } catch (Throwable t) {
             throw new RuntimeException("Unexpected error during initialization.", t);
         }
         log.exiting(this.getClass().getName(), "FHIRNotificationService");
     }
 
-    private void initNotificationResourceTypes() throws Exception {
-        List<String> types = FHIRConfiguration.getInstance().loadConfiguration().getStringListProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_RESOURCE_TYPES);
+    private void initNotificationResourceTypes(PropertyGroup fhirConfig) throws Exception {
+        List<String> types = fhirConfig.getStringListProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_RESOURCE_TYPES);
         if (types != null) {
             for (String type : types) {
                 includedResourceTypes.add(type);
@@ -58,8 +82,27 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
                 + (includedResourceTypes.isEmpty() ? "ALL" : includedResourceTypes.toString()) + "'");
     }
 
+    private void initAsyncPublishing(PropertyGroup fhirConfig) throws Exception {
+        asyncQueueSize = fhirConfig.getIntProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_QUEUE_SIZE, asyncQueueSize);
+        asyncBatchSize = Math.max(1, fhirConfig.getIntProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_BATCH_SIZE, asyncBatchSize));
+        asyncOverflowPolicy = OverflowPolicy.from(fhirConfig.getStringProperty(FHIRConfiguration.PROPERTY_NOTIFICATION_ASYNC_OVERFLOW_POLICY,
+                asyncOverflowPolicy.value()));
+
+        if (asyncQueueSize > 0) {
+            log.info("Notification service will publish events asynchronously; queueSize=" + asyncQueueSize
+                + ", batchSize=" + asyncBatchSize + ", overflowPolicy=" + asyncOverflowPolicy.value());
+        }
+    }
+
     public static FHIRNotificationService getInstance() {
-        return INSTANCE;
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * @return true if the notification service has been created, without creating it
+     */
+    public static boolean isInitialized() {
+        return initialized;
     }
 
     /**
@@ -69,6 +112,15 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
      */
     public void publish(FHIRNotificationEvent event) {
         log.entering(this.getClass().getName(), "publish");
+        if (asyncQueueSize > 0) {
+            // Each subscriber's sender thread does the work
+            for (FHIRNotificationQueue queue : queues.values()) {
+                queue.add(event);
+            }
+            log.exiting(this.getClass().getName(), "publish");
+            return;
+        }
+
         for (FHIRNotificationSubscriber subscriber : subscribers) {
             try {
                 subscriber.notify(event);
@@ -90,6 +142,9 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
         try {
             if (!subscribers.contains(subscriber)) {
                 subscribers.add(subscriber);
+                if (asyncQueueSize > 0) {
+                    queues.put(subscriber, new FHIRNotificationQueue(subscriber, asyncQueueSize, asyncBatchSize, asyncOverflowPolicy));
+                }
             }
         } finally {
             log.exiting(this.getClass().getName(), "subscribe");
@@ -107,11 +162,42 @@ public class FHIRNotificationService implements FHIRPersistenceInterceptor {
             if (subscribers.contains(subscriber)) {
                 subscribers.remove(subscriber);
             }
+
+            FHIRNotificationQueue queue = queues.remove(subscriber);
+            if (queue != null) {
+                queue.shutdown(QUEUE_SHUTDOWN_TIMEOUT_MS);
+            }
         } finally {
             log.exiting(this.getClass().getName(), "unsubscribe");
         }
     }
 
+    /**
+     * Stop the sender threads of all subscribers, waiting for the events already
+     * queued to be sent. Subscribers are notified synchronously from then on.
+     */
+    public void shutdown() {
+        log.entering(this.getClass().getName(), "shutdown");
+        try {
+            asyncQueueSize = 0;
+            for (FHIRNotificationQueue queue : queues.values()) {
+                queue.shutdown(QUEUE_SHUTDOWN_TIMEOUT_MS);
+            }
+            queues.clear();
+        } finally {
+            log.exiting(this.getClass().getName(), "shutdown");
+        }
+    }
+
+    /**
+     * Get the queue of each subscriber, for monitoring queue depth and publication latency
+     *
+     * @return the queues, or an empty collection if notifications are published synchronously
+     */
+    public Collection<FHIRNotificationQueue> getQueues() {
+        return Collections.unmodifiableCollection(queues.values());
+    }
+
     /**
      * Check if this subscriber has subscribed to this service
      *
@@ -1,11 +1,13 @@
 /*
- * (C) Copyright IBM Corp. 2016,2019
+ * (C) Copyright IBM Corp. 2016, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.notification;
 
+import java.util.List;
+
 import com.ibm.fhir.notification.exception.FHIRNotificationException;
 
 public interface FHIRNotificationSubscriber {
@@ -15,4 +17,17 @@ public interface FHIRNotificationSubscriber {
      * @throws FHIRNotificationException
      */
     void notify(FHIRNotificationEvent event) throws FHIRNotificationException;
+
+    /**
+     * Notify subscriber of a batch of events, in the order they were published. Called
+     * when notifications are published asynchronously. The default implementation
+     * notifies each event in turn.
+     * @param events
+     * @throws FHIRNotificationException
+     */
+    default void notify(List<FHIRNotificationEvent> events) throws FHIRNotificationException {
+        for (FHIRNotificationEvent event : events) {
+            notify(event);
+        }
+    }
 }
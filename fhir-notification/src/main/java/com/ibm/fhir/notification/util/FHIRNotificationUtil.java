@@ -41,7 +41,8 @@ public class FHIRNotificationUtil {
     }
 
     /**
-     * Serializes the notification event into a JSON string.
+     * Serializes the notification event into a JSON string. The result is cached on the event
+     * so that each subscriber publishing the same event doesn't serialize it again.
      * @param event the FHIRNotificationEvent structure to be serialized
      * @param includeResource a flag that controls whether or not the resource object within
      * the event structure should be included in the serialized message.
@@ -49,6 +50,15 @@ public class FHIRNotificationUtil {
      * @throws FHIRException
      */
     public static String toJsonString(FHIRNotificationEvent event, boolean includeResource) throws FHIRException {
+        String jsonString = event.getJsonString(includeResource);
+        if (jsonString == null) {
+            jsonString = serialize(event, includeResource);
+            event.setJsonString(includeResource, jsonString);
+        }
+        return jsonString;
+    }
+
+    private static String serialize(FHIRNotificationEvent event, boolean includeResource) throws FHIRException {
         JsonObjectBuilder builder = JSON_BUILDER_FACTORY.createObjectBuilder();
         builder.add("lastUpdated", event.getLastUpdated());
         builder.add("location", event.getLocation());
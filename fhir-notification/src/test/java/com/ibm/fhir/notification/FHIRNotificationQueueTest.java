@@ -0,0 +1,181 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.notification;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.notification.FHIRNotificationQueue.OverflowPolicy;
+import com.ibm.fhir.notification.exception.FHIRNotificationException;
+
+/**
+ * Tests the asynchronous publishing of notification events with a stub subscriber
+ */
+public class FHIRNotificationQueueTest {
+
+    /**
+     * Records the location of each event it is notified of, optionally waiting for a latch
+     * to be released before each batch
+     */
+    private static class StubSubscriber implements FHIRNotificationSubscriber {
+        private final List<String> locations = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch released;
+        private final long delayMillis;
+
+        private StubSubscriber(CountDownLatch released, long delayMillis) {
+            this.released = released;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void notify(FHIRNotificationEvent event) throws FHIRNotificationException {
+            locations.add(event.getLocation());
+        }
+
+        @Override
+        public void notify(List<FHIRNotificationEvent> events) throws FHIRNotificationException {
+            try {
+                if (released != null) {
+                    released.await();
+                }
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batchSizes.add(events.size());
+            FHIRNotificationSubscriber.super.notify(events);
+        }
+    }
+
+    @Test
+    public void testOrdering() throws Exception {
+        StubSubscriber subscriber = new StubSubscriber(null, 0);
+        FHIRNotificationQueue queue = new FHIRNotificationQueue(subscriber, 100, 10, OverflowPolicy.BLOCK);
+        for (int i = 0; i < 50; i++) {
+            queue.add(event(i));
+        }
+        queue.shutdown(10000);
+
+        assertEquals(subscriber.locations, locations(0, 50));
+        assertTrue(subscriber.batchSizes.stream().allMatch(size -> size <= 10), subscriber.batchSizes.toString());
+        assertEquals(queue.getPublishedCount(), 50);
+        assertEquals(queue.getDroppedCount(), 0);
+        assertEquals(queue.getFailedCount(), 0);
+        assertEquals(queue.getDepth(), 0);
+        assertEquals(queue.getLatency().getCount(), 50);
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        // a subscriber which doesn't publish anything until released
+        CountDownLatch released = new CountDownLatch(1);
+        StubSubscriber subscriber = new StubSubscriber(released, 0);
+        FHIRNotificationQueue queue = new FHIRNotificationQueue(subscriber, 2, 1, OverflowPolicy.BLOCK);
+
+        Thread publisher = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                queue.add(event(i));
+            }
+        });
+        publisher.start();
+
+        // one event is held by the sender thread and the queue is full, so the publisher waits
+        waitFor(() -> queue.getDepth() == 2);
+        publisher.join(500);
+        assertTrue(publisher.isAlive());
+        assertEquals(queue.getDroppedCount(), 0);
+
+        released.countDown();
+        publisher.join(10000);
+        queue.shutdown(10000);
+
+        assertEquals(subscriber.locations, locations(0, 10));
+        assertEquals(queue.getPublishedCount(), 10);
+        assertEquals(queue.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        StubSubscriber subscriber = new StubSubscriber(released, 0);
+        FHIRNotificationQueue queue = new FHIRNotificationQueue(subscriber, 2, 1, OverflowPolicy.DROP);
+        for (int i = 0; i < 20; i++) {
+            queue.add(event(i));
+        }
+        assertTrue(queue.getDepth() <= 2);
+        assertTrue(queue.getDroppedCount() >= 17);
+
+        released.countDown();
+        queue.shutdown(10000);
+        assertEquals(queue.getPublishedCount() + queue.getDroppedCount(), 20);
+        assertEquals(subscriber.locations.size(), queue.getPublishedCount());
+
+        // the events which weren't dropped are still published in order
+        List<String> sorted = new ArrayList<>(subscriber.locations);
+        sorted.sort((a, b) -> Integer.compare(index(a), index(b)));
+        assertEquals(subscriber.locations, sorted);
+    }
+
+    @Test
+    public void testShutdownDrains() throws Exception {
+        // a slow subscriber, so the events are still queued when shutdown starts
+        StubSubscriber subscriber = new StubSubscriber(null, 20);
+        FHIRNotificationQueue queue = new FHIRNotificationQueue(subscriber, 100, 1, OverflowPolicy.BLOCK);
+        for (int i = 0; i < 20; i++) {
+            queue.add(event(i));
+        }
+        assertTrue(queue.getDepth() > 0);
+        queue.shutdown(10000);
+
+        assertEquals(subscriber.locations, locations(0, 20));
+        assertEquals(queue.getPublishedCount(), 20);
+        assertEquals(queue.getDepth(), 0);
+
+        // nothing is accepted once the queue has been stopped
+        queue.add(event(20));
+        assertEquals(queue.getDroppedCount(), 1);
+        assertEquals(subscriber.locations.size(), 20);
+    }
+
+    private static FHIRNotificationEvent event(int i) {
+        FHIRNotificationEvent event = new FHIRNotificationEvent();
+        event.setOperationType("create");
+        event.setLocation("Patient/" + i + "/_history/1");
+        return event;
+    }
+
+    private static List<String> locations(int from, int to) {
+        List<String> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            result.add("Patient/" + i + "/_history/1");
+        }
+        return result;
+    }
+
+    private static int index(String location) {
+        return Integer.parseInt(location.split("/")[1]);
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
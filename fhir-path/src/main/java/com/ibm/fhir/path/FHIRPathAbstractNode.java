@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019, 2020
+ * (C) Copyright IBM Corp. 2019, 2021
  * 
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -9,16 +9,26 @@ package com.ibm.fhir.path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.ibm.fhir.model.visitor.Visitable;
+
 public abstract class FHIRPathAbstractNode implements FHIRPathNode {
     protected final String name;
-    protected final String path;
+    protected String path;
     protected final FHIRPathType type;
-    protected final FHIRPathSystemValue value;
-    protected final Collection<FHIRPathNode> children;
+    protected FHIRPathSystemValue value;
+    protected Collection<FHIRPathNode> children;
+
+    // For a node of a lazy tree: the parent and element index, used to compute the path on demand
+    private final FHIRPathAbstractNode parent;
+    private final int index;
+
+    // For a node of a lazy tree: the element or resource whose children are still to be created; null once they have been
+    private volatile Visitable unexpanded;
     
     protected FHIRPathAbstractNode(Builder builder) {
         name = builder.name;
@@ -26,6 +36,9 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
         type = Objects.requireNonNull(builder.type);
         value = builder.value;
         children = Collections.unmodifiableCollection(builder.children);
+        parent = builder.parent;
+        index = builder.index;
+        unexpanded = builder.unexpanded;
     }
     
     @Override
@@ -35,6 +48,9 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
     
     @Override
     public String path() {
+        if (path == null && parent != null) {
+            path = FHIRPathTree.path(parent.path(), name, index);
+        }
         return path;
     }
     
@@ -43,21 +59,49 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
         return type;
     }
     
+    /**
+     * The parent of a node of a lazy tree
+     *
+     * @return
+     *     the parent of this node, or null if this node is the root of a lazy tree or doesn't belong to one
+     */
+    FHIRPathAbstractNode parent() {
+        return parent;
+    }
+    
     @Override
     public boolean hasValue() {
-        return value != null;
+        return getValue() != null;
     }
     
     @Override
     public FHIRPathSystemValue getValue() {
+        expand();
         return value;
     }
     
     @Override
     public Collection<FHIRPathNode> children() {
+        expand();
         return children;
     }
     
+    /**
+     * Create the value and children of a node of a lazy tree, if that hasn't been done yet
+     */
+    private void expand() {
+        if (unexpanded != null) {
+            synchronized (this) {
+                if (unexpanded != null) {
+                    List<FHIRPathNode> expandedChildren = new ArrayList<>(children);
+                    value = FHIRPathTree.expand(this, unexpanded, value, expandedChildren);
+                    children = Collections.unmodifiableCollection(expandedChildren);
+                    unexpanded = null;
+                }
+            }
+        }
+    }
+    
     @Override
     public Collection<FHIRPathNode> descendants() {
         return stream().skip(1).collect(Collectors.toList());
@@ -95,11 +139,27 @@ public abstract class FHIRPathAbstractNode implements FHIRPathNode {
         protected String path;
         protected FHIRPathSystemValue value;
         protected Collection<FHIRPathNode> children = new ArrayList<>();
+
+        // lazy tree
+        private FHIRPathAbstractNode parent;
+        private int index = -1;
+        private Visitable unexpanded;
         
         protected Builder(FHIRPathType type) {
             super();
             this.type = type;
         }
+
+        /**
+         * Make the node a member of a lazy tree, with its path computed on demand from the parent and
+         * its value and children created on demand from the passed element or resource
+         */
+        Builder lazy(FHIRPathAbstractNode parent, int index, Visitable unexpanded) {
+            this.parent = parent;
+            this.index = index;
+            this.unexpanded = unexpanded;
+            return this;
+        }
         
         @Override
         public Builder name(String name) {
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019, 2020
+ * (C) Copyright IBM Corp. 2019, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -80,8 +80,8 @@ public class FHIRPathResourceNode extends FHIRPathAbstractNode {
     public Builder toBuilder() {
         Builder builder = new Builder(type, resource);
         builder.name = name;
-        builder.value = value;
-        builder.children = children;
+        builder.value = getValue();
+        builder.children = children();
         return builder;
     }
     
@@ -1,11 +1,14 @@
 /*
- * (C) Copyright IBM Corp. 2019, 2020
+ * (C) Copyright IBM Corp. 2019, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
 
 package com.ibm.fhir.path;
 
+import static com.ibm.fhir.model.util.ModelSupport.delimit;
+import static com.ibm.fhir.model.util.ModelSupport.isKeyword;
+
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -16,26 +19,48 @@ import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.Element;
 import com.ibm.fhir.model.type.Quantity;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.model.visitor.DefaultVisitor;
 import com.ibm.fhir.model.visitor.PathAwareVisitor;
+import com.ibm.fhir.model.visitor.Visitable;
 
 /**
  * A tree of {@link FHIRPathNode} nodes created from a {@link Resource} or an {@link Element}
+ *
+ * <p>A tree is either built in full up front, or lazily: the nodes of a lazy tree create their children (and
+ * compute their paths) only when they are first needed, so evaluating an expression against a large resource
+ * only creates the nodes the expression navigates to. Both kinds of tree have the same nodes.
  */
 public class FHIRPathTree {
     private final FHIRPathNode root;
+
+    // For a lazy tree, only the nodes found so far, with all the children of each node navigated through
     private final Map<String, FHIRPathNode> pathNodeMap;
 
+    // For a lazy tree, the paths of the nodes whose children have been added to pathNodeMap; null for a full tree
+    private final Set<String> indexedPaths;
+
     private FHIRPathTree(FHIRPathNode root, Map<String, FHIRPathNode> pathNodeMap) {
         this.root = root;
-        this.pathNodeMap = Collections.unmodifiableMap(pathNodeMap);
+        if (pathNodeMap != null) {
+            this.pathNodeMap = Collections.unmodifiableMap(pathNodeMap);
+            this.indexedPaths = null;
+        } else {
+            this.pathNodeMap = new ConcurrentHashMap<>();
+            this.pathNodeMap.put(root.path(), root);
+            this.indexedPaths = ConcurrentHashMap.newKeySet();
+        }
     }
 
     /**
@@ -57,7 +82,46 @@ public class FHIRPathTree {
      *     the node at the location given by the path parameter if exists, otherwise null
      */
     public FHIRPathNode getNode(String path) {
-        return pathNodeMap.get(path);
+        if (path == null) {
+            return null;
+        }
+        FHIRPathNode node = pathNodeMap.get(path);
+        if (node != null || indexedPaths == null) {
+            return node;
+        }
+
+        // Find the closest ancestor found so far, then navigate down one path segment (e.g. "name[0]") at a time
+        int end = path.lastIndexOf('.');
+        while (end != -1 && (node = pathNodeMap.get(path.substring(0, end))) == null) {
+            end = path.lastIndexOf('.', end - 1);
+        }
+        while (node != null && end < path.length()) {
+            index(node);
+            end = path.indexOf('.', end + 1);
+            if (end == -1) {
+                end = path.length();
+            }
+            node = pathNodeMap.get(path.substring(0, end));
+        }
+        return node;
+    }
+
+    /**
+     * Add the children of the node parameter to the nodes of a lazy tree found so far, if that hasn't been done yet
+     *
+     * @param node
+     *     the node
+     */
+    private void index(FHIRPathNode node) {
+        if (!indexedPaths.contains(node.path())) {
+            for (FHIRPathNode child : node.children()) {
+                if (!child.isSystemValue()) {
+                    pathNodeMap.put(child.path(), child);
+                }
+            }
+            // only once the children can be found
+            indexedPaths.add(node.path());
+        }
     }
 
     /**
@@ -73,9 +137,16 @@ public class FHIRPathTree {
             return null;
         }
 
+        if (indexedPaths != null && node instanceof FHIRPathAbstractNode) {
+            FHIRPathAbstractNode parent = ((FHIRPathAbstractNode) node).parent();
+            if (parent != null) {
+                return parent;
+            }
+        }
+
         int index = node.path().lastIndexOf(".");
         if (index != -1) {
-            return pathNodeMap.get(node.path().substring(0, index));
+            return getNode(node.path().substring(0, index));
         }
 
         return null;
@@ -166,6 +237,238 @@ public class FHIRPathTree {
         return new FHIRPathTree(visitor.getRoot(), visitor.getPathNodeMap());
     }
 
+    /**
+     * Static factory method for creating lazy FHIRPathTree instances from a {@link Resource}
+     *
+     * @param resource
+     *     the resource
+     * @return
+     *     a new lazy FHIRPathTree instance
+     */
+    public static FHIRPathTree lazyTree(Resource resource) {
+        Objects.requireNonNull(resource);
+        return lazyTree((Visitable) resource);
+    }
+
+    /**
+     * Static factory method for creating lazy FHIRPathTree instances from an {@link Element}
+     *
+     * @param element
+     *     the element
+     * @return
+     *     a new lazy FHIRPathTree instance
+     */
+    public static FHIRPathTree lazyTree(Element element) {
+        Objects.requireNonNull(element);
+        return lazyTree((Visitable) element);
+    }
+
+    private static FHIRPathTree lazyTree(Visitable visitable) {
+        // named in the same way as Visitable.accept(Visitor) names the root of a full tree
+        String name = ModelSupport.getTypeName(visitable.getClass());
+        return new FHIRPathTree(lazyNode(name, path(null, name, -1), visitable), null);
+    }
+
+    /**
+     * Static factory method for creating a lazy node for a {@link Resource} found at the passed path of an
+     * enclosing tree, without building that tree. The paths of its descendants are relative to the passed path.
+     *
+     * @param name
+     *     the element name of the resource
+     * @param path
+     *     the path of the resource
+     * @param resource
+     *     the resource
+     * @return
+     *     a new lazy FHIRPathNode instance
+     */
+    public static FHIRPathNode lazyNode(String name, String path, Resource resource) {
+        Objects.requireNonNull(resource);
+        return lazyNode(name, path, (Visitable) resource);
+    }
+
+    /**
+     * Static factory method for creating a lazy node for an {@link Element} found at the passed path of an
+     * enclosing tree, without building that tree. The paths of its descendants are relative to the passed path.
+     *
+     * @param name
+     *     the element name
+     * @param path
+     *     the path of the element
+     * @param element
+     *     the element
+     * @return
+     *     a new lazy FHIRPathNode instance
+     */
+    public static FHIRPathNode lazyNode(String name, String path, Element element) {
+        Objects.requireNonNull(element);
+        return lazyNode(name, path, (Visitable) element);
+    }
+
+    private static FHIRPathNode lazyNode(String name, String path, Visitable visitable) {
+        FHIRPathAbstractNode.Builder builder = (visitable instanceof Resource) ?
+                FHIRPathResourceNode.builder((Resource) visitable).name(name) : builder(name, (Element) visitable);
+        return builder.path(path).lazy(null, -1, visitable).build();
+    }
+
+    /**
+     * Create a builder for the node of an element, with its value set if the element is a {@link Quantity}
+     */
+    private static FHIRPathAbstractNode.Builder builder(String name, Element element) {
+        if (element instanceof Quantity) {
+            Quantity quantity = (Quantity) element;
+            FHIRPathQuantityNode.Builder builder = FHIRPathQuantityNode.builder(quantity).name(name);
+            FHIRPathQuantityValue value = FHIRPathQuantityValue.quantityValue(quantity);
+            if (value != null) {
+                builder.value(value);
+            }
+            return builder;
+        }
+        return FHIRPathElementNode.builder(element).name(name);
+    }
+
+    /**
+     * The path of a node, as built by {@link PathAwareVisitor}
+     *
+     * @param parentPath
+     *     the path of the parent node, or null for the root
+     * @param name
+     *     the element name
+     * @param index
+     *     the index of a repeating element, otherwise -1
+     * @return
+     *     the path
+     */
+    static String path(String parentPath, String name, int index) {
+        StringBuilder sb = new StringBuilder();
+        if (parentPath != null) {
+            sb.append(parentPath).append('.');
+        }
+        sb.append(isKeyword(name) ? delimit(name) : name);
+        if (index != -1) {
+            sb.append('[').append(index).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Create the value and children of a node of a lazy tree. The children are themselves lazy, so only one
+     * level of the element or resource is visited.
+     *
+     * @param node
+     *     the node
+     * @param visitable
+     *     the element or resource wrapped by the node
+     * @param value
+     *     the value of the node so far
+     * @param children
+     *     the children of the node so far, updated with the children created
+     * @return
+     *     the value of the node
+     */
+    static FHIRPathSystemValue expand(FHIRPathAbstractNode node, Visitable visitable, FHIRPathSystemValue value, List<FHIRPathNode> children) {
+        ExpandingVisitor visitor = new ExpandingVisitor(node, visitable, value, children);
+        visitable.accept(node.name(), -1, visitor);
+        return visitor.value;
+    }
+
+    /**
+     * Visits the children of a single element or resource, creating the same nodes (and value) as
+     * {@link BuildingVisitor} without descending any further
+     */
+    private static class ExpandingVisitor extends DefaultVisitor {
+        private final FHIRPathAbstractNode node;
+        private final Visitable visitable;
+        private final List<FHIRPathNode> children;
+        private FHIRPathSystemValue value;
+
+        private ExpandingVisitor(FHIRPathAbstractNode node, Visitable visitable, FHIRPathSystemValue value, List<FHIRPathNode> children) {
+            super(false);
+            this.node = node;
+            this.visitable = visitable;
+            this.value = value;
+            this.children = children;
+        }
+
+        private void value(FHIRPathSystemValue value) {
+            // as in FHIRPathAbstractNode.Builder, the latest value replaces the previous one
+            if (this.value != null) {
+                children.removeIf(child -> child == this.value);
+            }
+            this.value = value;
+            children.add(value);
+        }
+
+        @Override
+        public boolean visit(java.lang.String elementName, int elementIndex, Visitable visitable) {
+            return visitable == this.visitable;
+        }
+
+        @Override
+        public void visitStart(java.lang.String elementName, int elementIndex, Element element) {
+            if (element != visitable) {
+                children.add(builder(elementName, element).lazy(node, elementIndex, element).build());
+            }
+        }
+
+        @Override
+        public void visitStart(java.lang.String elementName, int elementIndex, Resource resource) {
+            if (resource != visitable) {
+                children.add(FHIRPathResourceNode.builder(resource).name(elementName).lazy(node, elementIndex, resource).build());
+            }
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, BigDecimal value) {
+            value(FHIRPathDecimalValue.decimalValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, byte[] value) {
+            value(FHIRPathStringValue.stringValue(elementName, Base64.getEncoder().encodeToString(value)));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, java.lang.Boolean value) {
+            value(FHIRPathBooleanValue.booleanValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, java.lang.Integer value) {
+            value(FHIRPathIntegerValue.integerValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, java.lang.String value) {
+            value(FHIRPathStringValue.stringValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, LocalDate value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, LocalTime value) {
+            value(FHIRPathTimeValue.timeValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, Year value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, YearMonth value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+
+        @Override
+        public void visit(java.lang.String elementName, ZonedDateTime value) {
+            value(FHIRPathDateTimeValue.dateTimeValue(elementName, value));
+        }
+    }
+
     private static class BuildingVisitor extends PathAwareVisitor {
         private Stack<FHIRPathNode.Builder> builderStack = new Stack<>();
         private FHIRPathNode root;
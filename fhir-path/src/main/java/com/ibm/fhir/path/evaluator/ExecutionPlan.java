@@ -0,0 +1,236 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.path.evaluator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathParser;
+import com.ibm.fhir.path.FHIRPathParser.ExpressionContext;
+import com.ibm.fhir.path.FHIRPathParser.ParamListContext;
+import com.ibm.fhir.path.function.FHIRPathFunction;
+
+/**
+ * The parts of a compiled FHIRPath expression which don't depend on the evaluation context, worked out once
+ * when the expression is compiled instead of on every evaluation:
+ * <ul>
+ * <li>function invocations, with their name, argument expressions and registry function resolved</li>
+ * <li>member invocations (path navigation steps) and external constants, with their unescaped name</li>
+ * <li>constant sub-expressions, e.g. literals or "1 + 2", folded into their result</li>
+ * </ul>
+ *
+ * <p>A plan is immutable once created, so it can be shared by all the threads evaluating the expression.
+ */
+final class ExecutionPlan {
+    // functions implemented by the evaluator itself rather than the function registry
+    private static final Set<String> BUILT_IN_FUNCTIONS = new HashSet<>(Arrays.asList(
+        "all", "as", "exists", "iif", "is", "ofType", "select", "trace", "where"));
+
+    /**
+     * A function invocation step
+     */
+    static final class FunctionStep {
+        private final String name;
+        private final List<ExpressionContext> arguments;
+        private final FHIRPathFunction function;
+
+        private FunctionStep(String name, List<ExpressionContext> arguments, FHIRPathFunction function) {
+            this.name = name;
+            this.arguments = arguments;
+            this.function = function;
+        }
+
+        /**
+         * @return the function name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the (unevaluated) argument expressions
+         */
+        List<ExpressionContext> getArguments() {
+            return arguments;
+        }
+
+        /**
+         * @return the registry function, or null if the function is built into the evaluator or wasn't registered
+         *     when the expression was compiled
+         */
+        FHIRPathFunction getFunction() {
+            return function;
+        }
+    }
+
+    private final Map<ParseTree, FunctionStep> functions;
+    private final Map<ParseTree, String> names;
+    private final Map<ParseTree, Collection<FHIRPathNode>> constants;
+
+    private ExecutionPlan(Map<ParseTree, FunctionStep> functions, Map<ParseTree, String> names, Map<ParseTree, Collection<FHIRPathNode>> constants) {
+        this.functions = functions;
+        this.names = names;
+        this.constants = constants;
+    }
+
+    /**
+     * Create the execution plan of the passed expression
+     *
+     * @param expressionContext
+     *     the root of the compiled expression
+     * @param folder
+     *     evaluates a constant sub-expression; may throw if the sub-expression can't be evaluated, in which
+     *     case it is left to be evaluated (and fail) at evaluation time
+     * @return
+     *     the execution plan for the expression
+     */
+    static ExecutionPlan of(ExpressionContext expressionContext, Function<ParseTree, Collection<FHIRPathNode>> folder) {
+        Map<ParseTree, FunctionStep> functions = new IdentityHashMap<>();
+        Map<ParseTree, String> names = new IdentityHashMap<>();
+        Set<ParseTree> constantTrees = Collections.newSetFromMap(new IdentityHashMap<>());
+        analyze(expressionContext, functions, names, constantTrees);
+
+        Map<ParseTree, Collection<FHIRPathNode>> constants = new IdentityHashMap<>();
+        fold(expressionContext, constantTrees, folder, constants);
+
+        return new ExecutionPlan(functions.isEmpty() ? Collections.emptyMap() : functions,
+            names.isEmpty() ? Collections.emptyMap() : names,
+            constants.isEmpty() ? Collections.emptyMap() : constants);
+    }
+
+    /**
+     * Get the function invocation step of the passed function
+     *
+     * @param ctx
+     *     a function of the expression this plan was created for
+     * @return
+     *     the function invocation step
+     */
+    FunctionStep getFunctionStep(FHIRPathParser.FunctionContext ctx) {
+        return functions.get(ctx);
+    }
+
+    /**
+     * Get the unescaped name of the passed member invocation or external constant
+     *
+     * @param tree
+     *     a member invocation or external constant of the expression this plan was created for
+     * @return
+     *     the name
+     */
+    String getName(ParseTree tree) {
+        return names.get(tree);
+    }
+
+    /**
+     * Get the folded result of the passed sub-expression
+     *
+     * @param tree
+     *     a sub-expression of the expression this plan was created for
+     * @return
+     *     the result of the sub-expression, or null if it isn't constant
+     */
+    Collection<FHIRPathNode> getConstant(ParseTree tree) {
+        return constants.get(tree);
+    }
+
+    /**
+     * Add the steps of the passed tree to functions and names, and its constant sub-expressions to constantTrees
+     *
+     * @return
+     *     true if the passed tree is constant
+     */
+    private static boolean analyze(ParseTree tree, Map<ParseTree, FunctionStep> functions, Map<ParseTree, String> names, Set<ParseTree> constantTrees) {
+        boolean constant = true;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            constant &= analyze(tree.getChild(i), functions, names, constantTrees);
+        }
+
+        if (tree instanceof FHIRPathParser.FunctionContext) {
+            FHIRPathParser.FunctionContext ctx = (FHIRPathParser.FunctionContext) tree;
+            String name = unescape(ctx.identifier().getText());
+            ParamListContext paramList = ctx.paramList();
+            List<ExpressionContext> arguments = (paramList != null) ?
+                    Collections.unmodifiableList(paramList.expression()) : Collections.emptyList();
+            FHIRPathFunction function = BUILT_IN_FUNCTIONS.contains(name) ? null : FHIRPathFunction.registry().getFunction(name);
+            functions.put(tree, new FunctionStep(name, arguments, function));
+        } else if (tree instanceof FHIRPathParser.MemberInvocationContext) {
+            names.put(tree, unescape(((FHIRPathParser.MemberInvocationContext) tree).identifier().getText()));
+        } else if (tree instanceof FHIRPathParser.ExternalConstantContext) {
+            FHIRPathParser.ExternalConstantContext ctx = (FHIRPathParser.ExternalConstantContext) tree;
+            if (ctx.identifier() != null) {
+                names.put(tree, unescape(ctx.identifier().getText()));
+            }
+        }
+
+        if (tree instanceof FHIRPathParser.LiteralTermContext) {
+            constant = true;
+        } else if (!isFoldable(tree)) {
+            constant = false;
+        }
+
+        if (constant) {
+            constantTrees.add(tree);
+        }
+        return constant;
+    }
+
+    /**
+     * Expressions whose result only depends on their operands
+     */
+    private static boolean isFoldable(ParseTree tree) {
+        return tree instanceof FHIRPathParser.TermExpressionContext ||
+                tree instanceof FHIRPathParser.ParenthesizedTermContext ||
+                tree instanceof FHIRPathParser.IndexerExpressionContext ||
+                tree instanceof FHIRPathParser.PolarityExpressionContext ||
+                tree instanceof FHIRPathParser.MultiplicativeExpressionContext ||
+                tree instanceof FHIRPathParser.AdditiveExpressionContext ||
+                tree instanceof FHIRPathParser.UnionExpressionContext ||
+                tree instanceof FHIRPathParser.InequalityExpressionContext ||
+                tree instanceof FHIRPathParser.EqualityExpressionContext ||
+                tree instanceof FHIRPathParser.MembershipExpressionContext ||
+                tree instanceof FHIRPathParser.AndExpressionContext ||
+                tree instanceof FHIRPathParser.OrExpressionContext ||
+                tree instanceof FHIRPathParser.ImpliesExpressionContext ||
+                // operator tokens
+                tree.getChildCount() == 0;
+    }
+
+    /**
+     * Evaluate the outermost constant sub-expressions of the passed tree
+     */
+    private static void fold(ParseTree tree, Set<ParseTree> constantTrees, Function<ParseTree, Collection<FHIRPathNode>> folder,
+            Map<ParseTree, Collection<FHIRPathNode>> constants) {
+        if (constantTrees.contains(tree) && tree.getChildCount() > 0) {
+            try {
+                // a list, as the evaluator compares results with equals
+                constants.put(tree, Collections.unmodifiableList(new ArrayList<>(folder.apply(tree))));
+                return;
+            } catch (RuntimeException e) {
+                // fold whatever can be folded underneath
+            }
+        }
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            fold(tree.getChild(i), constantTrees, folder, constants);
+        }
+    }
+
+    private static String unescape(String identifier) {
+        return identifier.startsWith("`") ? identifier.substring(1, identifier.length() - 1) : identifier;
+    }
+}
@@ -6,6 +6,7 @@
 
 package com.ibm.fhir.path.evaluator;
 
+import static com.ibm.fhir.cache.util.CacheSupport.createCache;
 import static com.ibm.fhir.cache.util.CacheSupport.createCacheAsMap;
 import static com.ibm.fhir.path.FHIRPathDateTimeValue.dateTimeValue;
 import static com.ibm.fhir.path.FHIRPathDateValue.dateValue;
@@ -47,6 +48,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -56,10 +58,12 @@ import java.util.Set;
 import java.util.Stack;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import org.antlr.v4.runtime.tree.ParseTree;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ibm.fhir.cache.CacheRegistry;
+import com.ibm.fhir.cache.ManagedCache;
 import com.ibm.fhir.model.annotation.Constraint;
 import com.ibm.fhir.model.resource.OperationOutcome.Issue;
 import com.ibm.fhir.model.resource.Resource;
@@ -70,7 +74,6 @@ import com.ibm.fhir.path.FHIRPathBooleanValue;
 import com.ibm.fhir.path.FHIRPathNode;
 import com.ibm.fhir.path.FHIRPathParser;
 import com.ibm.fhir.path.FHIRPathParser.ExpressionContext;
-import com.ibm.fhir.path.FHIRPathParser.ParamListContext;
 import com.ibm.fhir.path.FHIRPathQuantityNode;
 import com.ibm.fhir.path.FHIRPathQuantityValue;
 import com.ibm.fhir.path.FHIRPathStringValue;
@@ -93,12 +96,18 @@ public class FHIRPathEvaluator {
     public static final Collection<FHIRPathNode> SINGLETON_FALSE = singleton(FHIRPathBooleanValue.FALSE);
 
     private static final int EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES = 512;
-    private static final Map<String, ExpressionContext> EXPRESSION_CONTEXT_CACHE = createCacheAsMap(EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES);
+    private static final Map<String, CompiledExpression> EXPRESSION_CONTEXT_CACHE = createExpressionContextCache();
 
     private final EvaluatingVisitor visitor = new EvaluatingVisitor();
 
     private FHIRPathEvaluator() { }
 
+    private static Map<String, CompiledExpression> createExpressionContextCache() {
+        Cache<String, CompiledExpression> cache = createCache(EXPRESSION_CONTEXT_CACHE_MAX_ENTRIES, true);
+        CacheRegistry.registerShared("fhirpath.expressions", ManagedCache.of(cache));
+        return cache.asMap();
+    }
+
     /**
      * Get the EvaluationContext associated with this FHIRPathEvaluator
      *
@@ -248,7 +257,7 @@ public class FHIRPathEvaluator {
         try {
             evaluationContext.setExternalConstant("context", initialContext);
             setDateTimeConstants(evaluationContext);
-            return visitor.evaluate(evaluationContext, getExpressionContext(expr), initialContext);
+            return visitor.evaluate(evaluationContext, getCompiledExpression(expr), initialContext);
         } catch (Exception e) {
             throw new FHIRPathException("An error occurred while evaluating expression: " + expr, e);
         }
@@ -261,8 +270,27 @@ public class FHIRPathEvaluator {
         evaluationContext.setExternalConstant("timeOfDay", singleton(timeValue(LocalTime.from(now))));
     }
 
-    private static ExpressionContext getExpressionContext(String expr) {
-        return EXPRESSION_CONTEXT_CACHE.computeIfAbsent(Objects.requireNonNull(expr), FHIRPathUtil::compile);
+    private static CompiledExpression getCompiledExpression(String expr) {
+        return EXPRESSION_CONTEXT_CACHE.computeIfAbsent(Objects.requireNonNull(expr), CompiledExpression::compile);
+    }
+
+    /**
+     * A parsed expression along with its execution and memoization plans, shared by all evaluators
+     */
+    private static final class CompiledExpression {
+        private final ExpressionContext expressionContext;
+        private final ExecutionPlan executionPlan;
+        private final MemoizationPlan memoizationPlan;
+
+        private CompiledExpression(ExpressionContext expressionContext) {
+            this.expressionContext = expressionContext;
+            this.executionPlan = ExecutionPlan.of(expressionContext, tree -> new EvaluatingVisitor().fold(tree));
+            this.memoizationPlan = MemoizationPlan.of(expressionContext);
+        }
+
+        private static CompiledExpression compile(String expr) {
+            return new CompiledExpression(FHIRPathUtil.compile(expr));
+        }
     }
 
     /**
@@ -281,25 +309,74 @@ public class FHIRPathEvaluator {
         private static final int IDENTIFIER_CACHE_MAX_ENTRIES = 2048;
         private static final Map<String, Collection<FHIRPathNode>> IDENTIFIER_CACHE = createCacheAsMap(IDENTIFIER_CACHE_MAX_ENTRIES);
 
-        private static final int LITERAL_CACHE_MAX_ENTRIES = 128;
-        private static final Map<String, Collection<FHIRPathNode>> LITERAL_CACHE = createCacheAsMap(LITERAL_CACHE_MAX_ENTRIES);
-
         private EvaluationContext evaluationContext;
         private final Stack<Collection<FHIRPathNode>> contextStack = new Stack<>();
 
+        // Null while folding the constant sub-expressions of an expression being compiled
+        private ExecutionPlan executionPlan;
+
+        // Set while evaluating with a memoizing evaluation context
+        private MemoizationPlan memoizationPlan;
+
         private int indentLevel = 0;
 
         private EvaluatingVisitor() { }
 
-        private Collection<FHIRPathNode> evaluate(EvaluationContext evaluationContext, ExpressionContext expressionContext, Collection<FHIRPathNode> initialContext) {
+        private Collection<FHIRPathNode> evaluate(EvaluationContext evaluationContext, CompiledExpression compiledExpression, Collection<FHIRPathNode> initialContext) {
             reset();
             this.evaluationContext = evaluationContext;
-            contextStack.push(initialContext);
-            Collection<FHIRPathNode> result = expressionContext.accept(this);
-            contextStack.pop();
+            this.executionPlan = compiledExpression.executionPlan;
+            this.memoizationPlan = evaluationContext.isMemoizing() ? compiledExpression.memoizationPlan : null;
+            ExpressionContext expressionContext = compiledExpression.expressionContext;
+            Collection<FHIRPathNode> result = executionPlan.getConstant(expressionContext);
+            if (result == null) {
+                contextStack.push(initialContext);
+                result = expressionContext.accept(this);
+                contextStack.pop();
+            }
             return Collections.unmodifiableCollection(result);
         }
 
+        /**
+         * Evaluate a constant sub-expression of an expression being compiled
+         */
+        private Collection<FHIRPathNode> fold(ParseTree tree) {
+            reset();
+            this.evaluationContext = new EvaluationContext();
+            contextStack.push(empty());
+            Collection<FHIRPathNode> result = tree.accept(this);
+            contextStack.pop();
+            return result;
+        }
+
+        /**
+         * Use the folded result of a constant sub-expression, or reuse the result of a memoizable sub-expression
+         * previously evaluated against the same node
+         */
+        @Override
+        public Collection<FHIRPathNode> visit(ParseTree tree) {
+            if (executionPlan != null) {
+                Collection<FHIRPathNode> constant = executionPlan.getConstant(tree);
+                if (constant != null) {
+                    return constant;
+                }
+            }
+            if (memoizationPlan != null) {
+                String key = memoizationPlan.getKey(tree);
+                Collection<FHIRPathNode> currentContext = getCurrentContext();
+                if (key != null && isSingleton(currentContext)) {
+                    FHIRPathNode node = getSingleton(currentContext);
+                    Collection<FHIRPathNode> result = evaluationContext.getMemoizedResult(node, key);
+                    if (result == null) {
+                        result = tree.accept(this);
+                        evaluationContext.memoizeResult(node, key, result);
+                    }
+                    return result;
+                }
+            }
+            return tree.accept(this);
+        }
+
         private EvaluationContext getEvaluationContext() {
             return evaluationContext;
         }
@@ -1033,7 +1110,7 @@ public class FHIRPathEvaluator {
         public Collection<FHIRPathNode> visitLiteralTerm(FHIRPathParser.LiteralTermContext ctx) {
             debug(ctx);
             indentLevel++;
-            Collection<FHIRPathNode> result = LITERAL_CACHE.computeIfAbsent(ctx.getText(), t -> visitChildren(ctx));
+            Collection<FHIRPathNode> result = visitChildren(ctx);
             indentLevel--;
             return result;
         }
@@ -1118,7 +1195,10 @@ public class FHIRPathEvaluator {
         public Collection<FHIRPathNode> visitExternalConstant(FHIRPathParser.ExternalConstantContext ctx) {
             debug(ctx);
             indentLevel++;
-            String identifier = getString(visit(ctx.identifier()));
+            String identifier = (executionPlan != null) ? executionPlan.getName(ctx) : null;
+            if (identifier == null) {
+                identifier = getString(visit(ctx.identifier()));
+            }
             indentLevel--;
             return evaluationContext.getExternalConstant(identifier);
         }
@@ -1129,7 +1209,7 @@ public class FHIRPathEvaluator {
             indentLevel++;
 
             Collection<FHIRPathNode> currentContext = getCurrentContext();
-            String identifier = getString(visit(ctx.identifier()));
+            String identifier = executionPlan.getName(ctx);
 
             if (isSingleton(currentContext)) {
                 FHIRPathNode node = getSingleton(currentContext);
@@ -1139,10 +1219,14 @@ public class FHIRPathEvaluator {
                 }
             }
 
-            Collection<FHIRPathNode> result = currentContext.stream()
-                    .flatMap(node -> node.children().stream())
-                    .filter(node -> identifier.equals(node.name()))
-                    .collect(Collectors.toList());
+            Collection<FHIRPathNode> result = new ArrayList<>();
+            for (FHIRPathNode node : currentContext) {
+                for (FHIRPathNode child : node.children()) {
+                    if (identifier.equals(child.name())) {
+                        result.add(child);
+                    }
+                }
+            }
 
             indentLevel--;
 
@@ -1189,13 +1273,9 @@ public class FHIRPathEvaluator {
 
             Collection<FHIRPathNode> result = empty();
 
-            String functionName = getString(visit(ctx.identifier()));
-
-            List<ExpressionContext> arguments = new ArrayList<ExpressionContext>();
-            ParamListContext paramList = ctx.paramList();
-            if (paramList != null) {
-                arguments.addAll(ctx.paramList().expression());
-            }
+            ExecutionPlan.FunctionStep step = executionPlan.getFunctionStep(ctx);
+            String functionName = step.getName();
+            List<ExpressionContext> arguments = step.getArguments();
 
             Collection<FHIRPathNode> currentContext = getCurrentContext();
 
@@ -1228,17 +1308,23 @@ public class FHIRPathEvaluator {
                 result = where(arguments);
                 break;
             default:
-                FHIRPathFunction function = FHIRPathFunction.registry().getFunction(functionName);
+                FHIRPathFunction function = step.getFunction();
+                if (function == null) {
+                    // registered after the expression was compiled
+                    function = FHIRPathFunction.registry().getFunction(functionName);
+                }
                 if (function == null) {
                     throw new IllegalArgumentException("Function: '" + functionName + "' not found");
                 }
                 if (arguments.size() < function.getMinArity() || arguments.size() > function.getMaxArity()) {
                     throw unexpectedNumberOfArguments(arguments.size(), functionName);
                 }
-                result = function.apply(evaluationContext, currentContext, arguments.stream()
-                    // evaluate arguments: ExpressionContext -> Collection<FHIRPathNode>
-                    .map(expressionContext -> visit(expressionContext))
-                    .collect(Collectors.toList()));
+                // evaluate arguments: ExpressionContext -> Collection<FHIRPathNode>
+                List<Collection<FHIRPathNode>> evaluatedArguments = new ArrayList<>(arguments.size());
+                for (ExpressionContext argument : arguments) {
+                    evaluatedArguments.add(visit(argument));
+                }
+                result = function.apply(evaluationContext, currentContext, evaluatedArguments);
                 break;
             }
 
@@ -1353,6 +1439,9 @@ public class FHIRPathEvaluator {
         private Constraint constraint;
         private final List<Issue> issues = new ArrayList<>();
 
+        // Results of memoizable sub-expressions by node (identity) and sub-expression; null when not memoizing
+        private Map<FHIRPathNode, Map<String, Collection<FHIRPathNode>>> memo;
+
         /**
          * Create an empty evaluation context, evaluating stand-alone expressions
          */
@@ -1368,7 +1457,7 @@ public class FHIRPathEvaluator {
          *     the resource
          */
         public EvaluationContext(Resource resource) {
-            this(FHIRPathTree.tree(resource));
+            this(FHIRPathTree.lazyTree(resource));
             externalConstantMap.put("rootResource", singleton(tree.getRoot()));
             externalConstantMap.put("resource", singleton(tree.getRoot()));
         }
@@ -1380,7 +1469,7 @@ public class FHIRPathEvaluator {
          *     the element
          */
         public EvaluationContext(Element element) {
-            this(FHIRPathTree.tree(element));
+            this(FHIRPathTree.lazyTree(element));
         }
 
         private EvaluationContext(FHIRPathTree tree) {
@@ -1541,5 +1630,44 @@ public class FHIRPathEvaluator {
         public boolean hasIssues() {
             return !issues.isEmpty();
         }
+
+        /**
+         * Enable or disable memoization of sub-expression results
+         *
+         * <p>While enabled, the result of each side-effect free path or function invocation evaluated against a node
+         * is kept, and reused when the same sub-expression is evaluated against the same node again, even as part of
+         * a different expression. This speeds up the evaluation of many expressions against the same tree, e.g. the
+         * constraints of a resource and its profiles. The tree must not change while memoization is enabled.
+         * Disabling memoization discards the results kept so far.
+         *
+         * @param memoizing
+         *     true to enable memoization, false to disable it
+         */
+        public void setMemoizing(boolean memoizing) {
+            if (!memoizing) {
+                memo = null;
+            } else if (memo == null) {
+                memo = new IdentityHashMap<>();
+            }
+        }
+
+        /**
+         * Indicates whether this evaluation context memoizes sub-expression results
+         *
+         * @return
+         *     true if this evaluation context memoizes sub-expression results, otherwise false
+         */
+        public boolean isMemoizing() {
+            return memo != null;
+        }
+
+        private Collection<FHIRPathNode> getMemoizedResult(FHIRPathNode node, String key) {
+            Map<String, Collection<FHIRPathNode>> results = memo.get(node);
+            return results != null ? results.get(key) : null;
+        }
+
+        private void memoizeResult(FHIRPathNode node, String key, Collection<FHIRPathNode> result) {
+            memo.computeIfAbsent(node, k -> new HashMap<>()).put(key, result);
+        }
     }
 }
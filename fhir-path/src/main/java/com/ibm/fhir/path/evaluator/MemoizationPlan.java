@@ -0,0 +1,144 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.path.evaluator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import com.ibm.fhir.path.FHIRPathParser;
+
+/**
+ * Identifies the sub-expressions of a compiled FHIRPath expression whose result depends only on the
+ * node they are evaluated against, and assigns each one a key which is the same for identical
+ * sub-expressions of different expressions. The evaluator can then reuse the result of a sub-expression
+ * like "extension.exists()" or "hasValue()" already evaluated against the same node by another expression.
+ *
+ * <p>A sub-expression qualifies if it is a path (invocation) expression or a function invocation which doesn't
+ * reference external constants, $index or $total, and only calls functions whose result depends solely on their
+ * input and arguments (no terminology, resolution, profile or date/time functions).
+ */
+final class MemoizationPlan {
+    private static final Set<String> MEMOIZABLE_FUNCTIONS = new HashSet<>(Arrays.asList(
+        // built into the evaluator
+        "all", "as", "exists", "iif", "is", "ofType", "select", "where",
+        // from the function registry
+        "allFalse", "allTrue", "anyFalse", "anyTrue", "children", "combine", "contains",
+        "convertsToBoolean", "convertsToDate", "convertsToDateTime", "convertsToDecimal", "convertsToInteger",
+        "convertsToQuantity", "convertsToString", "convertsToTime", "count", "descendants", "distinct", "empty",
+        "endsWith", "exclude", "extension", "first", "getValue", "hasValue", "indexOf", "intersect", "isDistinct",
+        "last", "length", "lower", "matches", "not", "replace", "replaceMatches", "single", "skip", "startsWith",
+        "subsetOf", "substring", "supersetOf", "tail", "take", "toBoolean", "toChars", "toDate", "toDateTime",
+        "toDecimal", "toInteger", "toQuantity", "toString", "toTime", "type", "union", "upper"));
+
+    private final Map<ParseTree, String> keys;
+
+    private MemoizationPlan(Map<ParseTree, String> keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Analyze the passed expression
+     *
+     * @param expressionContext
+     *     the root of the compiled expression
+     * @return
+     *     the memoization plan for the expression
+     */
+    static MemoizationPlan of(FHIRPathParser.ExpressionContext expressionContext) {
+        Map<ParseTree, String> keys = new IdentityHashMap<>();
+        analyze(expressionContext, keys);
+        return new MemoizationPlan(keys.isEmpty() ? Collections.emptyMap() : keys);
+    }
+
+    /**
+     * Get the memo key of the passed sub-expression
+     *
+     * @param tree
+     *     a sub-expression of the expression this plan was created for
+     * @return
+     *     the memo key, or null if the result of the sub-expression can't be memoized
+     */
+    String getKey(ParseTree tree) {
+        return keys.get(tree);
+    }
+
+    /**
+     * Add the memoizable sub-expressions of the passed tree to keys
+     *
+     * @return
+     *     true if the passed tree doesn't reference anything other than its input and arguments
+     */
+    private static boolean analyze(ParseTree tree, Map<ParseTree, String> keys) {
+        boolean pure = true;
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            // analyze every child so that the pure parts of impure expressions are found as well
+            pure &= analyze(tree.getChild(i), keys);
+        }
+
+        if (tree instanceof FHIRPathParser.ExternalConstantContext ||
+                tree instanceof FHIRPathParser.IndexInvocationContext ||
+                tree instanceof FHIRPathParser.TotalInvocationContext) {
+            return false;
+        }
+
+        if (tree instanceof FHIRPathParser.FunctionContext) {
+            String functionName = ((FHIRPathParser.FunctionContext) tree).identifier().getText();
+            return pure && MEMOIZABLE_FUNCTIONS.contains(functionName);
+        }
+
+        if (pure && isCandidate(tree)) {
+            keys.put(tree, key(tree));
+        }
+
+        return pure;
+    }
+
+    /**
+     * Paths and function invocations; anything simpler isn't worth a memo lookup
+     */
+    private static boolean isCandidate(ParseTree tree) {
+        if (tree instanceof FHIRPathParser.InvocationExpressionContext) {
+            return true;
+        }
+        if (tree instanceof FHIRPathParser.TermExpressionContext) {
+            ParseTree term = tree.getChild(0);
+            return term instanceof FHIRPathParser.InvocationTermContext &&
+                    term.getChild(0) instanceof FHIRPathParser.FunctionInvocationContext;
+        }
+        return false;
+    }
+
+    /**
+     * The tokens of the sub-expression separated by spaces. Unlike getText(), this keeps
+     * "a or b" distinct from "aorb".
+     */
+    private static String key(ParseTree tree) {
+        StringBuilder sb = new StringBuilder();
+        appendTokens(tree, sb);
+        return sb.toString();
+    }
+
+    private static void appendTokens(ParseTree tree, StringBuilder sb) {
+        if (tree instanceof TerminalNode) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(tree.getText());
+        } else {
+            for (int i = 0; i < tree.getChildCount(); i++) {
+                appendTokens(tree.getChild(i), sb);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.path.test;
+
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_FALSE;
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_TRUE;
+import static com.ibm.fhir.path.util.FHIRPathUtil.getInteger;
+import static com.ibm.fhir.path.util.FHIRPathUtil.singleton;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathStringValue;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.exception.FHIRPathException;
+import com.ibm.fhir.path.function.FHIRPathAbstractFunction;
+import com.ibm.fhir.path.function.FHIRPathFunction;
+
+public class FHIRPathExecutionPlanTest {
+    private static final Patient patient = readPatient();
+
+    @Test
+    public void testConstantExpressions() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        assertEquals(getInteger(evaluator.evaluate("1 + 2 * 3")), Integer.valueOf(7));
+        assertEquals(getInteger(evaluator.evaluate("-(2 + 3)")), Integer.valueOf(-5));
+        assertEquals(evaluator.evaluate("(1 | 2 | 3)[1] = 2"), SINGLETON_TRUE);
+        assertEquals(evaluator.evaluate("@2020-01-01 < @2021-01-01"), SINGLETON_TRUE);
+        // evaluating the same expression again uses the folded result
+        assertEquals(evaluator.evaluate("'a' + 'b' = 'ab'"), SINGLETON_TRUE);
+        assertEquals(evaluator.evaluate("'a' + 'b' = 'ab'"), SINGLETON_TRUE);
+    }
+
+    @Test
+    public void testConstantsWithinPaths() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        assertEquals(evaluator.evaluate(patient, "Patient.birthDate = @1974-12-25"), SINGLETON_TRUE);
+        assertEquals(evaluator.evaluate(patient, "Patient.name.given.count() > 1 + 1"), SINGLETON_TRUE);
+        assertEquals(evaluator.evaluate(patient, "Patient.name.where(use = 'official' and ('a' = 'b')).exists()"), SINGLETON_FALSE);
+    }
+
+    @Test
+    public void testUnknownFunction() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        for (int i = 0; i < 2; i++) {
+            try {
+                evaluator.evaluate(patient, "Patient.name.notAFunction()");
+                fail();
+            } catch (FHIRPathException e) {
+                assertTrue(e.getCause().getMessage().contains("notAFunction"));
+            }
+        }
+    }
+
+    @Test
+    public void testFunctionRegisteredAfterCompile() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        try {
+            evaluator.evaluate(patient, "Patient.registeredLater()");
+            fail();
+        } catch (FHIRPathException e) {
+            // expected
+        }
+        FHIRPathFunction.registry().register(new FHIRPathAbstractFunction() {
+            @Override
+            public String getName() {
+                return "registeredLater";
+            }
+
+            @Override
+            public int getMinArity() {
+                return 0;
+            }
+
+            @Override
+            public int getMaxArity() {
+                return 0;
+            }
+
+            @Override
+            public Collection<FHIRPathNode> apply(EvaluationContext evaluationContext, Collection<FHIRPathNode> context, List<Collection<FHIRPathNode>> arguments) {
+                return singleton(FHIRPathStringValue.stringValue("registered"));
+            }
+        });
+        assertEquals(evaluator.evaluate(patient, "Patient.registeredLater()"), singleton(FHIRPathStringValue.stringValue("registered")));
+    }
+
+    @Test
+    public void testConcurrentEvaluation() throws Exception {
+        String expr = "Patient.name.where(use = 'official').given.count() + 1";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Collection<FHIRPathNode>>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                Callable<Collection<FHIRPathNode>> task = () -> FHIRPathEvaluator.evaluator().evaluate(patient, expr);
+                futures.add(executor.submit(task));
+            }
+            Collection<FHIRPathNode> expected = FHIRPathEvaluator.evaluator().evaluate(patient, expr);
+            for (Future<Collection<FHIRPathNode>> future : futures) {
+                assertEquals(future.get(), expected);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Patient readPatient() {
+        try (Reader reader = ExamplesUtil.resourceReader("json/spec/patient-example.json")) {
+            return FHIRParser.parser(Format.JSON).parse(reader);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.path.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Bundle;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathTree;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+
+public class FHIRPathLazyTreeTest {
+    private static final String[] EXAMPLES = {
+        "json/spec/patient-example.json",
+        "json/spec/observation-example-bloodpressure.json",
+        "json/spec/bundle-transaction.json",
+        "json/spec/questionnaireresponse-example.json"
+    };
+
+    @Test
+    public void testSameNodes() throws Exception {
+        for (String example : EXAMPLES) {
+            Resource resource = readResource(example);
+            FHIRPathTree tree = FHIRPathTree.tree(resource);
+            FHIRPathTree lazyTree = FHIRPathTree.lazyTree(resource);
+            assertSameNodes(lazyTree.getRoot(), tree.getRoot());
+        }
+    }
+
+    @Test
+    public void testGetNode() throws Exception {
+        for (String example : EXAMPLES) {
+            Resource resource = readResource(example);
+            FHIRPathTree tree = FHIRPathTree.tree(resource);
+            FHIRPathTree lazyTree = FHIRPathTree.lazyTree(resource);
+            for (FHIRPathNode node : descendantsAndSelf(tree.getRoot())) {
+                if (node.isSystemValue()) {
+                    continue;
+                }
+                FHIRPathNode lazyNode = lazyTree.getNode(node.path());
+                assertNotNull(lazyNode, node.path());
+                assertEquals(lazyNode.path(), node.path());
+                assertEquals(lazyNode.name(), node.name());
+
+                FHIRPathNode parent = tree.getParent(node);
+                FHIRPathNode lazyParent = lazyTree.getParent(lazyNode);
+                if (parent == null) {
+                    assertNull(lazyParent);
+                } else {
+                    assertEquals(lazyParent.path(), parent.path());
+                }
+            }
+            assertNull(lazyTree.getNode("Unknown.id"));
+            assertNull(lazyTree.getNode(lazyTree.getRoot().path() + ".unknown"));
+            assertNull(lazyTree.getNode(lazyTree.getRoot().path() + ".meta[5]"));
+        }
+    }
+
+    @Test
+    public void testParentsOfLargeBundle() throws Exception {
+        Bundle.Builder builder = Bundle.builder().type(BundleType.COLLECTION);
+        for (int i = 0; i < 100; i++) {
+            for (String example : EXAMPLES) {
+                builder.entry(Bundle.Entry.builder().resource(readResource(example)).build());
+            }
+        }
+        Bundle bundle = builder.build();
+        FHIRPathTree tree = FHIRPathTree.tree(bundle);
+        FHIRPathTree lazyTree = FHIRPathTree.lazyTree(bundle);
+
+        // walking the lazy tree down from its root, as an expression does
+        List<FHIRPathNode> lazyNodes = descendantsAndSelf(lazyTree.getRoot());
+        List<FHIRPathNode> nodes = descendantsAndSelf(tree.getRoot());
+        assertEquals(lazyNodes.size(), nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            FHIRPathNode node = nodes.get(i);
+            if (node.isSystemValue()) {
+                continue;
+            }
+            FHIRPathNode parent = tree.getParent(node);
+            FHIRPathNode lazyParent = lazyTree.getParent(lazyNodes.get(i));
+            if (parent == null) {
+                assertNull(lazyParent);
+            } else {
+                assertEquals(lazyParent.path(), parent.path());
+                assertSame(lazyParent, lazyTree.getNode(parent.path()));
+            }
+        }
+
+        // and looking nodes up by path in a new lazy tree
+        FHIRPathTree otherLazyTree = FHIRPathTree.lazyTree(bundle);
+        for (FHIRPathNode node : nodes) {
+            if (node.isSystemValue()) {
+                continue;
+            }
+            FHIRPathNode lazyNode = otherLazyTree.getNode(node.path());
+            assertEquals(lazyNode.path(), node.path());
+            assertSame(otherLazyTree.getNode(node.path()), lazyNode);
+            FHIRPathNode parent = tree.getParent(node);
+            if (parent != null) {
+                assertSame(otherLazyTree.getParent(lazyNode), otherLazyTree.getNode(parent.path()));
+            }
+        }
+    }
+
+    @Test
+    public void testNodesCreatedOnDemand() throws Exception {
+        Patient patient = readResource("json/spec/patient-example.json");
+        FHIRPathTree lazyTree = FHIRPathTree.lazyTree(patient);
+
+        // a child is created once and then reused
+        FHIRPathNode name = lazyTree.getNode("Patient.name[0]");
+        assertSame(lazyTree.getNode("Patient.name[0]"), name);
+        assertSame(lazyTree.getRoot().children().iterator().next(), lazyTree.getRoot().children().iterator().next());
+        assertEquals(name.path(), "Patient.name[0]");
+    }
+
+    @Test
+    public void testEvaluate() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        Observation observation = readResource("json/spec/observation-example-bloodpressure.json");
+        String[] expressions = {
+            "component.value.ofType(Quantity).value",
+            "component.where(code.coding.code = '8480-6').value",
+            "descendants().count()",
+            "subject.reference",
+            "effective.ofType(dateTime) > @2010",
+            "id"
+        };
+        FHIRPathNode root = FHIRPathTree.tree(observation).getRoot();
+        for (String expr : expressions) {
+            Collection<FHIRPathNode> expected = evaluator.evaluate(new EvaluationContext(), expr, root);
+            Collection<FHIRPathNode> actual = evaluator.evaluate(new EvaluationContext(observation), expr);
+            assertEquals(actual.size(), expected.size(), expr);
+            Iterator<FHIRPathNode> it = expected.iterator();
+            for (FHIRPathNode node : actual) {
+                FHIRPathNode expectedNode = it.next();
+                assertEquals(node.path(), expectedNode.path(), expr);
+                assertEquals(node.getValue(), expectedNode.getValue(), expr);
+            }
+        }
+    }
+
+    private static void assertSameNodes(FHIRPathNode lazyNode, FHIRPathNode node) {
+        assertEquals(lazyNode.getClass(), node.getClass());
+        assertEquals(lazyNode.name(), node.name());
+        assertEquals(lazyNode.path(), node.path());
+        assertEquals(lazyNode.type(), node.type());
+        assertEquals(lazyNode.hasValue(), node.hasValue(), node.path());
+        assertEquals(lazyNode.getValue(), node.getValue(), node.path());
+        assertEquals(lazyNode.children().size(), node.children().size(), node.path());
+        Iterator<FHIRPathNode> it = node.children().iterator();
+        for (FHIRPathNode lazyChild : lazyNode.children()) {
+            assertSameNodes(lazyChild, it.next());
+        }
+    }
+
+    private static List<FHIRPathNode> descendantsAndSelf(FHIRPathNode node) {
+        List<FHIRPathNode> nodes = new ArrayList<>();
+        nodes.add(node);
+        for (FHIRPathNode child : node.children()) {
+            nodes.addAll(descendantsAndSelf(child));
+        }
+        return nodes;
+    }
+
+    private static <T extends Resource> T readResource(String path) {
+        try (Reader reader = ExamplesUtil.resourceReader(path)) {
+            return FHIRParser.parser(Format.JSON).parse(reader);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.path.test;
+
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_FALSE;
+import static com.ibm.fhir.path.evaluator.FHIRPathEvaluator.SINGLETON_TRUE;
+import static com.ibm.fhir.path.util.FHIRPathUtil.evaluatesToTrue;
+import static com.ibm.fhir.path.util.FHIRPathUtil.getInteger;
+import static com.ibm.fhir.path.util.FHIRPathUtil.singleton;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.Reader;
+import java.util.Collection;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.examples.ExamplesUtil;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathStringValue;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+
+public class FHIRPathMemoizationTest {
+    private static final Patient patient = readPatient();
+
+    @Test
+    public void testSetMemoizing() throws Exception {
+        EvaluationContext evaluationContext = new EvaluationContext(patient);
+        assertFalse(evaluationContext.isMemoizing());
+        evaluationContext.setMemoizing(true);
+        assertTrue(evaluationContext.isMemoizing());
+        evaluationContext.setMemoizing(false);
+        assertFalse(evaluationContext.isMemoizing());
+    }
+
+    @Test
+    public void testSharedSubExpression() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        EvaluationContext evaluationContext = new EvaluationContext(patient);
+        evaluationContext.setMemoizing(true);
+
+        // the second and third expressions reuse the result of "name.where(use = 'official')"
+        assertEquals(evaluator.evaluate(evaluationContext, "name.where(use = 'official').exists()"), SINGLETON_TRUE);
+        assertEquals(evaluator.evaluate(evaluationContext, "name.where(use = 'official').count() = 1"), SINGLETON_TRUE);
+        assertEquals(evaluator.evaluate(evaluationContext, "name.where(use = 'official').family"),
+            evaluator.evaluate(patient, "name.where(use = 'official').family"));
+    }
+
+    @Test
+    public void testSameSubExpressionOnDifferentNodes() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        EvaluationContext evaluationContext = new EvaluationContext(patient);
+        evaluationContext.setMemoizing(true);
+
+        // "given.exists()" is evaluated against each name, which must not share a result
+        Collection<FHIRPathNode> names = evaluator.evaluate(evaluationContext, "name");
+        int withGiven = 0;
+        for (FHIRPathNode name : names) {
+            if (evaluatesToTrue(evaluator.evaluate(evaluationContext, "given.exists()", name))) {
+                withGiven++;
+            }
+        }
+        assertEquals(getInteger(evaluator.evaluate(evaluationContext, "name.where(given.exists()).count()")), Integer.valueOf(withGiven));
+    }
+
+    @Test
+    public void testExternalConstantNotMemoized() throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        EvaluationContext evaluationContext = new EvaluationContext(patient);
+        evaluationContext.setMemoizing(true);
+
+        evaluationContext.setExternalConstant("family", singleton(FHIRPathStringValue.stringValue("Chalmers")));
+        assertEquals(evaluator.evaluate(evaluationContext, "name.where(family = %family).exists()"), SINGLETON_TRUE);
+
+        evaluationContext.setExternalConstant("family", singleton(FHIRPathStringValue.stringValue("Nobody")));
+        assertEquals(evaluator.evaluate(evaluationContext, "name.where(family = %family).exists()"), SINGLETON_FALSE);
+    }
+
+    private static Patient readPatient() {
+        try (Reader reader = ExamplesUtil.resourceReader("json/spec/patient-example.json")) {
+            return FHIRParser.parser(Format.JSON).parse(reader);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+}
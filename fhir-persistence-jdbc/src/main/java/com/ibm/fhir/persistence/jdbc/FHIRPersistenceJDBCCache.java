@@ -6,6 +6,10 @@
 
 package com.ibm.fhir.persistence.jdbc;
 
+import java.util.Map;
+
+import com.ibm.fhir.database.utils.query.SelectSignature;
+import com.ibm.fhir.persistence.jdbc.cache.ResourceCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.ICommonTokenValuesCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.INameIdCache;
 
@@ -40,6 +44,19 @@ public interface FHIRPersistenceJDBCCache {
      */
     INameIdCache<Integer> getParameterNameCache();
 
+    /**
+     * Getter for the cache of rendered search query SQL, keyed by the signature
+     * of the query. The returned map is safe for concurrent use.
+     * @return
+     */
+    Map<SelectSignature, String> getSearchQueryCache();
+
+    /**
+     * Getter for the cache of parsed resources, keyed by RESOURCE_ID
+     * @return the cache, or null if the resource cache is disabled
+     */
+    ResourceCache getResourceCache();
+
     /**
      * Tell any caches that the transaction on the current thread has just committed
      */
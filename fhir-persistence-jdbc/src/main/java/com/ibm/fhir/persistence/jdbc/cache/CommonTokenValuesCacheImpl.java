@@ -12,6 +12,10 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.ibm.fhir.cache.ManagedCache;
+import com.ibm.fhir.cache.util.CacheSupport;
 import com.ibm.fhir.persistence.jdbc.dao.api.ICommonTokenValuesCache;
 import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceTokenValueRec;
 import com.ibm.fhir.persistence.jdbc.dto.CommonTokenValue;
@@ -19,21 +23,32 @@ import com.ibm.fhir.persistence.jdbc.dto.CommonTokenValue;
 
 /**
  * Implementation of a cache used for lookups of entities related
- * to local and external resource references
+ * to local and external resource references.
+ *
+ * <p>The shared caches are bounded Caffeine caches, so lookups from concurrent
+ * ingestion threads don't serialize on a common monitor. Values are staged in
+ * thread-local maps and only published to the shared caches after the transaction
+ * commits (see {@link #updateSharedMaps()}).
  */
 public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
 
-    // We use LinkedHashMap for the local map because we also need to maintain order
-    // of insertion to make sure we have correct LRU behavior when updating the shared cache
+    // Rough heap cost of a code-system entry (key string, boxed id and cache node)
+    private static final long CODE_SYSTEM_ENTRY_BYTES = 160;
+
+    // Rough heap cost of a token value entry (CommonTokenValue key, boxed id and cache node)
+    private static final long TOKEN_VALUE_ENTRY_BYTES = 200;
+
+    // Values staged by the current thread, which are published to the shared caches
+    // in insertion order after the transaction commits
     private final ThreadLocal<LinkedHashMap<String, Integer>> codeSystems = new ThreadLocal<>();
 
     private final ThreadLocal<LinkedHashMap<CommonTokenValue, Long>> commonTokenValues = new ThreadLocal<>();
 
-    // The lru cache shared at the server level
-    private final LRUCache<String, Integer> codeSystemsCache;
+    // The cache shared at the server level
+    private final Cache<String, Integer> codeSystemsCache;
 
-    // The lru cache shared at the server level
-    private final LRUCache<CommonTokenValue, Long> tokenValuesCache;
+    // The cache shared at the server level
+    private final Cache<CommonTokenValue, Long> tokenValuesCache;
 
 
     /**
@@ -42,22 +57,20 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
      */
     public CommonTokenValuesCacheImpl(int codeSystemCacheSize, int tokenValueCacheSize) {
 
-        // LRU cache for quick lookup of code-systems and token-values
-        codeSystemsCache = new LRUCache<>(codeSystemCacheSize);
-        tokenValuesCache = new LRUCache<>(tokenValueCacheSize);
+        // Size-bounded caches for quick lookup of code-systems and token-values
+        codeSystemsCache = CacheSupport.createCache(codeSystemCacheSize, true);
+        tokenValuesCache = CacheSupport.createCache(tokenValueCacheSize, true);
     }
 
     /**
      * Called after a transaction commit() to transfer all the staged (thread-local) data
-     * over to the shared LRU cache.
+     * over to the shared cache.
      */
     public void updateSharedMaps() {
 
         LinkedHashMap<String,Integer> sysMap = codeSystems.get();
         if (sysMap != null) {
-            synchronized(this.codeSystemsCache) {
-                codeSystemsCache.update(sysMap);
-            }
+            codeSystemsCache.putAll(sysMap);
 
             // clear the thread-local cache
             sysMap.clear();
@@ -65,9 +78,7 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
 
         LinkedHashMap<CommonTokenValue,Long> valMap = commonTokenValues.get();
         if (valMap != null) {
-            synchronized(this.tokenValuesCache) {
-                tokenValuesCache.update(valMap);
-            }
+            tokenValuesCache.putAll(valMap);
 
             // clear the thread-local cache
             valMap.clear();
@@ -89,9 +100,7 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
         }
 
         // See if it's in the shared cache
-        synchronized (this.codeSystemsCache) {
-            result = codeSystemsCache.get(codeSystem);
-        }
+        result = codeSystemsCache.getIfPresent(codeSystem);
 
         if (result != null) {
             // We found it in the shared cache, so update our thread-local
@@ -112,13 +121,11 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
         // See what we have currently in our thread-local cache
         LinkedHashMap<String,Integer> sysMap = codeSystems.get();
 
-        List<String> foundKeys = new ArrayList<>(tokenValues.size()); // for updating LRU
         List<ResourceTokenValueRec> needToFindSystems = new ArrayList<>(tokenValues.size()); // for the ref systems we haven't yet found
         for (ResourceTokenValueRec tv: tokenValues) {
             if (sysMap != null) {
                 Integer id = sysMap.get(tv.getCodeSystemValue());
                 if (id != null) {
-                    foundKeys.add(tv.getCodeSystemValue());
                     tv.setCodeSystemValueId(id);
                 } else {
                     // not found, so add to the cache miss list
@@ -130,21 +137,17 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
             }
         }
 
-        // If we still have keys to find, look them up in the shared cache (which we need to lock first)
-        if (needToFindSystems.size() > 0) {
-            synchronized (this.codeSystemsCache) {
-                for (ResourceTokenValueRec xr: needToFindSystems) {
-                    Integer id = codeSystemsCache.get(xr.getCodeSystemValue());
-                    if (id != null) {
-                        xr.setCodeSystemValueId(id);
-
-                        // Update the local cache with this value
-                        addCodeSystem(xr.getCodeSystemValue(), id);
-                    } else {
-                        // cache miss so add this record to the miss list for further processing
-                        misses.add(xr);
-                    }
-                }
+        // If we still have keys to find, look them up in the shared cache
+        for (ResourceTokenValueRec xr: needToFindSystems) {
+            Integer id = codeSystemsCache.getIfPresent(xr.getCodeSystemValue());
+            if (id != null) {
+                xr.setCodeSystemValueId(id);
+
+                // Update the local cache with this value
+                addCodeSystem(xr.getCodeSystemValue(), id);
+            } else {
+                // cache miss so add this record to the miss list for further processing
+                misses.add(xr);
             }
         }
     }
@@ -160,14 +163,12 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
         // See what we have currently in our thread-local cache
         LinkedHashMap<CommonTokenValue,Long> valMap = commonTokenValues.get();
 
-        List<CommonTokenValue> foundKeys = new ArrayList<>(tokenValues.size()); // for updating LRU
         List<ResourceTokenValueRec> needToFindValues = new ArrayList<>(tokenValues.size()); // for the ref values we haven't yet found
         for (ResourceTokenValueRec tv: tokenValues) {
             if (valMap != null) {
                 CommonTokenValue key = new CommonTokenValue(tv.getCodeSystemValueId(), tv.getTokenValue());
                 Long id = valMap.get(key);
                 if (id != null) {
-                    foundKeys.add(key);
                     tv.setCommonTokenValueId(id);
                 } else {
                     // not found, so add to the cache miss list
@@ -178,22 +179,18 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
             }
         }
 
-        // If we still have keys to find, look them up in the shared cache (which we need to lock first)
-        if (needToFindValues.size() > 0) {
-            synchronized (this.tokenValuesCache) {
-                for (ResourceTokenValueRec tv: needToFindValues) {
-                    CommonTokenValue key = new CommonTokenValue(tv.getCodeSystemValueId(), tv.getTokenValue());
-                    Long id = tokenValuesCache.get(key);
-                    if (id != null) {
-                        tv.setCommonTokenValueId(id);
-
-                        // Update the local cache with this value
-                        addTokenValue(key, id);
-                    } else {
-                        // cache miss so add this record to the miss list for further processing
-                        misses.add(tv);
-                    }
-                }
+        // If we still have keys to find, look them up in the shared cache
+        for (ResourceTokenValueRec tv: needToFindValues) {
+            CommonTokenValue key = new CommonTokenValue(tv.getCodeSystemValueId(), tv.getTokenValue());
+            Long id = tokenValuesCache.getIfPresent(key);
+            if (id != null) {
+                tv.setCommonTokenValueId(id);
+
+                // Update the local cache with this value
+                addTokenValue(key, id);
+            } else {
+                // cache miss so add this record to the miss list for further processing
+                misses.add(tv);
             }
         }
     }
@@ -233,13 +230,8 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
         commonTokenValues.remove();
 
         // clear the shared caches too
-        synchronized (this.codeSystemsCache) {
-            this.codeSystemsCache.clear();
-        }
-
-        synchronized (this.tokenValuesCache) {
-            this.tokenValuesCache.clear();
-        }
+        this.codeSystemsCache.invalidateAll();
+        this.tokenValuesCache.invalidateAll();
     }
 
     @Override
@@ -261,9 +253,7 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
 
     @Override
     public void prefillCodeSystems(Map<String, Integer> codeSystems) {
-        synchronized(codeSystemsCache) {
-            codeSystemsCache.putAll(codeSystems);
-        }
+        codeSystemsCache.putAll(codeSystems);
     }
 
     @Override
@@ -279,9 +269,7 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
             result = valMap != null ? valMap.get(key) : null;
             if (result == null) {
                 // not found in the local cache, try the shared cache
-                synchronized (tokenValuesCache) {
-                    result = tokenValuesCache.get(key);
-                }
+                result = tokenValuesCache.getIfPresent(key);
 
                 if (result != null) {
                     // add to the local cache so we can find it again without locking
@@ -299,4 +287,38 @@ public class CommonTokenValuesCacheImpl implements ICommonTokenValuesCache {
 
         return result;
     }
+
+    /**
+     * Get the hit, miss and eviction counts of the shared code-system cache. Lookups
+     * served from the thread-local map are not counted.
+     * @return
+     */
+    public CacheStats getCodeSystemsCacheStats() {
+        return codeSystemsCache.stats();
+    }
+
+    /**
+     * Get the hit, miss and eviction counts of the shared common token value cache. Lookups
+     * served from the thread-local map are not counted.
+     * @return
+     */
+    public CacheStats getTokenValuesCacheStats() {
+        return tokenValuesCache.stats();
+    }
+
+    /**
+     * Get a resizable view of the shared code-system cache for the CacheRegistry
+     * @return
+     */
+    public ManagedCache getCodeSystemsManagedCache() {
+        return ManagedCache.of(codeSystemsCache, CODE_SYSTEM_ENTRY_BYTES);
+    }
+
+    /**
+     * Get a resizable view of the shared common token value cache for the CacheRegistry
+     * @return
+     */
+    public ManagedCache getTokenValuesManagedCache() {
+        return ManagedCache.of(tokenValuesCache, TOKEN_VALUE_ENTRY_BYTES);
+    }
 }
\ No newline at end of file
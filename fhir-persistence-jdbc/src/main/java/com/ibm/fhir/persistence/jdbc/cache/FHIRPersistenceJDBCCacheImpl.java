@@ -6,9 +6,14 @@
 
 package com.ibm.fhir.persistence.jdbc.cache;
 
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ibm.fhir.cache.ManagedCache;
+import com.ibm.fhir.cache.util.CacheSupport;
+import com.ibm.fhir.database.utils.query.SelectSignature;
 import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.ICommonTokenValuesCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.INameIdCache;
@@ -19,12 +24,22 @@ import com.ibm.fhir.persistence.jdbc.dao.api.INameIdCache;
 public class FHIRPersistenceJDBCCacheImpl implements FHIRPersistenceJDBCCache {
     private static final Logger logger = Logger.getLogger(FHIRPersistenceJDBCCacheImpl.class.getName());
 
+    // The number of search query shapes to keep the rendered SQL for, unless configured otherwise
+    public static final int DEFAULT_SEARCH_QUERY_CACHE_SIZE = 1000;
+
     private final INameIdCache<Integer> resourceTypeCache;
 
     private final INameIdCache<Integer> parameterNameCache;
 
     private final ICommonTokenValuesCache resourceReferenceCache;
 
+    // Rendered search query SQL, keyed by query signature. Entries only hold the SQL text,
+    // so they don't depend on the transaction and can be shared immediately
+    private final Cache<SelectSignature, String> searchQueryCache;
+
+    // Parsed resources keyed by RESOURCE_ID, or null if disabled
+    private final ResourceCache resourceCache;
+
     // flag to allow one lucky caller to get the opportunity to prefill
     private final AtomicBoolean needToPrefillFlag = new AtomicBoolean(true);
 
@@ -35,9 +50,36 @@ public class FHIRPersistenceJDBCCacheImpl implements FHIRPersistenceJDBCCache {
      * @param resourceReferenceCache
      */
     public FHIRPersistenceJDBCCacheImpl(INameIdCache<Integer> resourceTypeCache, INameIdCache<Integer> parameterNameCache, ICommonTokenValuesCache resourceReferenceCache) {
+        this(resourceTypeCache, parameterNameCache, resourceReferenceCache, DEFAULT_SEARCH_QUERY_CACHE_SIZE);
+    }
+
+    /**
+     * Public constructor
+     * @param resourceTypeCache
+     * @param parameterNameCache
+     * @param resourceReferenceCache
+     * @param searchQueryCacheSize the max number of search query shapes to keep the rendered SQL for
+     */
+    public FHIRPersistenceJDBCCacheImpl(INameIdCache<Integer> resourceTypeCache, INameIdCache<Integer> parameterNameCache, ICommonTokenValuesCache resourceReferenceCache,
+            int searchQueryCacheSize) {
+        this(resourceTypeCache, parameterNameCache, resourceReferenceCache, searchQueryCacheSize, null);
+    }
+
+    /**
+     * Public constructor
+     * @param resourceTypeCache
+     * @param parameterNameCache
+     * @param resourceReferenceCache
+     * @param searchQueryCacheSize the max number of search query shapes to keep the rendered SQL for
+     * @param resourceCache the cache of parsed resources, or null to disable it
+     */
+    public FHIRPersistenceJDBCCacheImpl(INameIdCache<Integer> resourceTypeCache, INameIdCache<Integer> parameterNameCache, ICommonTokenValuesCache resourceReferenceCache,
+            int searchQueryCacheSize, ResourceCache resourceCache) {
         this.resourceTypeCache = resourceTypeCache;
         this.parameterNameCache = parameterNameCache;
         this.resourceReferenceCache = resourceReferenceCache;
+        this.searchQueryCache = CacheSupport.createCache(searchQueryCacheSize, true);
+        this.resourceCache = resourceCache;
     }
 
     /**
@@ -59,12 +101,34 @@ public class FHIRPersistenceJDBCCacheImpl implements FHIRPersistenceJDBCCache {
         return parameterNameCache;
     }
 
+    @Override
+    public Map<SelectSignature, String> getSearchQueryCache() {
+        return this.searchQueryCache.asMap();
+    }
+
+    /**
+     * Get a resizable view of the search query cache for the CacheRegistry. The size of
+     * the rendered SQL varies too much to estimate the bytes retained.
+     * @return
+     */
+    public ManagedCache getSearchQueryManagedCache() {
+        return ManagedCache.of(searchQueryCache);
+    }
+
+    @Override
+    public ResourceCache getResourceCache() {
+        return this.resourceCache;
+    }
+
     @Override
     public void transactionCommitted() {
         logger.fine("Transaction committed - updating cache shared maps");
         resourceTypeCache.updateSharedMaps();
         parameterNameCache.updateSharedMaps();
         resourceReferenceCache.updateSharedMaps();
+        if (resourceCache != null) {
+            resourceCache.transactionCommitted();
+        }
     }
 
     @Override
@@ -73,6 +137,9 @@ public class FHIRPersistenceJDBCCacheImpl implements FHIRPersistenceJDBCCache {
         resourceTypeCache.clearLocalMaps();
         parameterNameCache.clearLocalMaps();
         resourceReferenceCache.clearLocalMaps();
+        if (resourceCache != null) {
+            resourceCache.transactionRolledBack();
+        }
     }
 
     @Override
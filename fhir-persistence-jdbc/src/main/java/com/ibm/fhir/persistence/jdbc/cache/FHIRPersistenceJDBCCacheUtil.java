@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2020
+ * (C) Copyright IBM Corp. 2020, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -8,6 +8,7 @@ package com.ibm.fhir.persistence.jdbc.cache;
 
 import java.util.Map;
 
+import com.ibm.fhir.cache.CacheRegistry;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.ICommonTokenValuesCache;
@@ -24,10 +25,54 @@ public class FHIRPersistenceJDBCCacheUtil {
      * @return
      */
     public static FHIRPersistenceJDBCCache create(int codeSystemCacheSize, int tokenValueCacheSize) {
+        return create(codeSystemCacheSize, tokenValueCacheSize, FHIRPersistenceJDBCCacheImpl.DEFAULT_SEARCH_QUERY_CACHE_SIZE);
+    }
+
+    /**
+     * Factory function to create a new cache instance
+     * @param codeSystemCacheSize
+     * @param tokenValueCacheSize
+     * @param searchQueryCacheSize
+     * @return
+     */
+    public static FHIRPersistenceJDBCCache create(int codeSystemCacheSize, int tokenValueCacheSize, int searchQueryCacheSize) {
         ICommonTokenValuesCache rrc = new CommonTokenValuesCacheImpl(codeSystemCacheSize, tokenValueCacheSize);
-        return new FHIRPersistenceJDBCCacheImpl(new NameIdCache<Integer>(), new NameIdCache<Integer>(), rrc);
-        
+        return new FHIRPersistenceJDBCCacheImpl(new NameIdCache<Integer>(), new NameIdCache<Integer>(), rrc, searchQueryCacheSize);
     }
+
+    /**
+     * Factory function to create a new cache instance for the given tenant and datasource, and
+     * register the individual caches with the {@link CacheRegistry} under the names
+     * jdbc.&lt;datastoreId&gt;.resourceTypes, parameterNames, codeSystems, tokenValues, searchQueries
+     * and (when enabled) resources
+     * @param tenantId
+     * @param datastoreId
+     * @param codeSystemCacheSize
+     * @param tokenValueCacheSize
+     * @param searchQueryCacheSize
+     * @param resourceCacheSize the max number of parsed resources to cache, or 0 to disable the resource cache
+     * @return
+     */
+    public static FHIRPersistenceJDBCCache create(String tenantId, String datastoreId, int codeSystemCacheSize, int tokenValueCacheSize, int searchQueryCacheSize,
+            int resourceCacheSize) {
+        NameIdCache<Integer> resourceTypeCache = new NameIdCache<>();
+        NameIdCache<Integer> parameterNameCache = new NameIdCache<>();
+        CommonTokenValuesCacheImpl rrc = new CommonTokenValuesCacheImpl(codeSystemCacheSize, tokenValueCacheSize);
+        ResourceCache resourceCache = resourceCacheSize > 0 ? new ResourceCache(resourceCacheSize) : null;
+        FHIRPersistenceJDBCCacheImpl result = new FHIRPersistenceJDBCCacheImpl(resourceTypeCache, parameterNameCache, rrc, searchQueryCacheSize, resourceCache);
+
+        final String prefix = "jdbc." + datastoreId + ".";
+        CacheRegistry.register(tenantId, prefix + "resourceTypes", resourceTypeCache.getManagedCache());
+        CacheRegistry.register(tenantId, prefix + "parameterNames", parameterNameCache.getManagedCache());
+        CacheRegistry.register(tenantId, prefix + "codeSystems", rrc.getCodeSystemsManagedCache());
+        CacheRegistry.register(tenantId, prefix + "tokenValues", rrc.getTokenValuesManagedCache());
+        CacheRegistry.register(tenantId, prefix + "searchQueries", result.getSearchQueryManagedCache());
+        if (resourceCache != null) {
+            CacheRegistry.register(tenantId, prefix + "resources", resourceCache.getManagedCache());
+        }
+        return result;
+    }
+
     /**
      * Prefill the cache with constants already committed in the database
      * @param connection
@@ -73,7 +73,10 @@ public class FHIRPersistenceJDBCTenantCache {
             } else {
                 int externalSystemCacheSize = pg.getIntProperty("externalSystemCacheSize", 1000);
                 int externalValueCacheSize = pg.getIntProperty("externalValueCacheSize", 100000);
-                return FHIRPersistenceJDBCCacheUtil.create(externalSystemCacheSize, externalValueCacheSize);
+                int searchQueryCacheSize = pg.getIntProperty("searchQueryCacheSize", FHIRPersistenceJDBCCacheImpl.DEFAULT_SEARCH_QUERY_CACHE_SIZE);
+                int resourceCacheSize = pg.getIntProperty("resourceCacheSize", 0);
+                return FHIRPersistenceJDBCCacheUtil.create(FHIRRequestContext.get().getTenantId(), datastoreId,
+                    externalSystemCacheSize, externalValueCacheSize, searchQueryCacheSize, resourceCacheSize);
             }
         } catch (IllegalStateException ise) {
             throw ise;
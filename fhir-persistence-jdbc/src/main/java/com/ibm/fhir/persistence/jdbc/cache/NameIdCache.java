@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2020
+ * (C) Copyright IBM Corp. 2020, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -10,6 +10,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.ibm.fhir.cache.CountingManagedCache;
+import com.ibm.fhir.cache.ManagedCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.INameIdCache;
 
 
@@ -24,6 +26,12 @@ public class NameIdCache<T> implements INameIdCache<T> {
     
     // The cache shared at the server level
     private final ConcurrentHashMap<String, T> shared = new ConcurrentHashMap<>();
+
+    // Rough heap cost of a shared entry (key string, boxed id and map node)
+    private static final long ENTRY_BYTES = 128;
+
+    // Lookup statistics, reported through the CacheRegistry
+    private final CountingManagedCache statistics = new CountingManagedCache(shared::size, ENTRY_BYTES);
     
     /**
      * Public constructor
@@ -53,6 +61,7 @@ public class NameIdCache<T> implements INameIdCache<T> {
         if (result == null) {
             result = shared.get(key);
         }
+        statistics.recordLookup(result != null);
         return result;
     }
 
@@ -86,4 +95,13 @@ public class NameIdCache<T> implements INameIdCache<T> {
         // we can add it directly to the shared map
         this.shared.putAll(content);
     }
+
+    /**
+     * Get the statistics of this cache. Lookups served from the thread-local map are
+     * counted as hits.
+     * @return
+     */
+    public ManagedCache getManagedCache() {
+        return statistics;
+    }
 }
\ No newline at end of file
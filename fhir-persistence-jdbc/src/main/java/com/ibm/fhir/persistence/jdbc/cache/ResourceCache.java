@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ibm.fhir.cache.ManagedCache;
+import com.ibm.fhir.cache.util.CacheSupport;
+import com.ibm.fhir.model.resource.Resource;
+
+/**
+ * A size-bounded cache of parsed resources, used to avoid fetching, decompressing and
+ * parsing the payload of frequently read resources.
+ *
+ * <p>Entries are keyed by RESOURCE_ID, which identifies a single version of a single resource
+ * (type/id/version) and is never reused. An entry therefore can't become stale: a new version gets
+ * a new key, and the model objects are immutable so they can be shared between threads. The ids of
+ * versions superseded by an update or delete are evicted once the transaction commits because they
+ * are no longer read as the current version.
+ */
+public class ResourceCache {
+
+    private final Cache<Long, Resource> cache;
+
+    // Versions superseded by the current transaction, evicted on commit
+    private final ThreadLocal<List<Long>> superseded = new ThreadLocal<>();
+
+    /**
+     * Public constructor
+     * @param maximumSize the maximum number of resources to hold
+     */
+    public ResourceCache(int maximumSize) {
+        this.cache = CacheSupport.createCache(maximumSize, true);
+    }
+
+    /**
+     * Get the parsed resource for the given RESOURCE_ID
+     * @param resourceId
+     * @return the resource, or null if not cached
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Resource> T get(long resourceId) {
+        return (T) cache.getIfPresent(resourceId);
+    }
+
+    /**
+     * Add the parsed resource for the given RESOURCE_ID
+     * @param resourceId
+     * @param resource
+     */
+    public void put(long resourceId, Resource resource) {
+        cache.put(resourceId, resource);
+    }
+
+    /**
+     * Note that the version with the given RESOURCE_ID has been superseded by the current
+     * transaction. It is evicted if and when the transaction commits.
+     * @param resourceId
+     */
+    public void supersede(long resourceId) {
+        List<Long> ids = superseded.get();
+        if (ids == null) {
+            ids = new ArrayList<>();
+            superseded.set(ids);
+        }
+        ids.add(resourceId);
+    }
+
+    /**
+     * Evict the versions superseded by the transaction which has just committed on this thread
+     */
+    public void transactionCommitted() {
+        List<Long> ids = superseded.get();
+        if (ids != null) {
+            cache.invalidateAll(ids);
+            ids.clear();
+        }
+    }
+
+    /**
+     * The transaction on this thread was rolled back, so the superseded versions are still current
+     */
+    public void transactionRolledBack() {
+        List<Long> ids = superseded.get();
+        if (ids != null) {
+            ids.clear();
+        }
+    }
+
+    /**
+     * Get a resizable view of this cache for the CacheRegistry. The size of a parsed
+     * resource varies too much to estimate the bytes retained.
+     * @return
+     */
+    public ManagedCache getManagedCache() {
+        return ManagedCache.of(cache);
+    }
+}
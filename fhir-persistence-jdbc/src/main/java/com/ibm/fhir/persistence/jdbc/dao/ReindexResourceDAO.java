@@ -12,8 +12,10 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -21,6 +23,7 @@ import java.util.logging.Logger;
 import javax.transaction.TransactionSynchronizationRegistry;
 
 import com.ibm.fhir.database.utils.api.IDatabaseTranslator;
+import com.ibm.fhir.persistence.ReindexRange;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceNotFoundException;
 import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
 import com.ibm.fhir.persistence.jdbc.connection.FHIRDbFlavor;
@@ -238,7 +241,7 @@ public class ReindexResourceDAO extends ResourceDAOImpl {
             // sensitive performance-wise. Although this is another database round-trip, it shouldn't
             // impact concurrency which is the main issue in driving reindex throughput
             final String SELECT_RESOURCE_TYPE = ""
-                    + "SELECT rt.resource_type "
+                    + "SELECT rt.resource_type, lr.parameter_hash "
                     + "  FROM resource_types rt, "
                     + "       logical_resources lr "
                     + " WHERE rt.resource_type_id = lr.resource_type_id "
@@ -248,6 +251,7 @@ public class ReindexResourceDAO extends ResourceDAOImpl {
                 ResultSet rs = stmt.executeQuery();
                 if (rs.next()) {
                     result.setResourceType(rs.getString(1));
+                    result.setParameterHash(rs.getString(2));
                 } else {
                     // Can't really happen, because the resource is selected for update, so it can't disappear
                     logger.severe("Logical resource no longer exists: logical_resource_id=" + result.getLogicalResourceId());
@@ -262,15 +266,158 @@ public class ReindexResourceDAO extends ResourceDAOImpl {
         return result;
     }
 
+    /**
+     * Split the logical resources (optionally limited to the given resource type) into at most
+     * rangeCount ranges of logical_resource_id values
+     * @param resourceType the resource type name, or null for all resource types
+     * @param resourceTypeId the resource type id matching resourceType, or null for all resource types
+     * @param rangeCount the maximum number of ranges to return
+     * @return the ranges, which is empty if there are no logical resources
+     * @throws Exception
+     */
+    public List<ReindexRange> getReindexRanges(String resourceType, Integer resourceTypeId, int rangeCount) throws Exception {
+        List<ReindexRange> result = new ArrayList<>();
+
+        // no need to close
+        Connection connection = getConnection();
+
+        final StringBuilder select = new StringBuilder();
+        select.append("SELECT MIN(lr.logical_resource_id), MAX(lr.logical_resource_id) FROM logical_resources lr");
+        if (resourceTypeId != null) {
+            select.append(" WHERE lr.resource_type_id = ?");
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(select.toString())) {
+            if (resourceTypeId != null) {
+                stmt.setInt(1, resourceTypeId);
+            }
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                long minLogicalResourceId = rs.getLong(1);
+                if (!rs.wasNull()) {
+                    long maxLogicalResourceId = rs.getLong(2);
+                    result.addAll(ReindexRange.split(resourceType, minLogicalResourceId, maxLogicalResourceId, rangeCount));
+                }
+            }
+        } catch (SQLException x) {
+            logger.log(Level.SEVERE, select.toString(), x);
+            throw translator.translate(x);
+        }
+
+        return result;
+    }
+
+    /**
+     * Claim the next batch of up to maxResources resources in the given range which have not been
+     * reindexed since reindexTstamp. Each candidate is claimed by stamping it with reindexTstamp
+     * using the same optimistic reindex_txid check as {@link #getNextResource(SecureRandom, Instant, Integer, String)},
+     * so any resource concurrently claimed by another reindex request is skipped. The cursor in the range
+     * is moved past the last candidate, and the range is marked complete when the batch is not full.
+     * @param reindexTstamp
+     * @param resourceTypeId the resource type to limit the reindex to, or null for all resource types
+     * @param range the range to process
+     * @param maxResources
+     * @return the claimed resources, with the resource type name populated
+     * @throws Exception
+     */
+    public List<ResourceIndexRecord> getResourcesToReindex(Instant reindexTstamp, Integer resourceTypeId, ReindexRange range, int maxResources) throws Exception {
+        List<ResourceIndexRecord> candidates = new ArrayList<>(maxResources);
+
+        // no need to close
+        Connection connection = getConnection();
+        IDatabaseTranslator translator = getTranslator();
+
+        final StringBuilder select = new StringBuilder();
+        select.append("SELECT lr.logical_resource_id, lr.resource_type_id, lr.logical_id, lr.reindex_txid, rt.resource_type, lr.parameter_hash ");
+        select.append("  FROM logical_resources lr, ");
+        select.append("       resource_types rt ");
+        select.append(" WHERE rt.resource_type_id = lr.resource_type_id ");
+        select.append("   AND lr.logical_resource_id BETWEEN ? AND ? ");
+        select.append("   AND lr.reindex_tstamp < ? ");
+        if (resourceTypeId != null) {
+            select.append("   AND lr.resource_type_id = ? ");
+        }
+        select.append("ORDER BY lr.logical_resource_id ");
+        select.append(translator.limit(Integer.toString(maxResources)));
+
+        try (PreparedStatement stmt = connection.prepareStatement(select.toString())) {
+            stmt.setLong(1, range.getNextLogicalResourceId());
+            stmt.setLong(2, range.getToLogicalResourceId());
+            stmt.setTimestamp(3, Timestamp.from(reindexTstamp));
+            if (resourceTypeId != null) {
+                stmt.setInt(4, resourceTypeId);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                ResourceIndexRecord rir = new ResourceIndexRecord(rs.getLong(1), rs.getInt(2), rs.getString(3), rs.getLong(4));
+                rir.setResourceType(rs.getString(5));
+                rir.setParameterHash(rs.getString(6));
+                candidates.add(rir);
+            }
+        } catch (SQLException x) {
+            logger.log(Level.SEVERE, select.toString(), x);
+            throw translator.translate(x);
+        }
+
+        // Advance the cursor. The caller is responsible for resetting it if the transaction fails
+        if (candidates.size() < maxResources) {
+            range.setComplete(true);
+            range.setNextLogicalResourceId(range.getToLogicalResourceId() + 1);
+        } else {
+            range.setNextLogicalResourceId(candidates.get(candidates.size()-1).getLogicalResourceId() + 1);
+        }
+
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        // Claim the candidates in one batch. A candidate is lost if its reindex_txid
+        // was changed by another thread since we selected it
+        final String UPDATE = ""
+                + " UPDATE logical_resources  "
+                + "    SET reindex_tstamp = ?, "
+                + "        reindex_txid = ? "
+                + "  WHERE logical_resource_id = ? "
+                + "    AND reindex_txid = ? ";
+
+        List<ResourceIndexRecord> result = new ArrayList<>(candidates.size());
+        try (PreparedStatement stmt = connection.prepareStatement(UPDATE)) {
+            for (ResourceIndexRecord rir: candidates) {
+                stmt.setTimestamp(1, Timestamp.from(reindexTstamp));
+                stmt.setLong(2, rir.getTransactionId() + 1L);
+                stmt.setLong(3, rir.getLogicalResourceId());
+                stmt.setLong(4, rir.getTransactionId());
+                stmt.addBatch();
+            }
+            int[] rowsAffected = stmt.executeBatch();
+            for (int i=0; i<rowsAffected.length; i++) {
+                // Some drivers can't tell us how many rows were affected by each statement
+                if (rowsAffected[i] > 0 || rowsAffected[i] == Statement.SUCCESS_NO_INFO) {
+                    result.add(candidates.get(i));
+                }
+            }
+        } catch (SQLException x) {
+            logger.log(Level.SEVERE, UPDATE, x);
+            throw translator.translate(x);
+        }
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Claimed " + result.size() + " of " + candidates.size() + " resources for reindex in range " + range);
+        }
+        return result;
+    }
+
     /**
      * Reindex the resource by deleting existing parameters and replacing them with those passed in.
      * @param tablePrefix the table prefix
      * @param parameters the extracted parameters
+     * @param parameterHash the hash of the extracted parameters, recorded so that the next reindex can skip
+     *        this resource if nothing changes
      * @param logicalId the logical id
      * @param logicalResourceId the logical resource id
      * @throws Exception
      */
-    public void updateParameters(String tablePrefix, List<ExtractedParameterValue> parameters, String logicalId, long logicalResourceId) throws Exception {
+    public void updateParameters(String tablePrefix, List<ExtractedParameterValue> parameters, String parameterHash, String logicalId, long logicalResourceId) throws Exception {
 
         final String METHODNAME = "updateParameters() for " + tablePrefix + "/" + logicalId;
         logger.entering(CLASSNAME, METHODNAME);
@@ -285,6 +432,7 @@ public class ReindexResourceDAO extends ResourceDAOImpl {
         deleteFromParameterTable(connection, tablePrefix + "_latlng_values", logicalResourceId);
         deleteFromParameterTable(connection, tablePrefix + "_resource_token_refs", logicalResourceId);
         deleteFromParameterTable(connection, tablePrefix + "_quantity_values", logicalResourceId);
+        discardPendingParameters(logicalResourceId);
 
         if (parameters != null && !parameters.isEmpty()) {
             JDBCIdentityCache identityCache = new JDBCIdentityCacheImpl(getCache(), this, parameterDao, getResourceReferenceDAO());
@@ -300,6 +448,16 @@ public class ReindexResourceDAO extends ResourceDAOImpl {
                 throw translator.translate(x);
             }
         }
+
+        final String UPDATE_HASH = "UPDATE logical_resources SET parameter_hash = ? WHERE logical_resource_id = ?";
+        try (PreparedStatement stmt = connection.prepareStatement(UPDATE_HASH)) {
+            stmt.setString(1, parameterHash);
+            stmt.setLong(2, logicalResourceId);
+            stmt.executeUpdate();
+        } catch (SQLException x) {
+            logger.log(Level.SEVERE, UPDATE_HASH, x);
+            throw translator.translate(x);
+        }
         logger.exiting(CLASSNAME, METHODNAME);
     }
 
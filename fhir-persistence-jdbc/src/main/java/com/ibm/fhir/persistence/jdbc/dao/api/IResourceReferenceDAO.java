@@ -46,6 +46,14 @@ public interface IResourceReferenceDAO {
      */
     void persist(Collection<ResourceTokenValueRec> records);
 
+    /**
+     * Resolve the CODE_SYSTEMS and COMMON_TOKEN_VALUES ids of the records, creating any
+     * which don't yet exist, and add them to the cache. Nothing is written to the
+     * resource token refs tables, so the records only need the code system and token value.
+     * @param records
+     */
+    void resolveIds(Collection<ResourceTokenValueRec> records);
+
     /**
      * Find the database id for the given token value and system
      * @param codeSystem
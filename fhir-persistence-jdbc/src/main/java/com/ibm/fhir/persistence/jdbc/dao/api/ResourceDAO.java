@@ -50,6 +50,32 @@ public interface ResourceDAO extends FHIRDbDAO {
     Resource versionRead(String logicalId, String resourceType, int versionId)
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
 
+    /**
+     * Reads and returns the latest version of the Resource with the passed logical id and resource type,
+     * without its payload. Used to check the version before fetching the payload.
+     * If no matching resource is found, null is returned.
+     * @param logicalId
+     * @param resourceType
+     * @return Resource - The most recent version of the Resource, with no data stream, or null if not found.
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    Resource readNoData(String logicalId, String resourceType)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
+    /**
+     * Reads and returns the version of the Resource with the passed logical id, resource type, and version id,
+     * without its payload. If no matching resource is found, null is returned.
+     * @param logicalId
+     * @param resourceType
+     * @param version id
+     * @return Resource - The version of the Resource, with no data stream, or null if not found.
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    Resource versionReadNoData(String logicalId, String resourceType, int versionId)
+            throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
     /**
      * Reads and returns all versions of the Resource with the passed logicalId, ordered by descending version id.
      * If non-null, the passed fromDateTime is used to limit the returned Resource
@@ -141,6 +167,17 @@ public interface ResourceDAO extends FHIRDbDAO {
      */
     List<Long> searchForIds(Select  dataQuery) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
 
+    /**
+     * Executes a sort query built by the new query builder, returning each row as an array
+     * holding the resource id, the logical resource id and then the sort key values. Timestamp
+     * keys are returned as {@link java.time.Instant}, numeric keys as Double, BigDecimal or Long.
+     * @param sortQuery
+     * @return the rows in the order returned by the query
+     * @throws FHIRPersistenceDataAccessException
+     * @throws FHIRPersistenceDBConnectException
+     */
+    List<Object[]> searchForSortKeys(Select sortQuery) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException;
+
     /**
      * Searches for Resources that contain one of the passed ids.
      * @param resourceType - The type of the FHIR Resource
@@ -30,6 +30,9 @@ public class ResourceIndexRecord {
     // Deletion flag for the resource. Set when we read the resource
     private boolean deleted;
 
+    // The hash of the parameters stored by the last reindex, if any
+    private String parameterHash;
+
     public ResourceIndexRecord(long logicalResourceId, int resourceTypeId, String logicalId, long transactionId) {
         this.logicalResourceId = logicalResourceId;
         this.resourceTypeId = resourceTypeId;
@@ -92,4 +95,18 @@ public class ResourceIndexRecord {
     public void setDeleted(boolean deleted) {
         this.deleted = deleted;
     }
+
+    /**
+     * @return the parameter hash stored by the last reindex, or null
+     */
+    public String getParameterHash() {
+        return parameterHash;
+    }
+
+    /**
+     * @param parameterHash the parameterHash to set
+     */
+    public void setParameterHash(String parameterHash) {
+        this.parameterHash = parameterHash;
+    }
 }
@@ -9,18 +9,23 @@ package com.ibm.fhir.persistence.jdbc.dao.impl;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.database.utils.api.IDatabaseTranslator;
 import com.ibm.fhir.database.utils.common.DatabaseTranslatorFactory;
 import com.ibm.fhir.database.utils.model.DbType;
 import com.ibm.fhir.database.utils.query.QueryUtil;
 import com.ibm.fhir.database.utils.query.Select;
+import com.ibm.fhir.database.utils.query.SelectSignature;
 import com.ibm.fhir.model.resource.OperationOutcome.Issue;
 import com.ibm.fhir.model.type.code.IssueType;
 import com.ibm.fhir.model.util.FHIRUtil;
@@ -187,6 +192,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "runQuery";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         List<Resource> fhirObjects = new ArrayList<>();
         PreparedStatement stmt = null;
@@ -224,6 +230,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
             errMsg = "Failure retrieving FHIR objects. SQL=" + sql + "  searchArgs=" + Arrays.toString(searchArgs);
             throw severe(log, fx, errMsg, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             this.cleanup(resultSet, stmt);
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -245,6 +252,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "runCountQuery";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         int rowCount = 0;
         PreparedStatement stmt = null;
@@ -291,6 +299,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
                     new FHIRPersistenceDataAccessException("Server error: failure retrieving count");
             throw severe(log, fx, errMsg, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             this.cleanup(resultSet, stmt);
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -311,13 +320,14 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "runCountQuery";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         int rowCount = 0;
         long dbCallStartTime;
         double dbCallDuration;
 
         // Query string is FINE logged inside prepareSelect, so no need to log again here
-        try (PreparedStatement stmt = QueryUtil.prepareSelect(connection, countQuery, getTranslator())) {
+        try (PreparedStatement stmt = prepareSelect(countQuery)) {
             dbCallStartTime = System.nanoTime();
             ResultSet resultSet = stmt.executeQuery();
             dbCallDuration = (System.nanoTime() - dbCallStartTime) / 1e6;
@@ -341,6 +351,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
                     new FHIRPersistenceDataAccessException("Server error: failure retrieving count");
             throw severe(log, fx, countQuery.toDebugString(), e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             log.exiting(CLASSNAME, METHODNAME);
         }
 
@@ -358,13 +369,14 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "runQuery";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         List<Resource> fhirObjects = new ArrayList<>();
         ResultSet resultSet = null;
         long dbCallStartTime;
         double dbCallDuration;
 
-        try (PreparedStatement stmt = QueryUtil.prepareSelect(connection, select, getTranslator())) {
+        try (PreparedStatement stmt = prepareSelect(select)) {
             dbCallStartTime = System.nanoTime();
             resultSet = stmt.executeQuery();
             dbCallDuration = (System.nanoTime() - dbCallStartTime) / 1e6;
@@ -382,6 +394,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
                     new FHIRPersistenceDataAccessException("Failure retrieving FHIR objects");
             throw severe(log, fx, select.toDebugString(), e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             log.exiting(CLASSNAME, METHODNAME);
         }
 
@@ -462,6 +475,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "runQuery_STR_VALUES";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
         List<String> strValues = new ArrayList<String>();
         PreparedStatement stmt = null;
         ResultSet resultSet = null;
@@ -498,6 +512,7 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
             errMsg = "Failure retrieving string values. SQL=" + sql + "  searchArgs=" + Arrays.toString(searchArgs);
             throw severe(log, fx, errMsg, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             this.cleanup(resultSet, stmt);
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -511,4 +526,30 @@ public class FHIRDbDAOImpl implements FHIRDbDAO {
     protected IDatabaseTranslator getTranslator() {
         return DatabaseTranslatorFactory.getTranslator(this.flavor.getType());
     }
+
+    /**
+     * Get the cache used to reuse the SQL rendered for search queries with
+     * the same signature
+     * @return the cache, or null if the SQL should always be rendered
+     */
+    protected Map<SelectSignature, String> getSearchQueryCache() {
+        return null;
+    }
+
+    /**
+     * Prepare the given statement and bind its parameter values, reusing
+     * previously rendered SQL if a search query cache is available. Caller
+     * must close the returned statement.
+     * @param select
+     * @return
+     * @throws SQLException
+     */
+    protected PreparedStatement prepareSelect(Select select) throws SQLException {
+        final Map<SelectSignature, String> searchQueryCache = getSearchQueryCache();
+        if (searchQueryCache != null) {
+            return QueryUtil.prepareSelect(connection, select, getTranslator(), searchQueryCache);
+        } else {
+            return QueryUtil.prepareSelect(connection, select, getTranslator());
+        }
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Parameter table rows collected across many resources (typically all the resources
+ * written by a transaction bundle) so that each parameter table can be populated using
+ * one JDBC batch for the whole set, instead of one set of statements and batches
+ * per resource. Rows are grouped by their INSERT statement, which identifies the target table.
+ *
+ * <p>Not thread-safe. Instances are scoped to a single transaction.
+ */
+public class ParameterRowBatch {
+    private static final Logger logger = Logger.getLogger(ParameterRowBatch.class.getName());
+
+    /**
+     * Binds the values of one row to the INSERT statement for its table
+     */
+    @FunctionalInterface
+    public interface RowBinder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private static class Row {
+        private final long logicalResourceId;
+        private final RowBinder binder;
+
+        private Row(long logicalResourceId, RowBinder binder) {
+            this.logicalResourceId = logicalResourceId;
+            this.binder = binder;
+        }
+    }
+
+    // INSERT statement -> rows for that table, in the order the tables were first seen
+    private final Map<String, List<Row>> rows = new LinkedHashMap<>();
+
+    // total number of rows across all the tables
+    private int rowCount;
+
+    /**
+     * Add a row to be inserted later by {@link #execute(Connection, int)}
+     * @param insertSql the INSERT statement for the target table
+     * @param logicalResourceId the logical resource to which the row belongs
+     * @param binder sets the statement parameters for the row
+     */
+    public void addRow(String insertSql, long logicalResourceId, RowBinder binder) {
+        rows.computeIfAbsent(insertSql, k -> new ArrayList<>()).add(new Row(logicalResourceId, binder));
+        rowCount++;
+    }
+
+    /**
+     * Discard all the pending rows for the given logical resource. Used when a newer version
+     * of the resource replaces its parameters before the batch has been executed.
+     * @param logicalResourceId
+     */
+    public void discard(long logicalResourceId) {
+        for (List<Row> tableRows: rows.values()) {
+            Iterator<Row> it = tableRows.iterator();
+            while (it.hasNext()) {
+                if (it.next().logicalResourceId == logicalResourceId) {
+                    it.remove();
+                    rowCount--;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows waiting to be inserted
+     */
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * @return true if there are no rows waiting to be inserted
+     */
+    public boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    /**
+     * Insert all the pending rows using one prepared statement per table, submitting
+     * the rows in batches of up to batchSize. The pending rows are cleared once they
+     * have all been inserted.
+     * @param c the connection to use for the inserts
+     * @param batchSize the max number of rows in each batch
+     * @throws SQLException
+     */
+    public void execute(Connection c, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be >= 1");
+        }
+
+        for (Map.Entry<String, List<Row>> entry: rows.entrySet()) {
+            List<Row> tableRows = entry.getValue();
+            if (tableRows.isEmpty()) {
+                continue;
+            }
+
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Inserting " + tableRows.size() + " rows: " + entry.getKey());
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(entry.getKey())) {
+                int count = 0;
+                for (Row row: tableRows) {
+                    row.binder.bind(ps);
+                    ps.addBatch();
+                    if (++count == batchSize) {
+                        ps.executeBatch();
+                        count = 0;
+                    }
+                }
+
+                if (count > 0) {
+                    ps.executeBatch();
+                }
+            } catch (SQLException x) {
+                SQLException batchException = x.getNextException();
+                if (batchException != null) {
+                    // We're really interested in the underlying cause here
+                    throw batchException;
+                } else {
+                    throw x;
+                }
+            }
+        }
+
+        rows.clear();
+        rowCount = 0;
+    }
+}
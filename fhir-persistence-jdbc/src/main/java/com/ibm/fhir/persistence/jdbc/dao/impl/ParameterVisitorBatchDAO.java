@@ -45,6 +45,10 @@ import com.ibm.fhir.search.util.SearchUtil;
  * per resource type, because the row type array approach apparently won't work with dynamic
  * SQL (EXECUTE ... USING ...). Unfortunately this means we have more database round-trips, we
  * don't have a choice.
+ *
+ * <p>When a {@link ParameterTransactionDataImpl} is given, the rows are not inserted here at all.
+ * They are added to its {@link ParameterRowBatch} so that the parameters for all the resources
+ * written in the transaction are inserted together, using one batch per table.
  */
 public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor, AutoCloseable {
     private static final Logger logger = Logger.getLogger(ParameterVisitorBatchDAO.class.getName());
@@ -80,10 +84,12 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
     private final String insertLocation;
 
     // Searchable string attributes stored at the system level
+    private final String insertSystemString;
     private final PreparedStatement systemStrings;
     private int systemStringCount;
 
     // Searchable date attributes stored at the system level
+    private final String insertSystemDate;
     private final PreparedStatement systemDates;
     private int systemDateCount;
 
@@ -102,6 +108,9 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
     // If not null, we stash certain parameter data here for insertion later
     private final ParameterTransactionDataImpl transactionData;
 
+    // If not null, the parameter table rows are added here instead of being inserted by this DAO
+    private final ParameterRowBatch deferredRows;
+
     // tracks the number of composites so we know what next composite_id to use
     int compositeIdCounter = 0;
 
@@ -129,47 +138,84 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
         this.resourceReferenceDAO = resourceReferenceDAO;
         this.tablePrefix = tablePrefix;
         this.transactionData = ptdi;
+        this.deferredRows = ptdi != null ? ptdi.getParameterRows() : null;
 
         insertString = multitenant ?
                 "INSERT INTO " + tablePrefix + "_str_values (mt_id, parameter_name_id, str_value, str_value_lcase, logical_resource_id, composite_id) VALUES (" + adminSchemaName + ".sv_tenant_id,?,?,?,?,?)"
                 :
                 "INSERT INTO " + tablePrefix + "_str_values (parameter_name_id, str_value, str_value_lcase, logical_resource_id, composite_id) VALUES (?,?,?,?,?)";
-        strings = c.prepareStatement(insertString);
+        strings = prepareStatement(c, insertString);
 
         insertNumber = multitenant ?
                 "INSERT INTO " + tablePrefix + "_number_values (mt_id, parameter_name_id, number_value, number_value_low, number_value_high, logical_resource_id, composite_id) VALUES (" + adminSchemaName + ".sv_tenant_id,?,?,?,?,?,?)"
                 :
                 "INSERT INTO " + tablePrefix + "_number_values (parameter_name_id, number_value, number_value_low, number_value_high, logical_resource_id, composite_id) VALUES (?,?,?,?,?,?)";
-        numbers = c.prepareStatement(insertNumber);
+        numbers = prepareStatement(c, insertNumber);
 
         insertDate = multitenant ?
                 "INSERT INTO " + tablePrefix + "_date_values (mt_id, parameter_name_id, date_start, date_end, logical_resource_id, composite_id) VALUES (" + adminSchemaName + ".sv_tenant_id,?,?,?,?,?)"
                 :
                 "INSERT INTO " + tablePrefix + "_date_values (parameter_name_id, date_start, date_end, logical_resource_id, composite_id) VALUES (?,?,?,?,?)";
-        dates = c.prepareStatement(insertDate);
+        dates = prepareStatement(c, insertDate);
 
         insertQuantity = multitenant ?
                 "INSERT INTO " + tablePrefix + "_quantity_values (mt_id, parameter_name_id, code_system_id, code, quantity_value, quantity_value_low, quantity_value_high, logical_resource_id, composite_id) VALUES (" + adminSchemaName + ".sv_tenant_id,?,?,?,?,?,?,?,?)"
                 :
                 "INSERT INTO " + tablePrefix + "_quantity_values (parameter_name_id, code_system_id, code, quantity_value, quantity_value_low, quantity_value_high, logical_resource_id, composite_id) VALUES (?,?,?,?,?,?,?,?)";
-        quantities = c.prepareStatement(insertQuantity);
+        quantities = prepareStatement(c, insertQuantity);
 
         insertLocation = multitenant ? "INSERT INTO " + tablePrefix + "_latlng_values (mt_id, parameter_name_id, latitude_value, longitude_value, logical_resource_id, composite_id) VALUES (" + adminSchemaName + ".sv_tenant_id,?,?,?,?,?)"
                 : "INSERT INTO " + tablePrefix + "_latlng_values (parameter_name_id, latitude_value, longitude_value, logical_resource_id, composite_id) VALUES (?,?,?,?,?)";
 
         // System level string attributes
-        String insertSystemString = multitenant ?
+        insertSystemString = multitenant ?
                 "INSERT INTO str_values (mt_id, parameter_name_id, str_value, str_value_lcase, logical_resource_id) VALUES (" + adminSchemaName + ".sv_tenant_id,?,?,?,?)"
                 :
                 "INSERT INTO str_values (parameter_name_id, str_value, str_value_lcase, logical_resource_id) VALUES (?,?,?,?)";
-        systemStrings = c.prepareStatement(insertSystemString);
+        systemStrings = prepareStatement(c, insertSystemString);
 
         // System level date attributes
-        String insertSystemDate = multitenant ?
+        insertSystemDate = multitenant ?
                 "INSERT INTO date_values (mt_id, parameter_name_id, date_start, date_end, logical_resource_id) VALUES (" + adminSchemaName + ".sv_tenant_id,?,?,?,?)"
                 :
                 "INSERT INTO date_values (parameter_name_id, date_start, date_end, logical_resource_id) VALUES (?,?,?,?)";
-        systemDates = c.prepareStatement(insertSystemDate);
+        systemDates = prepareStatement(c, insertSystemDate);
+    }
+
+    /**
+     * Prepare the insert statement, unless the rows are being deferred to the transaction
+     * @param c
+     * @param insertSql
+     * @return the statement, or null if the rows are deferred
+     * @throws SQLException
+     */
+    private PreparedStatement prepareStatement(Connection c, String insertSql) throws SQLException {
+        return this.deferredRows == null ? c.prepareStatement(insertSql) : null;
+    }
+
+    /**
+     * Add a row to the batch for the given statement, executing the batch when it is full,
+     * or to the deferred rows if we have them
+     * @param ps the statement for the target table (null if the rows are deferred)
+     * @param insertSql the INSERT statement for the target table
+     * @param count the number of rows currently in the batch for ps
+     * @param binder sets the statement parameters for the row
+     * @return the new number of rows in the batch for ps
+     * @throws SQLException
+     */
+    private int addRow(PreparedStatement ps, String insertSql, int count, ParameterRowBatch.RowBinder binder) throws SQLException {
+        if (this.deferredRows != null) {
+            this.deferredRows.addRow(insertSql, logicalResourceId, binder);
+            return count;
+        }
+
+        binder.bind(ps);
+        ps.addBatch();
+        if (++count == this.batchSize) {
+            ps.executeBatch();
+            count = 0;
+        }
+        return count;
     }
 
     /**
@@ -201,6 +247,7 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
             value = value.substring(0, value.length() / 2);
         }
 
+        final String stringValue = value;
         try {
             int parameterNameId = getParameterNameId(parameterName);
             if (isBase(param)) {
@@ -208,42 +255,33 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                     logger.fine("systemStringValue: " + parameterName + "[" + parameterNameId + "], " + value);
                 }
 
-                systemStrings.setInt(1, parameterNameId);
-                if (value != null) {
-                    systemStrings.setString(2, value);
-                    systemStrings.setString(3, SearchUtil.normalizeForSearch(value));
-                }
-                else {
-                    systemStrings.setNull(2, Types.VARCHAR);
-                    systemStrings.setNull(3, Types.VARCHAR);
-                }
-                systemStrings.setLong(4, logicalResourceId);
-                systemStrings.addBatch();
-
-                if (++systemStringCount == this.batchSize) {
-                    systemStrings.executeBatch();
-                    systemStringCount = 0;
-                }
+                systemStringCount = addRow(systemStrings, insertSystemString, systemStringCount, ps -> {
+                    ps.setInt(1, parameterNameId);
+                    if (stringValue != null) {
+                        ps.setString(2, stringValue);
+                        ps.setString(3, SearchUtil.normalizeForSearch(stringValue));
+                    }
+                    else {
+                        ps.setNull(2, Types.VARCHAR);
+                        ps.setNull(3, Types.VARCHAR);
+                    }
+                    ps.setLong(4, logicalResourceId);
+                });
             } else {
                 // standard resource property
                 if (logger.isLoggable(Level.FINE)) {
                     logger.fine("stringValue: " + parameterName + "[" + parameterNameId + "], " + value);
                 }
 
-                setStringParms(strings, parameterNameId, value);
-                strings.addBatch();
-
-                if (++stringCount == this.batchSize) {
-                    strings.executeBatch();
-                    stringCount = 0;
-                }
+                final Integer compositeId = this.currentCompositeId;
+                stringCount = addRow(strings, insertString, stringCount, ps -> setStringParms(ps, parameterNameId, stringValue, compositeId));
             }
         } catch (SQLException x) {
             throw new FHIRPersistenceDataAccessException(parameterName + "=" + value, x);
         }
     }
 
-    private void setStringParms(PreparedStatement insert, int parameterNameId, String value) throws SQLException {
+    private void setStringParms(PreparedStatement insert, int parameterNameId, String value, Integer compositeId) throws SQLException {
         insert.setInt(1, parameterNameId);
         if (value != null) {
             insert.setString(2, value);
@@ -253,18 +291,19 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
             insert.setNull(3, Types.VARCHAR);
         }
         insert.setLong(4, logicalResourceId);
-        setCompositeId(insert, 5);
+        setCompositeId(insert, 5, compositeId);
     }
 
     /**
      * Set the composite_id column value or null if required
      * @param ps the statement
      * @param idx the column index
+     * @param compositeId the composite_id value, which can be null
      * @throws SQLException
      */
-    private void setCompositeId(PreparedStatement ps, int idx) throws SQLException {
-        if (this.currentCompositeId != null) {
-            ps.setInt(idx, this.currentCompositeId);
+    private void setCompositeId(PreparedStatement ps, int idx, Integer compositeId) throws SQLException {
+        if (compositeId != null) {
+            ps.setInt(idx, compositeId);
         } else {
             ps.setNull(idx, Types.INTEGER);
         }
@@ -292,26 +331,21 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                         + value + " [" + valueLow + ", " + valueHigh + "]");
             }
 
-            setNumberParms(numbers, parameterNameId, value, valueLow, valueHigh);
-            numbers.addBatch();
-
-            if (++numberCount == this.batchSize) {
-                numbers.executeBatch();
-                numberCount = 0;
-            }
+            final Integer compositeId = this.currentCompositeId;
+            numberCount = addRow(numbers, insertNumber, numberCount, ps -> setNumberParms(ps, parameterNameId, value, valueLow, valueHigh, compositeId));
         }
         catch (SQLException x) {
             throw new FHIRPersistenceDataAccessException(parameterName + "={" + value + " ["+ valueLow + "," + valueHigh + "}", x);
         }
     }
 
-    private void setNumberParms(PreparedStatement insert, int parameterNameId, BigDecimal value, BigDecimal valueLow, BigDecimal valueHigh) throws SQLException {
+    private void setNumberParms(PreparedStatement insert, int parameterNameId, BigDecimal value, BigDecimal valueLow, BigDecimal valueHigh, Integer compositeId) throws SQLException {
         insert.setInt(1, parameterNameId);
         insert.setBigDecimal(2, value);
         insert.setBigDecimal(3, valueLow);
         insert.setBigDecimal(4, valueHigh);
         insert.setLong(5, logicalResourceId);
-        setCompositeId(insert, 6);
+        setCompositeId(insert, 6, compositeId);
     }
 
     @Override
@@ -330,26 +364,20 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                 }
 
                 // Insert record into the base level date attribute table
-                setDateParms(systemDates, parameterNameId, dateStart, dateEnd);
-                systemDates.addBatch();
-
-                if (++systemDateCount == this.batchSize) {
-                    systemDates.executeBatch();
-                    systemDateCount = 0;
-                }
+                systemDateCount = addRow(systemDates, insertSystemDate, systemDateCount, ps -> {
+                    ps.setInt(1, parameterNameId);
+                    ps.setTimestamp(2, dateStart, UTC);
+                    ps.setTimestamp(3, dateEnd, UTC);
+                    ps.setLong(4, logicalResourceId);
+                });
             } else {
                 if (logger.isLoggable(Level.FINE)) {
                     logger.fine("dateValue: " + parameterName + "[" + parameterNameId + "], "
                             + "period: [" + dateStart + ", " + dateEnd + "]");
                 }
 
-                setDateParms(dates, parameterNameId, dateStart, dateEnd);
-                dates.addBatch();
-
-                if (++dateCount == this.batchSize) {
-                    dates.executeBatch();
-                    dateCount = 0;
-                }
+                final Integer compositeId = this.currentCompositeId;
+                dateCount = addRow(dates, insertDate, dateCount, ps -> setDateParms(ps, parameterNameId, dateStart, dateEnd, compositeId));
             }
         } catch (SQLException x) {
             throw new FHIRPersistenceDataAccessException(parameterName + "={" + dateStart + ", " + dateEnd + "}", x);
@@ -357,12 +385,12 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
 
     }
 
-    private void setDateParms(PreparedStatement insert, int parameterNameId, Timestamp dateStart, Timestamp dateEnd) throws SQLException {
+    private void setDateParms(PreparedStatement insert, int parameterNameId, Timestamp dateStart, Timestamp dateEnd, Integer compositeId) throws SQLException {
         insert.setInt(1, parameterNameId);
         insert.setTimestamp(2, dateStart, UTC);
         insert.setTimestamp(3, dateEnd, UTC);
         insert.setLong(4, logicalResourceId);
-        setCompositeId(insert, 5);
+        setCompositeId(insert, 5, compositeId);
     }
 
     @Override
@@ -428,13 +456,10 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
                             + quantityValue + " [" + quantityLow + ", " + quantityHigh + "]");
                 }
 
-                setQuantityParms(quantities, parameterNameId, codeSystem, code, quantityValue, quantityLow, quantityHigh);
-                quantities.addBatch();
-
-                if (++quantityCount == batchSize) {
-                    quantities.executeBatch();
-                    quantityCount = 0;
-                }
+                final int codeSystemId = getCodeSystemId(codeSystem);
+                final Integer compositeId = this.currentCompositeId;
+                quantityCount = addRow(quantities, insertQuantity, quantityCount,
+                    ps -> setQuantityParms(ps, parameterNameId, codeSystemId, code, quantityValue, quantityLow, quantityHigh, compositeId));
             } catch (FHIRPersistenceDataAccessException x) {
                 // wrap the exception so we have more context about the parameter causing the problem
                 throw new FHIRPersistenceDataAccessException(parameterName + "=" + code + ":" + codeSystem + "{" + quantityValue + ", " + quantityLow + ", " + quantityHigh + "}", x);
@@ -445,16 +470,16 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
 
     }
 
-    private void setQuantityParms(PreparedStatement insert, int parameterNameId, String codeSystem, String code, BigDecimal quantityValue, BigDecimal quantityLow, BigDecimal quantityHigh)
-            throws SQLException, FHIRPersistenceException {
+    private void setQuantityParms(PreparedStatement insert, int parameterNameId, int codeSystemId, String code, BigDecimal quantityValue, BigDecimal quantityLow, BigDecimal quantityHigh,
+            Integer compositeId) throws SQLException {
         insert.setInt(1, parameterNameId);
-        insert.setInt(2, getCodeSystemId(codeSystem));
+        insert.setInt(2, codeSystemId);
         insert.setString(3, code);
         insert.setBigDecimal(4, quantityValue);
         insert.setBigDecimal(5, quantityLow);
         insert.setBigDecimal(6, quantityHigh);
         insert.setLong(7, logicalResourceId);
-        setCompositeId(insert, 8);
+        setCompositeId(insert, 8, compositeId);
     }
 
     @Override
@@ -471,21 +496,26 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
         }
 
         try {
-            PreparedStatement insert = connection.prepareStatement(insertLocation);
-            setLocationParms(insert, getParameterNameId(parameterName), lat, lng);
-            insert.executeUpdate();
+            final int parameterNameId = getParameterNameId(parameterName);
+            final Integer compositeId = this.currentCompositeId;
+            if (this.deferredRows != null) {
+                this.deferredRows.addRow(insertLocation, logicalResourceId, ps -> setLocationParms(ps, parameterNameId, lat, lng, compositeId));
+            } else {
+                PreparedStatement insert = connection.prepareStatement(insertLocation);
+                setLocationParms(insert, parameterNameId, lat, lng, compositeId);
+                insert.executeUpdate();
+            }
         } catch (SQLException x) {
             throw new FHIRPersistenceDataAccessException(parameterName + "={" + lat + ", " + lng + "}", x);
         }
     }
 
-    private void setLocationParms(PreparedStatement insert, int parameterNameId, double lat, double lng) throws SQLException, FHIRPersistenceException {
+    private void setLocationParms(PreparedStatement insert, int parameterNameId, double lat, double lng, Integer compositeId) throws SQLException {
         insert.setInt(1, parameterNameId);
         insert.setDouble(2, lat);
         insert.setDouble(3, lng);
         insert.setLong(4, logicalResourceId);
-        setCompositeId(insert, 5);
-
+        setCompositeId(insert, 5, compositeId);
     }
 
     @Override
@@ -573,6 +603,9 @@ public class ParameterVisitorBatchDAO implements ExtractedParameterValueVisitor,
      * @param ps
      */
     private void closeStatement(PreparedStatement ps) {
+        if (ps == null) {
+            return;
+        }
         try {
             ps.close();
         } catch (SQLException x) {
@@ -30,8 +30,10 @@ import java.util.logging.Logger;
 
 import javax.transaction.TransactionSynchronizationRegistry;
 
-import com.ibm.fhir.database.utils.query.QueryUtil;
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.database.utils.query.Select;
+import com.ibm.fhir.database.utils.query.SelectSignature;
 import com.ibm.fhir.persistence.context.FHIRPersistenceContext;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
@@ -89,6 +91,17 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
                     "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
                     "LR.LOGICAL_ID = ? AND R.LOGICAL_RESOURCE_ID = LR.LOGICAL_RESOURCE_ID AND R.VERSION_ID = ?";
 
+    // Read the current version of the resource without the payload
+    private static final String SQL_READ_NO_DATA = "SELECT R.RESOURCE_ID, R.LOGICAL_RESOURCE_ID, R.VERSION_ID, R.LAST_UPDATED, R.IS_DELETED, LR.LOGICAL_ID " +
+            "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
+            "LR.LOGICAL_ID = ? AND R.RESOURCE_ID = LR.CURRENT_RESOURCE_ID";
+
+    // Read a specific version of the resource without the payload
+    private static final String SQL_VERSION_READ_NO_DATA =
+            "SELECT R.RESOURCE_ID, R.LOGICAL_RESOURCE_ID, R.VERSION_ID, R.LAST_UPDATED, R.IS_DELETED, LR.LOGICAL_ID " +
+                    "FROM %s_RESOURCES R, %s_LOGICAL_RESOURCES LR WHERE " +
+                    "LR.LOGICAL_ID = ? AND R.LOGICAL_RESOURCE_ID = LR.LOGICAL_RESOURCE_ID AND R.VERSION_ID = ?";
+
     // @formatter:off
     //                                                                                 0
     //                                                                                 1 2 3 4 5 6 7 8
@@ -197,6 +210,20 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         return this.transactionData;
     }
 
+    /**
+     * Discard any parameter data still waiting to be persisted at the end of the
+     * transaction for the given logical resource. Must be called whenever a new version
+     * of a resource is stored, because the parameters of the new version replace (rather
+     * than add to) those of the previous version written in the same transaction.
+     *
+     * @param logicalResourceId
+     */
+    protected void discardPendingParameters(long logicalResourceId) {
+        if (this.transactionData != null) {
+            this.transactionData.discard(logicalResourceId);
+        }
+    }
+
     @Override
     public Resource read(String logicalId, String resourceType) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "read";
@@ -240,6 +267,66 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
 
     }
 
+    @Override
+    public Resource readNoData(String logicalId, String resourceType) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "readNoData";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            return runNoDataQuery(String.format(SQL_READ_NO_DATA, resourceType, resourceType), logicalId);
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    @Override
+    public Resource versionReadNoData(String logicalId, String resourceType, int versionId) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "versionReadNoData";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try {
+            return runNoDataQuery(String.format(SQL_VERSION_READ_NO_DATA, resourceType, resourceType), logicalId, versionId);
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    /**
+     * Run a query selecting a single resource version without the DATA column. The
+     * column order differs from the other resource queries so it can't use {@link #createDTO(ResultSet)}.
+     *
+     * @param sql
+     * @param searchArgs
+     * @return the Resource DTO with no data stream, or null if not found
+     * @throws FHIRPersistenceDataAccessException
+     */
+    private Resource runNoDataQuery(String sql, Object... searchArgs) throws FHIRPersistenceDataAccessException {
+        final long sqlStart = System.nanoTime();
+        Resource resource = null;
+        try (PreparedStatement stmt = getConnection().prepareStatement(sql)) {
+            for (int i = 0; i < searchArgs.length; i++) {
+                stmt.setObject(i + 1, searchArgs[i]);
+            }
+            ResultSet resultSet = stmt.executeQuery();
+            if (resultSet.next()) {
+                resource = new Resource();
+                resource.setId(resultSet.getLong(1));
+                resource.setLogicalResourceId(resultSet.getLong(2));
+                resource.setVersionId(resultSet.getInt(3));
+                resource.setLastUpdated(resultSet.getTimestamp(4));
+                resource.setDeleted("Y".equals(resultSet.getString(5)));
+                resource.setLogicalId(resultSet.getString(6));
+            }
+        } catch (Throwable e) {
+            // avoid leaking SQL because the exception message might be returned to a client
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure retrieving FHIR objects");
+            throw severe(log, fx, "Failure retrieving FHIR objects. SQL=" + sql + "  searchArgs=" + Arrays.toString(searchArgs), e);
+        } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
+        }
+        return resource;
+    }
+
     /**
      * Creates and returns a Resource DTO based on the contents of the passed ResultSet
      *
@@ -452,6 +539,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
     public List<Long> searchForIds(SqlQueryData queryData) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "searchForIds";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         List<Long> resourceIds = new ArrayList<>();
         Connection connection = getConnection(); // do not close
@@ -485,6 +573,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             final String errMsg = "Failure retrieving FHIR Resource Ids. SqlQueryData=" + queryData;
             throw severe(log, fx, errMsg, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             this.cleanup(resultSet, stmt);
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -543,6 +632,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             throws FHIRPersistenceException {
         final String METHODNAME = "insert(Resource, List<ExtractedParameterValue>";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         final Connection connection = getConnection(); // do not close
         CallableStatement stmt = null;
@@ -594,6 +684,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
 
             resource.setId(stmt.getLong(7));
             long versionedResourceRowId = stmt.getLong(8);
+            discardPendingParameters(resource.getId());
             if (large) {
                 String largeStmtString = String.format(LARGE_BLOB, resource.getResourceType());
                 try (PreparedStatement ps = connection.prepareStatement(largeStmtString)) {
@@ -649,6 +740,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure inserting Resource.");
             throw severe(log, fx, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             this.cleanup(stmt);
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -677,6 +769,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "searchByIds";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         if (resourceIds.isEmpty()) {
             return Collections.emptyList();
@@ -724,6 +817,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             errMsg = "Failure retrieving FHIR Resources. SQL=[" + idQuery + "]";
             throw severe(log, fx, errMsg, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             this.cleanup(resultSet, stmt);
             log.exiting(CLASSNAME, METHODNAME);
         }
@@ -773,6 +867,11 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         return this.cache;
     }
 
+    @Override
+    protected Map<SelectSignature, String> getSearchQueryCache() {
+        return this.cache != null ? this.cache.getSearchQueryCache() : null;
+    }
+
     @Override
     public int searchCount(Select countQuery) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         return runCountQuery(countQuery);
@@ -787,6 +886,7 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
     public List<Long> searchForIds(Select dataQuery) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
         final String METHODNAME = "searchForIds";
         log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         List<Long> resourceIds = new ArrayList<>();
         Connection connection = getConnection(); // do not close
@@ -794,8 +894,8 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
         long dbCallStartTime;
         double dbCallDuration;
 
-        // QueryUtil creates a fully bound executable statement
-        try (PreparedStatement stmt = QueryUtil.prepareSelect(connection, dataQuery, getTranslator())) {
+        // Creates a fully bound executable statement
+        try (PreparedStatement stmt = prepareSelect(dataQuery)) {
             dbCallStartTime = System.nanoTime();
             resultSet = stmt.executeQuery();
             dbCallDuration = (System.nanoTime() - dbCallStartTime) / 1e6;
@@ -810,8 +910,72 @@ public class ResourceDAOImpl extends FHIRDbDAOImpl implements ResourceDAO {
             final String errMsg = "Failure retrieving FHIR Resource Ids. SqlQueryData=" + dataQuery.toDebugString();
             throw severe(log, fx, errMsg, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             log.exiting(CLASSNAME, METHODNAME);
         }
         return resourceIds;
    }
-}
\ No newline at end of file
+
+    @Override
+    public List<Object[]> searchForSortKeys(Select sortQuery) throws FHIRPersistenceDataAccessException, FHIRPersistenceDBConnectException {
+        final String METHODNAME = "searchForSortKeys";
+        log.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
+
+        List<Object[]> rows = new ArrayList<>();
+        Connection connection = getConnection(); // do not close
+        ResultSet resultSet = null;
+        long dbCallStartTime;
+        double dbCallDuration;
+
+        // Creates a fully bound executable statement
+        try (PreparedStatement stmt = prepareSelect(sortQuery)) {
+            dbCallStartTime = System.nanoTime();
+            resultSet = stmt.executeQuery();
+            dbCallDuration = (System.nanoTime() - dbCallStartTime) / 1e6;
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("DB search for sort keys complete. " + sortQuery.toString() + "  executionTime=" + dbCallDuration + "ms");
+            }
+            final int columnCount = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                Object[] row = new Object[columnCount];
+                row[0] = resultSet.getLong(1);
+                row[1] = resultSet.getLong(2);
+                for (int i = 3; i <= columnCount; i++) {
+                    row[i-1] = getSortKeyValue(resultSet, i);
+                }
+                rows.add(row);
+            }
+        } catch (Throwable e) {
+            FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure retrieving FHIR Resource Ids");
+            final String errMsg = "Failure retrieving FHIR Resource Ids. SqlQueryData=" + sortQuery.toDebugString();
+            throw severe(log, fx, errMsg, e);
+        } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+        return rows;
+    }
+
+    /**
+     * Read the sort key value from the given column, normalizing the type so that
+     * it can be carried in a page token and bound again
+     * @param resultSet
+     * @param column
+     * @return
+     * @throws SQLException
+     */
+    private Object getSortKeyValue(ResultSet resultSet, int column) throws SQLException {
+        if (resultSet.getMetaData().getColumnType(column) == Types.TIMESTAMP) {
+            Timestamp ts = resultSet.getTimestamp(column, UTC);
+            return ts == null ? null : ts.toInstant();
+        }
+        Object value = resultSet.getObject(column);
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        } else if (value instanceof Integer || value instanceof Short) {
+            return ((Number) value).longValue();
+        }
+        return value;
+    }
+}
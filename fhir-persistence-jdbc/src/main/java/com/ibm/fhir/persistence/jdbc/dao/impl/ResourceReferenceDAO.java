@@ -154,18 +154,22 @@ public abstract class ResourceReferenceDAO implements IResourceReferenceDAO, Aut
 
     @Override
     public void addCommonTokenValues(String resourceType, Collection<ResourceTokenValueRec> xrefs) {
+        resolveIds(xrefs);
+        insertResourceTokenRefs(resourceType, xrefs);
+    }
+
+    @Override
+    public void resolveIds(Collection<ResourceTokenValueRec> records) {
         // Grab the ids for all the code-systems, and upsert any misses
         List<ResourceTokenValueRec> systemMisses = new ArrayList<>();
-        cache.resolveCodeSystems(xrefs, systemMisses);
+        cache.resolveCodeSystems(records, systemMisses);
         upsertCodeSystems(systemMisses);
 
         // Now that all the code-systems ids are known, we can search the cache
         // for all the token values, upserting anything new
         List<ResourceTokenValueRec> valueMisses = new ArrayList<>();
-        cache.resolveTokenValues(xrefs, valueMisses);
+        cache.resolveTokenValues(records, valueMisses);
         upsertCommonTokenValues(valueMisses);
-
-        insertResourceTokenRefs(resourceType, xrefs);
     }
 
     /**
@@ -404,16 +408,7 @@ public abstract class ResourceReferenceDAO implements IResourceReferenceDAO, Aut
 
     @Override
     public void persist(Collection<ResourceTokenValueRec> records) {
-        // Grab the ids for all the code-systems, and upsert any misses
-        List<ResourceTokenValueRec> systemMisses = new ArrayList<>();
-        cache.resolveCodeSystems(records, systemMisses);
-        upsertCodeSystems(systemMisses);
-
-        // Now that all the code-systems ids are known, we can search the cache
-        // for all the token values, upserting anything new
-        List<ResourceTokenValueRec> valueMisses = new ArrayList<>();
-        cache.resolveTokenValues(records, valueMisses);
-        upsertCommonTokenValues(valueMisses);
+        resolveIds(records);
 
         // Now split the records into groups based on resource type.
         Map<String,List<ResourceTokenValueRec>> recordMap = new HashMap<>();
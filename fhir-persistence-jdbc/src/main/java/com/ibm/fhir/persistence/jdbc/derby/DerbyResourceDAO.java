@@ -22,6 +22,8 @@ import java.util.logging.Logger;
 
 import javax.transaction.TransactionSynchronizationRegistry;
 
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.database.utils.derby.DerbyTranslator;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
@@ -92,6 +94,7 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
             throws FHIRPersistenceException {
         final String METHODNAME = "insert";
         logger.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         final Connection connection = getConnection(); // do not close
         Integer resourceTypeId;
@@ -156,6 +159,7 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
             FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure inserting Resource.");
             throw severe(logger, fx, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             logger.exiting(CLASSNAME, METHODNAME);
         }
 
@@ -435,6 +439,9 @@ public class DerbyResourceDAO extends ResourceDAOImpl {
                 stmt.executeUpdate();
             }
 
+            // Any parameters for this resource still pending in the transaction are now stale
+            discardPendingParameters(v_logical_resource_id);
+
             // To keep things simple for the Derby use-case, we just use a visitor to
             // handle inserts of parameters directly in the resource parameter tables.
             // Note we don't get any parameters for the resource soft-delete operation
@@ -0,0 +1,305 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.parameters.QueryParameter;
+import com.ibm.fhir.search.parameters.QueryParameterValue;
+import com.ibm.fhir.search.parameters.SortParameter;
+
+/**
+ * The position of the last row of a search result page, used to fetch the following
+ * page with a keyset (seek) predicate instead of an OFFSET. The token carries the
+ * values of the sort keys of the last row (none for the default ordering) and its
+ * LOGICAL_RESOURCE_ID, which is always the final tie-breaker.
+ *
+ * <p>The encoded form is opaque to clients and is only honored for the page number,
+ * page size and query (see {@link #queryHash(String, FHIRSearchContext)}) it was issued
+ * for, so that a client which edits the _page, _count, _sort or search parameters simply
+ * falls back to OFFSET pagination.
+ */
+public class PageToken {
+    private static final Logger logger = Logger.getLogger(PageToken.class.getName());
+
+    private static final int VERSION = 2;
+
+    // value type markers
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INSTANT = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BIG_DECIMAL = 4;
+    private static final byte LONG = 5;
+
+    // the page number addressed by this token
+    private final int pageNumber;
+
+    // the page size this token was issued for
+    private final int pageSize;
+
+    // hash of the resource type, search parameters and sort parameters this token was issued for
+    private final long queryHash;
+
+    // sort key values of the last row of the previous page
+    private final List<Object> sortValues;
+
+    // LOGICAL_RESOURCE_ID of the last row of the previous page
+    private final long logicalResourceId;
+
+    /**
+     * Public constructor
+     * @param pageNumber the page number addressed by this token
+     * @param pageSize the page size this token was issued for
+     * @param queryHash the {@link #queryHash(String, FHIRSearchContext)} of the query this token was issued for
+     * @param sortValues the sort key values of the last row of the previous page
+     * @param logicalResourceId the LOGICAL_RESOURCE_ID of the last row of the previous page
+     */
+    public PageToken(int pageNumber, int pageSize, long queryHash, List<Object> sortValues, long logicalResourceId) {
+        this.pageNumber = pageNumber;
+        this.pageSize = pageSize;
+        this.queryHash = queryHash;
+        this.sortValues = Collections.unmodifiableList(new ArrayList<>(sortValues));
+        this.logicalResourceId = logicalResourceId;
+    }
+
+    /**
+     * @return the page number addressed by this token
+     */
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    /**
+     * @return the page size this token was issued for
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the hash of the query this token was issued for
+     */
+    public long getQueryHash() {
+        return queryHash;
+    }
+
+    /**
+     * @return the sort key values (String, Instant, Double, BigDecimal, Long or null) of the last row of the previous page
+     */
+    public List<Object> getSortValues() {
+        return sortValues;
+    }
+
+    /**
+     * @return the LOGICAL_RESOURCE_ID of the last row of the previous page
+     */
+    public long getLogicalResourceId() {
+        return logicalResourceId;
+    }
+
+    /**
+     * Check if this token can be used to fetch the given page
+     * @param pageNumber
+     * @param pageSize
+     * @param queryHash the {@link #queryHash(String, FHIRSearchContext)} of the requested query
+     * @param sortKeyCount the number of sort key values expected by the query
+     * @return
+     */
+    public boolean matches(int pageNumber, int pageSize, long queryHash, int sortKeyCount) {
+        return this.pageNumber == pageNumber && this.pageSize == pageSize && this.queryHash == queryHash
+                && this.sortValues.size() == sortKeyCount;
+    }
+
+    /**
+     * Compute a hash of the normalized query: the resource type, the search parameters
+     * (in any order) and the sort parameters (in order, with their direction). Paging
+     * parameters are not part of the hash.
+     * @param resourceType
+     * @param searchContext
+     * @return
+     */
+    public static long queryHash(String resourceType, FHIRSearchContext searchContext) {
+        List<String> parameters = new ArrayList<>();
+        for (QueryParameter parameter : searchContext.getSearchParameters()) {
+            StringBuilder normalized = new StringBuilder();
+            appendParameter(normalized, parameter);
+            parameters.add(normalized.toString());
+        }
+        Collections.sort(parameters);
+
+        StringBuilder query = new StringBuilder(resourceType);
+        for (String parameter : parameters) {
+            query.append('&').append(parameter);
+        }
+        if (searchContext.getSearchResourceTypes() != null) {
+            query.append("&_type=").append(String.join(",", searchContext.getSearchResourceTypes()));
+        }
+        if (searchContext.hasSortParameters()) {
+            for (SortParameter sortParameter : searchContext.getSortParameters()) {
+                query.append('&').append(sortParameter.getDirection().value()).append(sortParameter.getCode());
+            }
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(query.toString().getBytes(StandardCharsets.UTF_8))).getLong();
+        } catch (NoSuchAlgorithmException x) {
+            // SHA-256 is required on every Java platform
+            throw new IllegalStateException(x);
+        }
+    }
+
+    /**
+     * Append the normalized form of the parameter, including any chained parameters
+     * @param normalized
+     * @param parameter
+     */
+    private static void appendParameter(StringBuilder normalized, QueryParameter parameter) {
+        normalized.append(parameter.getCode());
+        if (parameter.getModifier() != null) {
+            normalized.append(':').append(parameter.getModifier().value());
+        }
+        if (parameter.getModifierResourceTypeName() != null) {
+            normalized.append(':').append(parameter.getModifierResourceTypeName());
+        }
+        if (parameter.isReverseChained()) {
+            normalized.append("[rev]");
+        }
+        if (parameter.isInclusionCriteria()) {
+            normalized.append("[inclusion]");
+        }
+        normalized.append('=');
+        String delim = "";
+        for (QueryParameterValue value : parameter.getValues()) {
+            normalized.append(delim).append(value.toString());
+            delim = ",";
+        }
+        if (parameter.getNextParameter() != null) {
+            normalized.append('.');
+            appendParameter(normalized, parameter.getNextParameter());
+        }
+    }
+
+    /**
+     * Encode this token as a URL-safe string
+     * @return
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(pageNumber);
+            out.writeInt(pageSize);
+            out.writeLong(queryHash);
+            out.writeLong(logicalResourceId);
+            out.writeShort(sortValues.size());
+            for (Object value : sortValues) {
+                if (value == null) {
+                    out.writeByte(NULL);
+                } else if (value instanceof String) {
+                    out.writeByte(STRING);
+                    out.writeUTF((String) value);
+                } else if (value instanceof Instant) {
+                    Instant instant = (Instant) value;
+                    out.writeByte(INSTANT);
+                    out.writeLong(instant.getEpochSecond());
+                    out.writeInt(instant.getNano());
+                } else if (value instanceof Double) {
+                    out.writeByte(DOUBLE);
+                    out.writeDouble((Double) value);
+                } else if (value instanceof BigDecimal) {
+                    out.writeByte(BIG_DECIMAL);
+                    out.writeUTF(((BigDecimal) value).toString());
+                } else if (value instanceof Long) {
+                    out.writeByte(LONG);
+                    out.writeLong((Long) value);
+                } else {
+                    throw new IllegalArgumentException("Unsupported sort value type: " + value.getClass().getName());
+                }
+            }
+        } catch (IOException x) {
+            // not expected when writing to a byte array
+            throw new IllegalStateException(x);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * Decode a token previously produced by {@link #encode()}.
+     * @param token
+     * @return the decoded token, or null if the token is absent or cannot be decoded
+     */
+    public static PageToken decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION) {
+                return null;
+            }
+            int pageNumber = in.readInt();
+            int pageSize = in.readInt();
+            long queryHash = in.readLong();
+            long logicalResourceId = in.readLong();
+            int count = in.readShort();
+            List<Object> sortValues = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte type = in.readByte();
+                switch (type) {
+                case NULL:
+                    sortValues.add(null);
+                    break;
+                case STRING:
+                    sortValues.add(in.readUTF());
+                    break;
+                case INSTANT:
+                    sortValues.add(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+                    break;
+                case DOUBLE:
+                    sortValues.add(in.readDouble());
+                    break;
+                case BIG_DECIMAL:
+                    sortValues.add(new BigDecimal(in.readUTF()));
+                    break;
+                case LONG:
+                    sortValues.add(in.readLong());
+                    break;
+                default:
+                    return null;
+                }
+            }
+            if (in.available() > 0) {
+                return null;
+            }
+            return new PageToken(pageNumber, pageSize, queryHash, sortValues, logicalResourceId);
+        } catch (IOException | RuntimeException x) {
+            // The token comes from the client, so we simply ignore it if it's not one of ours
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Ignoring invalid page token: " + x.getMessage());
+            }
+            return null;
+        }
+    }
+}
@@ -30,6 +30,8 @@ import static com.ibm.fhir.persistence.jdbc.JDBCConstants.UNDERSCORE_WILDCARD;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants._LOGICAL_RESOURCES;
 import static com.ibm.fhir.persistence.jdbc.JDBCConstants._RESOURCES;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -50,6 +52,7 @@ import com.ibm.fhir.database.utils.query.WhereAdapter;
 import com.ibm.fhir.database.utils.query.WhereFragment;
 import com.ibm.fhir.database.utils.query.expression.ColumnExpNodeVisitor;
 import com.ibm.fhir.database.utils.query.expression.StringExpNodeVisitor;
+import com.ibm.fhir.database.utils.query.node.BindMarkerNode;
 import com.ibm.fhir.database.utils.query.node.ExpNode;
 import com.ibm.fhir.model.resource.CodeSystem;
 import com.ibm.fhir.model.type.Code;
@@ -102,6 +105,12 @@ public class SearchQueryRenderer implements SearchQueryVisitor<QueryData> {
     // pagination page size
     private final int rowsPerPage;
 
+    // keyset position of the last row of the previous page, or null to use the row offset
+    private final PageToken pageToken;
+
+    // The aggregate sort key expressions added to the sort query, in order
+    private final List<SortKey> sortKeys = new ArrayList<>();
+
     // Counter so we can allocate unique alias names
     private int paramCounter = 0;
 
@@ -113,9 +122,22 @@ public class SearchQueryRenderer implements SearchQueryVisitor<QueryData> {
      */
     public SearchQueryRenderer(JDBCIdentityCache identityCache,
         int rowOffset, int rowsPerPage) {
+        this(identityCache, rowOffset, rowsPerPage, null);
+    }
+
+    /**
+     * Public constructor
+     * @param identityCache
+     * @param rowOffset
+     * @param rowsPerPage
+     * @param pageToken the position to continue from using a keyset predicate instead of the row offset; may be null
+     */
+    public SearchQueryRenderer(JDBCIdentityCache identityCache,
+        int rowOffset, int rowsPerPage, PageToken pageToken) {
         this.identityCache = identityCache;
         this.rowOffset = rowOffset;
         this.rowsPerPage = rowsPerPage;
+        this.pageToken = pageToken;
     }
 
     /**
@@ -245,8 +267,14 @@ public class SearchQueryRenderer implements SearchQueryVisitor<QueryData> {
         // parameters are bolted on as exists statements in the WHERE clause. The final
         // query is constructed when joinResources is called.
         SelectAdapter select = Select.select("LR0.LOGICAL_RESOURCE_ID", "LR0.LOGICAL_ID", "LR0.CURRENT_RESOURCE_ID");
-        select.from(xxLogicalResources, alias(lrAliasName))
+        WhereAdapter where = select.from(xxLogicalResources, alias(lrAliasName))
             .where(lrAliasName, IS_DELETED).eq().literal("N");
+
+        if (pageToken != null) {
+            // Seek past the last row of the previous page instead of using an offset. The
+            // default ordering is by LOGICAL_RESOURCE_ID (see addSorting)
+            where.and(lrAliasName, "LOGICAL_RESOURCE_ID").gt(bind(pageToken.getLogicalResourceId()));
+        }
         return new QueryData(select, lrAliasName, null, rootResourceType, 0);
     }
 
@@ -337,12 +365,13 @@ public class SearchQueryRenderer implements SearchQueryVisitor<QueryData> {
         // The core data query joining together the logical resources table. Query
         // parameters are bolted on as exists statements in the WHERE clause. The final
         // query is constructed when joinResources is called.
-        SelectAdapter select = Select.select("LR0.CURRENT_RESOURCE_ID");
+        // LOGICAL_RESOURCE_ID is the final tie-breaker for the sort order (see addSortPagination)
+        SelectAdapter select = Select.select("LR0.CURRENT_RESOURCE_ID", "LR0.LOGICAL_RESOURCE_ID");
         select.from(xxLogicalResources, alias(lrAliasName))
             .where(lrAliasName, IS_DELETED).eq().literal("N");
 
         // We need to group the sort parameters to address any duplicates
-        select.from().groupBy("LR0.CURRENT_RESOURCE_ID");
+        select.from().groupBy("LR0.CURRENT_RESOURCE_ID", "LR0.LOGICAL_RESOURCE_ID");
         return new QueryData(select, lrAliasName, null, rootResourceType, 0);
     }
 
@@ -706,10 +735,135 @@ public class SearchQueryRenderer implements SearchQueryVisitor<QueryData> {
 
     @Override
     public QueryData addPagination(QueryData queryData) {
-        queryData.getQuery().pagination(rowOffset, rowsPerPage);
+        // With a page token, the keyset predicate has already skipped the earlier rows
+        queryData.getQuery().pagination(pageToken != null ? 0 : rowOffset, rowsPerPage);
         return queryData;
     }
 
+    @Override
+    public QueryData addSortPagination(QueryData queryData) {
+        final String lrLogicalResourceId = DataDefinitionUtil.getQualifiedName(queryData.getLRAlias(), "LOGICAL_RESOURCE_ID");
+        SelectAdapter query = queryData.getQuery();
+
+        if (pageToken == null || pageToken.getSortValues().size() != sortKeys.size()) {
+            // ORDER BY MIN(P1.STR_VALUE) ASC NULLS LAST, ..., LR0.LOGICAL_RESOURCE_ID
+            for (SortKey sortKey: sortKeys) {
+                query.from().orderBy(sortKey.expression + " " + sortKey.getDirectionSql());
+            }
+            query.from().orderBy(lrLogicalResourceId);
+            query.pagination(rowOffset, rowsPerPage);
+            return queryData;
+        }
+
+        // The aggregated sort keys can't be referenced in a WHERE clause, so wrap the grouped
+        // query and seek past the last row of the previous page using the key column aliases:
+        //   SELECT S.CURRENT_RESOURCE_ID, S.LOGICAL_RESOURCE_ID, S.SK1, ...
+        //     FROM (...) AS S
+        //    WHERE <keyset predicate>
+        // ORDER BY S.SK1 ASC NULLS LAST, ..., S.LOGICAL_RESOURCE_ID
+        final String sAlias = "S";
+        List<String> columns = new ArrayList<>();
+        columns.add(DataDefinitionUtil.getQualifiedName(sAlias, "CURRENT_RESOURCE_ID"));
+        columns.add(DataDefinitionUtil.getQualifiedName(sAlias, "LOGICAL_RESOURCE_ID"));
+        for (SortKey sortKey: sortKeys) {
+            columns.add(DataDefinitionUtil.getQualifiedName(sAlias, sortKey.alias));
+        }
+        SelectAdapter select = Select.select(columns.toArray(new String[columns.size()]));
+        select.from(query.build(), alias(sAlias))
+            .where(getKeysetFilter(sAlias).getExpression());
+
+        for (SortKey sortKey: sortKeys) {
+            select.from().orderBy(DataDefinitionUtil.getQualifiedName(sAlias, sortKey.alias) + " " + sortKey.getDirectionSql());
+        }
+        select.from().orderBy(DataDefinitionUtil.getQualifiedName(sAlias, "LOGICAL_RESOURCE_ID"));
+        select.pagination(0, rowsPerPage);
+        return new QueryData(select, sAlias, null, queryData.getResourceType(), queryData.getChainDepth());
+    }
+
+    /**
+     * Build the keyset predicate selecting the rows which follow the position held by the
+     * page token, honoring the direction of each sort key and NULLS LAST:
+     * <pre>
+     *    (S.SK1 > ? OR S.SK1 IS NULL)
+     * OR (S.SK1 = ? AND (S.SK2 < ? OR S.SK2 IS NULL))
+     * OR (S.SK1 = ? AND S.SK2 = ? AND S.LOGICAL_RESOURCE_ID > ?)
+     * </pre>
+     * @param sAlias the alias of the wrapped sort query
+     * @return
+     */
+    private WhereFragment getKeysetFilter(String sAlias) {
+        final List<Object> values = pageToken.getSortValues();
+        WhereFragment where = new WhereFragment();
+        where.leftParen();
+        for (int i=0; i<sortKeys.size(); i++) {
+            final Object value = values.get(i);
+            if (value == null) {
+                // nulls sort last, so nothing can follow a null in this key
+                continue;
+            }
+            where.leftParen();
+            addKeysetEquals(where, sAlias, i);
+            final SortKey sortKey = sortKeys.get(i);
+            where.leftParen().col(sAlias, sortKey.alias);
+            if (sortKey.direction == Direction.INCREASING) {
+                where.gt(bindSortValue(value));
+            } else {
+                where.lt(bindSortValue(value));
+            }
+            where.or().col(sAlias, sortKey.alias).isNull().rightParen();
+            where.rightParen();
+            where.or();
+        }
+
+        // All the sort keys are equal, so fall through to the tie-breaker
+        where.leftParen();
+        addKeysetEquals(where, sAlias, sortKeys.size());
+        where.col(sAlias, "LOGICAL_RESOURCE_ID").gt(bind(pageToken.getLogicalResourceId()));
+        where.rightParen();
+        where.rightParen();
+        return where;
+    }
+
+    /**
+     * Add the equality predicates for the first count sort keys, each followed by AND
+     * @param where
+     * @param sAlias
+     * @param count
+     */
+    private void addKeysetEquals(WhereFragment where, String sAlias, int count) {
+        final List<Object> values = pageToken.getSortValues();
+        for (int i=0; i<count; i++) {
+            final Object value = values.get(i);
+            where.col(sAlias, sortKeys.get(i).alias);
+            if (value == null) {
+                where.isNull();
+            } else {
+                where.eq(bindSortValue(value));
+            }
+            where.and();
+        }
+    }
+
+    /**
+     * Create a bind marker for a sort key value read back from a page token
+     * @param value
+     * @return
+     */
+    private BindMarkerNode bindSortValue(Object value) {
+        if (value instanceof String) {
+            return bind((String) value);
+        } else if (value instanceof Instant) {
+            return bind((Instant) value);
+        } else if (value instanceof Double) {
+            return bind((Double) value);
+        } else if (value instanceof BigDecimal) {
+            return bind((BigDecimal) value);
+        } else if (value instanceof Long) {
+            return bind((Long) value);
+        }
+        throw new IllegalArgumentException("Unsupported sort value type: " + value.getClass().getName());
+    }
+
     /**
      * Get the parameter values table name (e.g. Patient_STR_VALUES) for the
      * given resource and parameter type. Note that this is now different from
@@ -1917,13 +2071,10 @@ SELECT R0.RESOURCE_ID, R0.LOGICAL_RESOURCE_ID, R0.VERSION_ID, R0.LAST_UPDATED, R
         valueAttributeNames = this.getValueAttributeNames(type);
         for (String attributeName : valueAttributeNames) {
             StringBuilder expression = new StringBuilder();
-            final String dirExp;
             if (direction == Direction.INCREASING) {
                 expression.append(MIN);
-                dirExp = "ASC";
             } else {
                 expression.append(MAX);
-                dirExp = "DESC";
             }
             expression.append(LEFT_PAREN);
 
@@ -1934,12 +2085,11 @@ SELECT R0.RESOURCE_ID, R0.LOGICAL_RESOURCE_ID, R0.VERSION_ID, R0.LAST_UPDATED, R
             }
             expression.append(RIGHT_PAREN);
 
-            // add the aggregate column expression to the select list clause
-            query.addColumn(null, expression.toString(), null);
-
-            // Add the column to the order by clause
-            expression.append(" ").append(dirExp).append(" NULLS LAST");
-            query.from().orderBy(expression.toString());
+            // add the aggregate column expression to the select list clause. The
+            // order by clause is added once all the sort keys are known (see addSortPagination)
+            final String keyAlias = "SK" + (sortKeys.size() + 1);
+            query.addColumn(null, expression.toString(), alias(keyAlias));
+            sortKeys.add(new SortKey(keyAlias, expression.toString(), direction));
         }
 
         logger.exiting(CLASSNAME, METHODNAME);
@@ -1985,4 +2135,30 @@ SELECT R0.RESOURCE_ID, R0.LOGICAL_RESOURCE_ID, R0.VERSION_ID, R0.LAST_UPDATED, R
         logger.exiting(CLASSNAME, METHODNAME);
         return attributeNames;
     }
-}
\ No newline at end of file
+
+    /**
+     * An aggregate sort key expression added to the sort query
+     */
+    private static class SortKey {
+        // the column alias of the key in the sort query select list
+        private final String alias;
+
+        // the aggregate expression, e.g. MIN(P1.STR_VALUE)
+        private final String expression;
+
+        private final Direction direction;
+
+        private SortKey(String alias, String expression, Direction direction) {
+            this.alias = alias;
+            this.expression = expression;
+            this.direction = direction;
+        }
+
+        /**
+         * @return the SQL ordering for this key
+         */
+        private String getDirectionSql() {
+            return direction == Direction.INCREASING ? "ASC NULLS LAST" : "DESC NULLS LAST";
+        }
+    }
+}
@@ -199,6 +199,14 @@ public interface SearchQueryVisitor<T> {
      */
     T addPagination(T query);
 
+    /**
+     * Add the ordering and pagination to the sort query, once all the sort
+     * parameters have been added
+     * @param query
+     * @return
+     */
+    T addSortPagination(T query);
+
     /**
      * Add a chain subquery element as part of a chained parameter search
      * @param currentSubQuery
@@ -60,7 +60,7 @@ public class SearchSortQuery extends SearchQuery {
             dsp.visit(query, visitor);
         }
 
-        query = visitor.addPagination(query);
+        query = visitor.addSortPagination(query);
 
         return query;
     }
@@ -9,6 +9,7 @@ package com.ibm.fhir.persistence.jdbc.impl;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_CODE_SYSTEMS_CACHE;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_PARAMETER_NAMES_CACHE;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_JDBC_ENABLE_RESOURCE_TYPES_CACHE;
+import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_SEARCH_ENABLE_KEYSET_PAGINATION;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_SEARCH_ENABLE_OPT_QUERY_BUILDER;
 import static com.ibm.fhir.config.FHIRConfiguration.PROPERTY_UPDATE_CREATE_ENABLED;
 import static com.ibm.fhir.model.type.String.string;
@@ -18,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
 import java.time.ZoneOffset;
 import java.time.temporal.TemporalAccessor;
@@ -27,6 +29,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -49,6 +52,8 @@ import com.ibm.fhir.config.FHIRConfigProvider;
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.config.PropertyGroup;
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.core.FHIRConstants;
 import com.ibm.fhir.core.FHIRUtilities;
 import com.ibm.fhir.core.context.FHIRPagingContext;
@@ -83,9 +88,11 @@ import com.ibm.fhir.path.FHIRPathNode;
 import com.ibm.fhir.path.FHIRPathSystemValue;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.persistence.CompressedResourcePayload;
 import com.ibm.fhir.persistence.FHIRPersistence;
 import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
 import com.ibm.fhir.persistence.MultiResourceResult;
+import com.ibm.fhir.persistence.ReindexRange;
 import com.ibm.fhir.persistence.ResourceChangeLogRecord;
 import com.ibm.fhir.persistence.ResourceEraseRecord;
 import com.ibm.fhir.persistence.ResourcePayload;
@@ -101,6 +108,7 @@ import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
 import com.ibm.fhir.persistence.jdbc.FHIRResourceDAOFactory;
 import com.ibm.fhir.persistence.jdbc.JDBCConstants;
 import com.ibm.fhir.persistence.jdbc.cache.FHIRPersistenceJDBCCacheUtil;
+import com.ibm.fhir.persistence.jdbc.cache.ResourceCache;
 import com.ibm.fhir.persistence.jdbc.connection.Action;
 import com.ibm.fhir.persistence.jdbc.connection.CreateTempTablesAction;
 import com.ibm.fhir.persistence.jdbc.connection.FHIRDbConnectionStrategy;
@@ -124,9 +132,11 @@ import com.ibm.fhir.persistence.jdbc.dao.impl.FetchResourceChangesDAO;
 import com.ibm.fhir.persistence.jdbc.dao.impl.FetchResourcePayloadsDAO;
 import com.ibm.fhir.persistence.jdbc.dao.impl.JDBCIdentityCacheImpl;
 import com.ibm.fhir.persistence.jdbc.dao.impl.ParameterDAOImpl;
+import com.ibm.fhir.persistence.jdbc.dao.impl.ParameterRowBatch;
 import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceReferenceDAO;
 import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceTokenValueRec;
 import com.ibm.fhir.persistence.jdbc.dao.impl.TransactionDataImpl;
+import com.ibm.fhir.persistence.jdbc.domain.PageToken;
 import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
 import com.ibm.fhir.persistence.jdbc.dto.DateParmVal;
 import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
@@ -139,9 +149,11 @@ import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceFKVException;
 import com.ibm.fhir.persistence.jdbc.util.CodeSystemsCache;
+import com.ibm.fhir.persistence.jdbc.util.CommonTokenValueCollector;
 import com.ibm.fhir.persistence.jdbc.util.JDBCParameterBuildingVisitor;
 import com.ibm.fhir.persistence.jdbc.util.JDBCQueryBuilder;
 import com.ibm.fhir.persistence.jdbc.util.NewQueryBuilder;
+import com.ibm.fhir.persistence.jdbc.util.ParameterHashVisitor;
 import com.ibm.fhir.persistence.jdbc.util.ParameterNamesCache;
 import com.ibm.fhir.persistence.jdbc.util.ResourceTypesCache;
 import com.ibm.fhir.persistence.jdbc.util.SqlQueryData;
@@ -180,6 +192,17 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
     public static final String TRX_SYNCH_REG_JNDI_NAME = "java:comp/TransactionSynchronizationRegistry";
     private static final String TXN_DATA_KEY = "transactionDataKey/" + CLASSNAME;
 
+    // The max number of rows per batch when inserting the parameter rows accumulated in a transaction
+    private static final int PARAMETER_ROW_BATCH_SIZE = 1000;
+
+    // The max number of distinct token values resolved per statement when preparing a bundle
+    private static final int PREPARE_TOKEN_VALUE_BATCH_SIZE = 1000;
+
+    // The request context property holding the search parameter values extracted by prepare, keyed by the
+    // identity of the resource they were extracted from. The request context copies made for the other threads
+    // working on the request share the map, so the values can be used by whichever instance stores the resource
+    private static final String PREPARED_PARAMETERS_KEY = "preparedParameters/" + CLASSNAME;
+
     // The following are filtered as they are handled specifically by the persistence layer:
     private static final List<String> SPECIAL_HANDLING = Arrays.asList("_id", "_lastUpdated");
 
@@ -213,6 +236,9 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
     // Use the optimized query builder when supported for the search request
     private final boolean optQueryBuilderEnabled;
 
+    // Continue from the last row of the previous page (keyset pagination) when the request carries a page token
+    private final boolean keysetPaginationEnabled;
+
     /**
      * Constructor for use when running as web application in WLP.
      * @throws Exception
@@ -247,6 +273,9 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         // new query builder enabled by default
         this.optQueryBuilderEnabled = fhirConfig.getBooleanProperty(PROPERTY_SEARCH_ENABLE_OPT_QUERY_BUILDER, true);
 
+        // keyset pagination disabled by default because the page token carries sort values in the next link
+        this.keysetPaginationEnabled = fhirConfig.getBooleanProperty(PROPERTY_SEARCH_ENABLE_KEYSET_PAGINATION, false);
+
         // Set up the connection strategy for use within a JEE container. The actions
         // are processed the first time a connection is established to a particular tenant/datasource.
         this.configProvider = new DefaultFHIRConfigProvider(); // before buildActionChain()
@@ -324,6 +353,9 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         // Always want to be testing with the new query builder
         this.optQueryBuilderEnabled = true;
 
+        // ...and with keyset pagination
+        this.keysetPaginationEnabled = true;
+
         log.exiting(CLASSNAME, METHODNAME);
     }
 
@@ -409,7 +441,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
 
             // Persist the Resource DTO.
             resourceDao.setPersistenceContext(context);
-            resourceDao.insert(resourceDTO, this.extractSearchParameters(updatedResource, resourceDTO), parameterDao);
+            resourceDao.insert(resourceDTO, this.getSearchParameters(resource, updatedResource, resourceDTO), parameterDao);
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Persisted FHIR Resource '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "' id=" + resourceDTO.getId()
                             + ", version=" + resourceDTO.getVersionId());
@@ -544,6 +576,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
                 existingResourceDTO = resourceDao.read(logicalId, resourceType.getSimpleName());
                 if (existingResourceDTO != null) {
                     existingVersion = existingResourceDTO.getVersionId();
+                    supersedeCachedResource(existingResourceDTO);
                 }
             }
 
@@ -595,7 +628,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
 
             // Persist the Resource DTO.
             resourceDao.setPersistenceContext(context);
-            resourceDao.insert(resourceDTO, this.extractSearchParameters(updatedResource, resourceDTO), parameterDao);
+            resourceDao.insert(resourceDTO, this.getSearchParameters(resource, updatedResource, resourceDTO), parameterDao);
             if (log.isLoggable(Level.FINE)) {
                 log.fine("Persisted FHIR Resource '" + resourceDTO.getResourceType() + "/" + resourceDTO.getLogicalId() + "' id=" + resourceDTO.getId()
                             + ", version=" + resourceDTO.getVersionId());
@@ -636,6 +669,9 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
     public MultiResourceResult<Resource> search(FHIRPersistenceContext context, Class<? extends Resource> resourceType)
             throws FHIRPersistenceException {
 
+        // Parameters deferred until the end of the transaction must be stored before we query them
+        flushTransactionParameterRows();
+
         // Fall back to the old search code for whole-system searches which are not yet supported
         // by the new code.
         if (isSystemLevelSearch(resourceType) || !this.optQueryBuilderEnabled) {
@@ -705,7 +741,9 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
             if ((searchResultCount == null || searchResultCount > 0)
                     && !SummaryValueSet.COUNT.equals(searchContext.getSummaryParameter())
                     && searchContext.getPageSize() > 0) {
-                query = queryBuilder.buildQuery(resourceType, searchContext);
+                // A page token from the previous page lets us seek instead of scanning past the offset
+                PageToken pageToken = keysetPaginationEnabled ? PageToken.decode(searchContext.getPageToken()) : null;
+                query = queryBuilder.buildQuery(resourceType, searchContext, pageToken);
 
                 List<String> elements = searchContext.getElementsParameters();
 
@@ -738,10 +776,30 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
                 // path than other sorted searches. Since _include and _revinclude are not supported
                 // with system-level search, no special logic to handle it differently is needed here.
                 List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList;
+                List<Object> lastSortValues = Collections.emptyList();
+                Long lastLogicalResourceId = null;
                 if (searchContext.hasSortParameters() && !resourceType.equals(Resource.class)) {
-                    resourceDTOList = this.buildSortedResourceDTOList(resourceDao, resourceType, resourceDao.searchForIds(query));
+                    // each row is [CURRENT_RESOURCE_ID, LOGICAL_RESOURCE_ID, sort key values...]
+                    List<Object[]> sortRows = resourceDao.searchForSortKeys(query);
+                    List<Long> sortedIdList = new ArrayList<>(sortRows.size());
+                    for (Object[] row: sortRows) {
+                        sortedIdList.add((Long) row[0]);
+                    }
+                    if (!sortRows.isEmpty()) {
+                        Object[] lastRow = sortRows.get(sortRows.size()-1);
+                        lastLogicalResourceId = (Long) lastRow[1];
+                        lastSortValues = Arrays.asList(Arrays.copyOfRange(lastRow, 2, lastRow.length));
+                    }
+                    resourceDTOList = this.buildSortedResourceDTOList(resourceDao, resourceType, sortedIdList);
                 } else {
                     resourceDTOList = resourceDao.search(query);
+                    if (!resourceDTOList.isEmpty()) {
+                        lastLogicalResourceId = resourceDTOList.get(resourceDTOList.size()-1).getLogicalResourceId();
+                    }
+                }
+
+                if (keysetPaginationEnabled && lastLogicalResourceId != null) {
+                    setNextPageToken(searchContext, resourceType, resourceDTOList.size(), lastSortValues, lastLogicalResourceId);
                 }
 
                 resources = this.convertResourceDTOList(resourceDTOList, resourceType, elements);
@@ -754,7 +812,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
                 if (resources.size() > 0 && (searchContext.hasIncludeParameters() || searchContext.hasRevIncludeParameters())) {
                     List<com.ibm.fhir.persistence.jdbc.dto.Resource> includeDTOList =
                             newSearchForIncludeResources(searchContext, resourceType, queryBuilder, resourceDao, resourceDTOList);
-                    resources.addAll(this.convertResourceDTOList(includeDTOList, resourceType, null));
+                    resources.addAll(this.convertResourceDTOList(includeDTOList, resourceType, null, true));
                 }
             }
 
@@ -880,7 +938,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
                 if (resources.size() > 0 && (searchContext.hasIncludeParameters() || searchContext.hasRevIncludeParameters())) {
                     List<com.ibm.fhir.persistence.jdbc.dto.Resource> includeDTOList =
                             searchForIncludeResources(searchContext, resourceType, queryBuilder, resourceDao, resourceDTOList);
-                    resources.addAll(this.convertResourceDTOList(includeDTOList, resourceType, null));
+                    resources.addAll(this.convertResourceDTOList(includeDTOList, resourceType, null, true));
                 }
             }
 
@@ -1380,6 +1438,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
             }
 
             existingResource = this.convertResourceDTO(existingResourceDTO, resourceType, null);
+            supersedeCachedResource(existingResourceDTO);
 
             // Resources are immutable, so we need a new builder to update it (since R4)
             resourceBuilder = existingResource.toBuilder();
@@ -1495,12 +1554,22 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         try (Connection connection = openConnection()) {
             ResourceDAO resourceDao = makeResourceDAO(connection);
 
-            resourceDTO = resourceDao.read(logicalId, resourceType.getSimpleName());
+            // With the resource cache, read the version first and only fetch the payload on a miss
+            ResourceCache resourceCache = elements == null ? cache.getResourceCache() : null;
+            if (resourceCache != null) {
+                resourceDTO = resourceDao.readNoData(logicalId, resourceType.getSimpleName());
+            } else {
+                resourceDTO = resourceDao.read(logicalId, resourceType.getSimpleName());
+            }
             if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
                 throw new FHIRPersistenceResourceDeletedException("Resource '" +
                         resourceType.getSimpleName() + "/" + logicalId + "' is deleted.");
             }
-            resource = this.convertResourceDTO(resourceDTO, resourceType, elements);
+            if (resourceCache != null) {
+                resource = this.readThroughResourceCache(resourceCache, resourceDao, resourceDTO, resourceType);
+            } else {
+                resource = this.convertResourceDTO(resourceDTO, resourceType, elements);
+            }
 
             SingleResourceResult<T> result = new SingleResourceResult.Builder<T>()
                     .success(true)
@@ -1593,6 +1662,27 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         }
     }
 
+    /**
+     * Record the position of the last row of a full page in the search context so that
+     * the next link can continue from it using a keyset predicate instead of an offset.
+     *
+     * @param searchContext
+     * @param resourceType
+     * @param rowCount the number of rows returned for the current page
+     * @param lastSortValues the sort key values of the last row
+     * @param lastLogicalResourceId the LOGICAL_RESOURCE_ID of the last row
+     */
+    private void setNextPageToken(FHIRSearchContext searchContext, Class<?> resourceType, int rowCount, List<Object> lastSortValues,
+            long lastLogicalResourceId) {
+        final int pageNumber = searchContext.getPageNumber();
+        final int pageSize = searchContext.getPageSize();
+        if (rowCount == pageSize && pageNumber < searchContext.getLastPageNumber()) {
+            PageToken nextPageToken = new PageToken(pageNumber + 1, pageSize, PageToken.queryHash(resourceType.getSimpleName(), searchContext),
+                    lastSortValues, lastLogicalResourceId);
+            searchContext.setNextPageToken(nextPageToken.encode());
+        }
+    }
+
     /**
      * Validate pageSize and pageNumber in the FHIRPagingContext instance and update
      * paging context parameters accordingly.
@@ -1704,12 +1794,21 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
             ResourceDAO resourceDao = makeResourceDAO(connection);
 
             version = Integer.parseInt(versionId);
-            resourceDTO = resourceDao.versionRead(logicalId, resourceType.getSimpleName(), version);
+            ResourceCache resourceCache = elements == null ? cache.getResourceCache() : null;
+            if (resourceCache != null) {
+                resourceDTO = resourceDao.versionReadNoData(logicalId, resourceType.getSimpleName(), version);
+            } else {
+                resourceDTO = resourceDao.versionRead(logicalId, resourceType.getSimpleName(), version);
+            }
             if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
                 throw new FHIRPersistenceResourceDeletedException("Resource '" +
                         resourceType.getSimpleName() + "/" + logicalId + "' version " + versionId + " is deleted.");
             }
-            resource = this.convertResourceDTO(resourceDTO, resourceType, elements);
+            if (resourceCache != null) {
+                resource = this.readThroughResourceCache(resourceCache, resourceDao, resourceDTO, resourceType);
+            } else {
+                resource = this.convertResourceDTO(resourceDTO, resourceType, elements);
+            }
 
             SingleResourceResult<T> result = new SingleResourceResult.Builder<T>()
                     .success(true)
@@ -1734,6 +1833,60 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         }
     }
 
+    @Override
+    public boolean isPayloadReadSupported() {
+        return true;
+    }
+
+    /**
+     * @throws FHIRPersistenceResourceDeletedException if the resource being read is currently in a deleted state and
+     *         FHIRPersistenceContext.includeDeleted() is set to false
+     */
+    @Override
+    public CompressedResourcePayload readPayload(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId,
+            String versionId) throws FHIRPersistenceException {
+        final String METHODNAME = "readPayload";
+        log.entering(CLASSNAME, METHODNAME);
+
+        com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO = null;
+
+        try (Connection connection = openConnection()) {
+            ResourceDAO resourceDao = makeResourceDAO(connection);
+
+            if (versionId == null) {
+                resourceDTO = resourceDao.read(logicalId, resourceType.getSimpleName());
+            } else {
+                resourceDTO = resourceDao.versionRead(logicalId, resourceType.getSimpleName(), Integer.parseInt(versionId));
+            }
+            if (resourceDTO != null && resourceDTO.isDeleted() && !context.includeDeleted()) {
+                throw new FHIRPersistenceResourceDeletedException("Resource '" + resourceType.getSimpleName() + "/" + logicalId + "'"
+                        + (versionId == null ? "" : " version " + versionId) + " is deleted.");
+            }
+            if (resourceDTO == null || resourceDTO.getDataStream() == null) {
+                return null;
+            }
+
+            // LAST_UPDATED is stored as a UTC wall-clock value
+            java.time.Instant lastUpdated = resourceDTO.getLastUpdated().toLocalDateTime().toInstant(ZoneOffset.UTC);
+            return new CompressedResourcePayload(resourceType.getSimpleName(), logicalId, resourceDTO.getVersionId(), lastUpdated,
+                resourceDTO.getDataStream());
+        }
+        catch(FHIRPersistenceResourceDeletedException e) {
+            throw e;
+        }
+        catch (NumberFormatException e) {
+            throw new FHIRPersistenceException("Invalid version id specified for vread operation: " + versionId);
+        }
+        catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while reading a resource payload.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+        finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
     /**
      * This method takes the passed list of sorted Resource ids, acquires the ResourceDTO corresponding to each id,
      * and returns those ResourceDTOs in a List, sorted according to the input sorted ids.
@@ -1806,13 +1959,35 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
      */
     protected List<Resource> convertResourceDTOList(List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList,
             Class<? extends Resource> resourceType, List<String> elements) throws FHIRException, IOException {
+        return convertResourceDTOList(resourceDTOList, resourceType, elements, false);
+    }
+
+    /**
+     * Converts the passed Resource Data Transfer Object collection to a collection of FHIR Resource objects.
+     * @param resourceDTOList
+     * @param resourceType
+     * @param elements
+     * @param useResourceCache use the resource cache (if enabled) to avoid parsing resources already cached
+     * @return
+     * @throws FHIRException
+     * @throws IOException
+     */
+    protected List<Resource> convertResourceDTOList(List<com.ibm.fhir.persistence.jdbc.dto.Resource> resourceDTOList,
+            Class<? extends Resource> resourceType, List<String> elements, boolean useResourceCache) throws FHIRException, IOException {
         final String METHODNAME = "convertResourceDTO List";
         log.entering(CLASSNAME, METHODNAME);
 
+        final ResourceCache resourceCache = useResourceCache && elements == null ? cache.getResourceCache() : null;
         List<Resource> resources = new ArrayList<>();
         try {
             for (com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO : resourceDTOList) {
-                Resource existingResource = this.convertResourceDTO(resourceDTO, resourceType, elements);
+                Resource existingResource = resourceCache != null ? resourceCache.get(resourceDTO.getId()) : null;
+                if (existingResource == null) {
+                    existingResource = this.convertResourceDTO(resourceDTO, resourceType, elements);
+                    if (resourceCache != null && existingResource != null) {
+                        resourceCache.put(resourceDTO.getId(), existingResource);
+                    }
+                }
                 if (resourceDTO.isDeleted()) {
                     Resource deletedResourceMarker = FHIRPersistenceUtil.createDeletedResourceMarker(existingResource);
                     resources.add(deletedResourceMarker);
@@ -1881,6 +2056,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
              throws Exception {
         final String METHODNAME = "extractSearchParameters";
         log.entering(CLASSNAME, METHODNAME);
+        final long start = System.nanoTime();
 
         Map<SearchParameter, List<FHIRPathNode>> map;
         String code;
@@ -2094,11 +2270,51 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
             // for compartment-based searches
             addCompartmentParams(allParameters, fhirResource);
         } finally {
+            RequestTimer.stop(RequestPhase.EXTRACTION, start);
             log.exiting(CLASSNAME, METHODNAME);
         }
         return allParameters;
     }
 
+    /**
+     * Get the search parameter values of a resource which is about to be stored. The values extracted by
+     * {@link #prepare(List)} are used if the resource is the same object that was passed to it; they are the same
+     * as the values of the updated resource because it only differs in its id and meta.versionId/lastUpdated, and
+     * _id and _lastUpdated are handled separately.
+     *
+     * @param resource the resource passed to create or update
+     * @param updatedResource the resource to be stored, with its id and meta set
+     * @param resourceDTO
+     * @return the search parameter values
+     * @throws Exception
+     */
+    private List<ExtractedParameterValue> getSearchParameters(Resource resource, Resource updatedResource,
+            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO) throws Exception {
+        @SuppressWarnings("unchecked")
+        Map<Resource, PreparedParameters> prepared =
+                (Map<Resource, PreparedParameters>) FHIRRequestContext.get().getExtendedOperationProperties(PREPARED_PARAMETERS_KEY);
+        PreparedParameters preparedParameters = prepared != null ? prepared.remove(resource) : null;
+        if (preparedParameters == null) {
+            return this.extractSearchParameters(updatedResource, resourceDTO);
+        }
+        supplementalIssues.addAll(preparedParameters.warnings);
+        return preparedParameters.parameters;
+    }
+
+    /**
+     * The search parameter values extracted from a resource by {@link #prepare(List)}, and the warnings
+     * raised while extracting them
+     */
+    private static class PreparedParameters {
+        private final List<ExtractedParameterValue> parameters;
+        private final List<OperationOutcome.Issue> warnings;
+
+        private PreparedParameters(List<ExtractedParameterValue> parameters, List<OperationOutcome.Issue> warnings) {
+            this.parameters = parameters;
+            this.warnings = warnings;
+        }
+    }
+
     /**
      * Augment the given allParameters list with ibm-internal parameters that represent relationships
      * between the fhirResource to its compartments. These parameter values are subsequently used
@@ -2281,6 +2497,49 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         return resources;
     }
 
+    /**
+     * Get the resource version described by the given DTO from the resource cache, fetching
+     * and parsing its payload on a miss.
+     * @param resourceCache
+     * @param resourceDao
+     * @param resourceDTO a Resource DTO read without its payload, or null
+     * @param resourceType
+     * @return the resource, or null if resourceDTO is null or the version no longer exists
+     * @throws FHIRPersistenceException
+     * @throws FHIRException
+     * @throws IOException
+     */
+    private <T extends Resource> T readThroughResourceCache(ResourceCache resourceCache, ResourceDAO resourceDao,
+            com.ibm.fhir.persistence.jdbc.dto.Resource resourceDTO, Class<T> resourceType) throws FHIRPersistenceException, FHIRException, IOException {
+        if (resourceDTO == null) {
+            return null;
+        }
+
+        T resource = resourceCache.get(resourceDTO.getId());
+        if (resource == null) {
+            com.ibm.fhir.persistence.jdbc.dto.Resource payloadDTO =
+                    resourceDao.versionRead(resourceDTO.getLogicalId(), resourceType.getSimpleName(), resourceDTO.getVersionId());
+            resource = this.convertResourceDTO(payloadDTO, resourceType, null);
+            if (resource != null) {
+                resourceCache.put(resourceDTO.getId(), resource);
+            }
+        }
+        return resource;
+    }
+
+    /**
+     * Evict the given version from the resource cache when the current transaction commits,
+     * because it is being replaced by a new version. Versions are never modified in place, so
+     * this only frees space for the resources which are still read.
+     * @param existingResourceDTO
+     */
+    private void supersedeCachedResource(com.ibm.fhir.persistence.jdbc.dto.Resource existingResourceDTO) {
+        ResourceCache resourceCache = cache.getResourceCache();
+        if (resourceCache != null) {
+            resourceCache.supersede(existingResourceDTO.getId());
+        }
+    }
+
     /**
      * Converts the passed Resource Data Transfer Object to a FHIR Resource object.
      * @param resourceDTO - A valid Resource DTO
@@ -2294,6 +2553,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
             Class<T> resourceType, List<String> elements) throws FHIRException, IOException {
         final String METHODNAME = "convertResourceDTO";
         log.entering(CLASSNAME, METHODNAME);
+        final long start = System.nanoTime();
         T resource = null;
         InputStream in = null;
         try {
@@ -2315,6 +2575,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
                 in.close();
             }
 
+            RequestTimer.stop(RequestPhase.PAYLOAD, start);
             log.exiting(CLASSNAME, METHODNAME);
         }
         return resource;
@@ -2539,6 +2800,123 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         return result;
     }
 
+    @Override
+    public boolean isReindexRangeSupported() {
+        return true;
+    }
+
+    @Override
+    public List<ReindexRange> getReindexRanges(String resourceType, int rangeCount) throws FHIRPersistenceException {
+        final String METHODNAME = "getReindexRanges";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try (Connection connection = openConnection()) {
+            ParameterDAO parameterDao = makeParameterDAO(connection);
+            ReindexResourceDAO reindexDAO = FHIRResourceDAOFactory.getReindexResourceDAO(connection, FhirSchemaConstants.FHIR_ADMIN, schemaNameSupplier.getSchemaForRequestContext(connection), connectionStrategy.getFlavor(), this.trxSynchRegistry, this.cache, parameterDao);
+
+            Integer resourceTypeId = null;
+            if (resourceType != null) {
+                resourceTypeId = cache.getResourceTypeCache().getId(resourceType);
+                if (resourceTypeId == null) {
+                    // No resources of this type have ever been stored, so there's nothing to do
+                    return Collections.emptyList();
+                }
+            }
+            return reindexDAO.getReindexRanges(resourceType, resourceTypeId, rangeCount);
+        } catch (DataAccessException dax) {
+            log.log(Level.SEVERE, "error reading reindex ranges", dax);
+            throw new FHIRPersistenceDataAccessException("Data access error while performing a reindex operation.");
+        } catch(FHIRPersistenceException e) {
+            throw e;
+        } catch(Throwable e) {
+            // don't chain the exception to avoid leaking secrets
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a reindex operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
+    @Override
+    public int reindex(FHIRPersistenceContext context, java.time.Instant tstamp, ReindexRange range, int maxResources) throws FHIRPersistenceException {
+        final String METHODNAME = "reindex(range)";
+        log.entering(CLASSNAME, METHODNAME);
+
+        int result = 0;
+        if (tstamp.isAfter(java.time.Instant.now())) {
+            // protect against setting a future timestamp, which could otherwise
+            // disable the ability to reindex anything
+            throw new FHIRPersistenceException("Reindex tstamp cannot be in the future");
+        }
+
+        if (range.isComplete()) {
+            return result;
+        }
+
+        try (Connection connection = openConnection()) {
+            ResourceDAO resourceDao = makeResourceDAO(connection);
+            ParameterDAO parameterDao = makeParameterDAO(connection);
+            ReindexResourceDAO reindexDAO = FHIRResourceDAOFactory.getReindexResourceDAO(connection, FhirSchemaConstants.FHIR_ADMIN, schemaNameSupplier.getSchemaForRequestContext(connection), connectionStrategy.getFlavor(), this.trxSynchRegistry, this.cache, parameterDao);
+            reindexDAO.setPersistenceContext(context);
+
+            Integer resourceTypeId = null;
+            if (range.getResourceType() != null) {
+                resourceTypeId = cache.getResourceTypeCache().getId(range.getResourceType());
+                if (resourceTypeId == null) {
+                    range.setComplete(true);
+                    return result;
+                }
+            }
+
+            // Claiming the batch stamps each resource with tstamp, which is our checkpoint: these
+            // resources won't be selected again by a reindex using the same tstamp
+            long start = System.nanoTime();
+            List<ResourceIndexRecord> batch = reindexDAO.getResourcesToReindex(tstamp, resourceTypeId, range, maxResources);
+            if (log.isLoggable(Level.FINER)) {
+                double elapsed = (System.nanoTime()-start)/1e6;
+                log.finer(String.format("Selected %d resources for reindexing in %.3f ms ", batch.size(), elapsed));
+            }
+
+            for (ResourceIndexRecord rir: batch) {
+                com.ibm.fhir.persistence.jdbc.dto.Resource existingResourceDTO = resourceDao.read(rir.getLogicalId(), rir.getResourceType());
+                if (existingResourceDTO != null && !existingResourceDTO.isDeleted()) {
+                    Class<? extends Resource> resourceTypeClass = getResourceType(rir.getResourceType());
+                    updateParameters(rir, resourceTypeClass, existingResourceDTO, reindexDAO, null);
+                    result++;
+                } else if (log.isLoggable(Level.FINE)) {
+                    log.fine("Skipping reindex for deleted FHIR Resource '" + rir.getResourceType() + "/" + rir.getLogicalId() + "'");
+                }
+            }
+        } catch(FHIRPersistenceException e) {
+            getTransaction().setRollbackOnly();
+            throw e;
+        } catch (DataAccessException dax) {
+            getTransaction().setRollbackOnly();
+
+            // It's possible this is a deadlock exception, in which case it could be considered retryable
+            if (dax.isTransactionRetryable()) {
+                log.log(Level.WARNING, "retryable error", dax);
+                FHIRPersistenceDataAccessException fpx = new FHIRPersistenceDataAccessException("Data access error while performing a reindex operation.");
+                fpx.setTransactionRetryable(true);
+                throw fpx;
+            } else {
+                log.log(Level.SEVERE, "non-retryable error", dax);
+                throw new FHIRPersistenceDataAccessException("Data access error while performing a reindex operation.");
+            }
+        } catch(Throwable e) {
+            getTransaction().setRollbackOnly();
+            // don't chain the exception to avoid leaking secrets
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while performing a reindex operation.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+
+        return result;
+    }
+
     /**
      * Update the parameters for the resource described by the given DTO
      * @param <T>
@@ -2546,7 +2924,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
      * @param resourceTypeClass
      * @param existingResourceDTO
      * @param reindexDAO
-     * @param operationOutcomeResult
+     * @param operationOutcomeResult to receive an issue describing the outcome. Can be null
      * @throws Exception
      */
     public <T extends Resource> void updateParameters(ResourceIndexRecord rir, Class<T> resourceTypeClass, com.ibm.fhir.persistence.jdbc.dto.Resource existingResourceDTO,
@@ -2555,13 +2933,24 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
             T existingResource = this.convertResourceDTO(existingResourceDTO, resourceTypeClass, null);
 
             // Extract parameters from the resource payload we just read and store them, replacing
-            // the existing set
-            reindexDAO.updateParameters(rir.getResourceType(), this.extractSearchParameters(existingResource, existingResourceDTO), rir.getLogicalId(), rir.getLogicalResourceId());
+            // the existing set. The hash covers the version, so we only skip the writes if
+            // the parameters were stored by a previous reindex of this same version
+            List<ExtractedParameterValue> parameters = this.extractSearchParameters(existingResource, existingResourceDTO);
+            String parameterHash = ParameterHashVisitor.hash(parameters, existingResourceDTO.getVersionId());
+            if (parameterHash.equals(rir.getParameterHash())) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("Parameters unchanged for '" + rir.getResourceType() + "/" + rir.getLogicalId() + "'; skipping update");
+                }
+            } else {
+                reindexDAO.updateParameters(rir.getResourceType(), parameters, parameterHash, rir.getLogicalId(), rir.getLogicalResourceId());
+            }
 
             // Use an OperationOutcome Issue to let the caller know that some work was performed
-            final String diag = "Processed " + rir.getResourceType() + "/" + rir.getLogicalId();
-            operationOutcomeResult.issue(Issue.builder().code(IssueType.INFORMATIONAL).severity(IssueSeverity.INFORMATION).diagnostics(com.ibm.fhir.model.type.String.of(diag)).build());
-        } else {
+            if (operationOutcomeResult != null) {
+                final String diag = "Processed " + rir.getResourceType() + "/" + rir.getLogicalId();
+                operationOutcomeResult.issue(Issue.builder().code(IssueType.INFORMATIONAL).severity(IssueSeverity.INFORMATION).diagnostics(com.ibm.fhir.model.type.String.of(diag)).build());
+            }
+        } else if (operationOutcomeResult != null) {
             // Reasonable to assume that this resource was deleted because we can't read it
             final String diag = "Failed to read resource: " + rir.getResourceType() + "/" + rir.getLogicalId();
             operationOutcomeResult.issue(Issue.builder().code(IssueType.NOT_FOUND).severity(IssueSeverity.WARNING).diagnostics(string(diag)).build());
@@ -2639,6 +3028,50 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         }
     }
 
+    /**
+     * Insert the parameter table rows accumulated during the transaction. The rows for
+     * all the resources are inserted together, using one batch per parameter table.
+     *
+     * <p>Only the parameter rows are deferred. The logical resource and resource version
+     * rows are still written one resource at a time by add_any_resource (or the equivalent
+     * DAO logic) when each resource is stored, because the id and version assigned to each
+     * entry are needed before the next entry of the bundle is processed.
+     * @param rows
+     * @throws FHIRPersistenceException
+     */
+    public void persistParameterRows(ParameterRowBatch rows) throws FHIRPersistenceException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try (Connection connection = openConnection()) {
+            rows.execute(connection, PARAMETER_ROW_BATCH_SIZE);
+        } catch(SQLIntegrityConstraintViolationException e) {
+            FHIRPersistenceFKVException fx = new FHIRPersistenceFKVException("Encountered FK violation while inserting parameter rows.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        } catch(FHIRPersistenceException e) {
+            throw e;
+        } catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while inserting parameter rows.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        }
+    }
+
+    /**
+     * Insert any parameter rows still waiting for the end of the current transaction, so
+     * that they can be seen by a query made in the same transaction (for example a
+     * conditional create or update later in the same transaction bundle).
+     * @throws FHIRPersistenceException
+     */
+    private void flushTransactionParameterRows() throws FHIRPersistenceException {
+        if (this.trxSynchRegistry != null && this.trxSynchRegistry.getResource(TXN_DATA_KEY) != null) {
+            String datastoreId = FHIRRequestContext.get().getDataStoreId();
+            getTransactionDataForDatasource(datastoreId).flushParameterRows();
+        }
+    }
+
     @Override
     public ResourcePayload fetchResourcePayloads(Class<? extends Resource> resourceType, java.time.Instant fromLastModified,
         java.time.Instant toLastModified, Function<ResourcePayload, Boolean> processor) throws FHIRPersistenceException {
@@ -2662,6 +3095,53 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         }
     }
 
+    @Override
+    public void prepare(List<? extends Resource> resources) throws FHIRPersistenceException {
+        final String METHODNAME = "prepare";
+        log.entering(CLASSNAME, METHODNAME);
+
+        try (Connection connection = openConnection()) {
+            // Collect the distinct code systems and token values of all the resources, so
+            // that their ids are resolved (or created) with a few set-based statements and are
+            // cache hits when each resource is stored. The extracted values are kept for the
+            // create or update of each resource, so they are only extracted once
+            CommonTokenValueCollector collector = new CommonTokenValueCollector();
+            Map<Resource, PreparedParameters> prepared = Collections.synchronizedMap(new IdentityHashMap<>());
+            for (Resource resource : resources) {
+                int issueCount = supplementalIssues.size();
+                List<ExtractedParameterValue> parameters = this.extractSearchParameters(resource, null);
+                for (ExtractedParameterValue p : parameters) {
+                    p.accept(collector);
+                }
+
+                // the warnings belong to the create or update of the resource, not to whichever comes first
+                List<OperationOutcome.Issue> warnings = supplementalIssues.subList(issueCount, supplementalIssues.size());
+                prepared.put(resource, new PreparedParameters(parameters, new ArrayList<>(warnings)));
+                warnings.clear();
+            }
+            FHIRRequestContext.get().setExtendedOperationProperties(PREPARED_PARAMETERS_KEY, prepared);
+
+            List<ResourceTokenValueRec> records = collector.getRecords();
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Resolving " + records.size() + " token values for " + resources.size() + " resources");
+            }
+
+            doCachePrefill(connection);
+            IResourceReferenceDAO rrd = makeResourceReferenceDAO(connection);
+            for (int i = 0; i < records.size(); i += PREPARE_TOKEN_VALUE_BATCH_SIZE) {
+                rrd.resolveIds(records.subList(i, Math.min(i + PREPARE_TOKEN_VALUE_BATCH_SIZE, records.size())));
+            }
+        } catch(FHIRPersistenceException e) {
+            throw e;
+        } catch(Throwable e) {
+            FHIRPersistenceException fx = new FHIRPersistenceException("Unexpected error while preparing to store resources.");
+            log.log(Level.SEVERE, fx.getMessage(), e);
+            throw fx;
+        } finally {
+            log.exiting(CLASSNAME, METHODNAME);
+        }
+    }
+
     @Override
     public List<ResourceChangeLogRecord> changes(int resourceCount, java.time.Instant fromLastModified, Long afterResourceId,
         String resourceTypeName) throws FHIRPersistenceException {
@@ -2686,6 +3166,7 @@ public class FHIRPersistenceJDBCImpl implements FHIRPersistence, SchemaNameSuppl
         log.entering(CLASSNAME, METHODNAME);
 
         ResourceEraseRecord eraseRecord = new ResourceEraseRecord();
+        flushTransactionParameterRows();
         try (Connection connection = openConnection()) {
             IDatabaseTranslator translator = FHIRResourceDAOFactory.getTranslatorForFlavor(connectionStrategy.getFlavor());
             IResourceReferenceDAO rrd = makeResourceReferenceDAO(connection);
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2020
+ * (C) Copyright IBM Corp. 2020, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -14,7 +14,9 @@ import java.util.logging.Logger;
 import javax.transaction.SystemException;
 import javax.transaction.UserTransaction;
 
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.jdbc.TransactionData;
+import com.ibm.fhir.persistence.jdbc.dao.impl.ParameterRowBatch;
 import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceTokenValueRec;
 
 /**
@@ -36,7 +38,10 @@ public class ParameterTransactionDataImpl implements TransactionData {
 
     // Collect all the token values so we can submit once per transaction
     private final List<ResourceTokenValueRec> tokenValueRecs = new ArrayList<>();
-    
+
+    // Collect the parameter table rows so we can insert them with one batch per table
+    private final ParameterRowBatch parameterRows = new ParameterRowBatch();
+
     /**
      * Public constructor
      * @param datasourceId
@@ -52,6 +57,7 @@ public class ParameterTransactionDataImpl implements TransactionData {
     public void persist() {
         
         try {
+            impl.persistParameterRows(parameterRows);
             impl.persistResourceTokenValueRecords(tokenValueRecs);
         } catch (Throwable t) {
             logger.log(Level.SEVERE, "Failed persisting parameter transaction data. Marking transaction for rollback", t);
@@ -70,4 +76,33 @@ public class ParameterTransactionDataImpl implements TransactionData {
     public void addValue(ResourceTokenValueRec rec) {
         tokenValueRecs.add(rec);
     }
+
+    /**
+     * Get the parameter table rows being accumulated in this transaction
+     * @return
+     */
+    public ParameterRowBatch getParameterRows() {
+        return parameterRows;
+    }
+
+    /**
+     * Insert the parameter table rows accumulated so far, so that they are visible to
+     * queries made later in this transaction. Unlike {@link #persist()}, exceptions are
+     * propagated to the caller.
+     * @throws FHIRPersistenceException
+     */
+    public void flushParameterRows() throws FHIRPersistenceException {
+        impl.persistParameterRows(parameterRows);
+    }
+
+    /**
+     * Discard any data still waiting to be persisted for the given logical resource. Called when
+     * a new version of the resource has been stored, because the new version replaces the
+     * parameters of the previous one.
+     * @param logicalResourceId
+     */
+    public void discard(long logicalResourceId) {
+        parameterRows.discard(logicalResourceId);
+        tokenValueRecs.removeIf(rec -> rec.getLogicalResourceId() == logicalResourceId);
+    }
 }
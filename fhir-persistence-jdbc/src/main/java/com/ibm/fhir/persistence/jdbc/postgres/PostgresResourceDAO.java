@@ -23,6 +23,8 @@ import java.util.logging.Logger;
 
 import javax.transaction.TransactionSynchronizationRegistry;
 
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
 import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
@@ -80,6 +82,7 @@ public class PostgresResourceDAO extends ResourceDAOImpl {
             throws FHIRPersistenceException {
         final String METHODNAME = "insert(Resource, List<ExtractedParameterValue, ParameterDAO>";
         logger.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         final Connection connection = getConnection(); // do not close
         CallableStatement stmt = null;
@@ -122,6 +125,7 @@ public class PostgresResourceDAO extends ResourceDAOImpl {
             dbCallDuration = (System.nanoTime()-dbCallStartTime)/1e6;
 
             resource.setId(stmt.getLong(8));
+            discardPendingParameters(resource.getId());
 
             // Parameter time
             // To keep things simple for the postgresql use-case, we just use a visitor to
@@ -158,6 +162,7 @@ public class PostgresResourceDAO extends ResourceDAOImpl {
             FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure inserting Resource.");
             throw severe(logger, fx, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             logger.exiting(CLASSNAME, METHODNAME);
         }
 
@@ -24,6 +24,8 @@ import java.util.logging.Logger;
 
 import javax.transaction.TransactionSynchronizationRegistry;
 
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceVersionIdMismatchException;
 import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
@@ -88,6 +90,7 @@ public class PostgresResourceNoProcDAO extends ResourceDAOImpl {
             throws FHIRPersistenceException {
         final String METHODNAME = "insert";
         logger.entering(CLASSNAME, METHODNAME);
+        final long sqlStart = System.nanoTime();
 
         final Connection connection = getConnection(); // do not close
         Integer resourceTypeId;
@@ -152,6 +155,7 @@ public class PostgresResourceNoProcDAO extends ResourceDAOImpl {
             FHIRPersistenceDataAccessException fx = new FHIRPersistenceDataAccessException("Failure inserting Resource.");
             throw severe(logger, fx, e);
         } finally {
+            RequestTimer.stop(RequestPhase.SQL, sqlStart);
             logger.exiting(CLASSNAME, METHODNAME);
         }
 
@@ -426,6 +430,9 @@ public class PostgresResourceNoProcDAO extends ResourceDAOImpl {
                 stmt.executeUpdate();
             }
 
+            // Any parameters for this resource still pending in the transaction are now stale
+            discardPendingParameters(v_logical_resource_id);
+
             // Note we don't get any parameters for the resource soft-delete operation
             if (parameters != null) {
                 // PostgreSQL doesn't support partitioned multi-tenancy, so we disable it on the DAO:
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2018,2019
+ * (C) Copyright IBM Corp. 2018, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,12 +11,19 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 
+import com.ibm.fhir.cache.CacheRegistry;
+import com.ibm.fhir.cache.CountingManagedCache;
+import com.ibm.fhir.config.FHIRRequestContext;
+
 /**
  * Encapsulates a group of utility methods for managing and diagnosing the in-memory caches used by the JDBC PL.
  */
 public class CacheUtil {
     
     protected static final String NEWLINE = System.getProperty("line.separator");
+
+    // Rough heap cost of a name-to-id entry (key string, boxed id and map node)
+    private static final long NAME_ID_ENTRY_BYTES = 128;
     
     /**
      * Takes the contents of one of the JDBC PL caches and represents the contents in a format suitable for logging.
@@ -94,4 +101,32 @@ public class CacheUtil {
         return report.toString();
     }
 
+
+    /**
+     * Records a lookup in one of the static JDBC PL caches for the current tenant-datastore. The first
+     * lookup for a tenant-datastore registers its statistics with the {@link CacheRegistry}.
+     * @param cacheName - The name of the JDBC PL cache.
+     * @param tenantDatastoreCacheName - The tenant-datastore key of the cache.
+     * @param mapOfMaps - The contents of the multi-datastore cache.
+     * @param statsMap - The statistics of the cache, keyed by tenant-datastore.
+     * @param hit - true if the lookup found an entry.
+     */
+    public static void recordLookup(String cacheName, String tenantDatastoreCacheName, ConcurrentHashMap<String,ConcurrentHashMap<String,Integer>> mapOfMaps,
+            ConcurrentHashMap<String,CountingManagedCache> statsMap, boolean hit) {
+
+        CountingManagedCache stats = statsMap.get(tenantDatastoreCacheName);
+        if (stats == null) {
+            stats = statsMap.computeIfAbsent(tenantDatastoreCacheName, k -> {
+                // the inner map is replaced when the cache is re-enabled, so always look it up
+                CountingManagedCache result = new CountingManagedCache(() -> {
+                    Map<String,Integer> dsMap = mapOfMaps.get(k);
+                    return dsMap != null ? dsMap.size() : 0;
+                }, NAME_ID_ENTRY_BYTES);
+                CacheRegistry.register(FHIRRequestContext.get().getTenantId(),
+                    "jdbc." + FHIRRequestContext.get().getDataStoreId() + "." + cacheName, result);
+                return result;
+            });
+        }
+        stats.recordLookup(hit);
+    }
 }
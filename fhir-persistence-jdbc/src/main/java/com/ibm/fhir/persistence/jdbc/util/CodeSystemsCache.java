@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,6 +11,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ibm.fhir.cache.CountingManagedCache;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterDAO;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
@@ -30,6 +31,11 @@ public class CodeSystemsCache {
      * mapping of system-name to system-id.
      */
     private static ConcurrentHashMap<String,ConcurrentHashMap<String,Integer>> codeSystemIdMaps = new ConcurrentHashMap<>();
+
+    /**
+     * The lookup statistics of each tenant/datastore map, which are reported through the CacheRegistry.
+     */
+    private static ConcurrentHashMap<String,CountingManagedCache> codeSystemIdStats = new ConcurrentHashMap<>();
     
     /**
      * Retrieves the id for the passed system, for the current tenant-datastore. 
@@ -50,6 +56,7 @@ public class CodeSystemsCache {
             }
             currentDsMap = codeSystemIdMaps.get(tenantDatastoreCacheName);
             systemId = currentDsMap.get(encodedSysName);
+            CacheUtil.recordLookup("CodeSystemsCache", tenantDatastoreCacheName, codeSystemIdMaps, codeSystemIdStats, systemId != null);
         }
         return systemId;
     }
@@ -0,0 +1,120 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+import com.ibm.fhir.persistence.jdbc.JDBCConstants;
+import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceTokenValueRec;
+import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.DateParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValueVisitor;
+import com.ibm.fhir.persistence.jdbc.dto.LocationParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.NumberParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.QuantityParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ReferenceParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.StringParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
+import com.ibm.fhir.search.util.ReferenceValue;
+import com.ibm.fhir.search.util.ReferenceValue.ReferenceType;
+
+/**
+ * Collects the distinct code systems and common token values used by extracted parameter
+ * values, mapping them the same way as {@link com.ibm.fhir.persistence.jdbc.dao.impl.ParameterVisitorBatchDAO}.
+ * The collected records only carry the code system and token value, which is all that's needed to
+ * resolve their ids ahead of storing the resources they came from.
+ */
+public class CommonTokenValueCollector implements ExtractedParameterValueVisitor {
+
+    // Local references which haven't been resolved yet (e.g. urn:uuid:...) won't be stored as-is
+    private static final String URN_PREFIX = "urn:";
+
+    // The code system and token value of each record, used to drop duplicates
+    private final Set<List<String>> seen = new HashSet<>();
+
+    private final List<ResourceTokenValueRec> records = new ArrayList<>();
+
+    /**
+     * Get the distinct records collected so far. Quantity code systems are
+     * represented by records with a null token value.
+     * @return
+     */
+    public List<ResourceTokenValueRec> getRecords() {
+        return records;
+    }
+
+    private void add(String codeSystem, String tokenValue) {
+        if (codeSystem != null && seen.add(Arrays.asList(codeSystem, tokenValue))) {
+            records.add(new ResourceTokenValueRec(0, null, 0, 0, codeSystem, tokenValue, null, false));
+        }
+    }
+
+    @Override
+    public void visit(StringParmVal param) throws FHIRPersistenceException {
+        // no code system
+    }
+
+    @Override
+    public void visit(NumberParmVal param) throws FHIRPersistenceException {
+        // no code system
+    }
+
+    @Override
+    public void visit(DateParmVal param) throws FHIRPersistenceException {
+        // no code system
+    }
+
+    @Override
+    public void visit(TokenParmVal param) throws FHIRPersistenceException {
+        add(param.getValueSystem(), param.getValueCode());
+    }
+
+    @Override
+    public void visit(QuantityParmVal param) throws FHIRPersistenceException {
+        // same check as the batch DAO, although codeless quantities are stored with an empty code
+        if (param.getValueCode() != null) {
+            add(param.getValueSystem(), null);
+        }
+    }
+
+    @Override
+    public void visit(LocationParmVal param) throws FHIRPersistenceException {
+        // no code system
+    }
+
+    @Override
+    public void visit(CompositeParmVal param) throws FHIRPersistenceException {
+        for (ExtractedParameterValue component : param.getComponent()) {
+            component.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(ReferenceParmVal param) throws FHIRPersistenceException {
+        ReferenceValue refValue = param.getRefValue();
+        if (refValue == null || refValue.getType() == ReferenceType.DISPLAY_ONLY || refValue.getType() == ReferenceType.INVALID) {
+            return;
+        }
+
+        String refLogicalId = refValue.getValue();
+        if (refValue.getType() == ReferenceType.LITERAL_ABSOLUTE && refLogicalId != null && refLogicalId.startsWith(URN_PREFIX)) {
+            return;
+        }
+
+        if (refValue.getTargetResourceType() != null) {
+            add(refValue.getTargetResourceType(), refLogicalId);
+        } else {
+            add(JDBCConstants.DEFAULT_TOKEN_SYSTEM, refLogicalId);
+        }
+    }
+}
@@ -31,6 +31,7 @@ import com.ibm.fhir.persistence.jdbc.domain.LocationSearchExtension;
 import com.ibm.fhir.persistence.jdbc.domain.LocationSearchParam;
 import com.ibm.fhir.persistence.jdbc.domain.MissingSearchParam;
 import com.ibm.fhir.persistence.jdbc.domain.NumberSearchParam;
+import com.ibm.fhir.persistence.jdbc.domain.PageToken;
 import com.ibm.fhir.persistence.jdbc.domain.QuantitySearchParam;
 import com.ibm.fhir.persistence.jdbc.domain.QueryData;
 import com.ibm.fhir.persistence.jdbc.domain.ReferenceSearchParam;
@@ -158,9 +159,20 @@ public class NewQueryBuilder {
      * @return
      */
     private Select renderQuery(SearchQuery domainModel, FHIRSearchContext searchContext) throws FHIRPersistenceException {
+        return renderQuery(domainModel, searchContext, null);
+    }
+
+    /**
+     * Render the domain model into a Select statement
+     * @param domainModel
+     * @param searchContext
+     * @param pageToken the keyset position to continue from instead of the page offset; may be null
+     * @return
+     */
+    private Select renderQuery(SearchQuery domainModel, FHIRSearchContext searchContext, PageToken pageToken) throws FHIRPersistenceException {
         final int offset = (searchContext.getPageNumber()-1) * searchContext.getPageSize();
         final int rowsPerPage = searchContext.getPageSize();
-        SearchQueryRenderer renderer = new SearchQueryRenderer(this.identityCache, offset, rowsPerPage);
+        SearchQueryRenderer renderer = new SearchQueryRenderer(this.identityCache, offset, rowsPerPage, pageToken);
         QueryData queryData = domainModel.visit(renderer);
         return queryData.getQuery().build();
     }
@@ -173,6 +185,20 @@ public class NewQueryBuilder {
      * @throws Exception
      */
     public Select buildQuery(Class<?> resourceType, FHIRSearchContext searchContext) throws Exception {
+        return buildQuery(resourceType, searchContext, null);
+    }
+
+    /**
+     * Construct a FHIR search query which continues from the position held by the
+     * page token (keyset pagination) if the token is valid for the requested page.
+     * Otherwise the page is addressed by its row offset.
+     * @param resourceType
+     * @param searchContext
+     * @param pageToken the position of the last row of the previous page; may be null
+     * @return
+     * @throws Exception
+     */
+    public Select buildQuery(Class<?> resourceType, FHIRSearchContext searchContext, PageToken pageToken) throws Exception {
         final String METHODNAME = "buildQuery";
         log.entering(CLASSNAME, METHODNAME,
                 new Object[] { resourceType.getSimpleName(), searchContext.getSearchParameters() });
@@ -192,7 +218,15 @@ public class NewQueryBuilder {
             domainModel = new SearchDataQuery(resourceType.getSimpleName());
         }
         buildModelCommon(domainModel, resourceType, searchContext);
-        Select result = renderQuery(domainModel, searchContext);
+
+        final int sortKeyCount = searchContext.hasSortParameters() ? searchContext.getSortParameters().size() : 0;
+        if (pageToken != null && !pageToken.matches(searchContext.getPageNumber(), searchContext.getPageSize(),
+                PageToken.queryHash(resourceType.getSimpleName(), searchContext), sortKeyCount)) {
+            // issued for a different page, page size, query or sort order
+            log.fine("Page token does not match the requested page; using the page offset instead");
+            pageToken = null;
+        }
+        Select result = renderQuery(domainModel, searchContext, pageToken);
 
         log.exiting(CLASSNAME, METHODNAME);
         return result;
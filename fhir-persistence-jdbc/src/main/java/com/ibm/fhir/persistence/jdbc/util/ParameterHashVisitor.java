@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.util;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.List;
+
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.DateParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValueVisitor;
+import com.ibm.fhir.persistence.jdbc.dto.LocationParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.NumberParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.QuantityParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ReferenceParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.StringParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
+import com.ibm.fhir.search.util.ReferenceValue;
+
+/**
+ * Computes a SHA-256 hash of a list of extracted parameter values. Every value which
+ * ends up in a parameter table row contributes to the hash, so two lists with the same
+ * hash produce the same parameter rows. Each value is prefixed with a type marker and
+ * strings are length-prefixed, which keeps the encoding unambiguous.
+ */
+public class ParameterHashVisitor implements ExtractedParameterValueVisitor {
+    private static final byte NULL_MARKER = 0;
+    private static final byte VALUE_MARKER = 1;
+
+    // The digest accumulating the parameter values
+    private final MessageDigest digest;
+
+    // Scratch space for encoding numbers
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    public ParameterHashVisitor() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException x) {
+            // SHA-256 is required to be supported by every Java platform
+            throw new IllegalStateException(x);
+        }
+    }
+
+    /**
+     * Convenience method to compute the hash of the given parameter list
+     * @param parameters
+     * @param versionId the version of the resource the parameters were extracted from
+     * @return the Base64 encoded hash
+     * @throws FHIRPersistenceException
+     */
+    public static String hash(List<ExtractedParameterValue> parameters, int versionId) throws FHIRPersistenceException {
+        ParameterHashVisitor visitor = new ParameterHashVisitor();
+        visitor.update(versionId);
+        for (ExtractedParameterValue p: parameters) {
+            p.accept(visitor);
+        }
+        return visitor.getBase64Hash();
+    }
+
+    /**
+     * Get the Base64 encoded hash of all the values visited so far. This
+     * resets the visitor.
+     * @return
+     */
+    public String getBase64Hash() {
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Add the given long value to the hash
+     * @param value
+     */
+    private void update(long value) {
+        buffer.clear();
+        buffer.putLong(value);
+        digest.update(buffer.array(), 0, Long.BYTES);
+    }
+
+    /**
+     * Add the given string value to the hash
+     * @param value
+     */
+    private void update(String value) {
+        if (value == null) {
+            digest.update(NULL_MARKER);
+        } else {
+            digest.update(VALUE_MARKER);
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            update(bytes.length);
+            digest.update(bytes);
+        }
+    }
+
+    /**
+     * Add the given number value to the hash. BigDecimal values which compare
+     * equal can have a different scale, but the scale is preserved when stored,
+     * so we use the string form
+     * @param value
+     */
+    private void update(BigDecimal value) {
+        update(value == null ? null : value.toString());
+    }
+
+    /**
+     * Add the given Double value to the hash
+     * @param value
+     */
+    private void update(Double value) {
+        if (value == null) {
+            digest.update(NULL_MARKER);
+        } else {
+            digest.update(VALUE_MARKER);
+            update(Double.doubleToLongBits(value));
+        }
+    }
+
+    /**
+     * Add the given timestamp value to the hash
+     * @param value
+     */
+    private void update(Timestamp value) {
+        if (value == null) {
+            digest.update(NULL_MARKER);
+        } else {
+            digest.update(VALUE_MARKER);
+            update(value.getTime());
+            update(value.getNanos());
+        }
+    }
+
+    /**
+     * Add the fields common to all parameter types
+     * @param type a marker for the parameter type
+     * @param p
+     */
+    private void updateCommon(char type, ExtractedParameterValue p) {
+        digest.update((byte)type);
+        update(p.getResourceType());
+        update(p.getName());
+        update(p.getBase());
+    }
+
+    @Override
+    public void visit(StringParmVal param) throws FHIRPersistenceException {
+        updateCommon('S', param);
+        update(param.getValueString());
+    }
+
+    @Override
+    public void visit(NumberParmVal param) throws FHIRPersistenceException {
+        updateCommon('N', param);
+        update(param.getValueNumber());
+        update(param.getValueNumberLow());
+        update(param.getValueNumberHigh());
+    }
+
+    @Override
+    public void visit(DateParmVal param) throws FHIRPersistenceException {
+        updateCommon('D', param);
+        update(param.getValueDateStart());
+        update(param.getValueDateEnd());
+    }
+
+    @Override
+    public void visit(TokenParmVal param) throws FHIRPersistenceException {
+        updateCommon('T', param);
+        update(param.getValueSystem());
+        update(param.getValueCode());
+    }
+
+    @Override
+    public void visit(QuantityParmVal param) throws FHIRPersistenceException {
+        updateCommon('Q', param);
+        update(param.getValueNumber());
+        update(param.getValueNumberLow());
+        update(param.getValueNumberHigh());
+        update(param.getValueSystem());
+        update(param.getValueCode());
+    }
+
+    @Override
+    public void visit(LocationParmVal param) throws FHIRPersistenceException {
+        updateCommon('L', param);
+        update(param.getValueLatitude());
+        update(param.getValueLongitude());
+    }
+
+    @Override
+    public void visit(CompositeParmVal param) throws FHIRPersistenceException {
+        updateCommon('C', param);
+        List<ExtractedParameterValue> components = param.getComponent();
+        update(components.size());
+        for (ExtractedParameterValue component: components) {
+            component.accept(this);
+        }
+    }
+
+    @Override
+    public void visit(ReferenceParmVal param) throws FHIRPersistenceException {
+        updateCommon('R', param);
+        ReferenceValue refValue = param.getRefValue();
+        if (refValue == null) {
+            digest.update(NULL_MARKER);
+        } else {
+            digest.update(VALUE_MARKER);
+            update(refValue.getTargetResourceType());
+            update(refValue.getValue());
+            update(refValue.getType() == null ? null : refValue.getType().name());
+            update(refValue.getVersion() == null ? null : refValue.getVersion().toString());
+        }
+    }
+}
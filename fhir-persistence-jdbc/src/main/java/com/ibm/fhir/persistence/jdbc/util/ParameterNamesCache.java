@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017,2019
+ * (C) Copyright IBM Corp. 2017, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -11,6 +11,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ibm.fhir.cache.CountingManagedCache;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.persistence.jdbc.dao.api.ParameterDAO;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
@@ -30,6 +31,11 @@ public class ParameterNamesCache {
      * mapping of parameter-name to parameter-name-id.
      */
     private static ConcurrentHashMap<String,ConcurrentHashMap<String,Integer>> parameterNameIdMaps = new ConcurrentHashMap<>();
+
+    /**
+     * The lookup statistics of each tenant/datastore map, which are reported through the CacheRegistry.
+     */
+    private static ConcurrentHashMap<String,CountingManagedCache> parameterNameIdStats = new ConcurrentHashMap<>();
     
     /**
      * Retrieves the id for the name contained in the passed Parameter, for the current tenant-datastore. 
@@ -52,6 +58,7 @@ public class ParameterNamesCache {
             }
             currentDsMap = parameterNameIdMaps.get(tenantDatstoreCacheName);
             parameterNameId = currentDsMap.get(parameterName);
+            CacheUtil.recordLookup("ParameterNamesCache", tenantDatstoreCacheName, parameterNameIdMaps, parameterNameIdStats, parameterNameId != null);
         }
                         
         return parameterNameId;
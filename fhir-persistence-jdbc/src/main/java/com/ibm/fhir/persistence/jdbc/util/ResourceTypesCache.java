@@ -11,6 +11,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ibm.fhir.cache.CountingManagedCache;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.persistence.jdbc.dao.api.ResourceDAO;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDBConnectException;
@@ -31,6 +32,11 @@ public class ResourceTypesCache {
      */
     private static ConcurrentHashMap<String,ConcurrentHashMap<String,Integer>> resourceTypeIdMaps = new ConcurrentHashMap<>();
 
+    /**
+     * The lookup statistics of each tenant/datastore map, which are reported through the CacheRegistry.
+     */
+    private static ConcurrentHashMap<String,CountingManagedCache> resourceTypeIdStats = new ConcurrentHashMap<>();
+
     /**
      * Retrieves the id for the name contained in the passed resource type, for the current tenant-datastore.
      * If not found, null is returned.
@@ -50,6 +56,7 @@ public class ResourceTypesCache {
             }
             currentDsMap = resourceTypeIdMaps.get(tenantDatstoreCacheName);
             resourceTypeId = currentDsMap.get(resourceType);
+            CacheUtil.recordLookup("ResourceTypesCache", tenantDatstoreCacheName, resourceTypeIdMaps, resourceTypeIdStats, resourceTypeId != null);
         }
 
         return resourceTypeId;
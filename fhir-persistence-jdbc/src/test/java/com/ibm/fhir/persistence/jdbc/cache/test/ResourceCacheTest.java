@@ -0,0 +1,69 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.cache.test;
+
+import static com.ibm.fhir.model.type.String.string;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.cache.CacheStatistics;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.type.HumanName;
+import com.ibm.fhir.persistence.jdbc.cache.ResourceCache;
+
+/**
+ * Unit tests for {@link ResourceCache}
+ */
+public class ResourceCacheTest {
+
+    private Patient patient(String family) {
+        return Patient.builder().name(HumanName.builder().family(string(family)).build()).build();
+    }
+
+    @Test
+    public void testGetPut() {
+        ResourceCache cache = new ResourceCache(10);
+        Patient patient = patient("one");
+        assertNull(cache.get(1L));
+        cache.put(1L, patient);
+        Patient cached = cache.get(1L);
+        assertSame(cached, patient);
+
+        CacheStatistics stats = cache.getManagedCache().getStatistics();
+        assertEquals(stats.getHitCount(), 1);
+        assertEquals(stats.getMissCount(), 1);
+        assertEquals(stats.getMaximumSize(), 10);
+    }
+
+    @Test
+    public void testSupersedeCommitted() {
+        ResourceCache cache = new ResourceCache(10);
+        cache.put(1L, patient("one"));
+        cache.put(2L, patient("two"));
+
+        cache.supersede(1L);
+        // still visible until the transaction commits
+        assertEquals(cache.<Patient>get(1L).getName().get(0).getFamily().getValue(), "one");
+        cache.transactionCommitted();
+        assertNull(cache.get(1L));
+        assertEquals(cache.<Patient>get(2L).getName().get(0).getFamily().getValue(), "two");
+    }
+
+    @Test
+    public void testSupersedeRolledBack() {
+        ResourceCache cache = new ResourceCache(10);
+        cache.put(1L, patient("one"));
+
+        cache.supersede(1L);
+        cache.transactionRolledBack();
+        cache.transactionCommitted();
+        assertEquals(cache.<Patient>get(1L).getName().get(0).getFamily().getValue(), "one");
+    }
+}
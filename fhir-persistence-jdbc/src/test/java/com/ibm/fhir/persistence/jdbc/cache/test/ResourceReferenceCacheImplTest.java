@@ -7,6 +7,7 @@
 package com.ibm.fhir.persistence.jdbc.cache.test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -15,6 +16,7 @@ import org.testng.annotations.Test;
 
 import com.ibm.fhir.persistence.jdbc.cache.CommonTokenValuesCacheImpl;
 import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceTokenValueRec;
+import com.ibm.fhir.persistence.jdbc.dto.CommonTokenValue;
 
 /**
  * unit test for {@link CommonTokenValuesCacheImpl}
@@ -97,4 +99,28 @@ public class ResourceReferenceCacheImplTest {
         assertEquals("sys3", sys3.getCodeSystemValue());
         assertEquals(3, sys3.getCodeSystemValueId());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSharedCacheStats() {
+        CommonTokenValuesCacheImpl impl = new CommonTokenValuesCacheImpl(10, 10);
+        impl.addCodeSystem("sys1", 1);
+        impl.addTokenValue(new CommonTokenValue(1, "val1"), 11L);
+
+        // served from the thread-local maps, so not counted
+        assertEquals(impl.getCommonTokenValueId("sys1", "val1"), Long.valueOf(11L));
+        assertEquals(impl.getCodeSystemsCacheStats().requestCount(), 0);
+
+        // values which are not yet committed must not be visible from the shared cache
+        impl.clearLocalMaps();
+        assertNull(impl.getCommonTokenValueId("sys1", "val1"));
+        assertEquals(impl.getCodeSystemsCacheStats().missCount(), 1);
+
+        impl.addCodeSystem("sys1", 1);
+        impl.addTokenValue(new CommonTokenValue(1, "val1"), 11L);
+        impl.updateSharedMaps();
+        assertEquals(impl.getCommonTokenValueId("sys1", "val1"), Long.valueOf(11L));
+        assertEquals(impl.getCodeSystemsCacheStats().hitCount(), 1);
+        assertEquals(impl.getTokenValuesCacheStats().hitCount(), 1);
+        assertEquals(impl.getTokenValuesCacheStats().missCount(), 0);
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2017, 2019, 2020
+ * (C) Copyright IBM Corp. 2017, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -16,6 +16,7 @@ import com.ibm.fhir.persistence.jdbc.FHIRPersistenceJDBCCache;
 import com.ibm.fhir.persistence.jdbc.cache.CommonTokenValuesCacheImpl;
 import com.ibm.fhir.persistence.jdbc.cache.FHIRPersistenceJDBCCacheImpl;
 import com.ibm.fhir.persistence.jdbc.cache.NameIdCache;
+import com.ibm.fhir.persistence.jdbc.cache.ResourceCache;
 import com.ibm.fhir.persistence.jdbc.dao.api.ICommonTokenValuesCache;
 import com.ibm.fhir.persistence.jdbc.impl.FHIRPersistenceJDBCImpl;
 import com.ibm.fhir.persistence.jdbc.test.util.DerbyInitializer;
@@ -49,9 +50,17 @@ public class JDBCDeleteTest extends AbstractDeleteTest {
             IConnectionProvider cp = derbyInit.getConnectionProvider(false);
             this.connectionPool = new PoolConnectionProvider(cp, 1);
             ICommonTokenValuesCache rrc = new CommonTokenValuesCacheImpl(100, 100);
-            cache = new FHIRPersistenceJDBCCacheImpl(new NameIdCache<Integer>(), new NameIdCache<Integer>(), rrc);
+            cache = new FHIRPersistenceJDBCCacheImpl(new NameIdCache<Integer>(), new NameIdCache<Integer>(), rrc,
+                FHIRPersistenceJDBCCacheImpl.DEFAULT_SEARCH_QUERY_CACHE_SIZE, createResourceCache());
         }
     }
+
+    /**
+     * @return the cache of parsed resources to run with, or null to run without one
+     */
+    protected ResourceCache createResourceCache() {
+        return null;
+    }
     
     @Override
     public FHIRPersistence getPersistenceImpl() throws Exception {
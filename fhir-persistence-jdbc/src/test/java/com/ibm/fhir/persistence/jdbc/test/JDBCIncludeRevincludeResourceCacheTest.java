@@ -0,0 +1,24 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test;
+
+import com.ibm.fhir.persistence.jdbc.cache.ResourceCache;
+
+/**
+ * Runs the JDBC _include and _revinclude tests with the resource cache enabled to cover resolving included resources from the cache.
+ */
+public class JDBCIncludeRevincludeResourceCacheTest extends JDBCIncludeRevincludeTest {
+
+    public JDBCIncludeRevincludeResourceCacheTest() throws Exception {
+        super();
+    }
+
+    @Override
+    protected ResourceCache createResourceCache() {
+        return new ResourceCache(100);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
+import com.ibm.fhir.persistence.jdbc.JDBCConstants;
+import com.ibm.fhir.persistence.jdbc.dao.impl.ResourceTokenValueRec;
+import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.QuantityParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ReferenceParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
+import com.ibm.fhir.persistence.jdbc.util.CommonTokenValueCollector;
+import com.ibm.fhir.search.util.ReferenceValue;
+import com.ibm.fhir.search.util.ReferenceValue.ReferenceType;
+
+/**
+ * Unit test for {@link CommonTokenValueCollector}
+ */
+public class CommonTokenValueCollectorTest {
+
+    private TokenParmVal token(String system, String code) {
+        TokenParmVal p = new TokenParmVal();
+        p.setResourceType("Observation");
+        p.setName("code");
+        p.setValueSystem(system);
+        p.setValueCode(code);
+        return p;
+    }
+
+    private ReferenceParmVal reference(ReferenceValue refValue) {
+        ReferenceParmVal p = new ReferenceParmVal();
+        p.setResourceType("Observation");
+        p.setName("subject");
+        p.setRefValue(refValue);
+        return p;
+    }
+
+    @Test
+    public void testDistinctTokens() throws FHIRPersistenceException {
+        CommonTokenValueCollector collector = new CommonTokenValueCollector();
+        token("http://loinc.org", "1234-5").accept(collector);
+        token("http://loinc.org", "1234-5").accept(collector);
+        token("http://loinc.org", "6789-0").accept(collector);
+
+        CompositeParmVal composite = new CompositeParmVal();
+        composite.setResourceType("Observation");
+        composite.setName("code-value-concept");
+        composite.addComponent(token("http://loinc.org", "1234-5"), token("http://snomed.info/sct", "123"));
+        composite.accept(collector);
+
+        List<ResourceTokenValueRec> records = collector.getRecords();
+        assertEquals(records.size(), 3);
+        assertEquals(records.get(0).getCodeSystemValue(), "http://loinc.org");
+        assertEquals(records.get(0).getTokenValue(), "1234-5");
+        assertEquals(records.get(1).getTokenValue(), "6789-0");
+        assertEquals(records.get(2).getCodeSystemValue(), "http://snomed.info/sct");
+    }
+
+    @Test
+    public void testQuantityCodeSystem() throws FHIRPersistenceException {
+        CommonTokenValueCollector collector = new CommonTokenValueCollector();
+        QuantityParmVal quantity = new QuantityParmVal();
+        quantity.setResourceType("Observation");
+        quantity.setName("value-quantity");
+        quantity.setValueNumber(BigDecimal.ONE);
+        quantity.setValueSystem("http://unitsofmeasure.org");
+        quantity.setValueCode("mg");
+        quantity.accept(collector);
+
+        // stored with an empty code, so it still needs the code system
+        QuantityParmVal codeless = new QuantityParmVal();
+        codeless.setResourceType("Observation");
+        codeless.setName("value-quantity");
+        codeless.setValueNumber(BigDecimal.ONE);
+        codeless.setValueSystem("http://unitsofmeasure.org");
+        codeless.accept(collector);
+
+        List<ResourceTokenValueRec> records = collector.getRecords();
+        assertEquals(records.size(), 1);
+        assertEquals(records.get(0).getCodeSystemValue(), "http://unitsofmeasure.org");
+        assertNull(records.get(0).getTokenValue());
+    }
+
+    @Test
+    public void testReferences() throws FHIRPersistenceException {
+        CommonTokenValueCollector collector = new CommonTokenValueCollector();
+        reference(new ReferenceValue("Patient", "p1", ReferenceType.LITERAL_RELATIVE, null)).accept(collector);
+        reference(new ReferenceValue(null, "http://example.com/Patient/p2", ReferenceType.LITERAL_ABSOLUTE, null)).accept(collector);
+        reference(new ReferenceValue(null, "urn:uuid:1234", ReferenceType.LITERAL_ABSOLUTE, null)).accept(collector);
+        reference(new ReferenceValue(null, null, ReferenceType.DISPLAY_ONLY, null)).accept(collector);
+
+        List<ResourceTokenValueRec> records = collector.getRecords();
+        assertEquals(records.size(), 2);
+        assertEquals(records.get(0).getCodeSystemValue(), "Patient");
+        assertEquals(records.get(0).getTokenValue(), "p1");
+        assertEquals(records.get(1).getCodeSystemValue(), JDBCConstants.DEFAULT_TOKEN_SYSTEM);
+        assertEquals(records.get(1).getTokenValue(), "http://example.com/Patient/p2");
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.persistence.jdbc.domain.PageToken;
+import com.ibm.fhir.search.context.FHIRSearchContext;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Unit test for {@link PageToken}
+ */
+public class PageTokenTest {
+
+    @Test
+    public void testRoundTrip() {
+        List<Object> sortValues = Arrays.asList("Smith", null, Instant.parse("2021-03-04T05:06:07.123456Z"),
+            1.5d, new BigDecimal("12.340"), 42L);
+        PageToken token = new PageToken(3, 20, -42L, sortValues, 12345L);
+
+        String encoded = token.encode();
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), "URL-safe token: " + encoded);
+
+        PageToken decoded = PageToken.decode(encoded);
+        assertNotNull(decoded);
+        assertEquals(decoded.getPageNumber(), 3);
+        assertEquals(decoded.getPageSize(), 20);
+        assertEquals(decoded.getQueryHash(), -42L);
+        assertEquals(decoded.getLogicalResourceId(), 12345L);
+        assertEquals(decoded.getSortValues(), sortValues);
+    }
+
+    @Test
+    public void testNoSortValues() {
+        PageToken decoded = PageToken.decode(new PageToken(2, 10, 99L, Collections.emptyList(), 7L).encode());
+        assertNotNull(decoded);
+        assertTrue(decoded.getSortValues().isEmpty());
+        assertTrue(decoded.matches(2, 10, 99L, 0));
+        assertFalse(decoded.matches(3, 10, 99L, 0));
+        assertFalse(decoded.matches(2, 20, 99L, 0));
+        assertFalse(decoded.matches(2, 10, 98L, 0));
+        assertFalse(decoded.matches(2, 10, 99L, 1));
+    }
+
+    @Test
+    public void testQueryHash() throws Exception {
+        long hash = queryHash("family", "Smith", "_sort", "birthdate,-_lastUpdated", "_page", "1");
+
+        // paging parameters and the order of the search parameters don't matter
+        assertEquals(queryHash("_page", "2", "_count", "5", "_sort", "birthdate,-_lastUpdated", "family", "Smith"), hash);
+
+        // the sort keys, their order and direction and the search parameter values do
+        assertFalse(queryHash("family", "Smith", "_sort", "birthdate,_lastUpdated") == hash);
+        assertFalse(queryHash("family", "Smith", "_sort", "-_lastUpdated,birthdate") == hash);
+        assertFalse(queryHash("family", "Smith", "_sort", "birthdate") == hash);
+        assertFalse(queryHash("family", "Jones", "_sort", "birthdate,-_lastUpdated") == hash);
+        assertFalse(queryHash("family:exact", "Smith", "_sort", "birthdate,-_lastUpdated") == hash);
+        assertFalse(PageToken.queryHash("Practitioner", searchContext("family", "Smith", "_sort", "birthdate,-_lastUpdated")) == hash);
+    }
+
+    private static long queryHash(String... parameters) throws Exception {
+        return PageToken.queryHash("Patient", searchContext(parameters));
+    }
+
+    private static FHIRSearchContext searchContext(String... parameters) throws Exception {
+        Map<String, List<String>> queryParameters = new LinkedHashMap<>();
+        for (int i = 0; i < parameters.length; i += 2) {
+            queryParameters.put(parameters[i], Collections.singletonList(parameters[i + 1]));
+        }
+        return SearchUtil.parseQueryParameters(Patient.class, new HashMap<>(queryParameters));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertNull(PageToken.decode(null));
+        assertNull(PageToken.decode(""));
+        assertNull(PageToken.decode("not a token"));
+        assertNull(PageToken.decode("AAAA"));
+
+        // trailing garbage
+        String encoded = new PageToken(2, 10, 99L, Collections.emptyList(), 7L).encode();
+        assertNull(PageToken.decode(encoded + "AAAA"));
+    }
+}
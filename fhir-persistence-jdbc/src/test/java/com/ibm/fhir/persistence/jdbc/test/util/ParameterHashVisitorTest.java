@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.persistence.jdbc.dto.CompositeParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.ExtractedParameterValue;
+import com.ibm.fhir.persistence.jdbc.dto.StringParmVal;
+import com.ibm.fhir.persistence.jdbc.dto.TokenParmVal;
+import com.ibm.fhir.persistence.jdbc.util.ParameterHashVisitor;
+import com.ibm.fhir.schema.control.FhirSchemaConstants;
+
+/**
+ * Unit test for {@link ParameterHashVisitor}
+ */
+public class ParameterHashVisitorTest {
+
+    private StringParmVal string(String name, String value) {
+        StringParmVal p = new StringParmVal();
+        p.setResourceType("Patient");
+        p.setName(name);
+        p.setValueString(value);
+        return p;
+    }
+
+    private TokenParmVal token(String name, String system, String code) {
+        TokenParmVal p = new TokenParmVal();
+        p.setResourceType("Patient");
+        p.setName(name);
+        p.setValueSystem(system);
+        p.setValueCode(code);
+        return p;
+    }
+
+    private List<ExtractedParameterValue> params() {
+        List<ExtractedParameterValue> result = new ArrayList<>();
+        result.add(string("family", "Doe"));
+        result.add(token("identifier", "http://example.com", "123"));
+
+        CompositeParmVal composite = new CompositeParmVal();
+        composite.setResourceType("Patient");
+        composite.setName("code-value");
+        composite.addComponent(token("code", "http://loinc.org", "1234-5"), string("value", "x"));
+        result.add(composite);
+        return result;
+    }
+
+    @Test
+    public void testSameParameters() throws Exception {
+        String hash = ParameterHashVisitor.hash(params(), 1);
+        assertEquals(ParameterHashVisitor.hash(params(), 1), hash);
+        assertEquals(hash.length(), FhirSchemaConstants.PARAMETER_HASH_BYTES);
+    }
+
+    @Test
+    public void testDifferentVersion() throws Exception {
+        assertNotEquals(ParameterHashVisitor.hash(params(), 2), ParameterHashVisitor.hash(params(), 1));
+    }
+
+    @Test
+    public void testDifferentValue() throws Exception {
+        List<ExtractedParameterValue> changed = params();
+        ((StringParmVal)changed.get(0)).setValueString("Smith");
+        assertNotEquals(ParameterHashVisitor.hash(changed, 1), ParameterHashVisitor.hash(params(), 1));
+    }
+
+    @Test
+    public void testNullValue() throws Exception {
+        // a null system must not hash the same as an empty one
+        List<ExtractedParameterValue> a = Arrays.asList(token("identifier", null, "123"));
+        List<ExtractedParameterValue> b = Arrays.asList(token("identifier", "", "123"));
+        assertNotEquals(ParameterHashVisitor.hash(a, 1), ParameterHashVisitor.hash(b, 1));
+    }
+
+    @Test
+    public void testValueBoundaries() throws Exception {
+        // moving characters between adjacent values must change the hash
+        List<ExtractedParameterValue> a = Arrays.asList(token("identifier", "ab", "c"));
+        List<ExtractedParameterValue> b = Arrays.asList(token("identifier", "a", "bc"));
+        assertNotEquals(ParameterHashVisitor.hash(a, 1), ParameterHashVisitor.hash(b, 1));
+    }
+
+    @Test
+    public void testOrderMatters() throws Exception {
+        List<ExtractedParameterValue> reversed = params();
+        ExtractedParameterValue first = reversed.remove(0);
+        reversed.add(first);
+        assertNotEquals(ParameterHashVisitor.hash(reversed, 1), ParameterHashVisitor.hash(params(), 1));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.jdbc.test.util;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.persistence.jdbc.dao.impl.ParameterRowBatch;
+
+/**
+ * Unit test for {@link ParameterRowBatch} using an in-memory Derby database
+ */
+public class ParameterRowBatchTest {
+    private static final String INSERT_STR = "INSERT INTO test_str_values (parameter_name_id, str_value, logical_resource_id) VALUES (?,?,?)";
+    private static final String INSERT_NUM = "INSERT INTO test_number_values (parameter_name_id, number_value, logical_resource_id) VALUES (?,?,?)";
+
+    private Connection connection;
+
+    @BeforeClass
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:derby:memory:parameterRowBatch;create=true");
+        try (Statement s = connection.createStatement()) {
+            s.executeUpdate("CREATE TABLE test_str_values (parameter_name_id INT NOT NULL, str_value VARCHAR(64), logical_resource_id BIGINT NOT NULL)");
+            s.executeUpdate("CREATE TABLE test_number_values (parameter_name_id INT NOT NULL, number_value DECIMAL(10,2), logical_resource_id BIGINT NOT NULL)");
+        }
+    }
+
+    @AfterClass
+    public void teardown() throws SQLException {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void testExecute() throws SQLException {
+        ParameterRowBatch batch = new ParameterRowBatch();
+        assertTrue(batch.isEmpty());
+
+        // 5 string rows and 2 number rows spread over 3 logical resources
+        for (long lrid = 1; lrid <= 3; lrid++) {
+            final long logicalResourceId = lrid;
+            batch.addRow(INSERT_STR, lrid, ps -> setRow(ps, 1, "a" + logicalResourceId, logicalResourceId));
+            if (lrid != 2) {
+                batch.addRow(INSERT_STR, lrid, ps -> setRow(ps, 2, "b" + logicalResourceId, logicalResourceId));
+                batch.addRow(INSERT_NUM, lrid, ps -> {
+                    ps.setInt(1, 3);
+                    ps.setBigDecimal(2, BigDecimal.valueOf(logicalResourceId));
+                    ps.setLong(3, logicalResourceId);
+                });
+            }
+        }
+        assertEquals(batch.size(), 7);
+
+        // a batch size smaller than the number of rows makes sure partial batches are submitted
+        batch.execute(connection, 2);
+        assertTrue(batch.isEmpty());
+        assertEquals(count("test_str_values", 1), 2);
+        assertEquals(count("test_str_values", 2), 1);
+        assertEquals(count("test_str_values", 3), 2);
+        assertEquals(count("test_number_values", 1), 1);
+        assertEquals(count("test_number_values", 3), 1);
+
+        // nothing left to insert the second time around
+        batch.execute(connection, 2);
+        assertEquals(count("test_str_values", 1), 2);
+    }
+
+    @Test
+    public void testDiscard() throws SQLException {
+        ParameterRowBatch batch = new ParameterRowBatch();
+        batch.addRow(INSERT_STR, 10, ps -> setRow(ps, 1, "old", 10));
+        batch.addRow(INSERT_STR, 11, ps -> setRow(ps, 1, "other", 11));
+
+        // a new version of resource 10 replaces its parameters
+        batch.discard(10);
+        assertEquals(batch.size(), 1);
+        batch.addRow(INSERT_STR, 10, ps -> setRow(ps, 1, "new", 10));
+        assertFalse(batch.isEmpty());
+
+        batch.execute(connection, 100);
+        assertEquals(count("test_str_values", 10), 1);
+        assertEquals(count("test_str_values", 11), 1);
+        try (Statement s = connection.createStatement();
+                ResultSet rs = s.executeQuery("SELECT str_value FROM test_str_values WHERE logical_resource_id = 10")) {
+            assertTrue(rs.next());
+            assertEquals(rs.getString(1), "new");
+        }
+    }
+
+    private static void setRow(PreparedStatement ps, int parameterNameId, String value, long logicalResourceId) throws SQLException {
+        ps.setInt(1, parameterNameId);
+        ps.setString(2, value);
+        ps.setLong(3, logicalResourceId);
+    }
+
+    private int count(String table, long logicalResourceId) throws SQLException {
+        try (Statement s = connection.createStatement();
+                ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM " + table + " WHERE logical_resource_id = " + logicalResourceId)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
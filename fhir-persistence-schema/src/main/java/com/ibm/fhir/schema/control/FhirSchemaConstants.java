@@ -23,6 +23,9 @@ public class FhirSchemaConstants {
     public static final int MAX_TOKEN_VALUE_BYTES = 1024;
     public static final int LOGICAL_ID_BYTES = 255;
 
+    // Base64 encoded SHA-256
+    public static final int PARAMETER_HASH_BYTES = 44;
+
     // Currently a constant admin schema name
     public static final String FHIR_ADMIN = "FHIR_ADMIN";
 
@@ -59,6 +62,7 @@ public class FhirSchemaConstants {
     public static final String LOGICAL_RESOURCES = "LOGICAL_RESOURCES";
     public static final String REINDEX_TSTAMP = "REINDEX_TSTAMP";
     public static final String REINDEX_TXID = "REINDEX_TXID";
+    public static final String PARAMETER_HASH = "PARAMETER_HASH";
     public static final String REINDEX_SEQ = "REINDEX_SEQ";
     public static final String RESOURCE_CHANGE_LOG = "RESOURCE_CHANGE_LOG";
 
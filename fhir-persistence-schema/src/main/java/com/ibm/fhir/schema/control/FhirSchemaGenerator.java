@@ -32,6 +32,8 @@ import static com.ibm.fhir.schema.control.FhirSchemaConstants.LOGICAL_RESOURCE_I
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.MAX_SEARCH_STRING_BYTES;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.MAX_TOKEN_VALUE_BYTES;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.MT_ID;
+import static com.ibm.fhir.schema.control.FhirSchemaConstants.PARAMETER_HASH;
+import static com.ibm.fhir.schema.control.FhirSchemaConstants.PARAMETER_HASH_BYTES;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.PARAMETER_NAME;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.PARAMETER_NAMES;
 import static com.ibm.fhir.schema.control.FhirSchemaConstants.PARAMETER_NAME_ID;
@@ -72,6 +74,7 @@ import com.ibm.fhir.database.utils.common.CreateIndexStatement;
 import com.ibm.fhir.database.utils.common.DropColumn;
 import com.ibm.fhir.database.utils.common.DropIndex;
 import com.ibm.fhir.database.utils.common.DropTable;
+import com.ibm.fhir.database.utils.common.ReorgTable;
 import com.ibm.fhir.database.utils.model.AlterSequenceStartWith;
 import com.ibm.fhir.database.utils.model.BaseObject;
 import com.ibm.fhir.database.utils.model.ColumnBase;
@@ -501,6 +504,7 @@ public class FhirSchemaGenerator {
                 .addVarcharColumn(LOGICAL_ID, LOGICAL_ID_BYTES, false)
                 .addTimestampColumn(REINDEX_TSTAMP, false, "CURRENT_TIMESTAMP") // new column for V0006
                 .addBigIntColumn(REINDEX_TXID, false, "0")                      // new column for V0006
+                .addVarcharColumn(PARAMETER_HASH, PARAMETER_HASH_BYTES, true)    // new column for V0014
                 .addPrimaryKey(tableName + "_PK", LOGICAL_RESOURCE_ID)
                 .addUniqueIndex("UNQ_" + LOGICAL_RESOURCES, RESOURCE_TYPE_ID, LOGICAL_ID)
                 .addIndex(IDX_LOGICAL_RESOURCES_RITS, new OrderedColumnDef(REINDEX_TSTAMP, OrderedColumnDef.Direction.DESC, null))
@@ -508,7 +512,7 @@ public class FhirSchemaGenerator {
                 .addPrivileges(resourceTablePrivileges)
                 .addForeignKeyConstraint(FK + tableName + "_RTID", schemaName, RESOURCE_TYPES, RESOURCE_TYPE_ID)
                 .enableAccessControl(this.sessionVariable)
-                .setVersion(FhirSchemaVersion.V0009.vid())
+                .setVersion(FhirSchemaVersion.V0014.vid())
                 .addMigration(priorVersion -> {
                     List<IDatabaseStatement> statements = new ArrayList<>();
                     if (priorVersion == FhirSchemaVersion.V0001.vid()) {
@@ -533,6 +537,17 @@ public class FhirSchemaGenerator {
                         // used
                         statements.add(new DropTable(schemaName, "TOKEN_VALUES"));
                     }
+
+                    if (priorVersion < FhirSchemaVersion.V0014.vid()) {
+                        // Nullable, because the hash is only computed when the resource is reindexed
+                        List<ColumnBase> cols = ColumnDefBuilder.builder()
+                                .addVarcharColumn(PARAMETER_HASH, PARAMETER_HASH_BYTES, true)
+                                .buildColumns();
+                        statements.add(new AddColumn(schemaName, tableName, cols.get(0)));
+
+                        // Db2 requires a REORG before the table can be used again
+                        statements.add(new ReorgTable(schemaName, tableName));
+                    }
                     return statements;
                 })
                 .build(pdm);
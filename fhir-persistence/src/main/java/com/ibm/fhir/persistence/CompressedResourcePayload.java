@@ -0,0 +1,116 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+import com.ibm.fhir.persistence.util.InputOutputByteStream;
+
+/**
+ * Data carrier for the stored form of a single resource version: the GZIP-compressed JSON payload exactly
+ * as it was written by the persistence layer, together with the version metadata needed to build response
+ * headers without parsing the payload.
+ */
+public class CompressedResourcePayload {
+    private final String resourceType;
+    private final String logicalId;
+    private final int versionId;
+    private final Instant lastUpdated;
+    private final InputOutputByteStream compressedPayload;
+
+    /**
+     * @param resourceType the non-null resource type name
+     * @param logicalId the non-null logical id of the resource
+     * @param versionId the version number of the resource
+     * @param lastUpdated the non-null lastUpdated time for this version of the resource
+     * @param compressedPayload a non-null stream holding the GZIP-compressed JSON for this version of the resource
+     */
+    public CompressedResourcePayload(String resourceType, String logicalId, int versionId, Instant lastUpdated,
+            InputOutputByteStream compressedPayload) {
+        this.resourceType = Objects.requireNonNull(resourceType, "resourceType");
+        this.logicalId = Objects.requireNonNull(logicalId, "logicalId");
+        this.versionId = versionId;
+        this.lastUpdated = Objects.requireNonNull(lastUpdated, "lastUpdated");
+        this.compressedPayload = Objects.requireNonNull(compressedPayload, "compressedPayload");
+    }
+
+    /**
+     * @return the resource type name
+     */
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    /**
+     * @return the logical id of the resource
+     */
+    public String getLogicalId() {
+        return logicalId;
+    }
+
+    /**
+     * @return the version number of the resource
+     */
+    public int getVersionId() {
+        return versionId;
+    }
+
+    /**
+     * @return the lastUpdated time of this version of the resource
+     */
+    public Instant getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * @return the number of bytes in the compressed payload
+     */
+    public int getCompressedSize() {
+        return compressedPayload.size();
+    }
+
+    /**
+     * Copy the compressed (GZIP) payload as-is into the given {@link OutputStream}
+     * @param os the OutputStream to transfer the bytes into
+     * @return the number of bytes transferred into the {@link OutputStream}
+     */
+    public long transferCompressedTo(OutputStream os) throws IOException {
+        try (InputStream in = compressedPayload.inputStream()) {
+            return transfer(in, os);
+        }
+    }
+
+    /**
+     * Decompress the payload into the given {@link OutputStream}
+     * @param os the OutputStream to transfer the JSON bytes into
+     * @return the number of bytes transferred into the {@link OutputStream}
+     */
+    public long transferTo(OutputStream os) throws IOException {
+        // Must close the GZIPInputStream...it leaks off-heap memory if we fail to close it
+        try (InputStream in = new GZIPInputStream(compressedPayload.inputStream())) {
+            return transfer(in, os);
+        }
+    }
+
+    private long transfer(InputStream in, OutputStream os) throws IOException {
+        long result = 0;
+        byte[] buffer = new byte[4096];
+        int len;
+        while ((len = in.read(buffer)) >= 0) {
+            if (len > 0) {
+                os.write(buffer, 0, len);
+                result += len;
+            }
+        }
+        return result;
+    }
+}
@@ -62,6 +62,29 @@ public interface FHIRPersistence {
     <T extends Resource> SingleResourceResult<T> vread(FHIRPersistenceContext context, Class<T> resourceType, String logicalId, String versionId)
             throws FHIRPersistenceException;
 
+    /**
+     * Returns true iff the persistence layer implementation supports the "readPayload" operation.
+     */
+    default boolean isPayloadReadSupported() {
+        return false;
+    }
+
+    /**
+     * Retrieves the stored form of the most recent (or a specific) version of a FHIR Resource without parsing it.
+     * The stored payload is GZIP-compressed JSON which already carries the correct meta.versionId and meta.lastUpdated.
+     *
+     * @param context the FHIRPersistenceContext instance associated with the current request
+     * @param resourceType the resource type of the Resource instance to be retrieved
+     * @param logicalId the logical id of the Resource instance to be retrieved
+     * @param versionId the version of the Resource instance to be retrieved, or null for the most recent version
+     * @return the stored payload, or null if the resource (version) was not found
+     * @throws FHIRPersistenceException
+     */
+    default CompressedResourcePayload readPayload(FHIRPersistenceContext context, Class<? extends Resource> resourceType, String logicalId,
+            String versionId) throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'readPayload' operation is not supported by this persistence implementation");
+    }
+
     /**
      * Updates an existing FHIR Resource by storing a new version in the datastore.
      *
@@ -136,6 +159,21 @@ public interface FHIRPersistence {
         return false;
     }
 
+    /**
+     * Prepares the datastore for storing the given resources, for example by resolving the values
+     * they have in common in bulk rather than one resource at a time. Called with the resources of the
+     * create and update entries of a bundle before the entries are processed. The resources are not
+     * stored, but an implementation may keep what it computed for them (like their search parameter values)
+     * for when the same resource objects are created or updated later in the request. The default
+     * implementation does nothing.
+     *
+     * @param resources the resources which are about to be created or updated
+     * @throws FHIRPersistenceException
+     */
+    default void prepare(List<? extends Resource> resources) throws FHIRPersistenceException {
+        // NOP
+    }
+
     /**
      * Generates a resource ID.
      *
@@ -168,6 +206,44 @@ public interface FHIRPersistence {
     int reindex(FHIRPersistenceContext context, OperationOutcome.Builder operationOutcomeResult, Instant tstamp, String resourceLogicalId)
             throws FHIRPersistenceException;
 
+    /**
+     * Returns true iff the persistence layer implementation supports reindexing by logical resource id range
+     * @return
+     */
+    default boolean isReindexRangeSupported() {
+        return false;
+    }
+
+    /**
+     * Split the logical resources currently in the datastore into at most rangeCount non-overlapping
+     * ranges which can be reindexed independently (and concurrently) using
+     * {@link #reindex(FHIRPersistenceContext, Instant, ReindexRange, int)}
+     * @param resourceType optional resource type to limit the reindex to
+     * @param rangeCount the maximum number of ranges to return
+     * @return the ranges, which is empty when there are no resources to reindex
+     * @throws FHIRPersistenceException
+     */
+    default List<ReindexRange> getReindexRanges(String resourceType, int rangeCount) throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'getReindexRanges' operation is not supported by this persistence implementation");
+    }
+
+    /**
+     * Reindex the next batch of up to maxResources resources in the given range which were not
+     * reindexed since tstamp. Progress is recorded in the database as each resource is reindexed,
+     * so a reindex using the same tstamp can be restarted without repeating work. The cursor in
+     * the range is advanced past the last resource considered, and the range is marked complete
+     * when no resources remain.
+     * @param context the FHIRPersistenceContext instance associated with the current request.
+     * @param tstamp reindex any resources with an index_tstamp less than this.
+     * @param range the range to process
+     * @param maxResources the maximum number of resources to reindex in this call (transaction)
+     * @return count of the number of resources reindexed by this call
+     * @throws FHIRPersistenceException
+     */
+    default int reindex(FHIRPersistenceContext context, Instant tstamp, ReindexRange range, int maxResources) throws FHIRPersistenceException {
+        throw new FHIRPersistenceNotSupportedException("The 'reindex' by range operation is not supported by this persistence implementation");
+    }
+
     /**
      * Special function for high speed export of resource payloads. The process
      * function must process the InputStream before returning. Result processing
@@ -0,0 +1,142 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A contiguous range of logical resource ids to be reindexed, together with a cursor
+ * tracking how far the reindex has progressed through the range. Ranges don't overlap,
+ * so each one can be processed by a different thread without contention.
+ */
+public class ReindexRange {
+
+    // The resource type to limit the reindex to, or null for all resource types
+    private final String resourceType;
+
+    // The first logical resource id in the range (inclusive)
+    private final long fromLogicalResourceId;
+
+    // The last logical resource id in the range (inclusive)
+    private final long toLogicalResourceId;
+
+    // The next logical resource id to consider
+    private long nextLogicalResourceId;
+
+    // Set when there are no more resources in the range to reindex
+    private boolean complete;
+
+    /**
+     * Public constructor
+     * @param resourceType the resource type to reindex, or null for all resource types
+     * @param fromLogicalResourceId the first logical resource id in the range (inclusive)
+     * @param toLogicalResourceId the last logical resource id in the range (inclusive)
+     */
+    public ReindexRange(String resourceType, long fromLogicalResourceId, long toLogicalResourceId) {
+        this.resourceType = resourceType;
+        this.fromLogicalResourceId = fromLogicalResourceId;
+        this.toLogicalResourceId = toLogicalResourceId;
+        this.nextLogicalResourceId = fromLogicalResourceId;
+        this.complete = fromLogicalResourceId > toLogicalResourceId;
+    }
+
+    /**
+     * Split the id range [minLogicalResourceId, maxLogicalResourceId] into at most rangeCount
+     * ranges of (almost) equal width
+     * @param resourceType the resource type to reindex, or null for all resource types
+     * @param minLogicalResourceId
+     * @param maxLogicalResourceId
+     * @param rangeCount
+     * @return the list of ranges, which is empty if min > max
+     */
+    public static List<ReindexRange> split(String resourceType, long minLogicalResourceId, long maxLogicalResourceId, int rangeCount) {
+        if (rangeCount < 1) {
+            throw new IllegalArgumentException("rangeCount must be > 0");
+        }
+
+        List<ReindexRange> result = new ArrayList<>(rangeCount);
+        if (minLogicalResourceId <= maxLogicalResourceId) {
+            final long span = maxLogicalResourceId - minLogicalResourceId + 1;
+            final long width = Math.max(1L, span / rangeCount);
+            final long remainder = span > rangeCount ? span % rangeCount : 0;
+            long from = minLogicalResourceId;
+            for (int i=0; i<rangeCount && from <= maxLogicalResourceId; i++) {
+                // spread the remainder over the first few ranges
+                long to = from + width - 1 + (i < remainder ? 1 : 0);
+                if (i == rangeCount - 1 || to > maxLogicalResourceId) {
+                    to = maxLogicalResourceId;
+                }
+                result.add(new ReindexRange(resourceType, from, to));
+                from = to + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the resource type to reindex, or null for all resource types
+     */
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    /**
+     * @return the first logical resource id in the range (inclusive)
+     */
+    public long getFromLogicalResourceId() {
+        return fromLogicalResourceId;
+    }
+
+    /**
+     * @return the last logical resource id in the range (inclusive)
+     */
+    public long getToLogicalResourceId() {
+        return toLogicalResourceId;
+    }
+
+    /**
+     * @return the next logical resource id to consider
+     */
+    public long getNextLogicalResourceId() {
+        return nextLogicalResourceId;
+    }
+
+    /**
+     * Move the cursor. Used by the persistence layer to record progress, and by the
+     * caller to reset the cursor if the transaction which advanced it is rolled back.
+     * @param nextLogicalResourceId
+     */
+    public void setNextLogicalResourceId(long nextLogicalResourceId) {
+        this.nextLogicalResourceId = nextLogicalResourceId;
+    }
+
+    /**
+     * @return true if there are no more resources in this range to reindex
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param complete
+     */
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        if (resourceType != null) {
+            result.append(resourceType).append(":");
+        }
+        result.append("[").append(fromLogicalResourceId).append(", ").append(toLogicalResourceId).append("]");
+        result.append(" next=").append(nextLogicalResourceId);
+        return result.toString();
+    }
+}
@@ -13,6 +13,8 @@ import java.util.ServiceLoader;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.core.FHIRUtilities;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptor;
@@ -83,102 +85,105 @@ public class FHIRPersistenceInterceptorMgr {
         interceptors.add(0, interceptor);
     }
 
+    /**
+     * @return true if at least one interceptor is registered
+     */
+    public boolean hasInterceptors() {
+        return !interceptors.isEmpty();
+    }
+
+    /**
+     * One of the event methods of {@link FHIRPersistenceInterceptor}
+     */
+    @FunctionalInterface
+    private interface InterceptorMethod {
+        void invoke(FHIRPersistenceInterceptor interceptor, FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException;
+    }
+
+    /**
+     * Invoke the given method on each registered interceptor, recording the time taken
+     * against the current request
+     * @param method
+     * @param event
+     * @throws FHIRPersistenceInterceptorException
+     */
+    private void fire(InterceptorMethod method, FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
+        if (!interceptors.isEmpty()) {
+            final long start = System.nanoTime();
+            try {
+                for (FHIRPersistenceInterceptor interceptor : interceptors) {
+                    method.invoke(interceptor, event);
+                }
+            } finally {
+                RequestTimer.stop(RequestPhase.INTERCEPTORS, start);
+            }
+        }
+    }
+
     /**
      * The following methods will invoke the respective interceptor methods on each registered interceptor.
      */
     public void fireBeforeCreateEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforeCreate(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforeCreate, event);
     }
 
     public void fireAfterCreateEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterCreate(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterCreate, event);
     }
 
     public void fireBeforeUpdateEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforeUpdate(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforeUpdate, event);
     }
 
     public void fireAfterUpdateEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterUpdate(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterUpdate, event);
     }
 
     public void fireBeforePatchEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforePatch(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforePatch, event);
     }
 
     public void fireAfterPatchEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterPatch(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterPatch, event);
     }
 
     public void fireBeforeDeleteEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforeDelete(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforeDelete, event);
     }
 
     public void fireAfterDeleteEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterDelete(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterDelete, event);
     }
 
     public void fireBeforeReadEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforeRead(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforeRead, event);
     }
 
     public void fireAfterReadEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterRead(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterRead, event);
     }
 
     public void fireBeforeVreadEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforeVread(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforeVread, event);
     }
 
     public void fireAfterVreadEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterVread(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterVread, event);
     }
 
     public void fireBeforeHistoryEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforeHistory(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforeHistory, event);
     }
 
     public void fireAfterHistoryEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterHistory(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterHistory, event);
     }
 
     public void fireBeforeSearchEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.beforeSearch(event);
-        }
+        fire(FHIRPersistenceInterceptor::beforeSearch, event);
     }
 
     public void fireAfterSearchEvent(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
-        for (FHIRPersistenceInterceptor interceptor : interceptors) {
-            interceptor.afterSearch(event);
-        }
+        fire(FHIRPersistenceInterceptor::afterSearch, event);
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.persistence.ReindexRange;
+
+/**
+ * Unit test for {@link ReindexRange}
+ */
+public class ReindexRangeTest {
+
+    /**
+     * Make sure the ranges are contiguous, non-overlapping and cover [min, max]
+     * @param ranges
+     * @param min
+     * @param max
+     */
+    private void checkCoverage(List<ReindexRange> ranges, long min, long max) {
+        long expectedFrom = min;
+        for (ReindexRange range: ranges) {
+            assertEquals(range.getFromLogicalResourceId(), expectedFrom);
+            assertTrue(range.getToLogicalResourceId() >= range.getFromLogicalResourceId());
+            assertEquals(range.getNextLogicalResourceId(), range.getFromLogicalResourceId());
+            assertFalse(range.isComplete());
+            expectedFrom = range.getToLogicalResourceId() + 1;
+        }
+        assertEquals(expectedFrom, max + 1);
+    }
+
+    @Test
+    public void testEvenSplit() {
+        List<ReindexRange> ranges = ReindexRange.split("Patient", 1, 100, 4);
+        assertEquals(ranges.size(), 4);
+        checkCoverage(ranges, 1, 100);
+        for (ReindexRange range: ranges) {
+            assertEquals(range.getResourceType(), "Patient");
+            assertEquals(range.getToLogicalResourceId() - range.getFromLogicalResourceId() + 1, 25);
+        }
+    }
+
+    @Test
+    public void testUnevenSplit() {
+        List<ReindexRange> ranges = ReindexRange.split(null, 1000, 1009, 3);
+        assertEquals(ranges.size(), 3);
+        checkCoverage(ranges, 1000, 1009);
+        assertNull(ranges.get(0).getResourceType());
+
+        // widths should differ by no more than 1
+        assertEquals(ranges.get(0).getToLogicalResourceId() - ranges.get(0).getFromLogicalResourceId() + 1, 4);
+        assertEquals(ranges.get(2).getToLogicalResourceId() - ranges.get(2).getFromLogicalResourceId() + 1, 3);
+    }
+
+    @Test
+    public void testMoreRangesThanIds() {
+        List<ReindexRange> ranges = ReindexRange.split(null, 5, 7, 10);
+        assertEquals(ranges.size(), 3);
+        checkCoverage(ranges, 5, 7);
+    }
+
+    @Test
+    public void testEmpty() {
+        assertTrue(ReindexRange.split(null, 10, 9, 4).isEmpty());
+        assertTrue(new ReindexRange(null, 10, 9).isComplete());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testBadRangeCount() {
+        ReindexRange.split(null, 1, 10, 0);
+    }
+}
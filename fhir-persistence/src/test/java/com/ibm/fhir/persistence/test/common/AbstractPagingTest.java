@@ -9,9 +9,12 @@ package com.ibm.fhir.persistence.test.common;
 import static com.ibm.fhir.model.test.TestUtil.isResourceInResponse;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.AssertJUnit.assertNotNull;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -50,6 +53,9 @@ public abstract class AbstractPagingTest extends AbstractPersistenceTest {
     Basic resource2;
     Basic resource3;
 
+    // the context of the most recent search run by searchPage
+    FHIRSearchContext lastSearchContext;
+
     @BeforeClass
     public void createResources() throws Exception {
         FHIRRequestContext.get().setTenantId("all");
@@ -120,6 +126,81 @@ public abstract class AbstractPagingTest extends AbstractPersistenceTest {
         assertTrue(isResourceInResponse(resource3, results));
     }
 
+    // Follow the next page cursor, if the implementation provides one, and expect the same pages as the offset
+    @Test
+    public void testSearchPagingWithCursor() throws Exception {
+        assertEquals(searchPagesWithCursor("integer"), Arrays.asList(resource1.getId(), resource2.getId(), resource3.getId()));
+        assertEquals(searchPagesWithCursor("-integer"), Arrays.asList(resource3.getId(), resource2.getId(), resource1.getId()));
+
+        // the default ordering isn't defined, but the cursor must not change it
+        List<String> unsorted = new ArrayList<>();
+        for (int page = 1; page <= 3; page++) {
+            unsorted.add(searchPage(null, page, null).getResource().get(0).getId());
+        }
+        assertEquals(searchPagesWithCursor(null), unsorted);
+    }
+
+    @Test
+    public void testSearchPagingWithInvalidCursor() throws Exception {
+        // a cursor the implementation doesn't recognize is ignored in favor of the page number
+        MultiResourceResult<Resource> result = searchPage("integer", 2, "not-a-cursor");
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource2, result.getResource()));
+    }
+
+    @Test
+    public void testSearchPagingWithCursorAfterSortChange() throws Exception {
+        // a cursor issued for a different sort order is ignored in favor of the page number
+        searchPage("integer", 1, null);
+        String cursor = lastSearchContext.getNextPageToken();
+        MultiResourceResult<Resource> result = searchPage("-integer", 2, cursor);
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource2, result.getResource()));
+
+        // and likewise for a different sort parameter
+        searchPage("integer", 1, null);
+        cursor = lastSearchContext.getNextPageToken();
+        result = searchPage("-_lastUpdated", 2, cursor);
+        assertTrue(result.isSuccess());
+        assertEquals(result.getResource().size(), 1, "expected number of results");
+        assertTrue(isResourceInResponse(resource2, result.getResource()));
+    }
+
+    /**
+     * Fetch each of the three pages of the pagingTest resources, passing the next page
+     * cursor from one page to the next, and return the ids in page order
+     */
+    private List<String> searchPagesWithCursor(String sort) throws Exception {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        for (int page = 1; page <= 3; page++) {
+            MultiResourceResult<Resource> result = searchPage(sort, page, cursor);
+            assertTrue(result.isSuccess());
+            assertEquals(result.getResource().size(), 1, "expected number of results");
+            ids.add(result.getResource().get(0).getId());
+            cursor = lastSearchContext.getNextPageToken();
+        }
+        // there is no page after the last page
+        assertNull(cursor);
+        return ids;
+    }
+
+    private MultiResourceResult<Resource> searchPage(String sort, int page, String cursor) throws Exception {
+        Map<String, List<String>> queryParameters = new HashMap<>();
+        if (sort != null) {
+            queryParameters.put("_sort", Collections.singletonList(sort));
+        }
+        queryParameters.put("_tag", Collections.singletonList("pagingTest"));
+        queryParameters.put("_page", Collections.singletonList(java.lang.Integer.toString(page)));
+        if (cursor != null) {
+            queryParameters.put("_cursor", Collections.singletonList(cursor));
+        }
+        lastSearchContext = SearchUtil.parseQueryParameters(Basic.class, queryParameters);
+        return runQueryTest(lastSearchContext, Basic.class, queryParameters, 1);
+    }
+
     // history results should be sorted with oldest versions last
     @Test
     public void testHistoryPaging() throws Exception {
@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.Device;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.persistence.CompressedResourcePayload;
+import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceDeletedException;
+
+/**
+ * Tests for reading the stored (compressed) payload of a resource without parsing it.
+ */
+public abstract class AbstractReadPayloadTest extends AbstractPersistenceTest {
+    protected Device device1;
+    protected Device device2;
+
+    @BeforeClass
+    public void createResources() throws Exception {
+        Device device = TestUtil.readExampleResource("json/ibm/minimal/Device-1.json");
+
+        device1 = persistence.create(getDefaultPersistenceContext(), device).getResource();
+        device2 = persistence.update(getDefaultPersistenceContext(), device1.getId(), device1).getResource();
+        assertEquals("2", device2.getMeta().getVersionId().getValue());
+    }
+
+    @Test
+    public void testReadPayloadSupported() {
+        assertTrue(persistence.isPayloadReadSupported());
+    }
+
+    @Test
+    public void testReadPayload() throws Exception {
+        CompressedResourcePayload payload = persistence.readPayload(getDefaultPersistenceContext(), Device.class, device1.getId(), null);
+        assertNotNull(payload);
+        assertEquals(payload.getResourceType(), "Device");
+        assertEquals(payload.getLogicalId(), device1.getId());
+        assertEquals(payload.getVersionId(), 2);
+        assertEquals(payload.getLastUpdated(), device2.getMeta().getLastUpdated().getValue().toInstant());
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        payload.transferTo(json);
+        Device parsed = FHIRParser.parser(Format.JSON).parse(new ByteArrayInputStream(json.toByteArray()));
+        assertEquals(parsed, device2);
+    }
+
+    @Test
+    public void testReadPayloadCompressed() throws Exception {
+        CompressedResourcePayload payload = persistence.readPayload(getDefaultPersistenceContext(), Device.class, device1.getId(), "1");
+        assertNotNull(payload);
+        assertEquals(payload.getVersionId(), 1);
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        assertEquals(payload.transferCompressedTo(gzip), payload.getCompressedSize());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray()))) {
+            Device parsed = FHIRParser.parser(Format.JSON).parse(in);
+            assertEquals(parsed, device1);
+        }
+    }
+
+    @Test
+    public void testReadPayloadInvalidDevice() throws Exception {
+        assertNull(persistence.readPayload(getDefaultPersistenceContext(), Device.class, "invalid-device-id", null));
+        assertNull(persistence.readPayload(getDefaultPersistenceContext(), Device.class, device1.getId(), "99"));
+    }
+
+    @Test(dependsOnMethods = { "testReadPayload", "testReadPayloadCompressed", "testReadPayloadInvalidDevice" },
+            expectedExceptions = FHIRPersistenceResourceDeletedException.class)
+    public void testReadPayloadDeletedDevice() throws Exception {
+        persistence.delete(getDefaultPersistenceContext(), Device.class, device1.getId());
+        persistence.readPayload(getDefaultPersistenceContext(), Device.class, device1.getId(), null);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.persistence.test.common;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.model.resource.Basic;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.persistence.ReindexRange;
+
+/**
+ * Tests for reindexing resources by logical resource id range.
+ */
+public abstract class AbstractReindexRangeTest extends AbstractPersistenceTest {
+    private static final int RESOURCE_COUNT = 5;
+
+    // The tstamp used for the reindex tests
+    private Instant tstamp;
+
+    @BeforeClass
+    public void createResources() throws Exception {
+        Basic basic = TestUtil.readExampleResource("json/ibm/minimal/Basic-1.json");
+        for (int i=0; i<RESOURCE_COUNT; i++) {
+            persistence.create(getDefaultPersistenceContext(), basic);
+        }
+        tstamp = Instant.now();
+    }
+
+    /**
+     * Reindex each of the ranges in turn, processing at most batchSize resources per call
+     * @param ranges
+     * @param batchSize
+     * @return the total number of resources reindexed
+     * @throws Exception
+     */
+    private int reindexAll(List<ReindexRange> ranges, int batchSize) throws Exception {
+        int total = 0;
+        for (ReindexRange range: ranges) {
+            while (!range.isComplete()) {
+                int count = persistence.reindex(getDefaultPersistenceContext(), tstamp, range, batchSize);
+                assertTrue(count <= batchSize);
+                total += count;
+            }
+            assertEquals(range.getNextLogicalResourceId(), range.getToLogicalResourceId() + 1);
+        }
+        return total;
+    }
+
+    @Test
+    public void testReindexRangeSupported() {
+        assertTrue(persistence.isReindexRangeSupported());
+    }
+
+    @Test
+    public void testUnknownResourceType() throws Exception {
+        assertTrue(persistence.getReindexRanges("NotAResourceType", 4).isEmpty());
+    }
+
+    @Test
+    public void testReindexByRange() throws Exception {
+        List<ReindexRange> ranges = persistence.getReindexRanges("Basic", 3);
+        assertFalse(ranges.isEmpty());
+        assertTrue(ranges.size() <= 3);
+        for (ReindexRange range: ranges) {
+            assertEquals(range.getResourceType(), "Basic");
+        }
+
+        // Other tests may have created Basic resources too
+        assertTrue(reindexAll(ranges, 2) >= RESOURCE_COUNT);
+    }
+
+    @Test(dependsOnMethods = { "testReindexByRange" })
+    public void testReindexRestart() throws Exception {
+        // Every resource was stamped with the tstamp, so there's nothing left to do
+        List<ReindexRange> ranges = persistence.getReindexRanges("Basic", 2);
+        assertEquals(reindexAll(ranges, 10), 0);
+    }
+}
@@ -39,6 +39,8 @@ import org.owasp.encoder.Encode;
 import com.ibm.fhir.config.FHIRConfigHelper;
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.core.HTTPHandlingPreference;
 import com.ibm.fhir.model.format.Format;
@@ -49,6 +51,7 @@ import com.ibm.fhir.model.parser.exception.FHIRParserException;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.provider.util.FHIRProviderUtil;
 
 /**
  * Maps entity streams to/from fhir-model objects
@@ -81,6 +84,7 @@ public class FHIRProvider implements MessageBodyReader<Resource>, MessageBodyWri
             MultivaluedMap<String, String> httpHeaders,
             InputStream entityStream) throws IOException, WebApplicationException {
         log.entering(this.getClass().getName(), "readFrom");
+        final long start = System.nanoTime();
         try {
             FHIRRequestContext requestContext = FHIRRequestContext.get();
             Format format = getFormat(mediaType);
@@ -105,6 +109,7 @@ public class FHIRProvider implements MessageBodyReader<Resource>, MessageBodyWri
                 throw new IOException("an error occurred during resource deserialization", e);
             }
         } finally {
+            RequestTimer.stop(RequestPhase.PARSE, start);
             log.exiting(this.getClass().getName(), "readFrom");
         }
     }
@@ -119,6 +124,7 @@ public class FHIRProvider implements MessageBodyReader<Resource>, MessageBodyWri
             MultivaluedMap<String, Object> httpHeaders,
             OutputStream entityStream) throws IOException, WebApplicationException {
         log.entering(this.getClass().getName(), "writeTo");
+        final long start = System.nanoTime();
         try {
             FHIRGenerator.generator(getFormat(mediaType), isPretty(requestHeaders, uriInfo)).generate(t, entityStream);
         } catch (FHIRGeneratorException e) {
@@ -134,30 +140,14 @@ public class FHIRProvider implements MessageBodyReader<Resource>, MessageBodyWri
                 throw new WebApplicationException(response);
             }
         } finally {
+            RequestTimer.stop(RequestPhase.RESPONSE, start);
             log.exiting(this.getClass().getName(), "writeTo");
         }
     }
 
     protected boolean isPretty(HttpHeaders httpHeaders, UriInfo uriInfo) {
         if (RuntimeType.SERVER.equals(runtimeType)) {
-            // Header evaluation
-            String value = httpHeaders.getHeaderString(FHIRConfiguration.DEFAULT_PRETTY_RESPONSE_HEADER_NAME);
-
-            // IFF not Header set, then grab the Query Parameter.
-            // and use the FIRST value for _pretty.
-            if (value == null) {
-                value = uriInfo.getQueryParameters().getFirst("_pretty");
-            }
-
-            if (value != null) {
-                if (Boolean.parseBoolean(value)) {
-                    //explicitly on in the header
-                    return true;
-                } else if ("false".equalsIgnoreCase(value)) {
-                    //explicitly off in the header.  ignore header value if it doesn't specify "true" or false"
-                    return false;
-                }
-            }
+            return FHIRProviderUtil.isPretty(httpHeaders, uriInfo);
         }
 
         // Config evaluation (default false)
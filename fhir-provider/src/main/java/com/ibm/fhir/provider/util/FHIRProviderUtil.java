@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2019
+ * (C) Copyright IBM Corp. 2019, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -12,7 +12,10 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
 
+import com.ibm.fhir.config.FHIRConfigHelper;
+import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.model.resource.OperationOutcome;
 
@@ -50,6 +53,39 @@ public final class FHIRProviderUtil {
         return FHIRMediaType.APPLICATION_FHIR_JSON_TYPE;
     }
     
+    /**
+     * Determine whether the response to a server request should be pretty printed: the
+     * X-FHIR-FORMATTED header, then the first _pretty query parameter, then the configured default.
+     * A header or parameter value other than "true" or "false" is ignored.
+     *
+     * @param httpHeaders the request headers
+     * @param uriInfo the request URI info; may be null
+     * @return
+     */
+    public static boolean isPretty(HttpHeaders httpHeaders, UriInfo uriInfo) {
+        // Header evaluation
+        String value = httpHeaders.getHeaderString(FHIRConfiguration.DEFAULT_PRETTY_RESPONSE_HEADER_NAME);
+
+        // IFF not Header set, then grab the Query Parameter.
+        // and use the FIRST value for _pretty.
+        if (value == null && uriInfo != null) {
+            value = uriInfo.getQueryParameters().getFirst("_pretty");
+        }
+
+        if (value != null) {
+            if (Boolean.parseBoolean(value)) {
+                //explicitly on in the header
+                return true;
+            } else if ("false".equalsIgnoreCase(value)) {
+                //explicitly off in the header.  ignore header value if it doesn't specify "true" or false"
+                return false;
+            }
+        }
+
+        // Config evaluation (default false)
+        return FHIRConfigHelper.getBooleanProperty(FHIRConfiguration.PROPERTY_DEFAULT_PRETTY_PRINT, false);
+    }
+
     public static Response buildResponse(OperationOutcome operationOutcome, MediaType mediaType) {
         Response response = Response.status(Response.Status.BAD_REQUEST)
                 .header(HttpHeaders.CONTENT_TYPE, mediaType)
@@ -76,6 +76,9 @@ public class SearchConstants {
     // _page
     public static final String PAGE = "_page";
 
+    // _cursor (opaque continuation token for keyset pagination)
+    public static final String CURSOR = "_cursor";
+
     // _elements
     public static final String ELEMENTS = "_elements";
 
@@ -110,7 +113,7 @@ public class SearchConstants {
 
     // set as unmodifiable
     public static final Set<String> SEARCH_RESULT_PARAMETER_NAMES =
-            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(SORT, COUNT, PAGE, INCLUDE, REVINCLUDE, ELEMENTS, SUMMARY, TOTAL)));
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(SORT, COUNT, PAGE, CURSOR, INCLUDE, REVINCLUDE, ELEMENTS, SUMMARY, TOTAL)));
 
     /**
      * https://www.hl7.org/fhir/search.html#lastUpdated
@@ -122,7 +125,7 @@ public class SearchConstants {
 
     // set as unmodifiable
     public static final Set<String> SEARCH_SINGLETON_PARAMETER_NAMES =
-            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(SORT, COUNT, PAGE, SUMMARY, TOTAL, ELEMENTS, RESOURCE_TYPE)));
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(SORT, COUNT, PAGE, CURSOR, SUMMARY, TOTAL, ELEMENTS, RESOURCE_TYPE)));
 
     // Empty Query String
     public static final String EMPTY_QUERY_STRING = "";
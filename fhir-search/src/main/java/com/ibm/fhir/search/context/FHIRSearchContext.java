@@ -116,4 +116,29 @@ public interface FHIRSearchContext extends FHIRPagingContext {
      */
     void addOutcomeIssue(Issue outcomeIssue);
 
+    /**
+     * Get the continuation token passed with the request (the _cursor parameter).
+     *
+     * @return the continuation token, or null if the page is addressed by page number only
+     */
+    String getPageToken();
+
+    /**
+     * Set the continuation token passed with the request (the _cursor parameter).
+     * @param pageToken the opaque continuation token
+     */
+    void setPageToken(String pageToken);
+
+    /**
+     * Get the continuation token which addresses the page after the current one.
+     *
+     * @return the continuation token, or null if the persistence layer did not produce one
+     */
+    String getNextPageToken();
+
+    /**
+     * Set the continuation token which addresses the page after the current one.
+     * @param nextPageToken the opaque continuation token
+     */
+    void setNextPageToken(String nextPageToken);
 }
@@ -10,6 +10,7 @@ import java.util.logging.Logger;
 
 import com.ibm.fhir.config.FHIRConfigHelper;
 import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.PropertyHandle;
 import com.ibm.fhir.core.FHIRConstants;
 import com.ibm.fhir.search.context.impl.FHIRSearchContextImpl;
 
@@ -19,6 +20,11 @@ import com.ibm.fhir.search.context.impl.FHIRSearchContextImpl;
 public class FHIRSearchContextFactory {
     private static Logger log = Logger.getLogger(FHIRSearchContextFactory.class.getName());
 
+    // Read for every search, so precompile the property names
+    private static final PropertyHandle MAX_PAGE_SIZE = PropertyHandle.of(FHIRConfiguration.PROPERTY_MAX_PAGE_SIZE);
+    private static final PropertyHandle DEFAULT_PAGE_SIZE = PropertyHandle.of(FHIRConfiguration.PROPERTY_DEFAULT_PAGE_SIZE);
+    private static final PropertyHandle MAX_PAGE_INCLUDE_COUNT = PropertyHandle.of(FHIRConfiguration.PROPERTY_MAX_PAGE_INCLUDE_COUNT);
+
     /**
      * Hide the default ctor.
      */
@@ -29,14 +35,14 @@ public class FHIRSearchContextFactory {
      * Returns a new instance of the FHIRSearchContext interface.
      */
     public static FHIRSearchContext createSearchContext() {
-        int maxPageSize = FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_MAX_PAGE_SIZE, FHIRConstants.FHIR_PAGE_SIZE_DEFAULT_MAX);
-        int pageSize = FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_DEFAULT_PAGE_SIZE, FHIRConstants.FHIR_PAGE_SIZE_DEFAULT);
+        int maxPageSize = FHIRConfigHelper.getIntProperty(MAX_PAGE_SIZE, FHIRConstants.FHIR_PAGE_SIZE_DEFAULT_MAX);
+        int pageSize = FHIRConfigHelper.getIntProperty(DEFAULT_PAGE_SIZE, FHIRConstants.FHIR_PAGE_SIZE_DEFAULT);
         if (pageSize > maxPageSize) {
             log.warning(String.format("Server configuration %s = %d exceeds maximum allowed page size %d; using %d",
                 FHIRConfiguration.PROPERTY_DEFAULT_PAGE_SIZE, pageSize, maxPageSize, maxPageSize));
             pageSize = maxPageSize;
         }
-        int maxPageIncludeCount = FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_MAX_PAGE_INCLUDE_COUNT, FHIRConstants.FHIR_PAGE_INCLUDE_COUNT_DEFAULT_MAX);
+        int maxPageIncludeCount = FHIRConfigHelper.getIntProperty(MAX_PAGE_INCLUDE_COUNT, FHIRConstants.FHIR_PAGE_INCLUDE_COUNT_DEFAULT_MAX);
 
         FHIRSearchContext ctx = new FHIRSearchContextImpl();
         ctx.setPageSize(pageSize);
@@ -29,6 +29,8 @@ public class FHIRSearchContextImpl extends FHIRPagingContextImpl implements FHIR
     private SummaryValueSet summaryParameter = null;
     private TotalValueSet totalParameter = null;
     private List<Issue> outcomeIssues = null;
+    private String pageToken = null;
+    private String nextPageToken = null;
 
     public FHIRSearchContextImpl() {
         searchParameters = new ArrayList<>();
@@ -156,6 +158,26 @@ public class FHIRSearchContextImpl extends FHIRPagingContextImpl implements FHIR
         outcomeIssues.add(outcomeIssue);
     }
 
+    @Override
+    public String getPageToken() {
+        return pageToken;
+    }
+
+    @Override
+    public void setPageToken(String pageToken) {
+        this.pageToken = pageToken;
+    }
+
+    @Override
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    @Override
+    public void setNextPageToken(String nextPageToken) {
+        this.nextPageToken = nextPageToken;
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -177,6 +199,8 @@ public class FHIRSearchContextImpl extends FHIRPagingContextImpl implements FHIR
         builder.append(totalParameter);
         builder.append(", outcomeIssues=");
         builder.append(outcomeIssues);
+        builder.append(", pageToken=");
+        builder.append(pageToken);
         builder.append("]");
         return builder.toString();
     }
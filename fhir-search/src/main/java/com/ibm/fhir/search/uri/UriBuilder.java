@@ -97,6 +97,14 @@ public class UriBuilder {
         queryString.append(SearchConstants.EQUALS_CHAR);
         queryString.append(context.getPageNumber());
 
+        // The continuation token must stay with the page number it was issued for
+        if (context.getPageToken() != null) {
+            queryString.append(SearchConstants.AND_CHAR);
+            queryString.append(SearchConstants.CURSOR);
+            queryString.append(SearchConstants.EQUALS_CHAR);
+            queryString.append(context.getPageToken());
+        }
+
         URI selfUri = new URI(requestUri.getScheme(), requestUri.getAuthority(), requestUri.getPath(),
                 queryString.toString(), null);
 
@@ -0,0 +1,400 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.util;
+
+import static com.ibm.fhir.model.util.FHIRUtil.REFERENCE_PATTERN;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.Element;
+import com.ibm.fhir.model.type.Reference;
+import com.ibm.fhir.model.util.ModelSupport;
+import com.ibm.fhir.model.util.ModelSupport.ElementInfo;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathStringValue;
+import com.ibm.fhir.path.FHIRPathTree;
+import com.ibm.fhir.path.FHIRPathType;
+
+/**
+ * Compiles common search parameter expression shapes into accessors that read the values directly from the
+ * model objects, without building a FHIRPath tree for the whole resource or walking it with the evaluator.
+ *
+ * <p>The supported shapes are unions of:
+ * <ul>
+ * <li>plain paths like {@code Patient.name} or {@code ExplanationOfBenefit.item.detail.udi}</li>
+ * <li>plain paths followed by {@code as X}, {@code .as(X)} or {@code .ofType(X)}</li>
+ * <li>plain paths followed by {@code .where(resolve() is X)}</li>
+ * </ul>
+ * Each path segment is bound to its getter using the element metadata from {@link ModelSupport}, so the
+ * result is computed for a specific resource type. Anything else (or anything the accessor cannot reproduce
+ * exactly, like internal fragment references) is left to the FHIRPath evaluator.
+ *
+ * <p>Compiled accessors are cached by resource type and expression and are shared by all tenants.
+ */
+public class SearchParameterCompiler {
+    private static final Logger log = Logger.getLogger(SearchParameterCompiler.class.getName());
+
+    private static final String IDENTIFIER = "[A-Za-z][A-Za-z0-9]*";
+    private static final Pattern MEMBER = Pattern.compile(
+            "(?<path>" + IDENTIFIER + "(?:\\." + IDENTIFIER + ")+)"
+            + "(?:"
+            + "\\s+as\\s+(?<as>" + IDENTIFIER + ")"
+            + "|\\.as\\((?<asFunction>" + IDENTIFIER + ")\\)"
+            + "|\\.ofType\\((?<ofType>" + IDENTIFIER + ")\\)"
+            + "|\\.where\\(resolve\\(\\)\\s+is\\s+(?<resolveIs>" + IDENTIFIER + ")\\)"
+            + ")?");
+
+    private static final int RESOURCE_TYPE_GROUP = 4;
+
+    private static final CompiledExpression EMPTY = resource -> new ArrayList<>();
+
+    private static final Map<Class<?>, Map<String, Optional<CompiledExpression>>> CACHE = new ConcurrentHashMap<>();
+
+    private SearchParameterCompiler() { }
+
+    /**
+     * An accessor compiled from a search parameter expression for a specific resource type.
+     */
+    @FunctionalInterface
+    public interface CompiledExpression {
+        /**
+         * Evaluate the compiled expression against a resource of the type it was compiled for.
+         *
+         * @param resource the resource
+         * @return the same nodes the FHIRPath evaluator would produce for the expression, or null if this
+         *         resource contains values that must be handled by the FHIRPath evaluator instead
+         */
+        List<FHIRPathNode> evaluate(Resource resource);
+    }
+
+    /**
+     * Get the compiled form of the expression for the passed resource type, compiling it on first use.
+     *
+     * @param resourceType the concrete resource type the expression will be evaluated against
+     * @param expression the search parameter expression
+     * @return the compiled accessor, or null if the expression shape is not supported
+     */
+    public static CompiledExpression compile(Class<? extends Resource> resourceType, String expression) {
+        return CACHE.computeIfAbsent(resourceType, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(expression, e -> Optional.ofNullable(doCompile(resourceType, e)))
+                .orElse(null);
+    }
+
+    private static CompiledExpression doCompile(Class<? extends Resource> resourceType, String expression) {
+        String[] unionMembers = expression.split("\\|");
+        List<CompiledExpression> members = new ArrayList<>();
+        for (String member : unionMembers) {
+            CompiledExpression compiled = compileMember(resourceType, unwrap(member.trim()));
+            if (compiled == null) {
+                if (log.isLoggable(Level.FINER)) {
+                    log.finer("Expression [" + expression + "] for resource type [" + resourceType.getSimpleName()
+                            + "] will be evaluated by the FHIRPath evaluator");
+                }
+                return null;
+            }
+            if (compiled != EMPTY) {
+                members.add(compiled);
+            }
+        }
+        if (members.isEmpty()) {
+            return EMPTY;
+        }
+        if (unionMembers.length == 1) {
+            return members.get(0);
+        }
+        return resource -> {
+            // same semantics as the FHIRPath union operator, which also removes duplicates within each member
+            Set<FHIRPathNode> union = new LinkedHashSet<>();
+            for (CompiledExpression member : members) {
+                List<FHIRPathNode> values = member.evaluate(resource);
+                if (values == null) {
+                    return null;
+                }
+                union.addAll(values);
+            }
+            return new ArrayList<>(union);
+        };
+    }
+
+    private static String unwrap(String member) {
+        while (member.startsWith("(") && member.endsWith(")")) {
+            member = member.substring(1, member.length() - 1).trim();
+        }
+        return member;
+    }
+
+    private static CompiledExpression compileMember(Class<? extends Resource> resourceType, String member) {
+        Matcher matcher = MEMBER.matcher(member);
+        if (!matcher.matches()) {
+            return null;
+        }
+        String[] segments = matcher.group("path").split("\\.");
+
+        // the first segment is matched against the type of the resource
+        if (!ModelSupport.isResourceType(segments[0])) {
+            return null;
+        }
+        if (!ModelSupport.getResourceType(segments[0]).isAssignableFrom(resourceType)) {
+            return EMPTY;
+        }
+
+        Step[] steps = new Step[segments.length - 1];
+        Class<?> modelClass = resourceType;
+        for (int i = 1; i < segments.length; i++) {
+            if (modelClass == null) {
+                // the previous segment selected a choice, resource or system value
+                return null;
+            }
+            Step step = Step.of(modelClass, segments[i]);
+            if (step == null) {
+                return null;
+            }
+            steps[i - 1] = step;
+            modelClass = step.nextModelClass;
+        }
+        Step last = steps[steps.length - 1];
+
+        Filter filter = null;
+        String typeName = firstNonNull(matcher.group("as"), matcher.group("asFunction"), matcher.group("ofType"));
+        if (typeName != null) {
+            FHIRPathType type = FHIRPathType.from(typeName);
+            if (type == null || !"FHIR".equals(type.namespace()) || last.systemString) {
+                return null;
+            }
+            filter = value -> type.isAssignableFrom(FHIRPathType.from(value.getClass())) ? Boolean.TRUE : Boolean.FALSE;
+        } else if (matcher.group("resolveIs") != null) {
+            FHIRPathType type = FHIRPathType.from(matcher.group("resolveIs"));
+            if (type == null || last.systemString) {
+                return null;
+            }
+            filter = value -> resolveIs(value, type);
+        }
+
+        return new PathExpression(resourceType.getSimpleName(), steps, filter);
+    }
+
+    /**
+     * Mirror {@code where(resolve() is type)} with relative reference resolution disabled.
+     *
+     * @return whether the value passes the filter, or null if the FHIRPath evaluator must decide
+     */
+    private static Boolean resolveIs(Object value, FHIRPathType type) {
+        if (!(value instanceof Reference)) {
+            return Boolean.FALSE;
+        }
+        Reference reference = (Reference) value;
+        String referenceReference = reference.getReference() != null ? reference.getReference().getValue() : null;
+        String referenceType = reference.getType() != null ? reference.getType().getValue() : null;
+
+        String resourceType = null;
+        if (referenceReference != null) {
+            if (referenceReference.startsWith("#")) {
+                // internal fragment references are resolved against the containing resource
+                return null;
+            }
+            Matcher matcher = REFERENCE_PATTERN.matcher(referenceReference);
+            if (matcher.matches()) {
+                resourceType = matcher.group(RESOURCE_TYPE_GROUP);
+                if (referenceType != null && !resourceType.equals(referenceType)) {
+                    // the evaluator reports this as an error
+                    return null;
+                }
+            }
+        }
+        if (resourceType == null) {
+            resourceType = referenceType;
+        }
+        FHIRPathType resolvedType = ModelSupport.isResourceType(resourceType) ?
+                FHIRPathType.from(resourceType) : FHIRPathType.FHIR_UNKNOWN_RESOURCE_TYPE;
+        return type.isAssignableFrom(resolvedType);
+    }
+
+    @SafeVarargs
+    private static <T> T firstNonNull(T... values) {
+        for (T value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A filter on the selected values; returns null if the FHIRPath evaluator must decide.
+     */
+    @FunctionalInterface
+    private interface Filter {
+        Boolean test(Object value);
+    }
+
+    /**
+     * A single member invocation bound to the getter of the element.
+     */
+    private static class Step {
+        private final String name;
+        private final String pathName;
+        private final MethodHandle getter;
+        private final boolean repeating;
+        private final boolean systemString;
+        // the model class of the selected values if navigation may continue from them, otherwise null
+        private final Class<?> nextModelClass;
+
+        private Step(String name, MethodHandle getter, boolean repeating, boolean systemString, Class<?> nextModelClass) {
+            this.name = name;
+            this.pathName = ModelSupport.isKeyword(name) ? ModelSupport.delimit(name) : name;
+            this.getter = getter;
+            this.repeating = repeating;
+            this.systemString = systemString;
+            this.nextModelClass = nextModelClass;
+        }
+
+        private static Step of(Class<?> modelClass, String name) {
+            ElementInfo elementInfo = ModelSupport.getElementInfo(modelClass, name);
+            if (elementInfo == null || isTypeName(modelClass, name)) {
+                return null;
+            }
+            Class<?> type = elementInfo.getType();
+            boolean systemString = String.class.equals(type);
+            if (!systemString && !ModelSupport.isModelClass(type)) {
+                return null;
+            }
+            MethodHandle getter;
+            try {
+                Method method = modelClass.getMethod(getterName(name));
+                getter = MethodHandles.publicLookup().unreflect(method);
+            } catch (ReflectiveOperationException e) {
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("No getter found for element [" + name + "] of [" + modelClass.getName() + "]");
+                }
+                return null;
+            }
+            Class<?> nextModelClass = (systemString || elementInfo.isChoice() || Resource.class.isAssignableFrom(type)) ? null : type;
+            return new Step(name, getter, elementInfo.isRepeating(), systemString, nextModelClass);
+        }
+
+        private static String getterName(String name) {
+            if ("class".equals(name)) {
+                return "getClazz";
+            }
+            return "get" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        }
+
+        /**
+         * The evaluator returns the context itself when a member invocation on a single node names one of
+         * the node's types; we leave those expressions to the evaluator.
+         */
+        private static boolean isTypeName(Class<?> modelClass, String name) {
+            FHIRPathType type = FHIRPathType.from(modelClass);
+            while (type != null && !FHIRPathType.FHIR_ANY.equals(type)) {
+                if (type.getName().equals(name)) {
+                    return true;
+                }
+                type = type.baseType();
+            }
+            return false;
+        }
+
+        private Object get(Object target) {
+            try {
+                return getter.invoke(target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+    /**
+     * A compiled path with an optional filter on the selected values.
+     */
+    private static class PathExpression implements CompiledExpression {
+        private final String rootPath;
+        private final Step[] steps;
+        private final Filter filter;
+
+        private PathExpression(String rootPath, Step[] steps, Filter filter) {
+            this.rootPath = rootPath;
+            this.steps = steps;
+            this.filter = filter;
+        }
+
+        @Override
+        public List<FHIRPathNode> evaluate(Resource resource) {
+            // the model objects selected so far and their FHIRPath paths
+            List<Object> values = Collections.singletonList(resource);
+            List<String> paths = Collections.singletonList(resource.getClass().getSimpleName());
+
+            for (Step step : steps) {
+                List<Object> nextValues = new ArrayList<>();
+                List<String> nextPaths = new ArrayList<>();
+                for (int i = 0; i < values.size(); i++) {
+                    Object value = step.get(values.get(i));
+                    if (value instanceof List) {
+                        List<?> list = (List<?>) value;
+                        for (int j = 0; j < list.size(); j++) {
+                            nextValues.add(list.get(j));
+                            nextPaths.add(paths.get(i) + "." + step.pathName + "[" + j + "]");
+                        }
+                    } else if (value != null) {
+                        nextValues.add(value);
+                        nextPaths.add(paths.get(i) + "." + step.pathName);
+                    }
+                }
+                if (nextValues.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                values = nextValues;
+                paths = nextPaths;
+            }
+
+            Step last = steps[steps.length - 1];
+            List<FHIRPathNode> result = new ArrayList<>(values.size());
+            for (int i = 0; i < values.size(); i++) {
+                Object value = values.get(i);
+                if (filter != null) {
+                    Boolean matches = filter.test(value);
+                    if (matches == null) {
+                        return null;
+                    }
+                    if (!matches) {
+                        continue;
+                    }
+                }
+                result.add(node(last, value, paths.get(i)));
+            }
+            return result;
+        }
+
+        /**
+         * Build the same node the FHIRPathTree of the resource would hold for this value. The node is lazy, so only
+         * the parts of the value that are navigated to are turned into nodes, with their paths in the resource.
+         */
+        private FHIRPathNode node(Step step, Object value, String path) {
+            if (step.systemString) {
+                return FHIRPathStringValue.stringValue(step.name, (String) value);
+            }
+            return (value instanceof Resource) ?
+                    FHIRPathTree.lazyNode(step.name, path, (Resource) value) : FHIRPathTree.lazyNode(step.name, path, (Element) value);
+        }
+    }
+}
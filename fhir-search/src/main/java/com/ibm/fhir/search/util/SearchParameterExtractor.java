@@ -0,0 +1,372 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.path.FHIRPathBooleanValue;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.FHIRPathType;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.exception.FHIRPathException;
+import com.ibm.fhir.path.function.ResolveFunction;
+import com.ibm.fhir.search.util.SearchParameterCompiler.CompiledExpression;
+
+/**
+ * Extracts the values of a list of search parameters from a resource.
+ *
+ * <p>Search parameter expressions which are plain paths (or unions of plain paths) such as
+ * {@code ExplanationOfBenefit.item.detail.udi} are merged into a prefix tree so that each distinct
+ * path prefix is navigated only once per resource, no matter how many search parameters share it.
+ * All other expressions are evaluated individually with the {@link FHIRPathEvaluator}.
+ *
+ * <p>Expressions that the {@link SearchParameterCompiler} can handle are read directly from the model
+ * objects instead; the FHIRPath tree of the resource is only built if some expression still needs it.
+ *
+ * <p>When constructed with an {@link ExecutorService}, the independent branches of the prefix tree are
+ * split into as many groups as the parallelism; all but one group are navigated concurrently in that executor
+ * while the last group and the remaining expressions are evaluated on the calling thread. Navigation only reads
+ * the (immutable) FHIRPath tree of the resource, so no state is shared between the concurrent tasks.
+ * The executor is owned by the caller, which is responsible for shutting it down.
+ */
+public class SearchParameterExtractor {
+    private static final Logger log = Logger.getLogger(SearchParameterExtractor.class.getName());
+
+    private static final String EXTRACT_PARAMETERS_LOGGING = "extractParameterValues: [%s] [%s]";
+    private static final String UNSUPPORTED_EXCEPTION =
+            "Search Parameter includes an unsupported operation or bad expression : [%s] [%s] [%s]";
+    private static final String UNSUPPORTED_EXPR_NULL =
+            "An empty expression is found or the parameter type is unsupported [%s][%s]";
+
+    private static final String SYSTEM_NAMESPACE = "System";
+    private static final Pattern SIMPLE_PATH = Pattern.compile("[A-Z][A-Za-z0-9]*(\\.[a-z][A-Za-z0-9]*)+");
+
+    // expression -> path segments of each union member, or an empty list if the expression is not a plain path
+    private static final Map<String, List<String[]>> PATH_CACHE = new ConcurrentHashMap<>();
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    /**
+     * Create an extractor which evaluates all expressions on the calling thread.
+     */
+    public SearchParameterExtractor() {
+        this(null, 1);
+    }
+
+    /**
+     * Create an extractor which navigates independent path prefixes in the given executor.
+     *
+     * @param executor the executor used for concurrent navigation, or null to evaluate everything on the calling thread
+     * @param parallelism the maximum number of threads (including the calling thread) navigating a single resource
+     */
+    public SearchParameterExtractor(ExecutorService executor, int parallelism) {
+        this.executor = executor;
+        this.parallelism = executor == null ? 1 : Math.max(parallelism, 1);
+    }
+
+    /**
+     * Extract the values of the passed search parameters from the resource.
+     *
+     * @param resource the resource from which the values are extracted
+     * @param parameters the search parameters applicable to the resource
+     * @param skipEmpty if true, search parameters without any value are omitted from the result
+     * @return a map, in the order of the passed search parameters, from search parameter to extracted values
+     */
+    public Map<SearchParameter, List<FHIRPathNode>> extract(Resource resource, List<SearchParameter> parameters, boolean skipEmpty) {
+        // results[i][j] holds the values of the j-th union member of the i-th parameter (for plain paths),
+        // or the values of the whole expression in results[i][0] (for all other expressions)
+        @SuppressWarnings("unchecked")
+        Collection<FHIRPathNode>[][] results = new Collection[parameters.size()][];
+        PathNode root = new PathNode(null);
+        List<Integer> complex = new ArrayList<>();
+
+        for (int i = 0; i < parameters.size(); i++) {
+            SearchParameter parameter = parameters.get(i);
+            com.ibm.fhir.model.type.String expression = parameter.getExpression();
+
+            // Outputs the Expression and the Name of the SearchParameter
+            if (log.isLoggable(Level.FINEST)) {
+                String loggedValue = "EMPTY";
+                if (expression != null) {
+                    loggedValue = expression.getValue();
+                }
+
+                log.finest(String.format(EXTRACT_PARAMETERS_LOGGING, parameter.getCode().getValue(), loggedValue));
+            }
+
+            if (expression == null) {
+                if (log.isLoggable(Level.FINER)) {
+                    log.finer(String.format(UNSUPPORTED_EXPR_NULL, parameter.getType(), parameter.getCode().getValue()));
+                }
+                continue;
+            }
+
+            CompiledExpression compiled = SearchParameterCompiler.compile(resource.getClass(), expression.getValue());
+            if (compiled != null) {
+                List<FHIRPathNode> values = compiled.evaluate(resource);
+                if (values != null) {
+                    results[i] = new Collection[] { values };
+                    continue;
+                }
+            }
+
+            List<String[]> paths = PATH_CACHE.computeIfAbsent(expression.getValue(), SearchParameterExtractor::parsePaths);
+            if (paths.isEmpty()) {
+                results[i] = new Collection[1];
+                complex.add(i);
+            } else {
+                results[i] = new Collection[paths.size()];
+                for (int j = 0; j < paths.size(); j++) {
+                    root.add(paths.get(j), i, j);
+                }
+            }
+        }
+
+        if (root.children.isEmpty() && complex.isEmpty()) {
+            // every value came from a compiled accessor, so the FHIRPath tree of the resource is not needed
+            return collect(parameters, results, skipEmpty);
+        }
+
+        EvaluationContext evaluationContext = new EvaluationContext(resource);
+        evaluationContext.setExternalConstant(ResolveFunction.RESOLVE_RELATIVE_REFERENCES, FHIRPathBooleanValue.FALSE);
+
+        // The first level of the prefix tree holds type names which are matched against the root only
+        Collection<FHIRPathNode> rootContext = Collections.singletonList(evaluationContext.getTree().getRoot());
+        List<Runnable> branches = new ArrayList<>();
+        for (PathNode typeNode : root.children.values()) {
+            Collection<FHIRPathNode> typeContext = navigate(rootContext, typeNode.segment);
+            typeNode.collect(typeContext, results);
+            if (typeContext.isEmpty()) {
+                continue;
+            }
+            for (PathNode child : typeNode.children.values()) {
+                branches.add(() -> child.evaluate(typeContext, results));
+            }
+        }
+        List<Future<?>> tasks = submit(branches);
+
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        for (int i : complex) {
+            String expression = parameters.get(i).getExpression().getValue();
+            try {
+                results[i][0] = evaluator.evaluate(evaluationContext, expression);
+            } catch (java.lang.UnsupportedOperationException | FHIRPathException uoe) {
+                // switched to using code instead of name
+                log.warning(String.format(UNSUPPORTED_EXCEPTION, parameters.get(i).getCode().getValue(),
+                        expression, uoe.getMessage()));
+                results[i] = null;
+            }
+        }
+
+        for (Future<?> task : tasks) {
+            join(task);
+        }
+
+        return collect(parameters, results, skipEmpty);
+    }
+
+    /**
+     * Split the branches into at most parallelism groups, submit all but the last group to the executor and run
+     * the last group on the calling thread.
+     *
+     * @return the tasks submitted to the executor
+     */
+    private List<Future<?>> submit(List<Runnable> branches) {
+        int groups = Math.min(parallelism, branches.size());
+        List<Future<?>> tasks = new ArrayList<>(groups);
+        for (int g = 1; g < groups; g++) {
+            final int group = g;
+            tasks.add(executor.submit(() -> {
+                for (int i = group; i < branches.size(); i += groups) {
+                    branches.get(i).run();
+                }
+            }));
+        }
+        for (int i = 0; i < branches.size(); i += Math.max(groups, 1)) {
+            branches.get(i).run();
+        }
+        return tasks;
+    }
+
+    /**
+     * Wait for a task submitted to the executor, rethrowing any unchecked exception it failed with.
+     */
+    private static void join(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Build the result map from the values collected for each parameter.
+     */
+    private static Map<SearchParameter, List<FHIRPathNode>> collect(List<SearchParameter> parameters,
+            Collection<FHIRPathNode>[][] results, boolean skipEmpty) {
+        Map<SearchParameter, List<FHIRPathNode>> result = new LinkedHashMap<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (results[i] == null) {
+                continue;
+            }
+            SearchParameter parameter = parameters.get(i);
+            List<FHIRPathNode> values = union(results[i]);
+
+            if (log.isLoggable(Level.FINEST)) {
+                log.finest("Expression [" + parameter.getExpression().getValue() + "] parameter-code ["
+                        + parameter.getCode().getValue() + "] Size -[" + values.size() + "]");
+            }
+
+            // Adds only if !skipEmpty || values is not empty
+            if (!values.isEmpty() || !skipEmpty) {
+                result.put(parameter, values);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Combine the values of the union members in the same way as the FHIRPath union operator.
+     */
+    private static List<FHIRPathNode> union(Collection<FHIRPathNode>[] members) {
+        if (members.length == 1) {
+            return members[0] == null ? new ArrayList<>() : new ArrayList<>(members[0]);
+        }
+        Set<FHIRPathNode> union = new LinkedHashSet<>();
+        for (Collection<FHIRPathNode> member : members) {
+            if (member != null) {
+                union.addAll(member);
+            }
+        }
+        return new ArrayList<>(union);
+    }
+
+    /**
+     * Split the expression into the segments of its union members.
+     *
+     * @return the list of path segments for each union member, or an empty list if any member is not a plain path
+     */
+    private static List<String[]> parsePaths(String expression) {
+        List<String[]> paths = new ArrayList<>();
+        for (String member : expression.split("\\|")) {
+            member = member.trim();
+            if (!SIMPLE_PATH.matcher(member).matches()) {
+                return Collections.emptyList();
+            }
+            paths.add(member.split("\\."));
+        }
+        return Collections.unmodifiableList(paths);
+    }
+
+    /**
+     * Navigate from the context nodes to their children with the given name, following the
+     * semantics of a FHIRPath member invocation.
+     */
+    private static Collection<FHIRPathNode> navigate(Collection<FHIRPathNode> context, String identifier) {
+        if (context.size() == 1) {
+            FHIRPathNode node = context.iterator().next();
+            if (isTypeName(node.type(), identifier)) {
+                return context;
+            }
+        }
+        List<FHIRPathNode> result = new ArrayList<>();
+        for (FHIRPathNode node : context) {
+            for (FHIRPathNode child : node.children()) {
+                if (identifier.equals(child.name())) {
+                    result.add(child);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the identifier is the name of the type or one of its base types
+     */
+    private static boolean isTypeName(FHIRPathType type, String identifier) {
+        if (SYSTEM_NAMESPACE.equals(type.namespace())) {
+            return false;
+        }
+        while (!FHIRPathType.FHIR_ANY.equals(type)) {
+            if (type.getName().equals(identifier)) {
+                return true;
+            }
+            type = type.baseType();
+        }
+        return false;
+    }
+
+    /**
+     * A node in the prefix tree of plain path expressions.
+     */
+    private static class PathNode {
+        private final String segment;
+        private final Map<String, PathNode> children = new LinkedHashMap<>();
+        // pairs of (parameter index, union member index) whose path ends at this node
+        private final List<int[]> targets = new ArrayList<>();
+
+        private PathNode(String segment) {
+            this.segment = segment;
+        }
+
+        private void add(String[] path, int parameterIndex, int memberIndex) {
+            PathNode node = this;
+            for (String s : path) {
+                node = node.children.computeIfAbsent(s, PathNode::new);
+            }
+            node.targets.add(new int[] { parameterIndex, memberIndex });
+        }
+
+        private void collect(Collection<FHIRPathNode> values, Collection<FHIRPathNode>[][] results) {
+            for (int[] target : targets) {
+                results[target[0]][target[1]] = values;
+            }
+        }
+
+        /**
+         * Navigate to this node from the parent context and recurse into the children. Each target slot
+         * in the results is written by exactly one node, so separate subtrees never write the same slot.
+         */
+        private void evaluate(Collection<FHIRPathNode> parentContext, Collection<FHIRPathNode>[][] results) {
+            Collection<FHIRPathNode> context = navigate(parentContext, segment);
+            collect(context, results);
+            if (!context.isEmpty()) {
+                for (PathNode child : children.values()) {
+                    child.evaluate(context, results);
+                }
+            }
+        }
+    }
+}
@@ -19,16 +19,19 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
 import com.ibm.fhir.config.FHIRConfigHelper;
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
@@ -58,7 +61,6 @@ import com.ibm.fhir.path.FHIRPathBooleanValue;
 import com.ibm.fhir.path.FHIRPathNode;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
-import com.ibm.fhir.path.exception.FHIRPathException;
 import com.ibm.fhir.path.function.ResolveFunction;
 import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.SearchConstants.Modifier;
@@ -94,12 +96,17 @@ public class SearchUtil {
     private static final String CLASSNAME = SearchUtil.class.getName();
     private static final Logger log = Logger.getLogger(CLASSNAME);
 
+    // Extractor used by extractParameterValues when the configured parallelism is 1 or the executor isn't available
+    private static final SearchParameterExtractor SEQUENTIAL_EXTRACTOR = new SearchParameterExtractor();
+
+    // The managed executor of the server, used for parallel extraction; it is shut down with the application
+    private static final String EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
+    private static volatile ExecutorService extractionExecutor;
+    private static volatile boolean extractionExecutorLookedUp;
+
     // Logging Strings
-    private static final String EXTRACT_PARAMETERS_LOGGING = "extractParameterValues: [%s] [%s]";
     private static final String NO_TENANT_SP_MAP_LOGGING =
             "No tenant-specific search parameters found for tenant '%s'; trying %s ";
-    private static final String UNSUPPORTED_EXCEPTION =
-            "Search Parameter includes an unsupported operation or bad expression : [%s] [%s] [%s]";
 
     // Exception Strings
     private static final String SEARCH_PARAMETER_NOT_FOUND = "Search parameter '%s' for resource type '%s' was not found.";
@@ -109,8 +116,6 @@ public class SearchUtil {
     private static final String SEARCH_PARAMETER_MODIFIER_NAME =
             "Search parameter: '%s' must have resource type name modifier";
     private static final String INVALID_TARGET_TYPE_EXCEPTION = "Invalid target type for the Inclusion Parameter.";
-    private static final String UNSUPPORTED_EXPR_NULL =
-            "An empty expression is found or the parameter type is unsupported [%s][%s]";
     private static final String MODIFIYERRESOURCETYPE_NOT_ALLOWED_FOR_RESOURCETYPE =
             "Modifier resource type [%s] is not allowed for search parameter [%s] of resource type [%s].";
     private static final String DIFFERENT_MODIFIYERRESOURCETYPES_FOUND_FOR_RESOURCETYPES =
@@ -690,60 +695,50 @@ public class SearchUtil {
     public static Map<SearchParameter, List<FHIRPathNode>> extractParameterValues(Resource resource, boolean skipEmpty)
             throws Exception {
 
-        Map<SearchParameter, List<FHIRPathNode>> result = new LinkedHashMap<>();
-
         // Get the Parameters for the class.
         Class<?> resourceType = resource.getClass();
-
-        // Create one time.
-        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
-        EvaluationContext evaluationContext = new EvaluationContext(resource);
-        evaluationContext.setExternalConstant(ResolveFunction.RESOLVE_RELATIVE_REFERENCES, FHIRPathBooleanValue.FALSE);
-
         List<SearchParameter> parameters = getApplicableSearchParameters(resourceType.getSimpleName());
 
-        for (SearchParameter parameter : parameters) {
-
-            com.ibm.fhir.model.type.String expression = parameter.getExpression();
-
-            // Outputs the Expression and the Name of the SearchParameter
-            if (log.isLoggable(Level.FINEST)) {
-                String loggedValue = "EMPTY";
-                if (expression != null) {
-                    loggedValue = expression.getValue();
-                }
+        return getParameterExtractor().extract(resource, parameters, skipEmpty);
+    }
 
-                log.finest(String.format(EXTRACT_PARAMETERS_LOGGING, parameter.getCode().getValue(), loggedValue));
-            }
+    /**
+     * Get the extractor to use for the current request. Extraction runs on the calling thread unless
+     * the extraction parallelism configured for the current tenant is greater than 1 and the managed
+     * executor of the server is available, in which case up to that many threads of the executor are used.
+     *
+     * @return the extractor
+     */
+    private static SearchParameterExtractor getParameterExtractor() {
+        int parallelism = FHIRConfigHelper.getIntProperty(FHIRConfiguration.PROPERTY_SEARCH_EXTRACTION_PARALLELISM, 1);
+        if (parallelism <= 1) {
+            return SEQUENTIAL_EXTRACTOR;
+        }
+        ExecutorService executor = getExtractionExecutor();
+        if (executor == null) {
+            return SEQUENTIAL_EXTRACTOR;
+        }
+        return new SearchParameterExtractor(executor, parallelism);
+    }
 
-            // Process the Expression
-            if (expression == null) {
-                if (log.isLoggable(Level.FINER)) {
-                    log.finer(String.format(UNSUPPORTED_EXPR_NULL, parameter.getType(), parameter.getCode().getValue()));
-                }
-                continue;
-            }
+    /**
+     * Look up the managed executor used for parallel extraction, just once
+     *
+     * @return the executor, or null if it is not available
+     */
+    private static ExecutorService getExtractionExecutor() {
+        if (!extractionExecutorLookedUp) {
             try {
-                Collection<FHIRPathNode> tmpResults = evaluator.evaluate(evaluationContext, expression.getValue());
-
-                if (log.isLoggable(Level.FINEST)) {
-                    log.finest("Expression [" + expression.getValue() + "] parameter-code ["
-                            + parameter.getCode().getValue() + "] Size -[" + tmpResults.size() + "]");
-                }
-
-                // Adds only if !skipEmpty || tmpResults is not empty
-                if (!tmpResults.isEmpty() || !skipEmpty) {
-                    result.put(parameter, new ArrayList<>(tmpResults));
+                Object executor = InitialContext.doLookup(EXECUTOR_JNDI_NAME);
+                if (executor instanceof ExecutorService) {
+                    extractionExecutor = (ExecutorService) executor;
                 }
-
-            } catch (java.lang.UnsupportedOperationException | FHIRPathException uoe) {
-                // switched to using code instead of name
-                log.warning(String.format(UNSUPPORTED_EXCEPTION, parameter.getCode().getValue(),
-                        expression.getValue(), uoe.getMessage()));
+            } catch (NamingException x) {
+                log.warning("Unable to look up '" + EXECUTOR_JNDI_NAME + "'; search parameter values will be extracted in a single thread");
             }
+            extractionExecutorLookedUp = true;
         }
-
-        return result;
+        return extractionExecutor;
     }
 
     public static FHIRSearchContext parseQueryParameters(Class<?> resourceType,
@@ -1684,6 +1679,9 @@ public class SearchUtil {
             } else if (SearchConstants.PAGE.equals(name)) {
                 int pageNumber = Integer.parseInt(first);
                 context.setPageNumber(pageNumber);
+            } else if (SearchConstants.CURSOR.equals(name) && first != null) {
+                // The token is opaque to the search layer; the persistence layer validates it
+                context.setPageToken(first);
             } else if (SearchConstants.SORT.equals(name) && first != null) {
                 // in R4, we only look for _sort
                 // Only first value is used, which matches behavior of other parameters that are supposed to be specified at most once
@@ -0,0 +1,140 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.model.resource.Observation;
+import com.ibm.fhir.model.resource.Patient;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.path.FHIRPathBooleanValue;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.function.ResolveFunction;
+import com.ibm.fhir.search.util.SearchParameterCompiler;
+import com.ibm.fhir.search.util.SearchParameterCompiler.CompiledExpression;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Compares the values read by the accessors of the {@link SearchParameterCompiler} with those from the
+ * FHIRPath evaluator.
+ */
+public class SearchParameterCompilerTest {
+
+    @BeforeClass
+    public void setup() {
+        FHIRConfiguration.setConfigHome("target/test-classes");
+    }
+
+    @DataProvider(name = "examples")
+    public static Object[][] examples() {
+        return new Object[][] {
+            { "json/spec/explanationofbenefit-example-2.json" },
+            { "json/spec/claim-example-institutional-rich.json" },
+            { "json/spec/observation-example-genetics-1.json" },
+            { "json/spec/patient-example.json" },
+            { "json/spec/encounter-example-home.json" },
+            { "json/spec/bundle-transaction.json" }
+        };
+    }
+
+    @Test(dataProvider = "examples")
+    public void testCompiledValues(String example) throws Exception {
+        Resource resource = TestUtil.readExampleResource(example);
+        EvaluationContext evaluationContext = new EvaluationContext(resource);
+        evaluationContext.setExternalConstant(ResolveFunction.RESOLVE_RELATIVE_REFERENCES, FHIRPathBooleanValue.FALSE);
+
+        for (SearchParameter parameter : SearchUtil.getApplicableSearchParameters(resource.getClass().getSimpleName())) {
+            if (parameter.getExpression() == null) {
+                continue;
+            }
+            String expression = parameter.getExpression().getValue();
+            CompiledExpression compiled = SearchParameterCompiler.compile(resource.getClass(), expression);
+            List<FHIRPathNode> values = compiled == null ? null : compiled.evaluate(resource);
+            if (values != null) {
+                List<FHIRPathNode> expected = new ArrayList<>(FHIRPathEvaluator.evaluator().evaluate(evaluationContext, expression));
+                assertEquals(values, expected, expression);
+                for (int i = 0; i < values.size(); i++) {
+                    assertEquals(values.get(i).path(), expected.get(i).path(), expression);
+                    assertEquals(values.get(i).name(), expected.get(i).name(), expression);
+                }
+            }
+        }
+    }
+
+    @Test(dataProvider = "examples")
+    public void testDescendantPaths(String example) throws Exception {
+        Resource resource = TestUtil.readExampleResource(example);
+        EvaluationContext evaluationContext = new EvaluationContext(resource);
+        evaluationContext.setExternalConstant(ResolveFunction.RESOLVE_RELATIVE_REFERENCES, FHIRPathBooleanValue.FALSE);
+
+        for (SearchParameter parameter : SearchUtil.getApplicableSearchParameters(resource.getClass().getSimpleName())) {
+            if (parameter.getExpression() == null) {
+                continue;
+            }
+            String expression = parameter.getExpression().getValue();
+            CompiledExpression compiled = SearchParameterCompiler.compile(resource.getClass(), expression);
+            List<FHIRPathNode> values = compiled == null ? null : compiled.evaluate(resource);
+            if (values != null) {
+                // the nodes below each value have the same paths in the resource as in the evaluator's tree
+                List<FHIRPathNode> expected = new ArrayList<>(FHIRPathEvaluator.evaluator().evaluate(evaluationContext, expression));
+                for (int i = 0; i < values.size(); i++) {
+                    assertEquals(paths(values.get(i)), paths(expected.get(i)), expression);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSupportedShapes() throws Exception {
+        assertNotNull(SearchParameterCompiler.compile(Patient.class, "Patient.name"));
+        assertNotNull(SearchParameterCompiler.compile(Patient.class, "Patient.name | Patient.telecom"));
+        assertNotNull(SearchParameterCompiler.compile(Patient.class, "Patient.generalPractitioner.where(resolve() is Practitioner)"));
+        assertNotNull(SearchParameterCompiler.compile(Observation.class, "(Observation.value as Quantity)"));
+        assertNotNull(SearchParameterCompiler.compile(Observation.class, "Observation.value.as(Quantity)"));
+        assertNotNull(SearchParameterCompiler.compile(Observation.class, "Observation.value.ofType(Period)"));
+        assertNotNull(SearchParameterCompiler.compile(Observation.class, "Resource.id"));
+    }
+
+    @Test
+    public void testUnsupportedShapes() throws Exception {
+        assertNull(SearchParameterCompiler.compile(Patient.class, "Patient.telecom.where(system='email')"));
+        assertNull(SearchParameterCompiler.compile(Patient.class, "Patient.name.exists()"));
+        assertNull(SearchParameterCompiler.compile(Patient.class, "Patient.unknown"));
+        assertNull(SearchParameterCompiler.compile(Observation.class, "(Observation.value as CodeableConcept).text"));
+    }
+
+    @Test
+    public void testOtherResourceType() throws Exception {
+        Resource resource = TestUtil.readExampleResource("json/spec/patient-example.json");
+        CompiledExpression compiled = SearchParameterCompiler.compile(Patient.class, "Observation.subject");
+        assertNotNull(compiled);
+        assertTrue(compiled.evaluate(resource).isEmpty());
+    }
+
+    private static List<String> paths(FHIRPathNode node) {
+        return node.descendants().stream()
+                .filter(descendant -> !descendant.isSystemValue())
+                .map(FHIRPathNode::path)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.search.test;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.resource.SearchParameter;
+import com.ibm.fhir.model.test.TestUtil;
+import com.ibm.fhir.path.FHIRPathBooleanValue;
+import com.ibm.fhir.path.FHIRPathNode;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
+import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
+import com.ibm.fhir.path.function.ResolveFunction;
+import com.ibm.fhir.search.util.SearchParameterExtractor;
+import com.ibm.fhir.search.util.SearchUtil;
+
+/**
+ * Compares the values extracted by the {@link SearchParameterExtractor} with those from evaluating
+ * each search parameter expression on its own.
+ */
+public class SearchParameterExtractorTest {
+    private ExecutorService pool;
+
+    @BeforeClass
+    public void setup() {
+        FHIRConfiguration.setConfigHome("target/test-classes");
+        pool = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterClass
+    public void teardown() {
+        pool.shutdown();
+    }
+
+    @DataProvider(name = "examples")
+    public static Object[][] examples() {
+        return new Object[][] {
+            { "json/spec/explanationofbenefit-example-2.json" },
+            { "json/spec/claim-example-institutional-rich.json" },
+            { "json/spec/observation-example-genetics-1.json" },
+            { "json/spec/patient-example.json" },
+            { "json/spec/bundle-transaction.json" }
+        };
+    }
+
+    @Test(dataProvider = "examples")
+    public void testSequential(String example) throws Exception {
+        Resource resource = TestUtil.readExampleResource(example);
+        List<SearchParameter> parameters = getSearchParameters(resource);
+        assertEquals(new SearchParameterExtractor().extract(resource, parameters, false), evaluate(resource, parameters));
+    }
+
+    @Test(dataProvider = "examples")
+    public void testParallel(String example) throws Exception {
+        Resource resource = TestUtil.readExampleResource(example);
+        List<SearchParameter> parameters = getSearchParameters(resource);
+        assertEquals(new SearchParameterExtractor(pool, 4).extract(resource, parameters, false), evaluate(resource, parameters));
+    }
+
+    @Test
+    public void testSkipEmpty() throws Exception {
+        Resource resource = TestUtil.readExampleResource("json/spec/patient-example.json");
+        List<SearchParameter> parameters = getSearchParameters(resource);
+        Map<SearchParameter, List<FHIRPathNode>> expected = evaluate(resource, parameters);
+        expected.values().removeIf(List::isEmpty);
+        assertEquals(new SearchParameterExtractor().extract(resource, parameters, true), expected);
+    }
+
+    private static List<SearchParameter> getSearchParameters(Resource resource) throws Exception {
+        return SearchUtil.getApplicableSearchParameters(resource.getClass().getSimpleName());
+    }
+
+    private static Map<SearchParameter, List<FHIRPathNode>> evaluate(Resource resource, List<SearchParameter> parameters) throws Exception {
+        FHIRPathEvaluator evaluator = FHIRPathEvaluator.evaluator();
+        EvaluationContext evaluationContext = new EvaluationContext(resource);
+        evaluationContext.setExternalConstant(ResolveFunction.RESOLVE_RELATIVE_REFERENCES, FHIRPathBooleanValue.FALSE);
+
+        Map<SearchParameter, List<FHIRPathNode>> result = new LinkedHashMap<>();
+        for (SearchParameter parameter : parameters) {
+            if (parameter.getExpression() != null) {
+                result.put(parameter, new ArrayList<>(evaluator.evaluate(evaluationContext, parameter.getExpression().getValue())));
+            }
+        }
+        return result;
+    }
+}
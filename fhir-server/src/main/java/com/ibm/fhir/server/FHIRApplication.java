@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2016, 2020
+ * (C) Copyright IBM Corp. 2016, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -18,6 +18,7 @@ import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.provider.FHIRJsonPatchProvider;
 import com.ibm.fhir.provider.FHIRJsonProvider;
 import com.ibm.fhir.provider.FHIRProvider;
+import com.ibm.fhir.server.filter.rest.ServerTimingFilter;
 import com.ibm.fhir.server.resources.Batch;
 import com.ibm.fhir.server.resources.Capabilities;
 import com.ibm.fhir.server.resources.Create;
@@ -82,6 +83,7 @@ public class FHIRApplication extends Application {
                 singletons.add(new FHIRProvider(RuntimeType.SERVER));
                 singletons.add(new FHIRJsonProvider(RuntimeType.SERVER));
                 singletons.add(new FHIRJsonPatchProvider(RuntimeType.SERVER));
+                singletons.add(new ServerTimingFilter());
             }
             return singletons;
         } finally {
@@ -13,6 +13,7 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +33,9 @@ import com.ibm.fhir.config.FHIRConfigHelper;
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.config.PropertyGroup;
+import com.ibm.fhir.config.PropertyHandle;
+import com.ibm.fhir.config.metrics.RequestMetricsRecorder;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.core.HTTPHandlingPreference;
 import com.ibm.fhir.core.HTTPReturnPreference;
 import com.ibm.fhir.exception.FHIRException;
@@ -61,6 +65,11 @@ public class FHIRRestServletFilter extends HttpFilter {
     private static String defaultTenantId = null;
     private static final HTTPReturnPreference defaultHttpReturnPref = HTTPReturnPreference.MINIMAL;
 
+    // Read for every request, so precompile the property names
+    private static final PropertyHandle DEFAULT_HANDLING = PropertyHandle.of(FHIRConfiguration.PROPERTY_DEFAULT_HANDLING);
+    private static final PropertyHandle ALLOW_CLIENT_HANDLING_PREF = PropertyHandle.of(FHIRConfiguration.PROPERTY_ALLOW_CLIENT_HANDLING_PREF);
+    private static final PropertyHandle SERVER_TIMING_SAMPLE_RATE = PropertyHandle.of(FHIRConfiguration.PROPERTY_SERVER_TIMING_SAMPLE_RATE);
+
     @Override
     public void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws IOException, ServletException {
         if (log.isLoggable(Level.FINE)) {
@@ -115,15 +124,20 @@ public class FHIRRestServletFilter extends HttpFilter {
         String encodedRequestDescription = Encode.forHtml(requestDescription.toString());
         log.info("Received request: " + encodedRequestDescription);
 
+        FHIRRequestContext context = null;
         try {
             // Checks for Valid Tenant Configuration
             checkValidTenantConfiguration(tenantId);
 
             // Create a new FHIRRequestContext and set it on the current thread.
-            FHIRRequestContext context = new FHIRRequestContext(tenantId, dsId);
+            context = new FHIRRequestContext(tenantId, dsId);
             // Don't try using FHIRConfigHelper before setting the context!
             FHIRRequestContext.set(context);
 
+            // Decide whether this request is sampled for a Server-Timing response header
+            double sampleRate = FHIRConfigHelper.getDoubleProperty(SERVER_TIMING_SAMPLE_RATE, 0.0);
+            context.getRequestTimer().setServerTimingEnabled(sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+
             context.setOriginalRequestUri(originalRequestUri);
 
             // Set the handling preference.
@@ -166,8 +180,9 @@ public class FHIRRestServletFilter extends HttpFilter {
         } finally {
             // If possible, include the status code in the "completed" message.
             StringBuffer statusMsg = new StringBuffer();
+            int status = -1;
             if (response instanceof HttpServletResponse) {
-                int status = response.getStatus();
+                status = response.getStatus();
                 statusMsg.append(" status:[" + status + "]");
             } else {
                 statusMsg.append(" status:[unknown (non-HTTP request)]");
@@ -176,6 +191,19 @@ public class FHIRRestServletFilter extends HttpFilter {
             double elapsedSecs = (System.currentTimeMillis() - initialTime) / 1000.0;
             log.info("Completed request[" + elapsedSecs + " secs]: " + encodedRequestDescription + statusMsg.toString());
 
+            // Publish the time spent in each phase of the request
+            if (context != null) {
+                RequestTimer timer = context.getRequestTimer();
+                try {
+                    RequestMetricsRecorder.recorder().recordRequest(tenantId, getRequestMethod(request), status, timer);
+                } catch (RuntimeException x) {
+                    log.log(Level.WARNING, "Error recording request metrics", x);
+                }
+                if (log.isLoggable(Level.FINE)) {
+                    log.fine("Request timing: " + timer);
+                }
+            }
+
             // Remove the FHIRRequestContext from the current thread.
             FHIRRequestContext.remove();
 
@@ -223,8 +251,8 @@ public class FHIRRestServletFilter extends HttpFilter {
     }
 
     private HTTPHandlingPreference computeHandlingPref(ServletRequest request) throws FHIRException {
-        HTTPHandlingPreference handlingPref = HTTPHandlingPreference.from(FHIRConfigHelper.getStringProperty(FHIRConfiguration.PROPERTY_DEFAULT_HANDLING, "strict"));
-        boolean allowClientHandlingPref = FHIRConfigHelper.getBooleanProperty(FHIRConfiguration.PROPERTY_ALLOW_CLIENT_HANDLING_PREF, true);
+        HTTPHandlingPreference handlingPref = HTTPHandlingPreference.from(FHIRConfigHelper.getStringProperty(DEFAULT_HANDLING, "strict"));
+        boolean allowClientHandlingPref = FHIRConfigHelper.getBooleanProperty(ALLOW_CLIENT_HANDLING_PREF, true);
         if (allowClientHandlingPref) {
             String handlingPrefString = ((HttpServletRequest) request).getHeader(preferHeaderName + ":" + preferHandlingHeaderSectionName);
             if (handlingPrefString != null && !handlingPrefString.isEmpty()) {
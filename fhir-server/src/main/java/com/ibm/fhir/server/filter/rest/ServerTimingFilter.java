@@ -0,0 +1,36 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.server.filter.rest;
+
+import java.io.IOException;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.config.metrics.RequestTimer;
+
+/**
+ * Adds a Server-Timing header to the responses of the requests sampled by the
+ * {@link FHIRRestServletFilter} (see fhirServer/core/serverTimingSampleRate). The header
+ * is added before the response body is generated, so it describes every phase
+ * except the generation of the response itself.
+ */
+@Provider
+public class ServerTimingFilter implements ContainerResponseFilter {
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException {
+        RequestTimer timer = FHIRRequestContext.get().getRequestTimer();
+        if (timer.isServerTimingEnabled()) {
+            responseContext.getHeaders().add(SERVER_TIMING_HEADER, timer.toServerTiming());
+        }
+    }
+}
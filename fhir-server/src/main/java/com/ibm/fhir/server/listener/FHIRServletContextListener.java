@@ -41,6 +41,7 @@ import javax.websocket.server.ServerContainer;
 import org.apache.commons.configuration.MapConfiguration;
 import org.owasp.encoder.Encode;
 
+import com.ibm.fhir.audit.AuditLogServiceFactory;
 import com.ibm.fhir.cache.CachingProxy;
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.PropertyGroup;
@@ -48,6 +49,7 @@ import com.ibm.fhir.config.PropertyGroup.PropertyEntry;
 import com.ibm.fhir.model.config.FHIRModelConfig;
 import com.ibm.fhir.model.lang.util.LanguageRegistryUtil;
 import com.ibm.fhir.model.util.FHIRUtil;
+import com.ibm.fhir.notification.FHIRNotificationService;
 import com.ibm.fhir.notification.websocket.impl.FHIRNotificationServiceEndpointConfig;
 import com.ibm.fhir.notifications.kafka.impl.FHIRNotificationKafkaPublisher;
 import com.ibm.fhir.notifications.nats.impl.FHIRNotificationNATSPublisher;
@@ -234,6 +236,12 @@ public class FHIRServletContextListener implements ServletContextListener {
             // Set our "initComplete" flag back to false.
             event.getServletContext().setAttribute(FHIR_SERVER_INIT_COMPLETE, Boolean.FALSE);
 
+            // Send any notification events still queued before the publishers go away.
+            // WebSocket subscribers have queues too, so this doesn't depend on which publishers are enabled.
+            if (FHIRNotificationService.isInitialized()) {
+                FHIRNotificationService.getInstance().shutdown();
+            }
+
             // If we previously initialized the Kafka publisher, then shut it down now.
             if (kafkaPublisher != null) {
                 kafkaPublisher.shutdown();
@@ -246,6 +254,9 @@ public class FHIRServletContextListener implements ServletContextListener {
                 natsPublisher = null;
             }
 
+            // Send any audit log entries still queued.
+            AuditLogServiceFactory.stopService();
+
             for (GraphTermServiceProvider graphTermServiceProvider : graphTermServiceProviders) {
                 graphTermServiceProvider.getGraph().close();
             }
@@ -68,6 +68,12 @@ public class FHIROperationContext {
      * The property is of the Response
      */
     public static final String PROPNAME_RESPONSE = "RESPONSE";
+
+    /**
+     * The property is of the Response. When set, the operation has written the complete response itself
+     * (e.g. a streamed entity) and it is returned as-is, regardless of the status type.
+     */
+    public static final String PROPNAME_CUSTOM_RESPONSE = "CUSTOM_RESPONSE";
     
     /**
      * The property is of the Path Parameter
@@ -7,6 +7,7 @@
 package com.ibm.fhir.server.operation.spi;
 
 import java.time.Instant;
+import java.util.List;
 
 import javax.ws.rs.core.MultivaluedMap;
 
@@ -16,6 +17,7 @@ import com.ibm.fhir.model.resource.Bundle;
 import com.ibm.fhir.model.resource.OperationOutcome;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
+import com.ibm.fhir.persistence.ReindexRange;
 import com.ibm.fhir.persistence.ResourceEraseRecord;
 import com.ibm.fhir.persistence.erase.EraseDTO;
 
@@ -319,6 +321,35 @@ public interface FHIRResourceHelpers {
      */
     int doReindex(FHIROperationContext operationContext, OperationOutcome.Builder operationOutcomeResult, Instant tstamp, String resourceLogicalId) throws Exception;
 
+    /**
+     * Split the resources in the database into at most rangeCount ranges which can be reindexed
+     * independently by {@link #doReindex(FHIROperationContext, Instant, ReindexRange, int)}
+     * @param operationContext
+     * @param resourceType the resource type to reindex, or null for all resource types
+     * @param rangeCount
+     * @return the ranges, which is empty if there are no resources to reindex
+     * @throws Exception
+     */
+    default List<ReindexRange> getReindexRanges(FHIROperationContext operationContext, String resourceType, int rangeCount) throws Exception {
+        throw new FHIROperationException("Unsupported for the given platform");
+    }
+
+    /**
+     * Invoke the FHIR persistence reindex operation for the next batch of up to maxResources resources
+     * in the given range which were last reindexed before the given date. The batch is processed in
+     * a single transaction. Because the range is advanced as the batch is processed, a range must
+     * not be used by more than one thread at a time.
+     * @param operationContext
+     * @param tstamp
+     * @param range
+     * @param maxResources
+     * @return number of resources reindexed
+     * @throws Exception
+     */
+    default int doReindex(FHIROperationContext operationContext, Instant tstamp, ReindexRange range, int maxResources) throws Exception {
+        throw new FHIROperationException("Unsupported for the given platform");
+    }
+
     /**
      * Invoke the FHIR Persistence erase operation for a specific instance of the erase.
      * @param operationContext
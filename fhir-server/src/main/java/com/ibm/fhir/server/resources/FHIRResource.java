@@ -29,10 +29,12 @@ import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.owasp.encoder.Encode;
@@ -41,6 +43,7 @@ import com.ibm.fhir.config.FHIRConfigHelper;
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.config.PropertyGroup;
+import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.format.Format;
 import com.ibm.fhir.model.generator.FHIRGenerator;
@@ -52,10 +55,12 @@ import com.ibm.fhir.model.type.CodeableConcept;
 import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
 import com.ibm.fhir.model.util.FHIRUtil;
+import com.ibm.fhir.persistence.CompressedResourcePayload;
 import com.ibm.fhir.persistence.FHIRPersistence;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
 import com.ibm.fhir.persistence.helper.PersistenceHelper;
+import com.ibm.fhir.provider.util.FHIRProviderUtil;
 import com.ibm.fhir.server.exception.FHIRRestBundledRequestException;
 import com.ibm.fhir.server.listener.FHIRServletContextListener;
 
@@ -218,6 +223,66 @@ public class FHIRResource {
         return "W/\"" + resource.getMeta().getVersionId().getValue() + "\"";
     }
 
+    /**
+     * Determine whether the response to the current request may be written straight from the stored JSON payload
+     * of a resource. This is the case when the preferred acceptable media type is JSON and pretty printing is off.
+     *
+     * @param httpHeaders the headers of the current request
+     * @return the media type to respond with, or null if the response must be generated from the model
+     */
+    protected MediaType getPayloadPassThroughMediaType(HttpHeaders httpHeaders) {
+        if (FHIRProviderUtil.isPretty(httpHeaders, uriInfo)) {
+            return null;
+        }
+        List<MediaType> acceptableMediaTypes = httpHeaders.getAcceptableMediaTypes();
+        MediaType mediaType = acceptableMediaTypes.isEmpty() ? MediaType.WILDCARD_TYPE : acceptableMediaTypes.get(0);
+        if (mediaType.isCompatible(FHIRMediaType.APPLICATION_FHIR_JSON_TYPE)) {
+            return FHIRMediaType.APPLICATION_FHIR_JSON_TYPE;
+        }
+        if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+            return MediaType.APPLICATION_JSON_TYPE;
+        }
+        return null;
+    }
+
+    /**
+     * Build a 200 response which writes the stored payload as-is. The GZIP-compressed form is sent along with
+     * a "Content-Encoding: gzip" header when the client accepts it; otherwise the payload is decompressed on the fly.
+     *
+     * @param payload the stored payload of the resource
+     * @param mediaType the (JSON) media type of the response
+     * @param httpHeaders the headers of the current request
+     * @return a ResponseBuilder with the entity, ETag and Last-Modified headers set
+     */
+    protected ResponseBuilder payloadResponse(CompressedResourcePayload payload, MediaType mediaType, HttpHeaders httpHeaders) {
+        ResponseBuilder rb;
+        if (acceptsGzip(httpHeaders)) {
+            rb = Response.ok((StreamingOutput) payload::transferCompressedTo, mediaType)
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        } else {
+            rb = Response.ok((StreamingOutput) payload::transferTo, mediaType);
+        }
+        return rb.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.ETAG, "W/\"" + payload.getVersionId() + "\"")
+                .lastModified(Date.from(payload.getLastUpdated()));
+    }
+
+    private boolean acceptsGzip(HttpHeaders httpHeaders) {
+        List<String> values = httpHeaders.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (values != null) {
+            for (String value : values) {
+                for (String coding : value.split(",")) {
+                    String[] parts = coding.split(";");
+                    if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                        // gzip;q=0 means "not acceptable"
+                        return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     protected Response exceptionResponse(FHIRRestBundledRequestException e) {
         Response response;
         if (e.getResponseBundle() != null) {
@@ -326,7 +391,7 @@ public class FHIRResource {
     /**
      * Retrieves the shared persistence helper object from the servlet context.
      */
-    private PersistenceHelper getPersistenceHelper() {
+    protected PersistenceHelper getPersistenceHelper() {
         if (persistenceHelper == null) {
             persistenceHelper =
                     (PersistenceHelper) context.getAttribute(FHIRPersistenceHelper.class.getName());
@@ -479,8 +479,14 @@ public class Operation extends FHIRResource {
         }
     }
 
-    private Response buildResponse(FHIROperationContext operationContext, String resourceTypeName, Resource resource)
+    protected Response buildResponse(FHIROperationContext operationContext, String resourceTypeName, Resource resource)
             throws Exception {
+        // Operations which write their own response entity (e.g. streaming $everything) provide the complete response
+        Object customResponse = operationContext.getProperty(FHIROperationContext.PROPNAME_CUSTOM_RESPONSE);
+        if (customResponse != null) {
+            return (Response) customResponse;
+        }
+
         // The following code allows the downstream application to change the response code
         // This enables the 202 accepted to be sent back
         Response.Status status = Response.Status.OK;
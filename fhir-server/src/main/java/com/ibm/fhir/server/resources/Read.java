@@ -21,6 +21,7 @@ import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
@@ -31,6 +32,7 @@ import javax.ws.rs.core.Response.Status;
 import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.CompressedResourcePayload;
 import com.ibm.fhir.server.operation.spi.FHIRRestOperationResponse;
 import com.ibm.fhir.server.util.FHIRRestHelper;
 import com.ibm.fhir.server.util.RestAuditLogger;
@@ -45,6 +47,9 @@ import com.ibm.fhir.server.util.RestAuditLogger;
 public class Read extends FHIRResource {
     private static final Logger log = java.util.logging.Logger.getLogger(Read.class.getName());
 
+    @Context
+    protected HttpHeaders httpHeaders;
+
     public Read() throws Exception {
         super();
     }
@@ -64,7 +69,22 @@ public class Read extends FHIRResource {
             long modifiedSince = parseIfModifiedSince();
 
             FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
-            Resource resource = helper.doRead(type, id, true, false, null, queryParameters);
+            Resource resource = null;
+            CompressedResourcePayload payload = null;
+            MediaType passThroughMediaType = getPayloadPassThroughMediaType(httpHeaders);
+            if (passThroughMediaType != null) {
+                payload = helper.doReadPayload(type, id, null, queryParameters);
+            }
+            int versionId;
+            Instant lastUpdated;
+            if (payload != null) {
+                versionId = payload.getVersionId();
+                lastUpdated = payload.getLastUpdated();
+            } else {
+                resource = helper.doRead(type, id, true, false, null, queryParameters);
+                versionId = Integer.parseInt(resource.getMeta().getVersionId().getValue());
+                lastUpdated = resource.getMeta().getLastUpdated().getValue().toInstant();
+            }
             int version2Match = -1;
             // Support ETag value with or without " (and W/)
             // e.g:  1, "1", W/1, W/"1" (the first format is used by TouchStone)
@@ -89,13 +109,13 @@ public class Read extends FHIRResource {
             boolean isModified = true;
             // check if-not-match first
             if (version2Match != -1) {
-                if (version2Match == Integer.parseInt(resource.getMeta().getVersionId().getValue())) {
+                if (version2Match == versionId) {
                     isModified = false;
                 }
             }
             // then check if-modified-since
             if(isModified && modifiedTime2Compare != null) {
-                if (resource.getMeta().getLastUpdated().getValue().toInstant().isBefore(modifiedTime2Compare)) {
+                if (lastUpdated.isBefore(modifiedTime2Compare)) {
                     isModified = false;
                 }
             }
@@ -103,8 +123,12 @@ public class Read extends FHIRResource {
             ResponseBuilder response;
             if (isModified) {
                 status = Status.OK;
-                response = Response.ok().entity(resource);
-                response = addHeaders(response, resource);
+                if (payload != null) {
+                    response = payloadResponse(payload, passThroughMediaType, httpHeaders);
+                } else {
+                    response = Response.ok().entity(resource);
+                    response = addHeaders(response, resource);
+                }
             } else {
                 status = Status.NOT_MODIFIED;
                 response = Response.status(Response.Status.NOT_MODIFIED);
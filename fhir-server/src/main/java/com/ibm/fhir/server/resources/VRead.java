@@ -19,6 +19,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
@@ -28,6 +30,7 @@ import javax.ws.rs.core.Response.Status;
 import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.persistence.CompressedResourcePayload;
 import com.ibm.fhir.server.operation.spi.FHIRRestOperationResponse;
 import com.ibm.fhir.server.util.FHIRRestHelper;
 import com.ibm.fhir.server.util.RestAuditLogger;
@@ -42,6 +45,9 @@ import com.ibm.fhir.server.util.RestAuditLogger;
 public class VRead extends FHIRResource {
     private static final Logger log = java.util.logging.Logger.getLogger(VRead.class.getName());
 
+    @Context
+    protected HttpHeaders httpHeaders;
+
     public VRead() throws Exception {
         super();
     }
@@ -59,6 +65,15 @@ public class VRead extends FHIRResource {
             MultivaluedMap<String, String> queryParameters = uriInfo.getQueryParameters();
 
             FHIRRestHelper helper = new FHIRRestHelper(getPersistenceImpl());
+            MediaType passThroughMediaType = getPayloadPassThroughMediaType(httpHeaders);
+            if (passThroughMediaType != null) {
+                CompressedResourcePayload payload = helper.doReadPayload(type, id, vid, queryParameters);
+                if (payload != null) {
+                    status = Status.OK;
+                    return payloadResponse(payload, passThroughMediaType, httpHeaders).build();
+                }
+            }
+
             Resource resource = helper.doVRead(type, id, vid, queryParameters);
             status = Status.OK;
             ResponseBuilder response = Response.ok().entity(resource);
@@ -29,8 +29,15 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -46,6 +53,9 @@ import com.ibm.fhir.config.FHIRConfigHelper;
 import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.config.PropertyGroup;
+import com.ibm.fhir.config.PropertyHandle;
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
 import com.ibm.fhir.core.FHIRConstants;
 import com.ibm.fhir.core.HTTPHandlingPreference;
 import com.ibm.fhir.core.HTTPReturnPreference;
@@ -87,8 +97,10 @@ import com.ibm.fhir.path.FHIRPathNode;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator;
 import com.ibm.fhir.path.evaluator.FHIRPathEvaluator.EvaluationContext;
 import com.ibm.fhir.path.patch.FHIRPathPatch;
+import com.ibm.fhir.persistence.CompressedResourcePayload;
 import com.ibm.fhir.persistence.FHIRPersistence;
 import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
+import com.ibm.fhir.persistence.ReindexRange;
 import com.ibm.fhir.persistence.ResourceChangeLogRecord;
 import com.ibm.fhir.persistence.ResourceEraseRecord;
 import com.ibm.fhir.persistence.SingleResourceResult;
@@ -101,6 +113,7 @@ import com.ibm.fhir.persistence.exception.FHIRPersistenceException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceDeletedException;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceNotFoundException;
 import com.ibm.fhir.persistence.helper.FHIRTransactionHelper;
+import com.ibm.fhir.persistence.helper.PersistenceHelper;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.impl.FHIRPersistenceInterceptorMgr;
 import com.ibm.fhir.persistence.jdbc.exception.FHIRPersistenceDataAccessException;
@@ -117,6 +130,7 @@ import com.ibm.fhir.search.util.ReferenceValue;
 import com.ibm.fhir.search.util.ReferenceValue.ReferenceType;
 import com.ibm.fhir.search.util.SearchUtil;
 import com.ibm.fhir.server.exception.FHIRRestBundledRequestException;
+import com.ibm.fhir.server.helper.FHIRServerUtils;
 import com.ibm.fhir.server.operation.FHIROperationRegistry;
 import com.ibm.fhir.server.operation.spi.FHIROperation;
 import com.ibm.fhir.server.operation.spi.FHIROperationContext;
@@ -141,6 +155,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     private static final com.ibm.fhir.model.type.String SC_ACCEPTED_STRING = string(Integer.toString(SC_ACCEPTED));
     private static final com.ibm.fhir.model.type.String SC_OK_STRING = string(Integer.toString(SC_OK));
     private static final ZoneId UTC = ZoneId.of("UTC");
+    private static final String EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
+    private static final PropertyHandle BATCH_PARALLELISM = PropertyHandle.of(FHIRConfiguration.PROPERTY_BATCH_PARALLELISM);
+    private static final PropertyHandle BATCH_PREPARE = PropertyHandle.of(FHIRConfiguration.PROPERTY_BATCH_PREPARE);
 
     // default number of entries in system history if no _count is given
     private static final int DEFAULT_HISTORY_ENTRIES = 100;
@@ -164,10 +181,47 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
     // Used for correlating requests within a bundle.
     private String bundleRequestCorrelationId = null;
 
+    // Provides each thread processing the entries of a batch bundle with its own persistence implementation.
+    // If null, batch entries are always processed one at a time.
+    private PersistenceHelper persistenceHelper = null;
+
+    // Runs the threads processing the entries of a batch bundle. If null, it's looked up when first needed
+    private ExecutorService batchExecutor = null;
+
     public FHIRRestHelper(FHIRPersistence persistence) {
         this.persistence = persistence;
     }
 
+    /**
+     * Construct a helper which can validate and process the entries of a batch bundle in parallel,
+     * as configured by fhirServer/core/batchParallelism, using the default managed executor service.
+     *
+     * @param persistence
+     *            the persistence implementation for the calling thread
+     * @param persistenceHelper
+     *            used to obtain a persistence implementation for each of the other threads
+     */
+    public FHIRRestHelper(FHIRPersistence persistence, PersistenceHelper persistenceHelper) {
+        this(persistence, persistenceHelper, null);
+    }
+
+    /**
+     * Construct a helper which can validate and process the entries of a batch bundle in parallel,
+     * as configured by fhirServer/core/batchParallelism, using the given executor.
+     *
+     * @param persistence
+     *            the persistence implementation for the calling thread
+     * @param persistenceHelper
+     *            used to obtain a persistence implementation for each of the other threads
+     * @param batchExecutor
+     *            used to run the other threads; if null, the default managed executor service is used
+     */
+    public FHIRRestHelper(FHIRPersistence persistence, PersistenceHelper persistenceHelper, ExecutorService batchExecutor) {
+        this.persistence = persistence;
+        this.persistenceHelper = persistenceHelper;
+        this.batchExecutor = batchExecutor;
+    }
+
     @Override
     public FHIRRestOperationResponse doCreate(String type, Resource resource, String ifNoneExist,
             boolean doValidation) throws Exception {
@@ -921,6 +975,92 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         }
     }
 
+    /**
+     * Performs a 'read' or 'vread' operation which returns the stored resource payload without parsing it,
+     * if the request is eligible for that. A request is eligible when pass-through is enabled in the tenant
+     * configuration, the persistence layer supports it, no persistence interceptors are registered (so nothing
+     * can observe or modify the resource) and no _elements or _summary filtering was requested.
+     *
+     * @param type
+     *            the resource type associated with the Resource to be retrieved
+     * @param id
+     *            the id of the Resource to be retrieved
+     * @param versionId
+     *            the version of the Resource to be retrieved, or null for the current version
+     * @param queryParameters
+     *            the query parameters of the request
+     * @return the stored payload, or null if the request is not eligible and {@link #doRead} or {@link #doVRead}
+     *            must be used instead
+     * @throws Exception
+     */
+    public CompressedResourcePayload doReadPayload(String type, String id, String versionId, MultivaluedMap<String, String> queryParameters)
+            throws Exception {
+        log.entering(this.getClass().getName(), "doReadPayload");
+
+        if (!FHIRConfigHelper.getBooleanProperty(FHIRConfiguration.PROPERTY_READ_PAYLOAD_PASS_THROUGH, false)
+                || !persistence.isPayloadReadSupported() || getInterceptorMgr().hasInterceptors()) {
+            log.exiting(this.getClass().getName(), "doReadPayload");
+            return null;
+        }
+
+        String interaction = versionId == null ? Interaction.READ.value() : Interaction.VREAD.value();
+
+        // Validate that interaction is allowed for given resource type
+        validateInteraction(interaction, type);
+
+        // Start a new txn in the persistence layer if one is not already active.
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+        txn.begin();
+
+        // Save the current request context.
+        FHIRRequestContext requestContext = FHIRRequestContext.get();
+
+        try {
+            if (!ModelSupport.isResourceType(type)) {
+                throw buildUnsupportedResourceTypeException(type);
+            }
+
+            Class<? extends Resource> resourceType = getResourceType(type);
+
+            FHIRSearchContext searchContext = null;
+            if (queryParameters != null) {
+                searchContext = SearchUtil.parseReadQueryParameters(resourceType, queryParameters, interaction,
+                    HTTPHandlingPreference.LENIENT.equals(requestContext.getHandlingPreference()));
+                if (searchContext.getElementsParameters() != null || searchContext.hasSummaryParameter()) {
+                    txn.commit();
+                    txn = null;
+                    return null;
+                }
+            }
+
+            FHIRPersistenceEvent event =
+                    new FHIRPersistenceEvent(null, buildPersistenceEventProperties(type, id, versionId, searchContext));
+            FHIRPersistenceContext persistenceContext =
+                    FHIRPersistenceContextFactory.createPersistenceContext(event, searchContext);
+            CompressedResourcePayload payload = persistence.readPayload(persistenceContext, resourceType, id, versionId);
+            if (payload == null) {
+                throw new FHIRPersistenceResourceNotFoundException("Resource '" + type + "/" + id + "'"
+                        + (versionId == null ? "" : " version " + versionId) + " not found.");
+            }
+
+            // Commit our transaction if we started one before.
+            txn.commit();
+            txn = null;
+
+            return payload;
+        } finally {
+            // Restore the original request context.
+            FHIRRequestContext.set(requestContext);
+
+            // If we previously started a transaction and it's still active, we need to rollback due to an error.
+            if (txn != null) {
+                txn.rollback();
+            }
+
+            log.exiting(this.getClass().getName(), "doReadPayload");
+        }
+    }
+
     /**
      * Performs the work of retrieving versions of a Resource.
      *
@@ -1288,6 +1428,10 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             Set<String> localIdentifiers = new HashSet<>();
 
+            // For a 'batch' that can be processed in parallel, validate the resources after the other checks
+            final int parallelism = getBatchParallelism(requestType);
+            Map<Integer, Resource> resourcesToValidate = new LinkedHashMap<>();
+
             for (int i = 0; i < bundle.getEntry().size(); i++) {
                 // Create a corresponding response entry and add it to the response bundle.
                 Bundle.Entry requestEntry = bundle.getEntry().get(i);
@@ -1336,27 +1480,16 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
                     // If the request entry contains a resource, then validate it now.
                     if (resource != null) {
-                        List<Issue> issues = validateResource(resource);
-                        if (!issues.isEmpty()) {
-                            OperationOutcome oo = FHIRUtil.buildOperationOutcome(issues);
-                            if (anyFailureInIssues(issues)) {
-                                if (requestType == BundleType.Value.TRANSACTION) {
+                        if (parallelism > 1) {
+                            resourcesToValidate.put(i, resource);
+                        } else {
+                            List<Issue> issues = validateResource(resource);
+                            if (!issues.isEmpty()) {
+                                if (requestType == BundleType.Value.TRANSACTION && anyFailureInIssues(issues)) {
                                     issueList.addAll(issues);
                                 } else {
-                                    responseEntry = Entry.builder()
-                                                .response(Entry.Response.builder()
-                                                    .status(SC_BAD_REQUEST_STRING)
-                                                    .build())
-                                                .resource(oo)
-                                                .build();
+                                    responseEntry = buildValidationResponseEntry(issues);
                                 }
-                            } else {
-                                responseEntry = Entry.builder()
-                                        .response(Entry.Response.builder()
-                                            .status(SC_ACCEPTED_STRING)
-                                            .outcome(oo)
-                                            .build())
-                                        .build();
                             }
                         }
                     }
@@ -1383,6 +1516,22 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 }
             } // End foreach requestEntry
 
+            if (!resourcesToValidate.isEmpty()) {
+                // Each entry of a 'batch' is independent, so the resources can be validated by several threads
+                Map<Integer, List<Issue>> issuesByEntry = new ConcurrentHashMap<>();
+                List<List<Integer>> entryGroups = resourcesToValidate.keySet().stream()
+                        .map(Collections::singletonList)
+                        .collect(Collectors.toList());
+                runInParallel(entryGroups, parallelism, false,
+                    (helper, entryIndex) -> issuesByEntry.put(entryIndex, helper.validateResource(resourcesToValidate.get(entryIndex))));
+                for (Integer entryIndex : resourcesToValidate.keySet()) {
+                    List<Issue> issues = issuesByEntry.get(entryIndex);
+                    if (!issues.isEmpty()) {
+                        validationResponseEntries.put(entryIndex, buildValidationResponseEntry(issues));
+                    }
+                }
+            }
+
             // If this is a "transaction" interaction and we encountered any errors, then we'll
             // abort processing this request right now since a transaction interaction is supposed to be
             // all or nothing.
@@ -1398,6 +1547,32 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         }
     }
 
+    /**
+     * Build the response entry for a bundle entry whose resource has validation issues
+     *
+     * @param issues
+     *            the validation issues; not empty
+     * @return a '400 Bad Request' response entry if any of the issues is a failure; otherwise
+     *         a '202 Accepted' response entry with the issues as its outcome
+     */
+    private Entry buildValidationResponseEntry(List<Issue> issues) {
+        OperationOutcome oo = FHIRUtil.buildOperationOutcome(issues);
+        if (anyFailureInIssues(issues)) {
+            return Entry.builder()
+                    .response(Entry.Response.builder()
+                        .status(SC_BAD_REQUEST_STRING)
+                        .build())
+                    .resource(oo)
+                    .build();
+        }
+        return Entry.builder()
+                .response(Entry.Response.builder()
+                    .status(SC_ACCEPTED_STRING)
+                    .outcome(oo)
+                    .build())
+                .build();
+    }
+
     /**
      * Perform method-specific validation of the resource
      */
@@ -1577,6 +1752,10 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             // Process entries.
             BundleType.Value bundleType = requestBundle.getType().getValueAsEnum();
+            if (getBatchParallelism(bundleType) > 1) {
+                // The mapping is shared by the threads processing the entries, and is looked up with null keys
+                localRefMap = Collections.synchronizedMap(localRefMap);
+            }
             List<Entry> responseEntries = processEntriesByMethod(requestBundle, validationResponseEntries,
                     bundleType == BundleType.Value.TRANSACTION, localRefMap, bundleRequestCorrelationId, skippableUpdates);
 
@@ -1666,9 +1845,12 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
             // If we're working on a 'transaction' type interaction, or an interaction
             // where we're processing only GET or HEAD requests, then start a new transaction now.
+            // When the entries of a 'batch' are processed in parallel, each runs in its own transaction instead.
             BundleType.Value bundleType = requestBundle.getType().getValueAsEnum();
+            final int parallelism = getBatchParallelism(bundleType);
             if (bundleType == BundleType.Value.TRANSACTION ||
-                    ((!requestEntriesByMethod.get(HTTPVerb.Value.GET).isEmpty() ||
+                    (parallelism == 1 &&
+                    (!requestEntriesByMethod.get(HTTPVerb.Value.GET).isEmpty() ||
                             !requestEntriesByMethod.get(HTTPVerb.Value.HEAD).isEmpty()) &&
                             requestEntriesByMethod.get(HTTPVerb.Value.DELETE).isEmpty() &&
                             requestEntriesByMethod.get(HTTPVerb.Value.POST).isEmpty() &&
@@ -1682,6 +1864,14 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 }
             }
 
+            // Give the persistence layer a chance to resolve the ids shared by the resources to be
+            // stored before the entries are processed. A transaction already resolves the token values
+            // of all its entries together at commit, and deliberately so: resolving them up front would
+            // hold the locks on any new shared rows for the whole bundle instead of just the commit.
+            // The prepared bundle holds the resources in the form in which they were passed to the persistence layer.
+            final Bundle preparedBundle = (txn == null && FHIRConfigHelper.getBooleanProperty(BATCH_PREPARE, true)) ?
+                    prepareBundleEntries(requestBundle, requestEntriesByMethod, localRefMap) : requestBundle;
+
             for (Map.Entry<HTTPVerb.Value, List<Integer>> methodIndices : requestEntriesByMethod.entrySet()) {
                 HTTPVerb.Value httpMethod = methodIndices.getKey();
                 List<Integer> entryIndices = methodIndices.getValue();
@@ -1692,7 +1882,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
 
                 // For PUT and DELETE requests, we need to sort the indices by the request url path value.
                 if (httpMethod == HTTPVerb.Value.PUT || httpMethod == HTTPVerb.Value.DELETE) {
-                    sortBundleRequestEntries(requestBundle, entryIndices);
+                    sortBundleRequestEntries(preparedBundle, entryIndices);
                     if (log.isLoggable(Level.FINER)) {
                         log.finer("Sorted bundle request indices to be processed: "
                                 + entryIndices.toString());
@@ -1700,108 +1890,22 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 }
 
                 // Now visit each of the request entries using the list of indices obtained above.
-                // Use hashmap to store both the index and the accordingly updated response bundle entry.
-                Map<Integer, Entry> responseIndexAndEntries = new HashMap<Integer, Entry>();
-                for (Integer entryIndex : entryIndices) {
-                    Entry requestEntry = requestBundle.getEntry().get(entryIndex);
-                    Entry.Request request = requestEntry.getRequest();
-
-                    StringBuilder requestDescription = new StringBuilder();
-                    long initialTime = System.currentTimeMillis();
-
-                    try {
-                        FHIRUrlParser requestURL = new FHIRUrlParser(request.getUrl().getValue());
-
-                        // Log our initial info message for this request.
-                        requestDescription.append("entryIndex:[");
-                        requestDescription.append(entryIndex);
-                        requestDescription.append("] correlationId:[");
-                        requestDescription.append(bundleRequestCorrelationId);
-                        requestDescription.append("] method:[");
-                        requestDescription.append(request.getMethod().getValue());
-                        requestDescription.append("] uri:[");
-                        requestDescription.append(request.getUrl().getValue());
-                        requestDescription.append("]");
-                        if (log.isLoggable(Level.FINE)) {
-                            log.fine("Processing bundled request: " + requestDescription.toString());
-                            if (log.isLoggable(Level.FINER)) {
-                                log.finer("--> path: '" + requestURL.getPath() + "'");
-                                log.finer("--> query: '" + requestURL.getQuery() + "'");
-                            }
-                        }
-
-                        // Construct the absolute requestUri to be used for any response bundles associated
-                        // with history and search requests.
-                        String absoluteUri = getAbsoluteUri(getRequestUri(), request.getUrl().getValue());
-
-                        if (request.getMethod().equals(HTTPVerb.GET)) {
-                            responseEntries[entryIndex] = processEntryForGet(request, requestURL, absoluteUri,
-                                    requestDescription.toString(), initialTime);
-                        } else if (request.getMethod().equals(HTTPVerb.POST)) {
-                            Entry validationResponseEntry = validationResponseEntries.get(entryIndex);
-                            responseEntries[entryIndex] = processEntryForPost(requestEntry, validationResponseEntry, responseIndexAndEntries,
-                                    entryIndex, localRefMap, requestURL, absoluteUri, requestDescription.toString(), initialTime, (bundleType == BundleType.Value.TRANSACTION));
-                        } else if (request.getMethod().equals(HTTPVerb.PUT)) {
-                            Entry validationResponseEntry = validationResponseEntries.get(entryIndex);
-                            responseEntries[entryIndex] = processEntryForPut(requestEntry, validationResponseEntry, responseIndexAndEntries,
-                                    entryIndex, localRefMap, requestURL, absoluteUri, requestDescription.toString(), initialTime, skippableUpdates, (bundleType == BundleType.Value.TRANSACTION));
-                        } else if (request.getMethod().equals(HTTPVerb.PATCH)) {
-                            responseEntries[entryIndex] = processEntryforPatch(requestEntry, requestURL,entryIndex,
-                                    requestDescription.toString(), initialTime, skippableUpdates);
-                        } else if (request.getMethod().equals(HTTPVerb.DELETE)) {
-                            responseEntries[entryIndex] = processEntryForDelete(requestURL, requestDescription.toString(), initialTime);
-                        } else {
-                            // Internal error, should not get here!
-                            throw new IllegalStateException("Internal Server Error: reached an unexpected code location.");
-                        }
-                    } catch (FHIRPersistenceResourceNotFoundException e) {
-                        if (failFast) {
-                            String msg = "Error while processing request bundle.";
-                            throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
-                        }
-
-                        responseEntries[entryIndex] = Entry.builder()
-                                .resource(FHIRUtil.buildOperationOutcome(e, false))
-                                .response(Entry.Response.builder()
-                                    .status(SC_NOT_FOUND_STRING)
-                                    .build())
-                                .build();
-                        logBundleRequestCompletedMsg(requestDescription.toString(), initialTime, SC_NOT_FOUND);
-                    } catch (FHIRPersistenceResourceDeletedException e) {
-                        if (failFast) {
-                            String msg = "Error while processing request bundle.";
-                            throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
-                        }
-
-                        responseEntries[entryIndex] = Entry.builder()
-                                .resource(FHIRUtil.buildOperationOutcome(e, false))
-                                .response(Entry.Response.builder()
-                                    .status(SC_GONE_STRING)
-                                    .build())
-                                .build();
-                        logBundleRequestCompletedMsg(requestDescription.toString(), initialTime, SC_GONE);
-                    } catch (FHIROperationException e) {
-                        if (failFast) {
-                            String msg = "Error while processing request bundle.";
-                            throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
-                        }
-
-                        Status status;
-                        if (e instanceof FHIRSearchException) {
-                            status = Status.BAD_REQUEST;
-                        } else {
-                            status = IssueTypeToHttpStatusMapper.issueListToStatus(e.getIssues());
-                        }
-
-                        responseEntries[entryIndex] = Entry.builder()
-                                .resource(FHIRUtil.buildOperationOutcome(e, false))
-                                .response(Entry.Response.builder()
-                                    .status(string(Integer.toString(status.getStatusCode())))
-                                    .build())
-                                .build();
-                        logBundleRequestCompletedMsg(requestDescription.toString(), initialTime, status.getStatusCode());
+                if (parallelism > 1 && entryIndices.size() > 1) {
+                    // Each entry is processed in its own transaction by one of the threads. The response entries
+                    // are stored by index, so the response bundle is still in request order.
+                    Map<Integer, Entry> responseIndexAndEntries = new ConcurrentHashMap<>();
+                    runInParallel(groupEntriesByTarget(preparedBundle, httpMethod, entryIndices), parallelism, true,
+                        (helper, entryIndex) -> responseEntries[entryIndex] = helper.processEntry(preparedBundle, entryIndex,
+                            validationResponseEntries, responseIndexAndEntries, failFast, localRefMap, bundleRequestCorrelationId,
+                            skippableUpdates));
+                } else {
+                    // Use hashmap to store both the index and the accordingly updated response bundle entry.
+                    Map<Integer, Entry> responseIndexAndEntries = new HashMap<Integer, Entry>();
+                    for (Integer entryIndex : entryIndices) {
+                        responseEntries[entryIndex] = processEntry(preparedBundle, entryIndex, validationResponseEntries,
+                            responseIndexAndEntries, failFast, localRefMap, bundleRequestCorrelationId, skippableUpdates);
                     }
-                } // end foreach method entry
+                }
                 if (log.isLoggable(Level.FINER)) {
                     log.finer("Finished processing for method: " + httpMethod);
                 }
@@ -1828,6 +1932,387 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         }
     }
 
+    /**
+     * Processes a single request entry of the specified request bundle.
+     *
+     * @param requestBundle
+     *            the bundle containing the request entries
+     * @param entryIndex
+     *            the bundle entry index of the bundle entry to be processed
+     * @param validationResponseEntries
+     *            the response entries with errors/warnings constructed during validation
+     * @param responseIndexAndEntries
+     *            the hashmap containing bundle entry indexes and their associated response entries
+     * @param failFast
+     *            a boolean value indicating if processing should stop on first failure
+     * @param localRefMap
+     *            the map of local references to external references
+     * @param bundleRequestCorrelationId
+     *            the bundle request correlation ID
+     * @param skippableUpdates
+     *            if true, and the bundle contains an update for which the resource content in the update matches the existing
+     *            resource on the server, then skip the update; if false, then always attempt the updates specified in the bundle
+     * @return the entry for the response bundle
+     * @throws Exception
+     */
+    private Entry processEntry(Bundle requestBundle, int entryIndex, Map<Integer, Entry> validationResponseEntries,
+            Map<Integer, Entry> responseIndexAndEntries, boolean failFast, Map<String, String> localRefMap,
+            String bundleRequestCorrelationId, boolean skippableUpdates) throws Exception {
+        BundleType.Value bundleType = requestBundle.getType().getValueAsEnum();
+        Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+        Entry.Request request = requestEntry.getRequest();
+
+        StringBuilder requestDescription = new StringBuilder();
+        long initialTime = System.currentTimeMillis();
+
+        try {
+            FHIRUrlParser requestURL = new FHIRUrlParser(request.getUrl().getValue());
+
+            // Log our initial info message for this request.
+            requestDescription.append("entryIndex:[");
+            requestDescription.append(entryIndex);
+            requestDescription.append("] correlationId:[");
+            requestDescription.append(bundleRequestCorrelationId);
+            requestDescription.append("] method:[");
+            requestDescription.append(request.getMethod().getValue());
+            requestDescription.append("] uri:[");
+            requestDescription.append(request.getUrl().getValue());
+            requestDescription.append("]");
+            if (log.isLoggable(Level.FINE)) {
+                log.fine("Processing bundled request: " + requestDescription.toString());
+                if (log.isLoggable(Level.FINER)) {
+                    log.finer("--> path: '" + requestURL.getPath() + "'");
+                    log.finer("--> query: '" + requestURL.getQuery() + "'");
+                }
+            }
+
+            // Construct the absolute requestUri to be used for any response bundles associated
+            // with history and search requests.
+            String absoluteUri = getAbsoluteUri(getRequestUri(), request.getUrl().getValue());
+
+            if (request.getMethod().equals(HTTPVerb.GET)) {
+                return processEntryForGet(request, requestURL, absoluteUri,
+                        requestDescription.toString(), initialTime);
+            } else if (request.getMethod().equals(HTTPVerb.POST)) {
+                Entry validationResponseEntry = validationResponseEntries.get(entryIndex);
+                return processEntryForPost(requestEntry, validationResponseEntry, responseIndexAndEntries,
+                        entryIndex, localRefMap, requestURL, absoluteUri, requestDescription.toString(), initialTime, (bundleType == BundleType.Value.TRANSACTION));
+            } else if (request.getMethod().equals(HTTPVerb.PUT)) {
+                Entry validationResponseEntry = validationResponseEntries.get(entryIndex);
+                return processEntryForPut(requestEntry, validationResponseEntry, responseIndexAndEntries,
+                        entryIndex, localRefMap, requestURL, absoluteUri, requestDescription.toString(), initialTime, skippableUpdates, (bundleType == BundleType.Value.TRANSACTION));
+            } else if (request.getMethod().equals(HTTPVerb.PATCH)) {
+                return processEntryforPatch(requestEntry, requestURL,entryIndex,
+                        requestDescription.toString(), initialTime, skippableUpdates);
+            } else if (request.getMethod().equals(HTTPVerb.DELETE)) {
+                return processEntryForDelete(requestURL, requestDescription.toString(), initialTime);
+            } else {
+                // Internal error, should not get here!
+                throw new IllegalStateException("Internal Server Error: reached an unexpected code location.");
+            }
+        } catch (FHIRPersistenceResourceNotFoundException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+
+            logBundleRequestCompletedMsg(requestDescription.toString(), initialTime, SC_NOT_FOUND);
+            return Entry.builder()
+                    .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(Entry.Response.builder()
+                        .status(SC_NOT_FOUND_STRING)
+                        .build())
+                    .build();
+        } catch (FHIRPersistenceResourceDeletedException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+
+            logBundleRequestCompletedMsg(requestDescription.toString(), initialTime, SC_GONE);
+            return Entry.builder()
+                    .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(Entry.Response.builder()
+                        .status(SC_GONE_STRING)
+                        .build())
+                    .build();
+        } catch (FHIROperationException e) {
+            if (failFast) {
+                String msg = "Error while processing request bundle.";
+                throw new FHIRRestBundledRequestException(msg).withIssue(e.getIssues());
+            }
+
+            Status status;
+            if (e instanceof FHIRSearchException) {
+                status = Status.BAD_REQUEST;
+            } else {
+                status = IssueTypeToHttpStatusMapper.issueListToStatus(e.getIssues());
+            }
+
+            logBundleRequestCompletedMsg(requestDescription.toString(), initialTime, status.getStatusCode());
+            return Entry.builder()
+                    .resource(FHIRUtil.buildOperationOutcome(e, false))
+                    .response(Entry.Response.builder()
+                        .status(string(Integer.toString(status.getStatusCode())))
+                        .build())
+                    .build();
+        }
+    }
+
+    /**
+     * Performs an action for a single bundle entry on one of the threads used by {@link #runInParallel}
+     */
+    @FunctionalInterface
+    private interface EntryTask {
+        /**
+         * @param helper
+         *            the helper for the current thread
+         * @param entryIndex
+         *            the bundle entry index of the bundle entry
+         * @throws Exception
+         */
+        void run(FHIRRestHelper helper, int entryIndex) throws Exception;
+    }
+
+    /**
+     * Get the number of threads to use for validating and processing the entries of a bundle.
+     *
+     * @param bundleType
+     *            the type of the request bundle
+     * @return the configured fhirServer/core/batchParallelism for a 'batch' bundle if this helper
+     *         is able to process its entries in parallel; otherwise 1
+     */
+    private int getBatchParallelism(BundleType.Value bundleType) {
+        if (bundleType != BundleType.Value.BATCH || persistenceHelper == null) {
+            return 1;
+        }
+
+        int parallelism = FHIRConfigHelper.getIntProperty(BATCH_PARALLELISM, 1);
+        if (parallelism > 1 && getBatchExecutor() == null) {
+            log.warning("Executor service '" + EXECUTOR_JNDI_NAME + "' is not available; processing batch entries sequentially");
+            return 1;
+        }
+        return Math.max(parallelism, 1);
+    }
+
+    /**
+     * @return the executor used to run the threads processing batch entries, or null if it isn't available
+     */
+    private ExecutorService getBatchExecutor() {
+        if (batchExecutor == null) {
+            batchExecutor = FHIRServerUtils.getJNDIValue(EXECUTOR_JNDI_NAME, null);
+        }
+        return batchExecutor;
+    }
+
+    /**
+     * Group the specified bundle entries so that the updates, patches and deletes with the same request URL path
+     * (and therefore the same target resource) stay together, in their original order. The groups can then be
+     * processed in parallel without two threads changing the same resource at once. Conditional requests of the
+     * same resource type stay together too, since their targets aren't known in advance. This includes the
+     * conditional creates (the POST entries with an If-None-Exist query), so that two of them can't both find no
+     * match and create the same resource twice.
+     *
+     * @param requestBundle
+     *            the bundle containing the request entries
+     * @param httpMethod
+     *            the request method of the bundle entries
+     * @param entryIndices
+     *            the bundle entry indices of the bundle entries to be grouped
+     * @return the groups of bundle entry indices
+     */
+    Collection<List<Integer>> groupEntriesByTarget(Bundle requestBundle, HTTPVerb.Value httpMethod, List<Integer> entryIndices) {
+        if (httpMethod != HTTPVerb.Value.POST && httpMethod != HTTPVerb.Value.PUT
+                && httpMethod != HTTPVerb.Value.PATCH && httpMethod != HTTPVerb.Value.DELETE) {
+            return entryIndices.stream()
+                    .map(Collections::singletonList)
+                    .collect(Collectors.toList());
+        }
+
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        List<List<Integer>> result = new ArrayList<>();
+        for (Integer entryIndex : entryIndices) {
+            Bundle.Entry.Request request = requestBundle.getEntry().get(entryIndex).getRequest();
+            if (httpMethod == HTTPVerb.Value.POST && request.getIfNoneExist() == null) {
+                // a plain create always creates a new resource
+                result.add(Collections.singletonList(entryIndex));
+                continue;
+            }
+            String url = request.getUrl().getValue();
+            int queryIndex = url.indexOf('?');
+            String path = queryIndex < 0 ? url : url.substring(0, queryIndex);
+            List<Integer> group = groups.get(path);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(path, group);
+                result.add(group);
+            }
+            group.add(entryIndex);
+        }
+        return result;
+    }
+
+    /**
+     * Run the task for each of the specified bundle entries on up to 'parallelism' threads of the batch executor,
+     * and wait for them all to finish. Each thread runs with a copy of the current request context. The entries
+     * of each group are passed to the task one after the other by a single thread.
+     *
+     * @param entryGroups
+     *            the groups of bundle entry indices
+     * @param parallelism
+     *            the maximum number of threads
+     * @param ownPersistence
+     *            if true, the helper passed to the task on each thread has its own persistence implementation;
+     *            otherwise this helper is passed to the task on every thread
+     * @param task
+     *            the task to run for each bundle entry
+     * @throws Exception
+     *            the first failure reported by any of the threads
+     */
+    private void runInParallel(Collection<List<Integer>> entryGroups, int parallelism, boolean ownPersistence, EntryTask task) throws Exception {
+        final FHIRRequestContext requestContext = FHIRRequestContext.get();
+        final Queue<List<Integer>> queue = new ConcurrentLinkedQueue<>(entryGroups);
+
+        // Tells the other threads to stop picking up entries after a failure
+        final AtomicBoolean stopped = new AtomicBoolean();
+
+        final int threadCount = Math.min(parallelism, entryGroups.size());
+        List<Future<Void>> futures = new ArrayList<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            futures.add(getBatchExecutor().submit(() -> {
+                FHIRRequestContext.set(requestContext.copy());
+                try {
+                    FHIRRestHelper helper = ownPersistence ? new FHIRRestHelper(persistenceHelper.getFHIRPersistenceImplementation()) : this;
+                    List<Integer> entryGroup;
+                    while (!stopped.get() && (entryGroup = queue.poll()) != null) {
+                        for (Integer entryIndex : entryGroup) {
+                            task.run(helper, entryIndex);
+                        }
+                    }
+                } catch (Exception e) {
+                    stopped.set(true);
+                    throw e;
+                } finally {
+                    FHIRRequestContext.remove();
+                }
+                return null;
+            }));
+        }
+
+        Exception failure = null;
+        for (Future<Void> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Pass the resources to be created or updated by the request entries to the persistence layer
+     * so that it can prepare for storing them in bulk. Each resource is passed in the form in which the
+     * entry will store it, with its local references mapped and its generated id set, and the returned bundle
+     * holds those same resource objects so that the persistence layer can reuse the work it did for them (like
+     * extracting their search parameter values) when the entries are processed. Entries with conditional
+     * references, or with references to entries whose ids aren't known yet, are skipped because those
+     * references can't be resolved until the entry is processed. This runs in its own transaction and a failure
+     * is logged and otherwise ignored because each entry is still processed normally.
+     *
+     * @param requestBundle
+     *            the bundle containing the request entries
+     * @param requestEntriesByMethod
+     *            the indices of the request entries to be processed, grouped by request method
+     * @param localRefMap
+     *            the map of local references to external references
+     * @return the request bundle, with the resources of the prepared entries replaced by the ones passed to the
+     *            persistence layer
+     * @throws Exception
+     */
+    private Bundle prepareBundleEntries(Bundle requestBundle, Map<HTTPVerb.Value, List<Integer>> requestEntriesByMethod,
+            Map<String, String> localRefMap) throws Exception {
+        Map<Integer, Resource> resources = new LinkedHashMap<>();
+        for (HTTPVerb.Value method : Arrays.asList(HTTPVerb.Value.POST, HTTPVerb.Value.PUT)) {
+            for (Integer entryIndex : requestEntriesByMethod.get(method)) {
+                Entry requestEntry = requestBundle.getEntry().get(entryIndex);
+                Resource resource = requestEntry.getResource();
+                if (resource == null || requestEntry.getRequest().getUrl() == null) {
+                    continue;
+                }
+
+                // Only plain creates (<type>) and updates (<type>/<id>)
+                String[] pathTokens = new FHIRUrlParser(requestEntry.getRequest().getUrl().getValue()).getPathTokens();
+                int expectedLength = method == HTTPVerb.Value.POST ? 1 : 2;
+                if (pathTokens.length != expectedLength || pathTokens[pathTokens.length - 1].startsWith("$")
+                        || !getConditionalReferences(resource).isEmpty()) {
+                    continue;
+                }
+
+                // The same changes processEntryForPost and processEntryForPut make before storing the resource
+                ReferenceMappingVisitor<Resource> visitor = new ReferenceMappingVisitor<Resource>(localRefMap);
+                resource.accept(visitor);
+                resource = visitor.getResult();
+                if (hasLocalReferences(resource)) {
+                    continue;
+                }
+                Entry.Request request = requestEntry.getRequest();
+                if (method == HTTPVerb.Value.POST && (request.getIfNoneExist() == null || request.getIfNoneExist().getValue() == null
+                        || request.getIfNoneExist().getValue().isEmpty())) {
+                    String resourceId = retrieveGeneratedIdentifier(localRefMap, retrieveLocalIdentifier(requestEntry));
+                    if (resourceId != null) {
+                        resource = resource.toBuilder().id(resourceId).build();
+                    }
+                }
+                resources.put(entryIndex, resource);
+            }
+        }
+
+        if (resources.size() < 2) {
+            // nothing to be gained
+            return requestBundle;
+        }
+
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+        txn.begin();
+        try {
+            persistence.prepare(new ArrayList<>(resources.values()));
+        } catch (FHIRPersistenceException e) {
+            txn.setRollbackOnly();
+            log.log(Level.WARNING, "Unable to prepare " + resources.size() + " bundle resources", e);
+            return requestBundle;
+        } finally {
+            txn.end();
+        }
+
+        List<Entry> entries = new ArrayList<>(requestBundle.getEntry());
+        for (Map.Entry<Integer, Resource> resource : resources.entrySet()) {
+            entries.set(resource.getKey(), entries.get(resource.getKey()).toBuilder().resource(resource.getValue()).build());
+        }
+        return requestBundle.toBuilder().entry(entries).build();
+    }
+
+    /**
+     * @return true if the resource still contains a local reference (to another entry of the bundle) after the
+     *         local references known so far have been mapped
+     */
+    private boolean hasLocalReferences(Resource resource) {
+        CollectingVisitor<Reference> visitor = new CollectingVisitor<>(Reference.class);
+        resource.accept(visitor);
+        for (Reference reference : visitor.getResult()) {
+            if (reference.getReference() != null && reference.getReference().getValue() != null
+                    && reference.getReference().getValue().startsWith(LOCAL_REF_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Processes a request entry with a request method of Patch.
      *
@@ -2106,7 +2591,10 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
             if (ifNoneExist != null || resourceId == null) {
                 ior = doCreate(pathTokens[0], resource, ifNoneExist, !DO_VALIDATION);
             } else {
-                resource = resource.toBuilder().id(resourceId).build();
+                if (!resourceId.equals(resource.getId())) {
+                    // the resource of a prepared entry already has its id
+                    resource = resource.toBuilder().id(resourceId).build();
+                }
                 // Skip validation because its already been performed.
                 ior = doUpdate(pathTokens[0], resourceId, resource, null, null, !SKIPPABLE_UPDATE, !DO_VALIDATION);
             }
@@ -2904,6 +3392,9 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 nextLinkUrl = nextLinkUrl.replace("&_page=" + context.getPageNumber(), "").replace("_page="
                         + context.getPageNumber() + "&", "").replace("_page=" + context.getPageNumber(), "");
 
+                // the cursor of the current page is not valid for the next page
+                nextLinkUrl = removeCursorParameter(nextLinkUrl);
+
                 if (nextLinkUrl.contains("?")) {
                     if (!nextLinkUrl.endsWith("?")) {
                         // there are other parameters in the query string
@@ -2916,6 +3407,14 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                 // add new _page parameter to the query string
                 nextLinkUrl += "_page=" + nextPageNumber;
 
+                // continue from the last row of this page if the persistence layer gave us a position
+                if (context instanceof FHIRSearchContext) {
+                    String nextPageToken = ((FHIRSearchContext) context).getNextPageToken();
+                    if (nextPageToken != null) {
+                        nextLinkUrl += "&" + SearchConstants.CURSOR + "=" + nextPageToken;
+                    }
+                }
+
                 // create 'next' link
                 Bundle.Link nextLink =
                         Bundle.Link.builder().relation(string("next")).url(Url.of(nextLinkUrl)).build();
@@ -2933,6 +3432,7 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
                         prevLinkUrl.replace("&_page=" + context.getPageNumber(), "").replace("_page="
                                 + context.getPageNumber() + "&", "").replace("_page="
                                         + context.getPageNumber(), "");
+                prevLinkUrl = removeCursorParameter(prevLinkUrl);
 
                 if (prevLinkUrl.contains("?")) {
                     if (!prevLinkUrl.endsWith("?")) {
@@ -2956,6 +3456,18 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         return bundleBuilder.build();
     }
 
+    /**
+     * Remove the _cursor parameter, if any, from the query string of the given URI.
+     * Page tokens are URL-safe base64 so the value never contains a '&'.
+     */
+    private String removeCursorParameter(String uri) {
+        String result = uri.replaceAll("([?&])" + SearchConstants.CURSOR + "=[^&]*&?", "$1");
+        if (result.endsWith("&")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+
     /**
      * Get the original request URI from either the HttpServletRequest or a configured Header (in case of re-writing proxies).
      *
@@ -3090,6 +3602,62 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
         return result;
     }
 
+    @Override
+    public List<ReindexRange> getReindexRanges(FHIROperationContext operationContext, String resourceType, int rangeCount) throws Exception {
+        if (!persistence.isReindexRangeSupported()) {
+            throw new FHIROperationException("Reindex by range is not supported by the configured persistence implementation");
+        }
+
+        FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+        txn.begin();
+        try {
+            return persistence.getReindexRanges(resourceType, rangeCount);
+        } finally {
+            txn.end();
+        }
+    }
+
+    @Override
+    public int doReindex(FHIROperationContext operationContext, Instant tstamp, ReindexRange range, int maxResources) throws Exception {
+        if (!persistence.isReindexRangeSupported()) {
+            throw new FHIROperationException("Reindex by range is not supported by the configured persistence implementation");
+        }
+
+        int result = 0;
+        // handle some retries in case of deadlock exceptions
+        final int TX_ATTEMPTS = 5;
+        int attempt = 1;
+        do {
+            // The persistence layer advances the range as it goes, so we need to be
+            // able to reset it if the transaction is rolled back
+            final long nextLogicalResourceId = range.getNextLogicalResourceId();
+            final boolean complete = range.isComplete();
+            FHIRTransactionHelper txn = new FHIRTransactionHelper(getTransaction());
+            txn.begin();
+            try {
+                FHIRPersistenceContext persistenceContext = null;
+                result = persistence.reindex(persistenceContext, tstamp, range, maxResources);
+                attempt = TX_ATTEMPTS; // end the retry loop
+            } catch (FHIRPersistenceDataAccessException x) {
+                range.setNextLogicalResourceId(nextLogicalResourceId);
+                range.setComplete(complete);
+                if (x.isTransactionRetryable() && attempt < TX_ATTEMPTS) {
+                    log.info("attempt #" + attempt + " failed for reindex range " + range + ", retrying transaction");
+                } else {
+                    throw x;
+                }
+            } catch (Exception x) {
+                range.setNextLogicalResourceId(nextLogicalResourceId);
+                range.setComplete(complete);
+                throw x;
+            } finally {
+                txn.end();
+            }
+        } while (attempt++ < TX_ATTEMPTS);
+
+        return result;
+    }
+
     /**
      * Validate a resource. First validate profile assertions for the resource if configured to do so,
      * then validate the resource itself.
@@ -3100,6 +3668,23 @@ public class FHIRRestHelper implements FHIRResourceHelpers {
      * @throws FHIRValidationException
      */
     private List<Issue> validateResource(Resource resource) throws FHIRValidationException {
+        final long start = System.nanoTime();
+        try {
+            return doValidateResource(resource);
+        } finally {
+            RequestTimer.stop(RequestPhase.VALIDATION, start);
+        }
+    }
+
+    /**
+     * Perform the validation described by {@link #validateResource(Resource)}
+     *
+     * @param resource
+     *            the resource to be validated
+     * @return A list of validation errors and warnings
+     * @throws FHIRValidationException
+     */
+    private List<Issue> doValidateResource(Resource resource) throws FHIRValidationException {
         List<String> profiles = null;
         List<String> profilesWithoutVersion = null;
 
@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.ibm.fhir.server.test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.model.resource.Parameters;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.server.operation.spi.FHIROperationContext;
+import com.ibm.fhir.server.resources.Operation;
+
+/**
+ * Tests how the response of an operation is built from the properties set on its operation context
+ */
+public class OperationResponseTest {
+
+    @BeforeClass
+    void setup() {
+        FHIRConfiguration.setConfigHome("target/test-classes");
+    }
+
+    @AfterClass
+    void tearDown() {
+        FHIRConfiguration.setConfigHome("");
+    }
+
+    /**
+     * The bulkdata job DELETE sets an ACCEPTED response only as a marker; the status type is the result
+     */
+    @Test
+    public void testBulkdataDelete() throws Exception {
+        for (Status status : new Status[] { Status.NO_CONTENT, Status.OK }) {
+            FHIROperationContext operationContext = FHIROperationContext.createSystemOperationContext();
+            operationContext.setProperty(FHIROperationContext.PROPNAME_STATUS_TYPE, status);
+            operationContext.setProperty(FHIROperationContext.PROPNAME_RESPONSE, Response.status(Status.ACCEPTED).build());
+
+            Response response = new OperationChild().buildResponse(operationContext, null, Parameters.builder().build());
+            assertEquals(response.getStatus(), status.getStatusCode());
+        }
+    }
+
+    /**
+     * The bulkdata $export and $import kick-off and status requests return the ACCEPTED response as-is
+     */
+    @Test
+    public void testAccepted() throws Exception {
+        Response accepted = Response.status(Status.ACCEPTED).header("Content-Location", "https://localhost/job").build();
+        FHIROperationContext operationContext = FHIROperationContext.createSystemOperationContext();
+        operationContext.setProperty(FHIROperationContext.PROPNAME_STATUS_TYPE, Status.ACCEPTED);
+        operationContext.setProperty(FHIROperationContext.PROPNAME_RESPONSE, accepted);
+
+        assertSame(new OperationChild().buildResponse(operationContext, null, null), accepted);
+    }
+
+    /**
+     * An operation which writes its own response entity opts in with the custom response property
+     */
+    @Test
+    public void testCustomResponse() throws Exception {
+        Response custom = Response.ok("streamed").build();
+        FHIROperationContext operationContext = FHIROperationContext.createSystemOperationContext();
+        operationContext.setProperty(FHIROperationContext.PROPNAME_CUSTOM_RESPONSE, custom);
+
+        assertSame(new OperationChild().buildResponse(operationContext, null, Parameters.builder().build()), custom);
+    }
+
+    private static class OperationChild extends Operation {
+        public OperationChild() throws Exception {
+            super();
+        }
+
+        @Override
+        public Response buildResponse(FHIROperationContext operationContext, String resourceTypeName, Resource resource) throws Exception {
+            return super.buildResponse(operationContext, resourceTypeName, resource);
+        }
+    }
+}
@@ -13,7 +13,12 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.fail;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.ws.rs.core.Response;
 
@@ -21,6 +26,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.testng.annotations.Test;
 
+import com.ibm.fhir.config.FHIRConfiguration;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.core.HTTPReturnPreference;
 import com.ibm.fhir.model.resource.Bundle;
@@ -54,6 +60,7 @@ import com.ibm.fhir.model.type.code.NarrativeStatus;
 import com.ibm.fhir.model.type.code.ProcedureStatus;
 import com.ibm.fhir.persistence.FHIRPersistence;
 import com.ibm.fhir.persistence.SingleResourceResult;
+import com.ibm.fhir.persistence.helper.PersistenceHelper;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptor;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptorException;
@@ -2062,4 +2069,113 @@ public class FHIRRestHelperTest {
         Mockito.verify(persistence).update(any(), any(), patientCaptor.capture());
         assertEquals(patientCaptor.getValue().getMeta().getTag().get(0), TAG);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test batch bundle processed in parallel.
+     */
+    @Test
+    public void testBatchBundleParallel() throws Exception {
+        final int entryCount = 20;
+        AtomicInteger persistenceCount = new AtomicInteger();
+        PersistenceHelper persistenceHelper = new PersistenceHelper() {
+            @Override
+            public FHIRPersistence getFHIRPersistenceImplementation() {
+                persistenceCount.incrementAndGet();
+                return new MockPersistenceImpl();
+            }
+
+            @Override
+            public FHIRPersistence getFHIRPersistenceImplementation(String factoryPropertyName) {
+                return getFHIRPersistenceImplementation();
+            }
+        };
+
+        Bundle.Builder requestBundleBuilder = Bundle.builder()
+                .id("bundle1")
+                .type(BundleType.BATCH);
+        for (int i = 0; i < entryCount; i++) {
+            Patient patient = Patient.builder()
+                    .name(HumanName.builder()
+                        .family(string("Doe" + i))
+                        .build())
+                    .text(Narrative.builder()
+                        .div(Xhtml.of("<div xmlns=\"http://www.w3.org/1999/xhtml\">Some narrative</div>"))
+                        .status(NarrativeStatus.GENERATED)
+                        .build())
+                    .build();
+            Bundle.Entry.Builder bundleEntryBuilder = Bundle.Entry.builder()
+                    .request(Bundle.Entry.Request.builder()
+                        .method(i == 5 ? HTTPVerb.PUT : HTTPVerb.POST)
+                        .url(Uri.of(i == 5 ? "Patient/5" : "Patient"))
+                        .build());
+            if (i != 5) {
+                bundleEntryBuilder.resource(patient);
+            }
+            requestBundleBuilder.entry(bundleEntryBuilder.build());
+        }
+
+        // the default test config sets fhirServer/core/batchParallelism to 4
+        FHIRConfiguration.setConfigHome("target/test-classes");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            FHIRRestHelper helper = new FHIRRestHelper(new MockPersistenceImpl(), persistenceHelper, executor);
+
+            // Process bundle
+            FHIRRequestContext.get().setOriginalRequestUri("test");
+            FHIRRequestContext.get().setReturnPreference(HTTPReturnPreference.REPRESENTATION);
+            Bundle responseBundle = helper.doBundle(requestBundleBuilder.build(), false);
+
+            // Validate results
+            assertNotNull(responseBundle);
+            assertEquals(responseBundle.getType(), BundleType.BATCH_RESPONSE);
+            assertEquals(responseBundle.getEntry().size(), entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                Bundle.Entry entry = responseBundle.getEntry().get(i);
+                if (i == 5) {
+                    // the PUT without a resource fails validation
+                    assertEquals(entry.getResponse().getStatus().getValue(), "400");
+                } else {
+                    // the response entries are in request order
+                    assertEquals(entry.getResponse().getStatus().getValue(), "201");
+                    Patient patient = entry.getResource().as(Patient.class);
+                    assertEquals(patient.getName().get(0).getFamily().getValue(), "Doe" + i);
+                }
+            }
+
+            // each thread processed entries with its own persistence implementation
+            assertEquals(persistenceCount.get(), 4);
+        } finally {
+            executor.shutdown();
+            FHIRConfiguration.setConfigHome("");
+        }
+    }
+
+    /**
+     * Test that conditional creates of the same resource type are grouped for sequential processing.
+     */
+    @Test
+    public void testGroupConditionalCreates() throws Exception {
+        Bundle.Builder requestBundleBuilder = Bundle.builder()
+                .id("bundle1")
+                .type(BundleType.BATCH);
+        String[] ifNoneExist = { null, "identifier=1", null, "identifier=2", "identifier=1" };
+        String[] url = { "Patient", "Patient", "Patient", "Patient", "Practitioner" };
+        List<Integer> entryIndices = new ArrayList<>();
+        for (int i = 0; i < url.length; i++) {
+            requestBundleBuilder.entry(Bundle.Entry.builder()
+                .request(Bundle.Entry.Request.builder()
+                    .method(HTTPVerb.POST)
+                    .url(Uri.of(url[i]))
+                    .ifNoneExist(ifNoneExist[i] == null ? null : string(ifNoneExist[i]))
+                    .build())
+                .build());
+            entryIndices.add(i);
+        }
+
+        FHIRRestHelper helper = new FHIRRestHelper(new MockPersistenceImpl());
+        List<List<Integer>> groups = new ArrayList<>(helper.groupEntriesByTarget(requestBundleBuilder.build(), HTTPVerb.Value.POST, entryIndices));
+
+        // the plain creates are processed on their own, the conditional creates of each resource type together and in order
+        assertEquals(groups, Arrays.asList(Arrays.asList(0), Arrays.asList(1, 3), Arrays.asList(2), Arrays.asList(4)));
+    }
+}
@@ -28,6 +28,7 @@ import com.ibm.fhir.model.type.Reference;
 import com.ibm.fhir.model.type.code.CompartmentType;
 import com.ibm.fhir.model.type.code.IssueType;
 import com.ibm.fhir.model.type.code.ResourceType;
+import com.ibm.fhir.model.type.code.SearchEntryMode;
 import com.ibm.fhir.model.util.FHIRUtil;
 import com.ibm.fhir.model.util.ModelSupport;
 import com.ibm.fhir.path.FHIRPathNode;
@@ -45,6 +46,7 @@ import com.ibm.fhir.search.compartment.CompartmentUtil;
 import com.ibm.fhir.search.context.FHIRSearchContext;
 import com.ibm.fhir.search.exception.FHIRSearchException;
 import com.ibm.fhir.search.parameters.QueryParameter;
+import com.ibm.fhir.search.parameters.QueryParameterValue;
 import com.ibm.fhir.search.util.ReferenceUtil;
 import com.ibm.fhir.search.util.ReferenceValue;
 import com.ibm.fhir.search.util.SearchUtil;
@@ -91,6 +93,10 @@ public class AuthzPolicyEnforcementPersistenceInterceptor implements FHIRPersist
      * This method ensures the search is either for a resource type that is not a member of the
      * patient compartment, or is a valid patient-compartment resource search that is scoped
      * to the patient context from the access token.
+     *
+     * <p>The compartment inclusion criteria make the search query itself filter the matches by their
+     * (stored) compartment membership, so that afterSearch only needs to check the compartment
+     * membership of included resources.
      */
     @Override
     public void beforeSearch(FHIRPersistenceEvent event) throws FHIRPersistenceInterceptorException {
@@ -296,10 +302,18 @@ public class AuthzPolicyEnforcementPersistenceInterceptor implements FHIRPersist
         List<String> patientIdFromToken = getPatientIdFromToken(jwt);
         List<Scope> scopesFromToken = getScopesFromToken(jwt);
 
+        // If the search was scoped to the Patient compartment of the patient context, the search query has already
+        // limited the matches to that compartment and only the scopes need to be checked for them
+        boolean matchesInCompartment = isScopedToPatientCompartment(event.getSearchContextImpl(), patientIdFromToken);
+
         if (event.getFhirResource() instanceof Bundle) {
             for ( Bundle.Entry entry : ((Bundle) event.getFhirResource()).getEntry() ) {
-                if (entry.getResource() != null) {
-                    enforce(entry.getResource(), patientIdFromToken, Permission.READ, scopesFromToken);
+                Resource resource = entry.getResource();
+                if (resource != null) {
+                    boolean inCompartment = matchesInCompartment
+                            && entry.getSearch() != null && entry.getSearch().getMode() == SearchEntryMode.MATCH
+                            && resource.getClass().getSimpleName().equals(event.getFhirResourceType());
+                    enforce(resource, patientIdFromToken, Permission.READ, scopesFromToken, inCompartment);
                 }
             }
         } else {
@@ -308,6 +322,48 @@ public class AuthzPolicyEnforcementPersistenceInterceptor implements FHIRPersist
         }
     }
 
+    /**
+     * Determine whether the search is limited to the Patient compartment of one or more of the contextIds by its
+     * inclusion criteria, as added or validated by beforeSearch
+     *
+     * @param searchContext the search context of the search, or null
+     * @param contextIds the ids of the patients in context
+     * @return true if every inclusion criteria value is a Patient compartment from the contextIds; otherwise false
+     */
+    private boolean isScopedToPatientCompartment(FHIRSearchContext searchContext, List<String> contextIds) {
+        if (searchContext == null) {
+            return false;
+        }
+        for (QueryParameter queryParameter : searchContext.getSearchParameters()) {
+            if (queryParameter.isInclusionCriteria()) {
+                // The inclusion criteria parameter and the parameters chained to it are OR'd together
+                if (!isPatientCompartmentValues(queryParameter, contextIds)) {
+                    return false;
+                }
+                for (QueryParameter chainedParameter : queryParameter.getChain()) {
+                    if (!isPatientCompartmentValues(chainedParameter, contextIds)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPatientCompartmentValues(QueryParameter queryParameter, List<String> contextIds) {
+        if (queryParameter.getValues().isEmpty()) {
+            return false;
+        }
+        for (QueryParameterValue value : queryParameter.getValues()) {
+            String[] tokens = value.getValueString() == null ? new String[0] : value.getValueString().split("/");
+            if (tokens.length != 2 || !PATIENT.equals(tokens[0]) || !contextIds.contains(tokens[1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Enforce the authorizations granted by the end user in the form of scope strings
      *
@@ -319,7 +375,22 @@ public class AuthzPolicyEnforcementPersistenceInterceptor implements FHIRPersist
      */
     private void enforce(Resource resource, List<String> contextIds, Permission requiredPermission, List<Scope> approvedScopes)
             throws FHIRPersistenceInterceptorException {
-        if (!isAllowed(resource, contextIds, requiredPermission, approvedScopes)) {
+        enforce(resource, contextIds, requiredPermission, approvedScopes, false);
+    }
+
+    /**
+     * Enforce the authorizations granted by the end user in the form of scope strings
+     *
+     * @param resource the resource to check
+     * @param contextIds an identifier for the current context (e.g. patient or user) as determined by the scope strings
+     * @param requiredPermission
+     * @param approvedScopes a list of SMART scopes associated with the request
+     * @param inCompartment true if the resource is already known to be in the Patient compartment of the contextIds
+     * @throws FHIRPersistenceInterceptorException if the interaction is not permitted
+     */
+    private void enforce(Resource resource, List<String> contextIds, Permission requiredPermission, List<Scope> approvedScopes,
+            boolean inCompartment) throws FHIRPersistenceInterceptorException {
+        if (!isAllowed(resource, contextIds, requiredPermission, approvedScopes, inCompartment)) {
             if (log.isLoggable(Level.FINE)) {
                 log.fine(requiredPermission.value() + " permission for '" + resource.getClass().getSimpleName() + "/" + resource.getId() +
                         "' is not granted by any of the provided scopes: " + approvedScopes +
@@ -337,10 +408,11 @@ public class AuthzPolicyEnforcementPersistenceInterceptor implements FHIRPersist
      * @param contextIds an identifier for the current context (e.g. patient or user) as determined by the scope strings
      * @param requiredPermission
      * @param approvedScopes a list of SMART scopes associated with the request
+     * @param inCompartment true if the resource is already known to be in the Patient compartment of the contextIds
      * @throws FHIRPersistenceInterceptorException if the interaction is not permitted
      */
-    private boolean isAllowed(Resource resource, List<String> contextIds, Permission requiredPermission, List<Scope> approvedScopes)
-            throws FHIRPersistenceInterceptorException {
+    private boolean isAllowed(Resource resource, List<String> contextIds, Permission requiredPermission, List<Scope> approvedScopes,
+            boolean inCompartment) throws FHIRPersistenceInterceptorException {
         Objects.requireNonNull(resource, "resource");
         Objects.requireNonNull(contextIds, "contextIds");
 
@@ -375,7 +447,7 @@ public class AuthzPolicyEnforcementPersistenceInterceptor implements FHIRPersist
             }
 
             // Else, see if the target resource belongs to the Patient compartment of the in-context patient
-            return checkCompartment(resource, CompartmentType.PATIENT, contextIds);
+            return inCompartment || checkCompartment(resource, CompartmentType.PATIENT, contextIds);
         }
 
         if (approvedScopeMap.containsKey(ContextType.USER)) {
@@ -45,17 +45,20 @@ import com.ibm.fhir.model.type.Reference;
 import com.ibm.fhir.model.type.code.BundleType;
 import com.ibm.fhir.model.type.code.IssueType;
 import com.ibm.fhir.model.type.code.ResourceType;
+import com.ibm.fhir.model.type.code.SearchEntryMode;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceEvent;
 import com.ibm.fhir.persistence.interceptor.FHIRPersistenceInterceptorException;
 import com.ibm.fhir.search.SearchConstants.Type;
 import com.ibm.fhir.search.context.impl.FHIRSearchContextImpl;
 import com.ibm.fhir.search.parameters.QueryParameter;
 import com.ibm.fhir.search.parameters.QueryParameterValue;
+import com.ibm.fhir.search.util.SearchUtil;
 import com.ibm.fhir.smart.AuthzPolicyEnforcementPersistenceInterceptor;
 import com.ibm.fhir.smart.Scope.Permission;
 
 public class AuthzPolicyEnforcementTest {
     private static final String PATIENT_ID =     "11111111-1111-1111-1111-111111111111";
+    private static final String OTHER_PATIENT_ID = "22222222-2222-2222-2222-222222222222";
     private static final String OBSERVATION_ID = "11111111-1111-1111-1111-111111111111";
     private static final String CONDITION_ID =   "11111111-1111-1111-1111-111111111111";
 
@@ -625,6 +628,69 @@ public class AuthzPolicyEnforcementTest {
         }
     }
 
+    @Test
+    public void testSearchScopedToCompartment() throws Exception {
+        // an Observation which isn't in the compartment of the patient in context, according to its subject
+        Observation otherObservation = observation.toBuilder()
+                .subject(Reference.builder().reference(string("Patient/" + OTHER_PATIENT_ID)).build())
+                .build();
+        Bundle.Entry match = Bundle.Entry.builder()
+                .resource(otherObservation)
+                .search(Bundle.Entry.Search.builder().mode(SearchEntryMode.MATCH).build())
+                .build();
+        Bundle.Entry include = Bundle.Entry.builder()
+                .resource(otherObservation)
+                .search(Bundle.Entry.Search.builder().mode(SearchEntryMode.INCLUDE).build())
+                .build();
+
+        Map<String, Object> searchProperties = new HashMap<>(properties);
+        searchProperties.put(FHIRPersistenceEvent.PROPNAME_RESOURCE_TYPE, "Observation");
+
+        // beforeSearch scopes the search to the Patient compartment of the patient in context,
+        // so the search query only returns matches within that compartment
+        FHIRRequestContext.get().setHttpHeaders(buildRequestHeaders("patient/Observation.read"));
+        FHIRSearchContextImpl searchContext = new FHIRSearchContextImpl();
+        searchProperties.put(FHIRPersistenceEvent.PROPNAME_SEARCH_CONTEXT_IMPL, searchContext);
+        interceptor.beforeSearch(new FHIRPersistenceEvent(null, searchProperties));
+        assertTrue(searchContext.getSearchParameters().get(0).isInclusionCriteria());
+
+        Bundle searchBundle = Bundle.builder().type(BundleType.SEARCHSET).entry(match).build();
+        interceptor.afterSearch(new FHIRPersistenceEvent(searchBundle, searchProperties));
+
+        // included resources are not filtered by the search query
+        try {
+            searchBundle = Bundle.builder().type(BundleType.SEARCHSET).entry(match, include).build();
+            interceptor.afterSearch(new FHIRPersistenceEvent(searchBundle, searchProperties));
+            fail("Included resource outside of the patient compartment was allowed");
+        } catch (FHIRPersistenceInterceptorException e) {
+            assertEquals(e.getIssues().get(0).getCode(), IssueType.FORBIDDEN);
+        }
+
+        // the scopes are still checked for the matches
+        try {
+            FHIRRequestContext.get().setHttpHeaders(buildRequestHeaders("patient/Patient.read"));
+            searchBundle = Bundle.builder().type(BundleType.SEARCHSET).entry(match).build();
+            interceptor.afterSearch(new FHIRPersistenceEvent(searchBundle, searchProperties));
+            fail("Observation was allowed without an Observation scope");
+        } catch (FHIRPersistenceInterceptorException e) {
+            assertEquals(e.getIssues().get(0).getCode(), IssueType.FORBIDDEN);
+        }
+
+        // a search scoped to a different patient's compartment is checked resource by resource
+        try {
+            FHIRRequestContext.get().setHttpHeaders(buildRequestHeaders("patient/Observation.read"));
+            searchContext = new FHIRSearchContextImpl();
+            searchContext.getSearchParameters().add(SearchUtil.buildInclusionCriteria("Patient",
+                Collections.singletonList(OTHER_PATIENT_ID), "Observation"));
+            searchProperties.put(FHIRPersistenceEvent.PROPNAME_SEARCH_CONTEXT_IMPL, searchContext);
+            searchBundle = Bundle.builder().type(BundleType.SEARCHSET).entry(match).build();
+            interceptor.afterSearch(new FHIRPersistenceEvent(searchBundle, searchProperties));
+            fail("Observation outside of the patient compartment was allowed");
+        } catch (FHIRPersistenceInterceptorException e) {
+            assertEquals(e.getIssues().get(0).getCode(), IssueType.FORBIDDEN);
+        }
+    }
+
     /**
      * Build a requestHeaders map by constructing a Bearer token from the passed scopeString
      * and setting the Authorization header
@@ -6,12 +6,15 @@
 
 package com.ibm.fhir.term.registry;
 
-import static com.ibm.fhir.cache.util.CacheSupport.createCacheAsMap;
+import static com.ibm.fhir.cache.util.CacheSupport.createCache;
 
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ibm.fhir.cache.CacheRegistry;
+import com.ibm.fhir.cache.ManagedCache;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.resource.ValueSet;
 import com.ibm.fhir.registry.resource.FHIRRegistryResource;
@@ -21,7 +24,13 @@ import com.ibm.fhir.registry.spi.FHIRRegistryResourceProvider;
  * An abstract base class for implicit registry resource provider implementations (e.g. SNOMED, LOINC, etc.)
  */
 public abstract class ImplicitValueSetRegistryResourceProvider implements FHIRRegistryResourceProvider {
-    private static final Map<String, FHIRRegistryResource> IMPLICIT_VALUE_SET_REGISTRY_RESOURCE_CACHE = createCacheAsMap(1024);
+    private static final Map<String, FHIRRegistryResource> IMPLICIT_VALUE_SET_REGISTRY_RESOURCE_CACHE = createImplicitValueSetCache();
+
+    private static Map<String, FHIRRegistryResource> createImplicitValueSetCache() {
+        Cache<String, FHIRRegistryResource> cache = createCache(1024, true);
+        CacheRegistry.registerShared("term.implicitValueSets", ManagedCache.of(cache));
+        return cache.asMap();
+    }
 
     @Override
     public Collection<FHIRRegistryResource> getProfileResources(String type) {
@@ -2884,12 +2884,16 @@ public class CodeGenerator {
         cb._import("javax.annotation.Generated");
         cb._import("javax.json.Json");
         cb._import("javax.json.JsonArray");
+        cb._import("javax.json.JsonBuilderFactory");
         cb._import("javax.json.JsonNumber");
         cb._import("javax.json.JsonObject");
+        cb._import("javax.json.JsonObjectBuilder");
         cb._import("javax.json.JsonReader");
         cb._import("javax.json.JsonReaderFactory");
         cb._import("javax.json.JsonString");
         cb._import("javax.json.JsonValue");
+        cb._import("javax.json.stream.JsonParser");
+        cb._import("javax.json.stream.JsonParserFactory");
         cb.newLine();
 
         cb._import("com.ibm.fhir.model.parser.exception.FHIRParserException");
@@ -2910,6 +2914,8 @@ public class CodeGenerator {
         cb._class(mods("public"), "FHIRJsonParser", "FHIRAbstractParser");
         cb.field(mods("public", "static"), "boolean", "DEBUG", "false");
         cb.field(mods("private", "static", "final"), "JsonReaderFactory", "JSON_READER_FACTORY", "Json.createReaderFactory(null)");
+        cb.field(mods("private", "static", "final"), "JsonParserFactory", "JSON_PARSER_FACTORY", "Json.createParserFactory(null)");
+        cb.field(mods("private", "static", "final"), "JsonBuilderFactory", "JSON_BUILDER_FACTORY", "Json.createBuilderFactory(null)");
         cb.newLine();
 
         cb.field(mods("private", "final"), "Stack<java.lang.String>", "stack", _new("Stack<>"));
@@ -2929,6 +2935,15 @@ public class CodeGenerator {
 
         // public <T extends Resource> T parseAndFilter(InputStream in, java.util.List<java.lang.String> elementsToInclude) throws FHIRException
         cb.method(mods("public"), "<T extends Resource> T", "parseAndFilter", params("InputStream in", "Collection<java.lang.String> elementsToInclude"), throwsExceptions("FHIRParserException"))
+            ._if("elementsToInclude == null && isStreaming()")
+                ._try("JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingInputStream(in), StandardCharsets.UTF_8)")
+                    ._return("parse(jsonParser)")
+                ._catch("FHIRParserException e")
+                    ._throw("e")
+                ._catch("Exception e")
+                    ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+                ._end()
+            ._end()
             ._try("JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingInputStream(in), StandardCharsets.UTF_8)")
                 .assign("JsonObject jsonObject", "jsonReader.readObject()")
                 ._return("parseAndFilter(jsonObject, elementsToInclude)")
@@ -2949,6 +2964,15 @@ public class CodeGenerator {
 
         // public <T extends Resource> T parseAndFilter(Reader reader, java.util.List<java.lang.String> elementsToInclude) throws FHIRException
         cb.method(mods("public"), "<T extends Resource> T", "parseAndFilter", params("Reader reader", "Collection<java.lang.String> elementsToInclude"), throwsExceptions("FHIRParserException"))
+            ._if("elementsToInclude == null && isStreaming()")
+                ._try("JsonParser jsonParser = JSON_PARSER_FACTORY.createParser(nonClosingReader(reader))")
+                    ._return("parse(jsonParser)")
+                ._catch("FHIRParserException e")
+                    ._throw("e")
+                ._catch("Exception e")
+                    ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+                ._end()
+            ._end()
             ._try("JsonReader jsonReader = JSON_READER_FACTORY.createReader(nonClosingReader(reader))")
                 .assign("JsonObject jsonObject", "jsonReader.readObject()")
                 ._return("parseAndFilter(jsonObject, elementsToInclude)")
@@ -2982,16 +3006,83 @@ public class CodeGenerator {
         .end();
         cb.newLine();
 
+        // public <T extends Resource> T parse(JsonParser jsonParser)
+        cb.javadocStart();
+        cb.javadoc("Parse a resource from the events of the passed JsonParser, without reading the whole payload into a JsonObject first.");
+        cb.javadoc("");
+        cb.javadoc("Only the entries of a Bundle are streamed: each entry is read into a JsonObject and parsed before the next one");
+        cb.javadoc("is read. The entry and its resource are materialized in full, as are all the other top-level elements of the");
+        cb.javadoc("resource, which are collected into a JsonObject and parsed once the end of the resource is reached. Peak memory");
+        cb.javadoc("use is therefore bounded by the largest entry plus the top-level elements rather than by the whole payload, and");
+        cb.javadoc("the parsed resource itself is still built in memory.");
+        cb.javadoc("");
+        cb.javadocParam("jsonParser", "a parser positioned before the start of the resource");
+        cb.javadocReturn("the parsed resource");
+        cb.javadocThrows("FHIRParserException", "if the input can't be parsed");
+        cb.javadocEnd();
+        cb.annotation("SuppressWarnings", quote("unchecked"));
+        cb.method(mods("public"), "<T extends Resource> T", "parse", params("JsonParser jsonParser"), throwsExceptions("FHIRParserException"))
+            ._try()
+                .invoke("reset", args())
+                ._if("jsonParser.next() != JsonParser.Event.START_OBJECT")
+                    ._throw("new IllegalArgumentException(\"Expected: START_OBJECT\")")
+                ._end()
+                .assign("JsonObjectBuilder objectBuilder", "JSON_BUILDER_FACTORY.createObjectBuilder()")
+                .assign("java.lang.String resourceTypeName", "null")
+                .assign("java.util.List<Bundle.Entry> entries", "null")
+                ._while("jsonParser.next() == JsonParser.Event.KEY_NAME")
+                    .assign("java.lang.String key", "jsonParser.getString()")
+                    ._if("jsonParser.next() == JsonParser.Event.START_ARRAY && \"entry\".equals(key) && \"Bundle\".equals(resourceTypeName)")
+                        .assign("entries", "parseBundleEntries(jsonParser)")
+                        ._continue()
+                    ._end()
+                    .assign("JsonValue jsonValue", "jsonParser.getValue()")
+                    ._if("\"resourceType\".equals(key) && jsonValue.getValueType() == JsonValue.ValueType.STRING")
+                        .assign("resourceTypeName", "((JsonString) jsonValue).getString()")
+                    ._end()
+                    .invoke("objectBuilder", "add", args("key", "jsonValue"))
+                ._end()
+                .assign("JsonObject jsonObject", "objectBuilder.build()")
+                .assign("Resource resource", "parseResource(getResourceType(jsonObject).getSimpleName(), jsonObject, -1)")
+                ._if("entries != null")
+                    .assign("resource", "((Bundle) resource).toBuilder().entry(entries).build()")
+                ._end()
+                ._return("(T) resource")
+            ._catch("Exception e")
+                ._throw("new FHIRParserException(e.getMessage(), getPath(), e)")
+            ._end()
+        .end();
+        cb.newLine();
+
+        cb.method(mods("private"), "java.util.List<Bundle.Entry>", "parseBundleEntries", params("JsonParser jsonParser"))
+            .assign("java.util.List<Bundle.Entry> entries", "new java.util.ArrayList<>()")
+            .invoke("stackPush", args(quote("Bundle"), "-1"))
+            ._while("jsonParser.next() != JsonParser.Event.END_ARRAY")
+                .invoke("entries", "add", args("parseBundleEntry(\"entry\", jsonParser.getObject(), entries.size())"))
+            ._end()
+            .invoke("stackPop", args())
+            ._return("entries")
+        .end();
+        cb.newLine();
+
         cb.method(mods("private"), "void", "reset")
             .invoke("stack", "clear", args())
         .end();
         cb.newLine();
 
+        cb.method(mods("private"), "boolean", "isStreaming")
+            ._return("getPropertyOrDefault(FHIRParser.PROPERTY_STREAMING, java.lang.Boolean.FALSE, java.lang.Boolean.class)")
+        .end();
+        cb.newLine();
+
         cb.override();
         cb.method(mods("public"), "boolean", "isPropertySupported", params("java.lang.String name"))
             ._if("FHIRParser.PROPERTY_IGNORE_UNRECOGNIZED_ELEMENTS.equals(name)")
                 ._return("true")
             ._end()
+            ._if("FHIRParser.PROPERTY_STREAMING.equals(name)")
+                ._return("true")
+            ._end()
             ._return("false")
         .end();
         cb.newLine();
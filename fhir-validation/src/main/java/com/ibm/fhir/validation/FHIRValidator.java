@@ -245,7 +245,14 @@ public class FHIRValidator {
             this.evaluationContext = evaluationContext;
             this.includeResourceAssertedProfiles = includeResourceAssertedProfiles;
             this.profiles = Arrays.asList(profiles);
-            this.evaluationContext.getTree().getRoot().accept(this);
+            // Constraints on the same node often share sub-expressions (e.g. extension.exists(), hasValue())
+            boolean memoizing = evaluationContext.isMemoizing();
+            evaluationContext.setMemoizing(true);
+            try {
+                this.evaluationContext.getTree().getRoot().accept(this);
+            } finally {
+                evaluationContext.setMemoizing(memoizing);
+            }
             return issues;
         }
 
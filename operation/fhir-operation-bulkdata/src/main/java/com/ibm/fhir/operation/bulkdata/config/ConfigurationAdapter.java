@@ -485,6 +485,15 @@ public interface ConfigurationAdapter {
      */
     int getImportNumberOfFhirResourcesPerRead(String provider);
 
+    /**
+     * get the number of threads parsing the lines read by an import partition
+     *
+     * @implNote System value.
+     *
+     * @return
+     */
+    int getImportParseParallelism();
+
     /**
      * the infly rate for the import
      * @param provider
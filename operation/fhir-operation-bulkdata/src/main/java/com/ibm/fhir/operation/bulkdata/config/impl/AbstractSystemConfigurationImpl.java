@@ -315,6 +315,11 @@ public abstract class AbstractSystemConfigurationImpl implements ConfigurationAd
         return IMPORT_NUMOFFHIRRESOURCES_PERREAD;
     }
 
+    @Override
+    public int getImportParseParallelism() {
+        return Math.max(1, FHIRConfigHelper.getIntProperty("fhirServer/bulkdata/core/importParseParallelism", 1));
+    }
+
     @Override
     public int getImportInflyRateNumberOfFhirResources(String provider) {
         return IMPORT_INFLY_RATE_NUMOFFHIRRESOURCES;
@@ -9,20 +9,30 @@ import static com.ibm.fhir.model.util.ModelSupport.FHIR_DATE;
 import static com.ibm.fhir.model.util.ModelSupport.FHIR_INSTANT;
 import static com.ibm.fhir.model.util.ModelSupport.FHIR_STRING;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriInfo;
 
 import com.ibm.fhir.config.FHIRConfigHelper;
 import com.ibm.fhir.config.FHIRRequestContext;
 import com.ibm.fhir.core.FHIRConstants;
+import com.ibm.fhir.core.FHIRMediaType;
 import com.ibm.fhir.core.HTTPHandlingPreference;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.resource.Bundle;
@@ -37,11 +47,15 @@ import com.ibm.fhir.model.type.Decimal;
 import com.ibm.fhir.model.type.UnsignedInt;
 import com.ibm.fhir.model.type.Uri;
 import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
 import com.ibm.fhir.model.type.code.SearchEntryMode;
+import com.ibm.fhir.model.util.FHIRUtil;
 import com.ibm.fhir.persistence.exception.FHIRPersistenceResourceDeletedException;
+import com.ibm.fhir.provider.util.FHIRProviderUtil;
 import com.ibm.fhir.registry.FHIRRegistry;
 import com.ibm.fhir.search.SearchConstants;
+import com.ibm.fhir.search.TotalValueSet;
 import com.ibm.fhir.search.compartment.CompartmentUtil;
 import com.ibm.fhir.search.exception.FHIRSearchException;
 import com.ibm.fhir.search.exception.SearchExceptionUtil;
@@ -102,10 +116,16 @@ public class EverythingOperation extends AbstractOperation {
     private static final String PATIENT = Patient.class.getSimpleName();
 
     /**
-     * The maximum number of cumulative resources from all compartments for a given patient.
+     * The maximum number of cumulative resources from all compartments for a given patient, when the Bundle is
+     * built in memory. A streamed Bundle has no limit.
      */
     private static final int MAX_OVERALL_RESOURCES = 10000;
 
+    /**
+     * Whether to stream the resulting Bundle to JSON clients as the pages of each resource type are retrieved.
+     */
+    private static final String PROPERTY_ENABLE_STREAMING = "fhirServer/operations/everything/enableStreaming";
+
     /**
      * The list of resources for which the <code>date</code> query parameter can be used
      */
@@ -194,13 +214,15 @@ public class EverythingOperation extends AbstractOperation {
         List<String> resourceTypesOverride = getOverridenIncludedResourceTypes(parameters);
         List<String> resourceTypes = resourceTypesOverride.isEmpty() ? defaultResourceTypes : resourceTypesOverride;
 
+        MediaType streamingMediaType = getStreamingMediaType(operationContext);
+        if (streamingMediaType != null) {
+            return streamEverything(operationContext, logicalId, patientEntry, resourceTypes, queryParameters, queryParametersWithoutDates,
+                    startOrEndProvided, maxPageSize, streamingMediaType, resourceHelper);
+        }
+
         int totalResourceCount = 0;
         for (String compartmentType : resourceTypes) {
-            MultivaluedMap<String, String> searchParameters = queryParameters;
-            if (startOrEndProvided  && !SUPPORT_CLINICAL_DATE_QUERY.contains(compartmentType)) {
-                LOG.finest("The request specified a '" + START_QUERY_PARAMETER + "' and/or '" + END_QUERY_PARAMETER + "' query parameter. They are not valid for resource type '" + compartmentType + "', so will be ignored.");
-                searchParameters = queryParametersWithoutDates;
-            }
+            MultivaluedMap<String, String> searchParameters = getSearchParameters(compartmentType, queryParameters, queryParametersWithoutDates, startOrEndProvided);
             Bundle results = null;
             int currentResourceCount = 0;
             try {
@@ -229,6 +251,7 @@ public class EverythingOperation extends AbstractOperation {
                     LOG.finest("Retrieving page " + page + " of the " + compartmentType + " resources for patient " + logicalId);
                     try {
                         searchParameters.putSingle(SearchConstants.PAGE, page++ + "");
+                        setCursor(searchParameters, results);
                         results = resourceHelper.doSearch(compartmentType, PATIENT, logicalId, searchParameters, null, null);
                     } catch (Exception e) {
                         FHIROperationException exceptionWithIssue = buildExceptionWithIssue("Error retrieving $everything resources page '" + page + "' of type '" + compartmentType + "' for patient " + logicalId, IssueType.EXCEPTION);
@@ -258,6 +281,156 @@ public class EverythingOperation extends AbstractOperation {
         return outputParameters;
     }
 
+    /**
+     * Stream the $everything Bundle to the response as each page of each compartment resource type is retrieved,
+     * rather than collecting all the entries in memory first. Unlike the Bundle built in memory, the number of
+     * resources isn't limited, so the resources aren't counted up front; Bundle.total is written after the entries.
+     * The pages are retrieved while the response is being written, each in its own persistence transaction. If one
+     * of them fails, the response is already committed, so the Bundle is closed with an OperationOutcome entry in
+     * place of the remaining resources, and without a total.
+     *
+     * @return a placeholder output; the operation response is set on the operation context
+     */
+    private Parameters streamEverything(FHIROperationContext operationContext, String logicalId, Entry patientEntry, List<String> resourceTypes,
+            MultivaluedMap<String, String> queryParameters, MultivaluedMap<String, String> queryParametersWithoutDates, boolean startOrEndProvided,
+            int maxPageSize, MediaType mediaType, FHIRResourceHelpers resourceHelper) throws FHIROperationException {
+        Map<String, MultivaluedMap<String, String>> searchParametersByType = new LinkedHashMap<>();
+        for (String compartmentType : resourceTypes) {
+            // Bundle.total is the number of entries written, so there's no need to count the resources of each type
+            MultivaluedMap<String, String> searchParameters = getSearchParameters(compartmentType, queryParameters, queryParametersWithoutDates, startOrEndProvided);
+            searchParameters.putSingle(SearchConstants.TOTAL, TotalValueSet.NONE.value());
+            searchParametersByType.put(compartmentType, searchParameters);
+        }
+
+        StreamingOutput output = out -> {
+            StreamingSearchsetWriter writer = new StreamingSearchsetWriter(out);
+            writer.start(UUID.randomUUID().toString());
+            // The patient is the first entry
+            writer.writeEntry(patientEntry);
+            for (Map.Entry<String, MultivaluedMap<String, String>> typeParameters : searchParametersByType.entrySet()) {
+                String compartmentType = typeParameters.getKey();
+                MultivaluedMap<String, String> searchParameters = typeParameters.getValue();
+                int page = 1;
+                Bundle results;
+                do {
+                    LOG.finest("Streaming page " + page + " of the " + compartmentType + " resources for patient " + logicalId);
+                    searchParameters.putSingle(SearchConstants.PAGE, page + "");
+                    try {
+                        results = resourceHelper.doSearch(compartmentType, PATIENT, logicalId, searchParameters, null, null);
+                    } catch (Exception e) {
+                        // The response is already committed, so the error can only be reported within the Bundle
+                        String msg = "Error retrieving $everything resources page '" + page + "' of type '" + compartmentType + "' for patient " + logicalId
+                                + "; the Bundle is incomplete";
+                        LOG.log(Level.SEVERE, msg, e);
+                        writer.writeEntry(buildOutcomeEntry(msg));
+                        writer.finish(null);
+                        return;
+                    }
+                    for (Entry entry : results.getEntry()) {
+                        writer.writeEntry(entry);
+                    }
+                    writer.flush();
+                    page++;
+                } while (results.getEntry().size() >= maxPageSize && setCursor(searchParameters, results));
+            }
+            writer.finish(writer.getEntryCount());
+            LOG.finest("Streamed " + writer.getEntryCount() + " $everything resources for patient " + logicalId);
+        };
+
+        operationContext.setProperty(FHIROperationContext.PROPNAME_CUSTOM_RESPONSE, Response.ok(output, mediaType).build());
+
+        // The output parameters are validated against the operation definition, which requires a Bundle
+        return FHIROperationUtil.getOutputParameters(Bundle.builder().type(BundleType.SEARCHSET).build());
+    }
+
+    /**
+     * Build the searchset entry which reports an error in the middle of a streamed Bundle
+     *
+     * @param msg the error message
+     * @return an entry with an OperationOutcome resource and search mode "outcome"
+     */
+    static Entry buildOutcomeEntry(String msg) {
+        return Entry.builder()
+                .resource(FHIRUtil.buildOperationOutcome(msg, IssueType.EXCEPTION, IssueSeverity.ERROR))
+                .search(Search.builder()
+                    .mode(SearchEntryMode.OUTCOME)
+                    .build())
+                .build();
+    }
+
+    /**
+     * Get the media type to stream the response with, or null if the response should be built in memory.
+     * Streaming must be enabled, and the client must accept JSON without pretty printing.
+     *
+     * @param operationContext the {@link FHIROperationContext} holding the HTTP request headers
+     * @return the media type to stream the response with, or null
+     */
+    protected MediaType getStreamingMediaType(FHIROperationContext operationContext) {
+        if (!FHIRConfigHelper.getBooleanProperty(PROPERTY_ENABLE_STREAMING, false)) {
+            return null;
+        }
+        HttpHeaders httpHeaders = (HttpHeaders) operationContext.getProperty(FHIROperationContext.PROPNAME_HTTP_HEADERS);
+        UriInfo uriInfo = (UriInfo) operationContext.getProperty(FHIROperationContext.PROPNAME_URI_INFO);
+        if (httpHeaders == null || FHIRProviderUtil.isPretty(httpHeaders, uriInfo)) {
+            return null;
+        }
+        List<MediaType> acceptableMediaTypes = httpHeaders.getAcceptableMediaTypes();
+        MediaType mediaType = acceptableMediaTypes.isEmpty() ? MediaType.WILDCARD_TYPE : acceptableMediaTypes.get(0);
+        if (mediaType.isCompatible(FHIRMediaType.APPLICATION_FHIR_JSON_TYPE)) {
+            return FHIRMediaType.APPLICATION_FHIR_JSON_TYPE;
+        }
+        if (mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+            return MediaType.APPLICATION_JSON_TYPE;
+        }
+        return null;
+    }
+
+    /**
+     * Get a copy of the search parameters to use for the given compartment resource type. Each type gets
+     * its own copy because the paging parameters are set on it as the pages are retrieved.
+     *
+     * @param compartmentType the compartment resource type
+     * @param queryParameters the search parameters
+     * @param queryParametersWithoutDates the search parameters without the clinical date parameter
+     * @param startOrEndProvided whether the clinical date parameter was specified
+     * @return the search parameters for the compartment resource type
+     */
+    private MultivaluedMap<String, String> getSearchParameters(String compartmentType, MultivaluedMap<String, String> queryParameters,
+            MultivaluedMap<String, String> queryParametersWithoutDates, boolean startOrEndProvided) {
+        if (startOrEndProvided  && !SUPPORT_CLINICAL_DATE_QUERY.contains(compartmentType)) {
+            LOG.finest("The request specified a '" + START_QUERY_PARAMETER + "' and/or '" + END_QUERY_PARAMETER + "' query parameter. They are not valid for resource type '" + compartmentType + "', so will be ignored.");
+            return new MultivaluedHashMap<>(queryParametersWithoutDates);
+        }
+        return new MultivaluedHashMap<>(queryParameters);
+    }
+
+    /**
+     * Continue from the position of the previous page with the cursor from its next link, when the server
+     * provides one, so that each page is a seek rather than an offset into the results.
+     *
+     * @param searchParameters the search parameters for the next page
+     * @param previousPage the previous page of search results
+     * @return whether the previous page has a next link
+     */
+    protected static boolean setCursor(MultivaluedMap<String, String> searchParameters, Bundle previousPage) {
+        searchParameters.remove(SearchConstants.CURSOR);
+        for (Bundle.Link link : previousPage.getLink()) {
+            if ("next".equals(link.getRelation().getValue())) {
+                String url = link.getUrl().getValue();
+                int queryStart = url.indexOf('?');
+                if (queryStart >= 0) {
+                    for (String queryParameter : url.substring(queryStart + 1).split("&")) {
+                        if (queryParameter.startsWith(SearchConstants.CURSOR + "=")) {
+                            searchParameters.putSingle(SearchConstants.CURSOR, queryParameter.substring(SearchConstants.CURSOR.length() + 1));
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Parse the parameters and turn them into a {@link MultivaluedMap} to pass to the search service
      *
@@ -0,0 +1,100 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.ibm.fhir.operation.everything;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.generator.FHIRGenerator;
+import com.ibm.fhir.model.generator.exception.FHIRGeneratorException;
+import com.ibm.fhir.model.resource.Bundle.Entry;
+
+/**
+ * Writes a JSON searchset Bundle one entry at a time, so that the entries never have to be
+ * held in memory together. The Bundle envelope is written by hand and each entry is
+ * serialized by the (non-pretty-printing) JSON generator.
+ *
+ * <p>Usage: {@link #start(String)}, any number of {@link #writeEntry(Entry)} calls and then {@link #finish(Integer)}.
+ * Bundle.total is written after the entries, once it is known.
+ */
+class StreamingSearchsetWriter {
+    private final Writer writer;
+    private final FHIRGenerator generator = FHIRGenerator.generator(Format.JSON);
+    private int entryCount = 0;
+
+    /**
+     * @param out the stream to write to; it is flushed but not closed by {@link #finish(Integer)}
+     */
+    StreamingSearchsetWriter(OutputStream out) {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the start of the Bundle, up to the opening of the entry array
+     *
+     * @param id the Bundle id
+     * @throws IOException
+     */
+    void start(String id) throws IOException {
+        writer.write("{\"resourceType\":\"Bundle\",\"id\":\"");
+        writer.write(id);
+        writer.write("\",\"type\":\"searchset\",\"entry\":[");
+    }
+
+    /**
+     * Write the next entry of the Bundle
+     *
+     * @param entry
+     * @throws IOException
+     */
+    void writeEntry(Entry entry) throws IOException {
+        if (entryCount++ > 0) {
+            writer.write(',');
+        }
+        try {
+            generator.generate(entry, writer);
+        } catch (FHIRGeneratorException e) {
+            throw new IOException("Error generating entry " + entryCount + " of the Bundle", e);
+        }
+    }
+
+    /**
+     * Push the entries written so far to the underlying stream
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * Write the end of the Bundle and flush
+     *
+     * @param total the value of Bundle.total, or null to leave it out
+     * @throws IOException
+     */
+    void finish(Integer total) throws IOException {
+        writer.write(']');
+        if (total != null) {
+            writer.write(",\"total\":");
+            writer.write(total.toString());
+        }
+        writer.write('}');
+        writer.flush();
+    }
+
+    /**
+     * @return the number of entries written so far
+     */
+    int getEntryCount() {
+        return entryCount;
+    }
+}
@@ -7,12 +7,17 @@ package com.ibm.fhir.operation.everything;
 
 import static org.testng.Assert.assertNotNull;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.List;
 
+import javax.ws.rs.core.MultivaluedHashMap;
 import javax.ws.rs.core.MultivaluedMap;
 
 import org.testng.annotations.Test;
@@ -21,8 +26,17 @@ import com.ibm.fhir.core.FHIRConstants;
 import com.ibm.fhir.model.format.Format;
 import com.ibm.fhir.model.parser.FHIRParser;
 import com.ibm.fhir.model.parser.exception.FHIRParserException;
+import com.ibm.fhir.model.resource.Basic;
+import com.ibm.fhir.model.resource.Bundle;
 import com.ibm.fhir.model.resource.OperationDefinition;
+import com.ibm.fhir.model.resource.OperationOutcome;
 import com.ibm.fhir.model.resource.Parameters;
+import com.ibm.fhir.model.type.CodeableConcept;
+import com.ibm.fhir.model.type.Uri;
+import com.ibm.fhir.model.type.Url;
+import com.ibm.fhir.model.type.code.BundleType;
+import com.ibm.fhir.model.type.code.IssueSeverity;
+import com.ibm.fhir.model.type.code.SearchEntryMode;
 import com.ibm.fhir.search.SearchConstants;
 import com.ibm.fhir.search.exception.FHIRSearchException;
 
@@ -136,6 +150,98 @@ public class EverythingOperationTest {
         assertEquals(EverythingOperation.STARTING_FROM + "2017-01-01T00:00Z", queryParameters.getFirst(EverythingOperation.LAST_UPDATED_QUERY_PARAMETER));
     }
 
+    /**
+     * The cursor from the next link of the previous page is passed on to the next page
+     */
+    @Test
+    public void testSetCursor() {
+        MultivaluedMap<String, String> searchParameters = new MultivaluedHashMap<>();
+        searchParameters.putSingle(SearchConstants.CURSOR, "old");
+
+        Bundle withCursor = searchset(link("next", "https://localhost/Observation?_count=1000&_page=2&_cursor=AQAAAAI"));
+        assertTrue(EverythingOperation.setCursor(searchParameters, withCursor));
+        assertEquals("AQAAAAI", searchParameters.getFirst(SearchConstants.CURSOR));
+
+        Bundle withoutCursor = searchset(link("next", "https://localhost/Observation?_count=1000&_page=3"));
+        assertTrue(EverythingOperation.setCursor(searchParameters, withoutCursor));
+        assertNull(searchParameters.getFirst(SearchConstants.CURSOR));
+
+        Bundle lastPage = searchset(link("self", "https://localhost/Observation?_count=1000&_page=3"));
+        assertFalse(EverythingOperation.setCursor(searchParameters, lastPage));
+        assertNull(searchParameters.getFirst(SearchConstants.CURSOR));
+    }
+
+    /**
+     * The streamed Bundle can be parsed back with the entries in the order they were written
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStreamingSearchsetWriter() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingSearchsetWriter writer = new StreamingSearchsetWriter(out);
+        writer.start("bundle-1");
+        for (int i = 1; i <= 3; i++) {
+            writer.writeEntry(Bundle.Entry.builder()
+                .fullUrl(Uri.of("https://localhost/Basic/" + i))
+                .resource(Basic.builder()
+                    .id(Integer.toString(i))
+                    .code(CodeableConcept.builder().text(com.ibm.fhir.model.type.String.of("test")).build())
+                    .build())
+                .build());
+            writer.flush();
+        }
+        writer.finish(writer.getEntryCount());
+        assertEquals(3, writer.getEntryCount());
+
+        Bundle bundle = FHIRParser.parser(Format.JSON).parse(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("bundle-1", bundle.getId());
+        assertEquals(BundleType.SEARCHSET, bundle.getType());
+        assertEquals(3, bundle.getTotal().getValue().intValue());
+        assertEquals(3, bundle.getEntry().size());
+        for (int i = 1; i <= 3; i++) {
+            assertEquals(Integer.toString(i), bundle.getEntry().get(i - 1).getResource().getId());
+        }
+    }
+
+    /**
+     * A Bundle which is cut short by a search error is still valid, and ends with the outcome entry
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStreamingOutcomeEntry() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamingSearchsetWriter writer = new StreamingSearchsetWriter(out);
+        writer.start("bundle-2");
+        writer.writeEntry(Bundle.Entry.builder()
+            .fullUrl(Uri.of("https://localhost/Basic/1"))
+            .resource(Basic.builder()
+                .id("1")
+                .code(CodeableConcept.builder().text(com.ibm.fhir.model.type.String.of("test")).build())
+                .build())
+            .build());
+        writer.writeEntry(EverythingOperation.buildOutcomeEntry("search failed"));
+        writer.finish(null);
+
+        Bundle bundle = FHIRParser.parser(Format.JSON).parse(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, bundle.getEntry().size());
+        assertNull(bundle.getTotal());
+        Bundle.Entry outcomeEntry = bundle.getEntry().get(1);
+        assertEquals(SearchEntryMode.OUTCOME, outcomeEntry.getSearch().getMode());
+        OperationOutcome outcome = outcomeEntry.getResource().as(OperationOutcome.class);
+        assertEquals(IssueSeverity.ERROR, outcome.getIssue().get(0).getSeverity());
+        assertEquals("search failed", outcome.getIssue().get(0).getDetails().getText().getValue());
+    }
+
+    private Bundle searchset(Bundle.Link link) {
+        return Bundle.builder().type(BundleType.SEARCHSET).link(link).build();
+    }
+
+    private Bundle.Link link(String relation, String url) {
+        return Bundle.Link.builder().relation(com.ibm.fhir.model.type.String.of(relation)).url(Url.of(url)).build();
+    }
+
     private Parameters loadParametersFile(String file) throws IOException, FHIRParserException {
         try (InputStreamReader reader = new InputStreamReader(this.getClass().getResourceAsStream("/" + file))) {
             return FHIRParser.parser(Format.JSON).parse(reader);
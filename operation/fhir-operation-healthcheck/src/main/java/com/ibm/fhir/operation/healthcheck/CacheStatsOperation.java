@@ -0,0 +1,190 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.operation.healthcheck;
+
+import static com.ibm.fhir.model.type.String.string;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.SecurityContext;
+
+import com.ibm.fhir.cache.CacheRegistry;
+import com.ibm.fhir.cache.CacheStatistics;
+import com.ibm.fhir.cache.ManagedCache;
+import com.ibm.fhir.config.FHIRConfigHelper;
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.exception.FHIROperationException;
+import com.ibm.fhir.model.format.Format;
+import com.ibm.fhir.model.parser.FHIRParser;
+import com.ibm.fhir.model.resource.OperationDefinition;
+import com.ibm.fhir.model.resource.Parameters;
+import com.ibm.fhir.model.resource.Parameters.Parameter;
+import com.ibm.fhir.model.resource.Resource;
+import com.ibm.fhir.model.type.Code;
+import com.ibm.fhir.model.type.Decimal;
+import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.server.operation.spi.AbstractOperation;
+import com.ibm.fhir.server.operation.spi.FHIROperationContext;
+import com.ibm.fhir.server.operation.spi.FHIRResourceHelpers;
+import com.ibm.fhir.server.util.FHIROperationUtil;
+
+/**
+ * Reports the statistics of the caches registered with the {@link CacheRegistry} for the current
+ * tenant, together with the shared caches. A POST naming a cache and a new maximum size resizes that
+ * cache, which makes it possible to tune cache sizes without restarting the server. Anyone allowed to
+ * invoke the operation can read the statistics, but only users in one of the roles listed by
+ * fhirServer/operations/cacheStats/allowedRoles (FHIROperationAdmin by default) can resize a cache.
+ */
+public class CacheStatsOperation extends AbstractOperation {
+    private static final Logger logger = Logger.getLogger(CacheStatsOperation.class.getName());
+
+    private static final String PARAM_CACHE = "cache";
+    private static final String PARAM_MAXIMUM_SIZE = "maximumSize";
+
+    private static final String PROPERTY_ALLOWED_ROLES = "fhirServer/operations/cacheStats/allowedRoles";
+    private static final List<String> DEFAULT_ALLOWED_ROLES = Collections.singletonList("FHIROperationAdmin");
+
+    private static final String SCOPE_TENANT = "tenant";
+    private static final String SCOPE_SHARED = "shared";
+
+    public CacheStatsOperation() {
+        super();
+    }
+
+    @Override
+    protected OperationDefinition buildOperationDefinition() {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("cache-stats.json")) {
+            return FHIRParser.parser(Format.JSON).parse(in);
+        } catch (Exception e) {
+            throw new Error(e);
+        }
+    }
+
+    @Override
+    protected Parameters doInvoke(FHIROperationContext operationContext, Class<? extends Resource> resourceType,
+            String logicalId, String versionId, Parameters parameters, FHIRResourceHelpers resourceHelper)
+            throws FHIROperationException {
+        final String tenantId = FHIRRequestContext.get().getTenantId();
+
+        Parameter cacheParameter = getParameter(parameters, PARAM_CACHE);
+        Parameter maximumSizeParameter = getParameter(parameters, PARAM_MAXIMUM_SIZE);
+        if (cacheParameter != null || maximumSizeParameter != null) {
+            String method = (String) operationContext.getProperty(FHIROperationContext.PROPNAME_METHOD_TYPE);
+            if (!"POST".equalsIgnoreCase(method)) {
+                throw FHIROperationUtil.buildExceptionWithIssue("Resizing a cache requires POST", IssueType.NOT_SUPPORTED);
+            }
+            if (cacheParameter == null || maximumSizeParameter == null) {
+                throw FHIROperationUtil.buildExceptionWithIssue("Both '" + PARAM_CACHE + "' and '" + PARAM_MAXIMUM_SIZE
+                    + "' are required to resize a cache", IssueType.REQUIRED);
+            }
+            authorizeResize((SecurityContext) operationContext.getProperty(FHIROperationContext.PROPNAME_SECURITY_CONTEXT));
+            String cacheName = cacheParameter.getValue().as(com.ibm.fhir.model.type.String.class).getValue();
+            Integer maximumSize = maximumSizeParameter.getValue().as(com.ibm.fhir.model.type.Integer.class).getValue();
+            resize(tenantId, cacheName, maximumSize);
+        }
+
+        Parameters.Builder result = Parameters.builder();
+        for (Map.Entry<String, ManagedCache> entry : CacheRegistry.getTenantCaches(tenantId).entrySet()) {
+            result.parameter(buildCacheParameter(entry.getKey(), SCOPE_TENANT, entry.getValue()));
+        }
+        for (Map.Entry<String, ManagedCache> entry : CacheRegistry.getSharedCaches().entrySet()) {
+            result.parameter(buildCacheParameter(entry.getKey(), SCOPE_SHARED, entry.getValue()));
+        }
+        return result.build();
+    }
+
+    /**
+     * Check that the user is in one of the roles allowed to resize caches. An empty list of
+     * allowed roles disables resizing.
+     *
+     * @param securityContext
+     * @throws FHIROperationException
+     */
+    private void authorizeResize(SecurityContext securityContext) throws FHIROperationException {
+        List<String> allowedRoles = FHIRConfigHelper.getStringListProperty(PROPERTY_ALLOWED_ROLES);
+        if (allowedRoles == null) {
+            allowedRoles = DEFAULT_ALLOWED_ROLES;
+        }
+        if (securityContext != null) {
+            for (String allowedRole : allowedRoles) {
+                if (securityContext.isUserInRole(allowedRole)) {
+                    return;
+                }
+            }
+        }
+        throw FHIROperationUtil.buildExceptionWithIssue("Resizing a cache is forbidden", IssueType.FORBIDDEN);
+    }
+
+    /**
+     * Change the maximum size of the named cache. The caches of the current tenant take precedence
+     * over shared caches of the same name. Shared caches affect every tenant, so they can only be
+     * resized by the default tenant.
+     *
+     * @param tenantId
+     * @param cacheName
+     * @param maximumSize
+     * @throws FHIROperationException
+     */
+    private void resize(String tenantId, String cacheName, Integer maximumSize) throws FHIROperationException {
+        if (maximumSize == null || maximumSize < 1) {
+            throw FHIROperationUtil.buildExceptionWithIssue("'" + PARAM_MAXIMUM_SIZE + "' must be a positive integer", IssueType.INVALID);
+        }
+
+        ManagedCache cache = CacheRegistry.getTenantCaches(tenantId).get(cacheName);
+        if (cache == null) {
+            cache = CacheRegistry.getSharedCaches().get(cacheName);
+            if (cache != null && !FHIRConfiguration.DEFAULT_TENANT_ID.equals(tenantId)) {
+                throw FHIROperationUtil.buildExceptionWithIssue("Shared cache '" + cacheName
+                    + "' can only be resized by the default tenant", IssueType.FORBIDDEN);
+            }
+        }
+        if (cache == null) {
+            throw FHIROperationUtil.buildExceptionWithIssue("Cache '" + cacheName + "' not found", IssueType.NOT_FOUND);
+        }
+        if (!cache.isResizable()) {
+            throw FHIROperationUtil.buildExceptionWithIssue("Cache '" + cacheName + "' is not resizable", IssueType.NOT_SUPPORTED);
+        }
+
+        logger.info("Resizing cache '" + cacheName + "' for tenant '" + tenantId + "' to " + maximumSize + " entries");
+        cache.resize(maximumSize);
+    }
+
+    private Parameter buildCacheParameter(String cacheName, String scope, ManagedCache cache) {
+        CacheStatistics stats = cache.getStatistics();
+        Parameter.Builder builder = Parameter.builder().name(string(PARAM_CACHE));
+        builder.part(Parameter.builder().name(string("name")).value(string(cacheName)).build());
+        builder.part(Parameter.builder().name(string("scope")).value(Code.of(scope)).build());
+        if (stats.getHitCount() != CacheStatistics.UNKNOWN) {
+            builder.part(decimalPart("hitCount", stats.getHitCount()));
+            builder.part(decimalPart("missCount", stats.getMissCount()));
+            builder.part(Parameter.builder().name(string("hitRate"))
+                .value(Decimal.of(BigDecimal.valueOf(stats.getHitRate()).setScale(4, RoundingMode.HALF_UP))).build());
+            builder.part(decimalPart("evictionCount", stats.getEvictionCount()));
+        }
+        builder.part(decimalPart("size", stats.getSize()));
+        if (stats.getMaximumSize() != CacheStatistics.UNKNOWN) {
+            builder.part(decimalPart("maximumSize", stats.getMaximumSize()));
+        }
+        if (stats.getEstimatedBytes() != CacheStatistics.UNKNOWN) {
+            builder.part(decimalPart("estimatedBytes", stats.getEstimatedBytes()));
+        }
+        builder.part(Parameter.builder().name(string("resizable"))
+            .value(com.ibm.fhir.model.type.Boolean.of(cache.isResizable())).build());
+        return builder.build();
+    }
+
+    private Parameter decimalPart(String name, long value) {
+        return Parameter.builder().name(string(name)).value(Decimal.of(value)).build();
+    }
+}
@@ -8,8 +8,12 @@ package com.ibm.fhir.operation.healthcheck;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.config.metrics.HistogramRequestMetricsRecorder;
+import com.ibm.fhir.config.metrics.LatencyHistogram;
+import com.ibm.fhir.config.metrics.RequestMetricsRecorder;
 import com.ibm.fhir.core.HTTPReturnPreference;
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.format.Format;
@@ -20,6 +24,9 @@ import com.ibm.fhir.model.resource.OperationOutcome.Issue;
 import com.ibm.fhir.model.resource.Parameters;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.code.IssueSeverity;
+import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.notification.FHIRNotificationQueue;
+import com.ibm.fhir.notification.FHIRNotificationService;
 import com.ibm.fhir.persistence.FHIRPersistence;
 import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
 import com.ibm.fhir.server.operation.spi.AbstractOperation;
@@ -58,7 +65,7 @@ public class HealthcheckOperation extends AbstractOperation {
                 checkOperationOutcome(operationOutcome);
 
                 if (FHIRRequestContext.get().getReturnPreference() == HTTPReturnPreference.OPERATION_OUTCOME) {
-                    return FHIROperationUtil.getOutputParameters(operationOutcome);
+                    return FHIROperationUtil.getOutputParameters(addNotificationQueues(addRequestLatencies(operationOutcome)));
                 } else {
                     return null;
                 }
@@ -76,6 +83,49 @@ public class HealthcheckOperation extends AbstractOperation {
         }
     }
 
+    /**
+     * Add an informational issue for each request latency histogram kept by the default
+     * {@link RequestMetricsRecorder}. Nothing is added when another recorder is registered.
+     * @param oo
+     * @return
+     */
+    private OperationOutcome addRequestLatencies(OperationOutcome oo) {
+        RequestMetricsRecorder recorder = RequestMetricsRecorder.recorder();
+        if (!(recorder instanceof HistogramRequestMetricsRecorder)) {
+            return oo;
+        }
+        OperationOutcome.Builder builder = oo.toBuilder();
+        for (Map.Entry<String, LatencyHistogram> histogram : ((HistogramRequestMetricsRecorder) recorder).getHistograms().entrySet()) {
+            builder.issue(Issue.builder()
+                .severity(IssueSeverity.INFORMATION)
+                .code(IssueType.INFORMATIONAL)
+                .diagnostics(com.ibm.fhir.model.type.String.of("Request latency " + histogram.getKey() + ": " + histogram.getValue()))
+                .build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Add an informational issue with the depth and publication latency of each notification
+     * queue. Nothing is added when notifications are published synchronously.
+     * @param oo
+     * @return
+     */
+    private OperationOutcome addNotificationQueues(OperationOutcome oo) {
+        if (!FHIRNotificationService.isInitialized()) {
+            return oo;
+        }
+        OperationOutcome.Builder builder = oo.toBuilder();
+        for (FHIRNotificationQueue queue : FHIRNotificationService.getInstance().getQueues()) {
+            builder.issue(Issue.builder()
+                .severity(IssueSeverity.INFORMATION)
+                .code(IssueType.INFORMATIONAL)
+                .diagnostics(com.ibm.fhir.model.type.String.of("Notification queue " + queue.getSubscriber().getClass().getSimpleName() + ": " + queue))
+                .build());
+        }
+        return builder.build();
+    }
+
     private void checkOperationOutcome(OperationOutcome oo) throws FHIROperationException {
         List<Issue> issues = oo.getIssue();
         for (Issue issue : issues) {
@@ -0,0 +1,114 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.operation.healthcheck;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import javax.ws.rs.core.SecurityContext;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ibm.fhir.cache.CacheRegistry;
+import com.ibm.fhir.cache.ManagedCache;
+import com.ibm.fhir.config.FHIRConfiguration;
+import com.ibm.fhir.exception.FHIROperationException;
+import com.ibm.fhir.model.resource.Parameters;
+import com.ibm.fhir.model.resource.Parameters.Parameter;
+import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.server.operation.spi.FHIROperationContext;
+
+/**
+ * Unit test for {@link CacheStatsOperation}
+ */
+public class CacheStatsOperationTest {
+    private static final String CACHE_NAME = "test.cacheStats";
+
+    private Cache<String, String> cache;
+
+    @BeforeClass
+    public void registerCache() {
+        cache = Caffeine.newBuilder().maximumSize(100).recordStats().build();
+        CacheRegistry.register(FHIRConfiguration.DEFAULT_TENANT_ID, CACHE_NAME, ManagedCache.of(cache));
+    }
+
+    @AfterClass
+    public void unregisterCache() {
+        CacheRegistry.unregister(FHIRConfiguration.DEFAULT_TENANT_ID, CACHE_NAME);
+    }
+
+    @Test
+    public void testReadStatistics() throws Exception {
+        // reading the statistics doesn't require any role
+        Parameters result = new CacheStatsOperation().doInvoke(operationContext("GET", null), null, null, null, Parameters.builder().build(), null);
+        assertTrue(result.getParameter().stream().anyMatch(p -> CACHE_NAME.equals(cacheName(p))));
+    }
+
+    @Test
+    public void testResize() throws Exception {
+        new CacheStatsOperation().doInvoke(operationContext("POST", "FHIROperationAdmin"), null, null, null, resize(50), null);
+        assertEquals(cache.policy().eviction().get().getMaximum(), 50);
+    }
+
+    @Test
+    public void testResizeForbidden() throws Exception {
+        assertIssue(operationContext("POST", "FHIRUsers"), resize(50), IssueType.FORBIDDEN);
+        assertIssue(operationContext("POST", null), resize(50), IssueType.FORBIDDEN);
+    }
+
+    @Test
+    public void testResizeNotPositive() throws Exception {
+        assertIssue(operationContext("POST", "FHIROperationAdmin"), resize(0), IssueType.INVALID);
+        assertIssue(operationContext("POST", "FHIROperationAdmin"), resize(-1), IssueType.INVALID);
+    }
+
+    private void assertIssue(FHIROperationContext operationContext, Parameters parameters, IssueType issueType) {
+        long maximumSize = cache.policy().eviction().get().getMaximum();
+        try {
+            new CacheStatsOperation().doInvoke(operationContext, null, null, null, parameters, null);
+            fail("expected FHIROperationException");
+        } catch (FHIROperationException e) {
+            assertEquals(e.getIssues().get(0).getCode(), issueType);
+        }
+        assertEquals(cache.policy().eviction().get().getMaximum(), maximumSize);
+    }
+
+    private static FHIROperationContext operationContext(String method, String role) {
+        FHIROperationContext operationContext = FHIROperationContext.createSystemOperationContext();
+        operationContext.setProperty(FHIROperationContext.PROPNAME_METHOD_TYPE, method);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        if (role != null) {
+            when(securityContext.isUserInRole(role)).thenReturn(true);
+        }
+        operationContext.setProperty(FHIROperationContext.PROPNAME_SECURITY_CONTEXT, securityContext);
+        return operationContext;
+    }
+
+    private static Parameters resize(int maximumSize) {
+        return Parameters.builder()
+                .parameter(Parameter.builder()
+                    .name(com.ibm.fhir.model.type.String.of("cache"))
+                    .value(com.ibm.fhir.model.type.String.of(CACHE_NAME))
+                    .build())
+                .parameter(Parameter.builder()
+                    .name(com.ibm.fhir.model.type.String.of("maximumSize"))
+                    .value(com.ibm.fhir.model.type.Integer.of(maximumSize))
+                    .build())
+                .build();
+    }
+
+    private static String cacheName(Parameter cacheParameter) {
+        return cacheParameter.getPart().get(0).getValue().as(com.ibm.fhir.model.type.String.class).getValue();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.operation.healthcheck;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.config.metrics.RequestMetricsRecorder;
+import com.ibm.fhir.config.metrics.RequestPhase;
+import com.ibm.fhir.config.metrics.RequestTimer;
+import com.ibm.fhir.core.HTTPReturnPreference;
+import com.ibm.fhir.model.resource.OperationOutcome;
+import com.ibm.fhir.model.resource.Parameters;
+import com.ibm.fhir.model.type.code.IssueSeverity;
+import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.model.util.FHIRUtil;
+import com.ibm.fhir.persistence.FHIRPersistence;
+import com.ibm.fhir.persistence.FHIRPersistenceTransaction;
+import com.ibm.fhir.server.operation.spi.FHIROperationContext;
+import com.ibm.fhir.server.operation.spi.FHIRResourceHelpers;
+
+/**
+ * Unit test for {@link HealthcheckOperation}
+ */
+public class HealthcheckOperationTest {
+
+    @BeforeMethod
+    @AfterMethod
+    public void clearThreadLocal() {
+        FHIRRequestContext.remove();
+    }
+
+    @Test
+    public void testRequestLatencies() throws Exception {
+        // a completed request
+        RequestTimer timer = new RequestTimer();
+        timer.add(RequestPhase.SQL, 2000000L);
+        RequestMetricsRecorder.recorder().recordRequest("default", "GET", 200, timer);
+
+        FHIRRequestContext.get().setReturnPreference(HTTPReturnPreference.OPERATION_OUTCOME);
+        Parameters output = new HealthcheckOperation().doInvoke(operationContext(), null, null, null, null, resourceHelper());
+
+        OperationOutcome outcome = output.getParameter().get(0).getResource().as(OperationOutcome.class);
+        assertEquals(outcome.getIssue().get(0).getDetails().getText().getValue(), "All OK");
+        List<String> latencies = outcome.getIssue().stream()
+                .filter(issue -> issue.getDiagnostics() != null)
+                .map(issue -> issue.getDiagnostics().getValue())
+                .filter(diagnostics -> diagnostics.startsWith("Request latency "))
+                .collect(Collectors.toList());
+        assertTrue(latencies.get(0).startsWith("Request latency total: count="), latencies.get(0));
+        assertTrue(latencies.stream().anyMatch(l -> l.startsWith("Request latency " + RequestPhase.SQL.getMetricName() + ": count=")), latencies.toString());
+    }
+
+    @Test
+    public void testMinimal() throws Exception {
+        FHIRRequestContext.get().setReturnPreference(HTTPReturnPreference.MINIMAL);
+        assertNull(new HealthcheckOperation().doInvoke(operationContext(), null, null, null, null, resourceHelper()));
+    }
+
+    private static FHIROperationContext operationContext() throws Exception {
+        OperationOutcome health = FHIRUtil.buildOperationOutcome("All OK", IssueType.INFORMATIONAL, IssueSeverity.INFORMATION);
+        FHIRPersistence persistence = mock(FHIRPersistence.class);
+        when(persistence.getHealth()).thenReturn(health);
+        FHIROperationContext operationContext = FHIROperationContext.createSystemOperationContext();
+        operationContext.setProperty(FHIROperationContext.PROPNAME_PERSISTENCE_IMPL, persistence);
+        return operationContext;
+    }
+
+    private static FHIRResourceHelpers resourceHelper() throws Exception {
+        FHIRPersistenceTransaction transaction = mock(FHIRPersistenceTransaction.class);
+        FHIRResourceHelpers resourceHelper = mock(FHIRResourceHelpers.class);
+        when(resourceHelper.getTransaction()).thenReturn(transaction);
+        return resourceHelper;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.operation.reindex;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.fhir.config.FHIRRequestContext;
+import com.ibm.fhir.persistence.ReindexRange;
+import com.ibm.fhir.server.operation.spi.FHIROperationContext;
+import com.ibm.fhir.server.operation.spi.FHIRResourceHelpers;
+
+/**
+ * Reindexes every resource (or every resource of a given type) not reindexed since a given
+ * tstamp. The logical resources are split into id ranges which are processed by a pool of
+ * workers, each reindexing a batch of resources per transaction. Each resource is stamped
+ * with the tstamp as it is reindexed, so a run which is stopped early (or fails) can be
+ * resumed by running again with the same tstamp.
+ */
+public class ReindexEngine {
+    private static final Logger logger = Logger.getLogger(ReindexEngine.class.getName());
+
+    // Split into more ranges than threads so that a worker which finishes early can pick up more work
+    private static final int RANGES_PER_THREAD = 4;
+
+    /**
+     * Provides each worker with its own {@link FHIRResourceHelpers} instance, because
+     * the helpers (and the persistence implementations behind them) aren't thread-safe
+     */
+    @FunctionalInterface
+    public interface ResourceHelpersFactory {
+        FHIRResourceHelpers create() throws Exception;
+    }
+
+    /**
+     * The outcome of a reindex run
+     */
+    public static class Result {
+        private final long resourceCount;
+        private final long elapsedMillis;
+        private final int rangeCount;
+        private final int incompleteRangeCount;
+        private final int threadCount;
+
+        private Result(long resourceCount, long elapsedMillis, int rangeCount, int incompleteRangeCount, int threadCount) {
+            this.resourceCount = resourceCount;
+            this.elapsedMillis = elapsedMillis;
+            this.rangeCount = rangeCount;
+            this.incompleteRangeCount = incompleteRangeCount;
+            this.threadCount = threadCount;
+        }
+
+        /**
+         * @return the number of resources reindexed
+         */
+        public long getResourceCount() {
+            return resourceCount;
+        }
+
+        /**
+         * @return the elapsed time of the run in milliseconds
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return the number of ranges the resources were split into
+         */
+        public int getRangeCount() {
+            return rangeCount;
+        }
+
+        /**
+         * @return the number of ranges not completed before the time limit expired
+         */
+        public int getIncompleteRangeCount() {
+            return incompleteRangeCount;
+        }
+
+        /**
+         * @return the number of threads used to process the ranges
+         */
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        /**
+         * @return true if all the ranges were completed
+         */
+        public boolean isComplete() {
+            return incompleteRangeCount == 0;
+        }
+
+        /**
+         * @return the throughput of the run in resources per second
+         */
+        public double getResourcesPerSecond() {
+            return elapsedMillis > 0 ? resourceCount * 1000.0 / elapsedMillis : resourceCount;
+        }
+    }
+
+    private final FHIROperationContext operationContext;
+
+    // The helper owned by the calling thread
+    private final FHIRResourceHelpers resourceHelper;
+
+    // Used to create a helper for each worker thread
+    private final ResourceHelpersFactory helpersFactory;
+
+    // The pool used to run the workers. If null, the ranges are processed by the calling thread
+    private final ExecutorService executor;
+
+    private final int threadCount;
+
+    private final int batchSize;
+
+    // Stop picking up new batches after this many millis. 0 means no limit
+    private final long timeLimitMillis;
+
+    // The total number of resources reindexed
+    private final AtomicLong resourceCount = new AtomicLong();
+
+    // The number of ranges completed
+    private final AtomicInteger completedRangeCount = new AtomicInteger();
+
+    // Set to tell the workers to stop
+    private final AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * Public constructor
+     * @param operationContext
+     * @param resourceHelper the helper for the calling thread, used to compute the ranges
+     * @param helpersFactory creates a helper for each worker
+     * @param executor the pool used to run the workers. If null, all work is done by the calling thread
+     * @param threadCount the number of workers
+     * @param batchSize the max number of resources to reindex per transaction
+     * @param timeLimitMillis the time after which workers stop picking up new batches. 0 for no limit
+     */
+    public ReindexEngine(FHIROperationContext operationContext, FHIRResourceHelpers resourceHelper, ResourceHelpersFactory helpersFactory,
+            ExecutorService executor, int threadCount, int batchSize, long timeLimitMillis) {
+        this.operationContext = operationContext;
+        this.resourceHelper = resourceHelper;
+        this.helpersFactory = helpersFactory;
+        this.executor = executor;
+        this.threadCount = executor != null ? threadCount : 1;
+        this.batchSize = batchSize;
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * Reindex all the resources (of the given type) not reindexed since tstamp
+     * @param tstamp
+     * @param resourceType the resource type to reindex, or null for all resource types
+     * @return
+     * @throws Exception
+     */
+    public Result run(Instant tstamp, String resourceType) throws Exception {
+        final long start = System.nanoTime();
+        final long deadline = timeLimitMillis > 0 ? start + timeLimitMillis * 1000000L : Long.MAX_VALUE;
+
+        List<ReindexRange> ranges = resourceHelper.getReindexRanges(operationContext, resourceType, threadCount * RANGES_PER_THREAD);
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Reindex tstamp=" + tstamp + " split into ranges: " + ranges);
+        }
+        Queue<ReindexRange> queue = new ConcurrentLinkedQueue<>(ranges);
+
+        if (executor == null || ranges.size() < 2) {
+            processRanges(resourceHelper, queue, tstamp, deadline);
+        } else {
+            runWorkers(queue, tstamp, deadline, Math.min(threadCount, ranges.size()));
+        }
+
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+        Result result = new Result(resourceCount.get(), elapsedMillis, ranges.size(), ranges.size() - completedRangeCount.get(), threadCount);
+        logger.info(String.format("Reindex tstamp=%s processed %d resources in %d ms [%.1f resources/s] using %d threads; %d of %d ranges incomplete",
+            tstamp, result.getResourceCount(), elapsedMillis, result.getResourcesPerSecond(), threadCount, result.getIncompleteRangeCount(), result.getRangeCount()));
+        return result;
+    }
+
+    /**
+     * Run the workers on the executor, and wait for them all to finish
+     * @param queue
+     * @param tstamp
+     * @param deadline
+     * @param workerCount
+     * @throws Exception the first failure reported by any of the workers
+     */
+    private void runWorkers(Queue<ReindexRange> queue, Instant tstamp, long deadline, int workerCount) throws Exception {
+        // The workers need to access the same tenant/datastore as the caller
+        final FHIRRequestContext requestContext = FHIRRequestContext.get();
+        final String tenantId = requestContext.getTenantId();
+        final String dataStoreId = requestContext.getDataStoreId();
+
+        List<Future<Void>> futures = new ArrayList<>(workerCount);
+        for (int i=0; i<workerCount; i++) {
+            futures.add(executor.submit(() -> {
+                FHIRRequestContext.set(new FHIRRequestContext(tenantId, dataStoreId));
+                try {
+                    processRanges(helpersFactory.create(), queue, tstamp, deadline);
+                } finally {
+                    FHIRRequestContext.remove();
+                }
+                return null;
+            }));
+        }
+
+        Exception failure = null;
+        for (Future<Void> f: futures) {
+            try {
+                f.get();
+            } catch (ExecutionException x) {
+                if (failure == null) {
+                    failure = x.getCause() instanceof Exception ? (Exception)x.getCause() : x;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Keep taking ranges from the queue and reindexing them batch by batch until there are
+     * no ranges left or the deadline is reached
+     * @param helper
+     * @param queue
+     * @param tstamp
+     * @param deadline
+     * @throws Exception
+     */
+    private void processRanges(FHIRResourceHelpers helper, Queue<ReindexRange> queue, Instant tstamp, long deadline) throws Exception {
+        try {
+            ReindexRange range;
+            while (!stopped.get() && (range = queue.poll()) != null) {
+                while (!range.isComplete() && !stopped.get() && System.nanoTime() < deadline) {
+                    resourceCount.addAndGet(helper.doReindex(operationContext, tstamp, range, batchSize));
+                }
+
+                if (range.isComplete()) {
+                    completedRangeCount.incrementAndGet();
+                } else {
+                    // out of time
+                    break;
+                }
+            }
+        } catch (Exception x) {
+            // tell the other workers there's no point carrying on
+            stopped.set(true);
+            logger.log(Level.SEVERE, "reindex failed", x);
+            throw x;
+        }
+    }
+}
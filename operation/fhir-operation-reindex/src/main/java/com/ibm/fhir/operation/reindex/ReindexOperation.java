@@ -1,5 +1,5 @@
 /*
- * (C) Copyright IBM Corp. 2020
+ * (C) Copyright IBM Corp. 2020, 2021
  *
  * SPDX-License-Identifier: Apache-2.0
  */
@@ -13,9 +13,14 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.servlet.http.HttpServletRequest;
+
 import com.ibm.fhir.exception.FHIROperationException;
 import com.ibm.fhir.model.format.Format;
 import com.ibm.fhir.model.parser.FHIRParser;
@@ -26,10 +31,13 @@ import com.ibm.fhir.model.resource.Parameters;
 import com.ibm.fhir.model.resource.Resource;
 import com.ibm.fhir.model.type.code.IssueSeverity;
 import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.persistence.helper.FHIRPersistenceHelper;
+import com.ibm.fhir.persistence.helper.PersistenceHelper;
 import com.ibm.fhir.server.operation.spi.AbstractOperation;
 import com.ibm.fhir.server.operation.spi.FHIROperationContext;
 import com.ibm.fhir.server.operation.spi.FHIRResourceHelpers;
 import com.ibm.fhir.server.util.FHIROperationUtil;
+import com.ibm.fhir.server.util.FHIRRestHelper;
 
 /**
  * Custom operation to invoke the persistence layer reindexing of resources
@@ -40,10 +48,27 @@ public class ReindexOperation extends AbstractOperation {
     private static final String PARAM_TSTAMP = "tstamp";
     private static final String PARAM_RESOURCE_COUNT = "resourceCount";
     private static final String PARAM_RESOURCE_LOGICAL_ID = "resourceLogicalId";
+    private static final String PARAM_THREAD_COUNT = "threadCount";
+    private static final String PARAM_BATCH_SIZE = "batchSize";
+    private static final String PARAM_TIME_LIMIT = "timeLimit";
 
     // The max number of resources we allow to be processed by one request
     private static final int MAX_RESOURCE_COUNT = 1000;
 
+    // The max number of worker threads for a partitioned reindex
+    private static final int MAX_THREAD_COUNT = 100;
+
+    // The max number of resources reindexed per transaction by a partitioned reindex
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    // The default and max number of seconds a partitioned reindex runs for before returning, so that
+    // (like the per-call reindex) each request stays short and the client loops until the reindex is complete
+    private static final int DEFAULT_TIME_LIMIT = 60;
+    private static final int MAX_TIME_LIMIT = 3600;
+
+    // The pool used to run the partitioned reindex workers
+    private static final String EXECUTOR_JNDI_NAME = "java:comp/DefaultManagedExecutorService";
+
     static final DateTimeFormatter DAY_FORMAT = new DateTimeFormatterBuilder()
             .appendPattern("yyyy-MM-dd")
             .parseDefaulting(ChronoField.NANO_OF_DAY, 0)
@@ -78,6 +103,9 @@ public class ReindexOperation extends AbstractOperation {
             Instant tstamp = Instant.now();
             int resourceCount = 10;
             String resourceLogicalId = null;
+            int threadCount = 0;
+            int batchSize = 100;
+            int timeLimit = DEFAULT_TIME_LIMIT;
 
             if (parameters != null) {
                 for (Parameters.Parameter parameter : parameters.getParameter()) {
@@ -109,10 +137,30 @@ public class ReindexOperation extends AbstractOperation {
                     } else if (PARAM_RESOURCE_LOGICAL_ID.equals(parameter.getName().getValue())) {
                         // reindex a specific resource (useful for debug/testing)
                         resourceLogicalId = parameter.getValue().as(com.ibm.fhir.model.type.String.class).getValue();
+                    } else if (PARAM_THREAD_COUNT.equals(parameter.getName().getValue())) {
+                        Integer val = parameter.getValue().as(com.ibm.fhir.model.type.Integer.class).getValue();
+                        if (val != null) {
+                            threadCount = checkRange(PARAM_THREAD_COUNT, val, MAX_THREAD_COUNT);
+                        }
+                    } else if (PARAM_BATCH_SIZE.equals(parameter.getName().getValue())) {
+                        Integer val = parameter.getValue().as(com.ibm.fhir.model.type.Integer.class).getValue();
+                        if (val != null) {
+                            batchSize = checkRange(PARAM_BATCH_SIZE, val, MAX_BATCH_SIZE);
+                        }
+                    } else if (PARAM_TIME_LIMIT.equals(parameter.getName().getValue())) {
+                        Integer val = parameter.getValue().as(com.ibm.fhir.model.type.Integer.class).getValue();
+                        if (val != null) {
+                            timeLimit = checkRange(PARAM_TIME_LIMIT, val, MAX_TIME_LIMIT);
+                        }
                     }
                 }
             }
 
+            if (threadCount > 0 && (resourceLogicalId == null || !resourceLogicalId.contains("/"))) {
+                // Reindex everything (of the given type) using the partitioned reindex engine
+                return doPartitionedReindex(operationContext, resourceHelper, tstamp, resourceLogicalId, threadCount, batchSize, timeLimit);
+            }
+
             // Delegate the heavy lifting to the helper
             OperationOutcome.Builder result = OperationOutcome.builder();
             int totalProcessed = 0;
@@ -139,6 +187,103 @@ public class ReindexOperation extends AbstractOperation {
         }
     }
 
+    /**
+     * Reindex all the resources (of the given type) not reindexed since tstamp, splitting
+     * the work over threadCount threads
+     * @param operationContext
+     * @param resourceHelper
+     * @param tstamp
+     * @param resourceType the resource type to reindex, or null for all resource types
+     * @param threadCount
+     * @param batchSize the number of resources to reindex in each transaction
+     * @param timeLimit stop after this many seconds
+     * @return
+     * @throws Exception
+     */
+    private Parameters doPartitionedReindex(FHIROperationContext operationContext, FHIRResourceHelpers resourceHelper, Instant tstamp,
+            String resourceType, int threadCount, int batchSize, int timeLimit) throws Exception {
+
+        // Each worker needs its own persistence implementation, so we can only use the pool if we can create them
+        ExecutorService executor = null;
+        ReindexEngine.ResourceHelpersFactory helpersFactory = getResourceHelpersFactory(operationContext);
+        if (helpersFactory != null && threadCount > 1) {
+            executor = getExecutor();
+        }
+
+        ReindexEngine engine = new ReindexEngine(operationContext, resourceHelper, helpersFactory, executor, threadCount, batchSize, timeLimit * 1000L);
+        ReindexEngine.Result engineResult = engine.run(tstamp, resourceType);
+
+        // Report the throughput, and let the caller know if there's more to do
+        OperationOutcome.Builder result = OperationOutcome.builder();
+        final String stats = String.format("Reindexed %d resources in %.3f s [%.1f resources/s] using %d threads and %d ranges",
+            engineResult.getResourceCount(), engineResult.getElapsedMillis() / 1000.0, engineResult.getResourcesPerSecond(),
+            engineResult.getThreadCount(), engineResult.getRangeCount());
+        result.issue(Issue.builder().code(IssueType.INFORMATIONAL).severity(IssueSeverity.INFORMATION).diagnostics(com.ibm.fhir.model.type.String.of(stats)).build());
+
+        final String diag;
+        if (engineResult.isComplete()) {
+            diag = "Reindex complete";
+        } else {
+            diag = "Time limit reached with " + engineResult.getIncompleteRangeCount() + " ranges incomplete; resume using tstamp " + tstamp;
+        }
+        result.issue(Issue.builder().code(IssueType.INFORMATIONAL).severity(IssueSeverity.INFORMATION).diagnostics(com.ibm.fhir.model.type.String.of(diag)).build());
+
+        return FHIROperationUtil.getOutputParameters(result.build());
+    }
+
+    /**
+     * Get a factory for creating a new {@link FHIRResourceHelpers} (backed by its own persistence
+     * implementation) for each worker thread
+     * @param operationContext
+     * @return the factory, or null if the persistence helper isn't available
+     */
+    private ReindexEngine.ResourceHelpersFactory getResourceHelpersFactory(FHIROperationContext operationContext) {
+        HttpServletRequest request = (HttpServletRequest) operationContext.getProperty(FHIROperationContext.PROPNAME_HTTP_REQUEST);
+        if (request != null) {
+            Object attr = request.getServletContext().getAttribute(FHIRPersistenceHelper.class.getName());
+            if (attr instanceof PersistenceHelper) {
+                final PersistenceHelper persistenceHelper = (PersistenceHelper) attr;
+                return () -> new FHIRRestHelper(persistenceHelper.getFHIRPersistenceImplementation());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Look up the managed executor used to run the reindex workers
+     * @return the executor, or null if it is not available
+     */
+    private ExecutorService getExecutor() {
+        try {
+            Object executor = InitialContext.doLookup(EXECUTOR_JNDI_NAME);
+            if (executor instanceof ExecutorService) {
+                return (ExecutorService) executor;
+            }
+        } catch (NamingException x) {
+            logger.warning("Unable to look up '" + EXECUTOR_JNDI_NAME + "'; reindex will run in a single thread");
+        }
+        return null;
+    }
+
+    /**
+     * Reject a parameter value less than 1 and clamp it to the given max
+     * @param name
+     * @param value
+     * @param max
+     * @return
+     * @throws FHIROperationException if the value is less than 1
+     */
+    private int checkRange(String name, int value, int max) throws FHIROperationException {
+        if (value < 1) {
+            throw buildExceptionWithIssue("The '" + name + "' parameter must be a positive integer: " + value, IssueType.INVALID);
+        }
+        if (value > max) {
+            logger.info("Clamping " + name + " " + value + " to max allowed: " + max);
+            return max;
+        }
+        return value;
+    }
+
     /**
      * Check the OperationOutcome for any errors
      * @param oo
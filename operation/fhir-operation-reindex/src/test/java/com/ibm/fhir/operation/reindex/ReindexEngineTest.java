@@ -0,0 +1,123 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.operation.reindex;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.exception.FHIROperationException;
+import com.ibm.fhir.persistence.ReindexRange;
+import com.ibm.fhir.server.operation.spi.FHIROperationContext;
+import com.ibm.fhir.server.operation.spi.FHIRResourceHelpers;
+
+/**
+ * Unit test for {@link ReindexEngine}
+ */
+public class ReindexEngineTest {
+    private static final int MAX_LOGICAL_RESOURCE_ID = 1000;
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterClass
+    public void teardown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Create a helper which simulates reindexing by marking the logical resource ids
+     * processed in the given bitset
+     * @param processed
+     * @param failAt fail when reindexing this id, or -1 to never fail
+     * @return
+     * @throws Exception
+     */
+    private FHIRResourceHelpers createHelper(BitSet processed, long failAt) throws Exception {
+        FHIRResourceHelpers helper = mock(FHIRResourceHelpers.class);
+        when(helper.getReindexRanges(any(), isNull(), anyInt())).thenAnswer(
+            invocation -> ReindexRange.split(null, 1, MAX_LOGICAL_RESOURCE_ID, invocation.getArgument(2)));
+        when(helper.doReindex(any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            ReindexRange range = invocation.getArgument(2);
+            int maxResources = invocation.getArgument(3);
+            long from = range.getNextLogicalResourceId();
+            long to = Math.min(from + maxResources - 1, range.getToLogicalResourceId());
+            if (failAt >= from && failAt <= to) {
+                throw new FHIROperationException("simulated failure");
+            }
+            synchronized (processed) {
+                for (long id=from; id<=to; id++) {
+                    // each resource must be processed exactly once
+                    assertTrue(!processed.get((int)id));
+                    processed.set((int)id);
+                }
+            }
+            range.setNextLogicalResourceId(to + 1);
+            range.setComplete(to == range.getToLogicalResourceId());
+            return (int)(to - from + 1);
+        });
+        return helper;
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        BitSet processed = new BitSet();
+        FHIRResourceHelpers helper = createHelper(processed, -1);
+        ReindexEngine engine = new ReindexEngine(FHIROperationContext.createSystemOperationContext(), helper, () -> helper, executor, 4, 7, 0);
+        ReindexEngine.Result result = engine.run(Instant.now(), null);
+        assertTrue(result.isComplete());
+        assertEquals(result.getResourceCount(), MAX_LOGICAL_RESOURCE_ID);
+        assertEquals(result.getRangeCount(), 16);
+        assertEquals(result.getThreadCount(), 4);
+        assertEquals(processed.cardinality(), MAX_LOGICAL_RESOURCE_ID);
+    }
+
+    @Test
+    public void testSingleThread() throws Exception {
+        // Without an executor, all the work is done by the caller
+        BitSet processed = new BitSet();
+        FHIRResourceHelpers helper = createHelper(processed, -1);
+        ReindexEngine engine = new ReindexEngine(FHIROperationContext.createSystemOperationContext(), helper, null, null, 4, 100, 0);
+        ReindexEngine.Result result = engine.run(Instant.now(), null);
+        assertTrue(result.isComplete());
+        assertEquals(result.getResourceCount(), MAX_LOGICAL_RESOURCE_ID);
+        assertEquals(result.getThreadCount(), 1);
+        assertEquals(processed.cardinality(), MAX_LOGICAL_RESOURCE_ID);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        BitSet processed = new BitSet();
+        FHIRResourceHelpers helper = createHelper(processed, 500);
+        ReindexEngine engine = new ReindexEngine(FHIROperationContext.createSystemOperationContext(), helper, () -> helper, executor, 4, 10, 0);
+        try {
+            engine.run(Instant.now(), null);
+            fail("expected failure");
+        } catch (FHIROperationException x) {
+            // expected
+        }
+        assertTrue(processed.cardinality() < MAX_LOGICAL_RESOURCE_ID);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package com.ibm.fhir.operation.reindex;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.ibm.fhir.exception.FHIROperationException;
+import com.ibm.fhir.model.resource.Parameters;
+import com.ibm.fhir.model.resource.Parameters.Parameter;
+import com.ibm.fhir.model.type.code.IssueType;
+import com.ibm.fhir.server.operation.spi.FHIROperationContext;
+import com.ibm.fhir.server.operation.spi.FHIRResourceHelpers;
+
+/**
+ * Unit test for the parameter checks of {@link ReindexOperation}
+ */
+public class ReindexOperationTest {
+
+    @DataProvider
+    public static Object[][] invalidParameters() {
+        return new Object[][] {
+            { "threadCount", 0 },
+            { "threadCount", -1 },
+            { "batchSize", 0 },
+            { "batchSize", -5 },
+            { "timeLimit", 0 },
+            { "timeLimit", -1 }
+        };
+    }
+
+    @Test(dataProvider = "invalidParameters")
+    public void testInvalidParameter(String name, int value) throws Exception {
+        FHIROperationContext operationContext = FHIROperationContext.createSystemOperationContext();
+        operationContext.setProperty(FHIROperationContext.PROPNAME_METHOD_TYPE, "POST");
+        FHIRResourceHelpers resourceHelper = mock(FHIRResourceHelpers.class);
+
+        Parameters.Builder parameters = Parameters.builder();
+        if (!"threadCount".equals(name)) {
+            parameters.parameter(parameter("threadCount", 2));
+        }
+        parameters.parameter(parameter(name, value));
+
+        try {
+            new ReindexOperation().doInvoke(operationContext, null, null, null, parameters.build(), resourceHelper);
+            fail("expected FHIROperationException");
+        } catch (FHIROperationException e) {
+            assertEquals(e.getIssues().size(), 1);
+            assertEquals(e.getIssues().get(0).getCode(), IssueType.INVALID);
+        }
+
+        // nothing is reindexed
+        verifyNoInteractions(resourceHelper);
+    }
+
+    private static Parameter parameter(String name, int value) {
+        return Parameter.builder()
+                .name(com.ibm.fhir.model.type.String.of(name))
+                .value(com.ibm.fhir.model.type.Integer.of(value))
+                .build();
+    }
+}